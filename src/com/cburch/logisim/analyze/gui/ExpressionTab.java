@@ -220,6 +220,7 @@ class ExpressionTab extends AnalyzerTab {
       VariableList outputs = model.getOutputs();
       int n = outputs.bits.size();
       listCopy = new NamedExpression[n];
+      model.getOutputExpressions().computeMinimalForAllOutputs();
       int i = -1;
       for (String name : outputs.bits) {
         i++;
@@ -41,6 +41,7 @@ import java.util.TreeMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 public class Implicant implements Comparable<Implicant> {
   private static class TermIterator
@@ -76,8 +77,104 @@ public class Implicant implements Comparable<Implicant> {
     }
   }
 
+  // Minimization works on cubes encoded as longs, with the unknowns mask in
+  // the high half and the values in the low half (values never has a bit set
+  // where unknowns does, so -1 is never a valid cube). Up to EXACT_CUBE_LIMIT
+  // cubes, computeMinimal() finds all prime implicants with Quine-McCluskey
+  // then picks a cover from them: the essential primes, followed greedily by
+  // whichever prime covers the most rows not yet covered. That greedy step
+  // means the result is not always a true minimum, but for the table sizes
+  // the analyzer allows it nearly always is. The number of prime implicants
+  // can grow exponentially with the number of inputs though, so for tables
+  // that would need more cubes than that, computeHeuristicCover() is used
+  // instead. It is much faster and needs little memory, but typically gives
+  // a few more (and larger) terms than the exact method.
+  static final int EXACT_CUBE_LIMIT = 1 << 18;
+
+  private static long cube(int unknowns, int values) {
+    return ((long)unknowns << 32) | (values & 0xffffffffL);
+  }
+
+  private static int unknowns(long cube) {
+    return (int)(cube >>> 32);
+  }
+
+  private static int values(long cube) {
+    return (int)cube;
+  }
+
+  // An open-addressed hash set of cubes, each with a few flag bits.
+  private static final class CubeSet {
+    static final byte CARE = 1; // covers at least one desired row
+    static final byte MERGED = 2; // combined with another cube at this level
+
+    long[] keys;
+    byte[] flags;
+    int size;
+
+    CubeSet(int expected) {
+      int cap = 16;
+      while (cap < 2 * expected)
+        cap <<= 1;
+      keys = new long[cap];
+      Arrays.fill(keys, -1L);
+      flags = new byte[cap];
+    }
+
+    private static int hash(long key) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int)(h ^ (h >>> 32));
+    }
+
+    int find(long key) {
+      int mask = keys.length - 1;
+      for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+        if (keys[i] == key)
+          return i;
+        if (keys[i] == -1L)
+          return -1;
+      }
+    }
+
+    void add(long key, byte flag) {
+      if (2 * (size + 1) > keys.length)
+        grow();
+      int mask = keys.length - 1;
+      for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+        if (keys[i] == key) {
+          flags[i] |= flag;
+          return;
+        }
+        if (keys[i] == -1L) {
+          keys[i] = key;
+          flags[i] = flag;
+          size++;
+          return;
+        }
+      }
+    }
+
+    private void grow() {
+      long[] oldKeys = keys;
+      byte[] oldFlags = flags;
+      keys = new long[2 * oldKeys.length];
+      Arrays.fill(keys, -1L);
+      flags = new byte[keys.length];
+      size = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != -1L)
+          add(oldKeys[i], oldFlags[i]);
+      }
+    }
+  }
+
   static List<Implicant> computeMinimal(int format, AnalyzerModel model,
       String variable) {
+    return computeMinimal(format, model, variable, EXACT_CUBE_LIMIT);
+  }
+
+  static List<Implicant> computeMinimal(int format, AnalyzerModel model,
+      String variable, int cubeLimit) {
     TruthTable table = model.getTruthTable();
     int column = model.getOutputs().bits.indexOf(variable);
     if (column < 0)
@@ -87,158 +184,359 @@ public class Implicant implements Comparable<Implicant> {
         : Entry.ZERO;
     Entry undesired = desired == Entry.ONE ? Entry.ZERO : Entry.ONE;
 
-    // determine the first-cut implicants, as well as the rows
-    // that we need to cover.
-    HashMap<Implicant, Entry> base = new HashMap<Implicant, Entry>();
-    HashSet<Implicant> toCover = new HashSet<Implicant>();
-    boolean knownFound = false;
-    for (int i = 0; i < table.getRowCount(); i++) {
+    // determine the rows that we need to cover, those we must not cover, and
+    // those we may cover
+    int rowCount = table.getRowCount();
+    int[] on = new int[rowCount], off = new int[rowCount], dc = new int[rowCount];
+    int onCount = 0, offCount = 0, dcCount = 0;
+    for (int i = 0; i < rowCount; i++) {
       Entry entry = table.getOutputEntry(i, column);
-      if (entry == undesired) {
-        knownFound = true;
-      } else if (entry == desired) {
-        knownFound = true;
-        Implicant imp = new Implicant(0, i);
-        base.put(imp, entry);
-        toCover.add(imp);
-      } else {
-        Implicant imp = new Implicant(0, i);
-        base.put(imp, entry);
-      }
+      if (entry == desired)
+        on[onCount++] = i;
+      else if (entry == undesired)
+        off[offCount++] = i;
+      else
+        dc[dcCount++] = i;
     }
-    if (!knownFound)
+    if (onCount == 0 && offCount == 0)
       return null;
+    on = Arrays.copyOf(on, onCount);
+    off = Arrays.copyOf(off, offCount);
+    dc = Arrays.copyOf(dc, dcCount);
+
+    long[] cover = null;
+    if (cubeLimit > 0) {
+      long[] primes = computePrimes(on, dc, table.getInputColumnCount(), cubeLimit);
+      if (primes != null)
+        cover = computeCover(primes, on, rowCount);
+    }
+    if (cover == null)
+      cover = computeHeuristicCover(on, off, table.getInputColumnCount(), rowCount);
 
-    // work up to more general implicants, discovering
-    // any prime implicants.
-    HashSet<Implicant> primes = new HashSet<Implicant>();
-    HashMap<Implicant, Entry> current = base;
-    while (current.size() > 1) {
-      HashSet<Implicant> toRemove = new HashSet<Implicant>();
-      HashMap<Implicant, Entry> next = new HashMap<Implicant, Entry>();
-      for (Map.Entry<Implicant, Entry> curEntry : current.entrySet()) {
-        Implicant imp = curEntry.getKey();
-        Entry detEntry = curEntry.getValue();
-        for (int j = 1; j <= imp.values; j *= 2) {
-          if ((imp.values & j) != 0) {
-            Implicant opp = new Implicant(imp.unknowns, imp.values
-                ^ j);
-            Entry oppEntry = current.get(opp);
-            if (oppEntry != null) {
-              toRemove.add(imp);
-              toRemove.add(opp);
-              Implicant i = new Implicant(opp.unknowns | j,
-                  opp.values);
-              Entry e;
-              if (oppEntry == Entry.DONT_CARE
-                  && detEntry == Entry.DONT_CARE) {
-                e = Entry.DONT_CARE;
-              } else {
-                e = desired;
-              }
-              next.put(i, e);
-            }
-          }
+    ArrayList<Implicant> ret = new ArrayList<Implicant>(cover.length);
+    for (long c : cover)
+      ret.add(new Implicant(unknowns(c), values(c)));
+    Collections.sort(ret);
+    return ret;
+  }
+
+  // Finds all prime implicants covering at least one desired row, working up
+  // level by level from single rows to ever larger cubes. Returns null if
+  // that would take more than cubeLimit cubes.
+  private static long[] computePrimes(int[] on, int[] dc, int inputs, int cubeLimit) {
+    CubeSet current = new CubeSet(on.length + dc.length);
+    for (int row : on)
+      current.add(cube(0, row), CubeSet.CARE);
+    for (int row : dc)
+      current.add(cube(0, row), (byte)0);
+    int total = current.size;
+    long[] primes = new long[16];
+    int primeCount = 0;
+    while (current.size > 0) {
+      CubeSet next = new CubeSet(current.size);
+      long[] keys = current.keys;
+      byte[] flags = current.flags;
+      for (int i = 0; i < keys.length; i++) {
+        long c = keys[i];
+        if (c == -1L)
+          continue;
+        int values = values(c);
+        for (int j = 1; j != 0 && j <= values; j <<= 1) {
+          if ((values & j) == 0)
+            continue;
+          int k = current.find(c ^ j);
+          if (k < 0)
+            continue;
+          flags[i] |= CubeSet.MERGED;
+          flags[k] |= CubeSet.MERGED;
+          next.add(cube(unknowns(c) | j, values ^ j),
+              (byte)((flags[i] | flags[k]) & CubeSet.CARE));
         }
       }
-
-      for (Map.Entry<Implicant, Entry> curEntry : current.entrySet()) {
-        Implicant det = curEntry.getKey();
-        if (!toRemove.contains(det) && curEntry.getValue() == desired) {
-          primes.add(det);
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] != -1L && flags[i] == CubeSet.CARE) {
+          if (primeCount == primes.length)
+            primes = Arrays.copyOf(primes, 2 * primeCount);
+          primes[primeCount++] = keys[i];
         }
       }
-
+      total += next.size;
+      if (total > cubeLimit)
+        return null;
       current = next;
     }
+    primes = Arrays.copyOf(primes, primeCount);
+    Arrays.sort(primes);
+    return primes;
+  }
+
+  // Picks the essential prime implicants, then greedily adds whichever prime
+  // covers the most rows not yet covered (preferring larger cubes in a tie),
+  // until every desired row is covered. Since the number of uncovered rows
+  // for each prime only ever goes down, the candidates are kept in a queue
+  // ordered by a possibly stale count, which is only brought up to date when
+  // a candidate reaches the front.
+  private static long[] computeCover(long[] primes, int[] on, int rowCount) {
+    boolean[] needed = new boolean[rowCount];
+    for (int row : on)
+      needed[row] = true;
+    int[] coverCount = new int[rowCount];
+    int[] coveredBy = new int[rowCount];
+    for (int p = 0; p < primes.length; p++) {
+      int unk = unknowns(primes[p]), val = values(primes[p]);
+      for (int s = unk; ; s = (s - 1) & unk) {
+        coverCount[val | s]++;
+        coveredBy[val | s] = p;
+        if (s == 0)
+          break;
+      }
+    }
 
-    // we won't have more than one implicant left, but it
-    // is probably prime.
-    for (Map.Entry<Implicant, Entry> curEntry : current.entrySet()) {
-      Implicant imp = curEntry.getKey();
-      if (current.get(imp) == desired) {
-        primes.add(imp);
+    boolean[] chosen = new boolean[primes.length];
+    boolean[] covered = new boolean[rowCount];
+    for (int row : on) {
+      if (coverCount[row] == 1 && !chosen[coveredBy[row]]) {
+        chosen[coveredBy[row]] = true;
+        markCovered(primes[coveredBy[row]], covered);
       }
     }
 
-    // determine the essential prime implicants
-    HashSet<Implicant> retSet = new HashSet<Implicant>();
-    HashSet<Implicant> covered = new HashSet<Implicant>();
-    for (Implicant required : toCover) {
-      if (covered.contains(required))
+    PriorityQueue<Long> queue = new PriorityQueue<>(Collections.reverseOrder());
+    for (int p = 0; p < primes.length; p++) {
+      if (!chosen[p])
+        queue.add(coverKey(primes, p, countUncovered(primes[p], needed, covered)));
+    }
+    while (!queue.isEmpty()) {
+      long key = queue.poll();
+      int p = Integer.MAX_VALUE - (int)(key & 0xffffffffL);
+      int count = countUncovered(primes[p], needed, covered);
+      if (count == 0)
         continue;
-      int row = required.getRow();
-      Implicant essential = null;
-      for (Implicant imp : primes) {
-        if ((row & ~imp.unknowns) == imp.values) {
-          if (essential == null)
-            essential = imp;
-          else {
-            essential = null;
+      long fresh = coverKey(primes, p, count);
+      if (fresh != key && !queue.isEmpty() && fresh < queue.peek()) {
+        queue.add(fresh);
+        continue;
+      }
+      chosen[p] = true;
+      markCovered(primes[p], covered);
+    }
+
+    improveCover(primes, chosen, needed, rowCount);
+    int chosenCount = 0;
+    for (int p = 0; p < primes.length; p++) {
+      if (chosen[p])
+        chosenCount++;
+    }
+    long[] ret = new long[chosenCount];
+    for (int p = 0, i = 0; p < primes.length; p++) {
+      if (chosen[p])
+        ret[i++] = primes[p];
+    }
+    return ret;
+  }
+
+  // The greedy choice goes wrong on cyclic tables, where every remaining
+  // prime covers equally many rows and the order they are taken in matters.
+  // This repairs the most common result of a bad choice: any chosen primes
+  // whose desired rows are all covered by other chosen primes are dropped,
+  // and any unchosen prime that would make two or more chosen ones redundant
+  // replaces them. This repeats until neither applies.
+  private static void improveCover(long[] primes, boolean[] chosen,
+      boolean[] needed, int rowCount) {
+    int[] coverCount = new int[rowCount];
+    ArrayList<Integer> order = new ArrayList<>();
+    for (int p = 0; p < primes.length; p++) {
+      if (chosen[p]) {
+        addCoverCounts(primes[p], needed, coverCount, 1);
+        order.add(p);
+      }
+    }
+    // smaller cubes are more likely to be redundant, so try them first
+    order.sort((a, b) -> Integer.compare(
+          Integer.bitCount(unknowns(primes[a])), Integer.bitCount(unknowns(primes[b]))));
+    ArrayList<Integer> group = new ArrayList<>();
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int p : order) {
+        if (chosen[p] && firstUniqueRow(primes[p], needed, coverCount) < 0) {
+          chosen[p] = false;
+          addCoverCounts(primes[p], needed, coverCount, -1);
+          changed = true;
+        }
+      }
+      for (int p : order) {
+        if (!chosen[p])
+          continue;
+        int row = firstUniqueRow(primes[p], needed, coverCount);
+        for (int x = 0; x < primes.length && row >= 0; x++) {
+          if (chosen[x] || !contains(primes[x], row))
+            continue;
+          // tentatively add x, and drop whatever that makes redundant
+          addCoverCounts(primes[x], needed, coverCount, 1);
+          group.clear();
+          for (int q : order) {
+            if (chosen[q] && intersects(primes[q], primes[x])
+                && firstUniqueRow(primes[q], needed, coverCount) < 0) {
+              chosen[q] = false;
+              addCoverCounts(primes[q], needed, coverCount, -1);
+              group.add(q);
+            }
+          }
+          if (group.size() >= 2) {
+            chosen[x] = true;
+            changed = true;
             break;
           }
+          for (int q : group) {
+            chosen[q] = true;
+            addCoverCounts(primes[q], needed, coverCount, 1);
+          }
+          addCoverCounts(primes[x], needed, coverCount, -1);
         }
       }
-      if (essential != null) {
-        retSet.add(essential);
-        primes.remove(essential);
-        for (Implicant imp : essential.getTerms()) {
-          covered.add(imp);
+      if (changed) {
+        order.clear();
+        for (int p = 0; p < primes.length; p++) {
+          if (chosen[p])
+            order.add(p);
         }
       }
     }
-    toCover.removeAll(covered);
-
-    // This is an unusual case, but it's possible that the
-    // essential prime implicants don't cover everything.
-    // In that case, greedily pick out prime implicants
-    // that cover the most uncovered rows.
-    while (!toCover.isEmpty()) {
-      // find the implicant covering the most rows
-      Implicant max = null;
-      int maxCount = 0;
-      int maxUnknowns = Integer.MAX_VALUE;
-      for (Iterator<Implicant> it = primes.iterator(); it.hasNext();) {
-        Implicant imp = it.next();
-        int count = 0;
-        for (Implicant term : imp.getTerms()) {
-          if (toCover.contains(term))
-            ++count;
-        }
-        if (count == 0) {
-          it.remove();
-        } else if (count > maxCount) {
-          max = imp;
-          maxCount = count;
-          maxUnknowns = imp.getUnknownCount();
-        } else if (count == maxCount) {
-          int unk = imp.getUnknownCount();
-          if (unk > maxUnknowns) {
-            max = imp;
-            maxUnknowns = unk;
-          }
+  }
+
+  private static boolean contains(long cube, int row) {
+    return (row & ~unknowns(cube)) == values(cube);
+  }
+
+  // Returns some desired row covered by cube and no other chosen cube, or -1.
+  private static int firstUniqueRow(long cube, boolean[] needed, int[] coverCount) {
+    int unk = unknowns(cube), val = values(cube);
+    for (int s = unk; ; s = (s - 1) & unk) {
+      if (needed[val | s] && coverCount[val | s] == 1)
+        return val | s;
+      if (s == 0)
+        break;
+    }
+    return -1;
+  }
+
+  private static boolean intersects(long a, long b) {
+    return ((values(a) ^ values(b)) & ~(unknowns(a) | unknowns(b))) == 0;
+  }
+
+  // Orders candidates by count, then size, then position.
+  private static long coverKey(long[] primes, int p, int count) {
+    int size = Integer.bitCount(unknowns(primes[p]));
+    return ((long)count << 38) | ((long)size << 32) | (Integer.MAX_VALUE - p);
+  }
+
+  private static int countUncovered(long cube, boolean[] needed, boolean[] covered) {
+    int unk = unknowns(cube), val = values(cube);
+    int count = 0;
+    for (int s = unk; ; s = (s - 1) & unk) {
+      if (needed[val | s] && !covered[val | s])
+        count++;
+      if (s == 0)
+        break;
+    }
+    return count;
+  }
+
+  private static void markCovered(long cube, boolean[] covered) {
+    int unk = unknowns(cube), val = values(cube);
+    for (int s = unk; ; s = (s - 1) & unk) {
+      covered[val | s] = true;
+      if (s == 0)
+        break;
+    }
+  }
+
+  // A single expand and irredundant pass, in the style of Espresso: each
+  // desired row not yet covered is expanded into as large a cube as possible,
+  // freeing one variable at a time (starting with the first input) as long
+  // as the cube stays clear of every undesired row, and then any cube whose
+  // desired rows are all covered by other cubes is dropped. There is no
+  // enumeration of implicants, so time and memory stay modest even for
+  // large tables, but the cubes found this way depend on the order in which
+  // variables are tried and need not be prime relative to each other, so the
+  // result can have more terms than computeCover() would give.
+  private static long[] computeHeuristicCover(int[] on, int[] off, int inputs, int rowCount) {
+    boolean[] needed = new boolean[rowCount];
+    for (int row : on)
+      needed[row] = true;
+    boolean[] covered = new boolean[rowCount];
+    long[] cubes = new long[16];
+    int cubeCount = 0;
+    for (int row : on) {
+      if (covered[row])
+        continue;
+      int unk = 0, val = row;
+      for (int j = inputs == 0 ? 0 : 1 << (inputs - 1); j != 0; j >>>= 1) {
+        int u = unk | j, v = val & ~j;
+        if (!intersectsAny(u, v, off)) {
+          unk = u;
+          val = v;
         }
       }
+      long c = cube(unk, val);
+      markCovered(c, covered);
+      if (cubeCount == cubes.length)
+        cubes = Arrays.copyOf(cubes, 2 * cubeCount);
+      cubes[cubeCount++] = c;
+    }
 
-      // add it to our choice, and remove the covered rows
-      if (max != null) {
-        retSet.add(max);
-        primes.remove(max);
-        for (Implicant term : max.getTerms()) {
-          toCover.remove(term);
+    // irredundant: drop cubes, smallest first, that cover nothing of their own
+    int[] coverCount = new int[rowCount];
+    for (int i = 0; i < cubeCount; i++)
+      addCoverCounts(cubes[i], needed, coverCount, 1);
+    Long[] order = new Long[cubeCount];
+    for (int i = 0; i < cubeCount; i++)
+      order[i] = cubes[i];
+    Arrays.sort(order, (a, b) -> Integer.compare(
+          Integer.bitCount(unknowns(a)), Integer.bitCount(unknowns(b))));
+    ArrayList<Long> kept = new ArrayList<>();
+    for (long c : order) {
+      int unk = unknowns(c), val = values(c);
+      boolean redundant = true;
+      for (int s = unk; ; s = (s - 1) & unk) {
+        if (needed[val | s] && coverCount[val | s] == 1) {
+          redundant = false;
+          break;
         }
+        if (s == 0)
+          break;
       }
+      if (redundant)
+        addCoverCounts(c, needed, coverCount, -1);
+      else
+        kept.add(c);
     }
-
-    // Now build up our sum-of-products expression
-    // from the remaining terms
-    ArrayList<Implicant> ret = new ArrayList<Implicant>(retSet);
-    Collections.sort(ret);
-    // try { throw new Exception(); }
-    // catch (Exception e) { e.printStackTrace(); }
+    long[] ret = new long[kept.size()];
+    for (int i = 0; i < ret.length; i++)
+      ret[i] = kept.get(i);
     return ret;
   }
 
+  private static boolean intersectsAny(int unknowns, int values, int[] rows) {
+    int care = ~unknowns;
+    for (int row : rows) {
+      if ((row & care) == values)
+        return true;
+    }
+    return false;
+  }
+
+  private static void addCoverCounts(long cube, boolean[] needed, int[] coverCount, int delta) {
+    int unk = unknowns(cube), val = values(cube);
+    for (int s = unk; ; s = (s - 1) & unk) {
+      if (needed[val | s])
+        coverCount[val | s] += delta;
+      if (s == 0)
+        break;
+    }
+  }
+
   static Expression toExpression(int format, AnalyzerModel model,
       List<Implicant> implicants) {
     if (implicants == null)
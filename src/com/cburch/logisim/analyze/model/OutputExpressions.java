@@ -35,6 +35,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 public class OutputExpressions {
   private class MyListener
@@ -138,12 +140,20 @@ public class OutputExpressions {
     Expression minimalExpr = null;
 
     private boolean invalidating = false;
+    private boolean precomputed = false;
 
     OutputData(String output) {
       this.output = output;
       invalidate(true, false);
     }
 
+    OutputData(String output, List<Implicant> minimalImplicants) {
+      this.output = output;
+      this.minimalImplicants = minimalImplicants;
+      precomputed = true;
+      invalidate(true, false);
+    }
+
     Expression getExpression() {
       return expr;
     }
@@ -178,8 +188,11 @@ public class OutputExpressions {
       try {
         List<Implicant> oldImplicants = minimalImplicants;
         Expression oldMinExpr = minimalExpr;
-        minimalImplicants = Implicant.computeMinimal(format, model,
-            output);
+        if (precomputed)
+          precomputed = false;
+        else
+          minimalImplicants = Implicant.computeMinimal(format, model,
+              output);
         minimalExpr = Implicant.toExpression(format, model,
             minimalImplicants);
         boolean minChanged = !implicantsSame(oldImplicants,
@@ -452,6 +465,36 @@ public class OutputExpressions {
     }
   }
 
+  // Computes the minimal form of every output that doesn't have one yet. The
+  // outputs are independent, so they are minimized in parallel, and the
+  // results are then installed one at a time as getOutputData() would.
+  public void computeMinimalForAllOutputs() {
+    ArrayList<String> missing = new ArrayList<>();
+    for (String output : model.getOutputs().bits) {
+      if (!outputData.containsKey(output))
+        missing.add(output);
+    }
+    if (missing.size() <= 1)
+      return;
+    @SuppressWarnings("unchecked")
+    List<Implicant>[] results = (List<Implicant>[]) new List<?>[missing.size()];
+    ArrayList<RecursiveAction> tasks = new ArrayList<>();
+    for (int i = 0; i < missing.size(); i++) {
+      final int idx = i;
+      final String output = missing.get(i);
+      tasks.add(new RecursiveAction() {
+        @Override
+        protected void compute() {
+          results[idx] = Implicant.computeMinimal(
+              AnalyzerModel.FORMAT_SUM_OF_PRODUCTS, model, output);
+        }
+      });
+    }
+    ForkJoinTask.invokeAll(tasks);
+    for (int i = 0; i < missing.size(); i++)
+      outputData.put(missing.get(i), new OutputData(missing.get(i), results[i]));
+  }
+
   private OutputData getOutputData(String output, boolean create) {
     if (output == null)
       throw new IllegalArgumentException("null output name");
@@ -32,9 +32,11 @@ package com.cburch.logisim.circuit;
 import static com.cburch.logisim.circuit.Strings.S;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
@@ -47,6 +49,8 @@ import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
 import com.cburch.logisim.analyze.model.TruthTable;
 import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
@@ -55,6 +59,7 @@ import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.std.wiring.Tunnel;
 import com.cburch.logisim.std.base.Text;
 
 public class Analyze {
@@ -128,11 +133,33 @@ public class Analyze {
    */
   public static void computeExpression(AnalyzerModel model, Circuit circuit,
       Map<Instance, String> pinNames) throws AnalyzeException {
-    ExpressionMap expressionMap = new ExpressionMap(circuit);
-
     ArrayList<Var> inputVars = new ArrayList<>();
     ArrayList<Var> outputVars = new ArrayList<>();
     ArrayList<Instance> outputPins = new ArrayList<>();
+    ExpressionMap expressionMap = propagateExpressions(circuit, pinNames,
+        inputVars, outputVars, outputPins);
+
+    model.setVariables(inputVars, outputVars);
+    for (int i = 0; i < outputPins.size(); i++) {
+      Instance pin = outputPins.get(i);
+      String label = pinNames.get(pin);
+      int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
+      for (int b = 0; b < width; b++) {
+        LocationBit loc = new LocationBit(pin.getLocation(), b);
+        String name = (width > 1 ? label + "[" + b + "]" : label);
+        model.getOutputExpressions().setExpression(name, expressionMap.get(loc));
+      }
+    }
+  }
+
+  // Computes the expression for every point in the circuit, starting from a
+  // variable for each input pin bit, and filling in the pin variables.
+  private static ExpressionMap propagateExpressions(Circuit circuit,
+      Map<Instance, String> pinNames, ArrayList<Var> inputVars,
+      ArrayList<Var> outputVars, ArrayList<Instance> outputPins)
+      throws AnalyzeException {
+    ExpressionMap expressionMap = new ExpressionMap(circuit);
+
     for (Map.Entry<Instance, String> entry : pinNames.entrySet()) {
       Instance pin = entry.getKey();
       String label = entry.getValue();
@@ -169,18 +196,7 @@ public class Analyze {
       if (expr != null)
         throw new AnalyzeException.Circular();
     }
-
-    model.setVariables(inputVars, outputVars);
-    for (int i = 0; i < outputPins.size(); i++) {
-      Instance pin = outputPins.get(i);
-      String label = pinNames.get(pin);
-      int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
-      for (int b = 0; b < width; b++) {
-        LocationBit loc = new LocationBit(pin.getLocation(), b);
-        String name = (width > 1 ? label + "[" + b + "]" : label);
-        model.getOutputExpressions().setExpression(name, expressionMap.get(loc));
-      }
-    }
+    return expressionMap;
   }
 
   //
@@ -216,6 +232,21 @@ public class Analyze {
     int rowCount = 1 << inputCount;
     Entry[][] columns = new Entry[outputNames.size()][rowCount];
 
+    if (!computeTableBitSliced(circuit, pinLabels, inputNames, outputPins, columns))
+      computeTableBySimulation(proj, circuit, inputPins, outputPins, inputCount, columns);
+
+    model.setVariables(inputVars, outputVars);
+    for (int i = 0; i < columns.length; i++) {
+      model.getTruthTable().setOutputColumn(i, columns[i]);
+    }
+  }
+
+  // Fills in the truth table by driving the input pins with each row in turn,
+  // and simulating the circuit.
+  private static void computeTableBySimulation(Project proj, Circuit circuit,
+      ArrayList<Instance> inputPins, ArrayList<Instance> outputPins,
+      int inputCount, Entry[][] columns) {
+    int rowCount = 1 << inputCount;
     for (int i = 0; i < rowCount; i++) {
       CircuitState circuitState = CircuitState.createRootState(proj, circuit);
       int incol = 0;
@@ -265,10 +296,208 @@ public class Analyze {
         }
       }
     }
+  }
+
+  // Whether every signal in the circuit is driven to a solid 0 or 1 by an
+  // input pin or a component with an ExpressionComputer. Expressions are
+  // purely boolean, so they can't describe open-collector or tri-state
+  // outputs, pull resistors, or components they know nothing about. The
+  // simulator turns all of those into don't-cares or errors in the table.
+  private static boolean hasOnlyBooleanDrivers(Circuit circuit) {
+    for (Component comp : circuit.getNonWires()) {
+      if (comp instanceof Splitter || comp.getFactory() instanceof Tunnel)
+        continue;
+      AttributeSet attrs = comp.getAttributeSet();
+      if (comp.getFactory().HasThreeStateDrivers(attrs))
+        return false;
+      if (comp.getFactory() instanceof Pin) {
+        if (attrs.getValue(Pin.ATTR_BEHAVIOR) != Pin.SIMPLE)
+          return false;
+        continue;
+      }
+      if (comp.getFeature(ExpressionComputer.class) != null)
+        continue;
+      for (EndData end : comp.getEnds()) {
+        if (end.isOutput())
+          return false;
+      }
+    }
+    return true;
+  }
 
-    model.setVariables(inputVars, outputVars);
-    for (int i = 0; i < columns.length; i++) {
-      model.getTruthTable().setOutputColumn(i, columns[i]);
+  // Fills in the truth table without simulating, for circuits simple enough
+  // for computeExpression(): gates, constants, and splitters, wired without
+  // conflicts or cycles, and with only 0/1 outputs (see
+  // hasOnlyBooleanDrivers()). Each output bit's expression is compiled into
+  // a BitSlicedProgram, which then evaluates 64 rows of the table at once.
+  // Returns false, leaving the table untouched, for any other circuit, or if
+  // some output pin or gate input bit has no expression (i.e. is left
+  // floating), in which case the table must be computed by simulation
+  // instead: computeExpression() ignores floating gate inputs, whereas the
+  // simulator treats them as errors.
+  private static boolean computeTableBitSliced(Circuit circuit,
+      Map<Instance, String> pinLabels, ArrayList<String> inputNames,
+      ArrayList<Instance> outputPins, Entry[][] columns) {
+    if (!hasOnlyBooleanDrivers(circuit))
+      return false;
+    ExpressionMap expressionMap;
+    try {
+      expressionMap = propagateExpressions(circuit, pinLabels,
+          new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+    } catch (AnalyzeException e) {
+      return false;
+    }
+    for (Component comp : circuit.getNonWires()) {
+      if (comp.getFeature(ExpressionComputer.class) == null)
+        continue;
+      for (EndData end : comp.getEnds()) {
+        if (!end.isInput())
+          continue;
+        for (int b = end.getWidth().getWidth() - 1; b >= 0; b--) {
+          if (expressionMap.get(end.getLocation(), b) == null)
+            return false;
+        }
+      }
+    }
+
+    BitSlicedProgram prog = new BitSlicedProgram(inputNames);
+    int[] outputs = new int[columns.length];
+    int outcol = 0;
+    for (Instance pin : outputPins) {
+      int width = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
+      for (int b = width-1; b >= 0; b--) {
+        Expression e = expressionMap.get(new LocationBit(pin.getLocation(), b));
+        if (e == null)
+          return false;
+        outputs[outcol++] = prog.compile(e);
+      }
+    }
+    if (prog.failed)
+      return false;
+
+    int inputCount = inputNames.size();
+    int rowCount = 1 << inputCount;
+    long[] inputs = new long[inputCount];
+    long[] regs = new long[prog.size];
+    for (int base = 0; base < rowCount; base += 64) {
+      for (int c = 0; c < inputCount; c++)
+        inputs[c] = BitSlicedProgram.inputWord(base, inputCount - c - 1);
+      prog.run(inputs, regs);
+      int n = Math.min(64, rowCount - base);
+      for (int j = 0; j < outputs.length; j++) {
+        long word = regs[outputs[j]];
+        for (int r = 0; r < n; r++)
+          columns[j][base + r] = ((word >>> r) & 1) != 0 ? Entry.ONE : Entry.ZERO;
+      }
+    }
+    return true;
+  }
+
+  // A straight-line program of bitwise operations, one instruction per
+  // distinct subexpression, so expressions that share subexpressions (as
+  // those from computeExpression() do) are evaluated only once per word.
+  // Each register holds one bit for each of 64 rows of the truth table.
+  private static class BitSlicedProgram implements Expression.Visitor<Integer> {
+    private static final int INPUT = 0, CONST = 1, NOT = 2, AND = 3, OR = 4, XOR = 5;
+
+    // The value of an input column for the 64 rows starting at base, where
+    // bit shift of the row number gives the column's value.
+    private static final long[] PATTERNS = {
+      0xAAAAAAAAAAAAAAAAL, 0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L,
+      0xFF00FF00FF00FF00L, 0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L };
+
+    static long inputWord(int base, int shift) {
+      if (shift < PATTERNS.length)
+        return PATTERNS[shift];
+      return ((base >>> shift) & 1) != 0 ? -1L : 0L;
+    }
+
+    private final HashMap<String, Integer> inputCols = new HashMap<>();
+    private final IdentityHashMap<Expression, Integer> regs = new IdentityHashMap<>();
+    private int[] code = new int[3 * 64]; // opcode and two operands per register
+    int size = 0;
+    boolean failed = false; // set if an expression uses an unknown variable
+
+    BitSlicedProgram(ArrayList<String> inputNames) {
+      for (int c = 0; c < inputNames.size(); c++)
+        inputCols.put(inputNames.get(c), c);
+    }
+
+    int compile(Expression e) {
+      Integer r = regs.get(e);
+      if (r == null) {
+        r = e.visit(this);
+        regs.put(e, r);
+      }
+      return r;
+    }
+
+    private int emit(int op, int a, int b) {
+      if (3 * size == code.length)
+        code = Arrays.copyOf(code, 2 * code.length);
+      code[3 * size] = op;
+      code[3 * size + 1] = a;
+      code[3 * size + 2] = b;
+      return size++;
+    }
+
+    void run(long[] inputs, long[] regs) {
+      for (int i = 0, pc = 0; i < size; i++, pc += 3) {
+        int a = code[pc + 1], b = code[pc + 2];
+        switch (code[pc]) {
+        case INPUT: regs[i] = inputs[a]; break;
+        case CONST: regs[i] = a != 0 ? -1L : 0L; break;
+        case NOT: regs[i] = ~regs[a]; break;
+        case AND: regs[i] = regs[a] & regs[b]; break;
+        case OR: regs[i] = regs[a] | regs[b]; break;
+        default: regs[i] = regs[a] ^ regs[b]; break;
+        }
+      }
+    }
+
+    @Override
+    public Integer visitVariable(Expression e, String name) {
+      Integer c = inputCols.get(name);
+      if (c == null) {
+        failed = true;
+        return emit(CONST, 0, 0);
+      }
+      return emit(INPUT, c, 0);
+    }
+
+    @Override
+    public Integer visitConstant(Expression e, int value) {
+      return emit(CONST, value & 1, 0);
+    }
+
+    @Override
+    public Integer visitNot(Expression e, Expression a) {
+      return emit(NOT, compile(a), 0);
+    }
+
+    @Override
+    public Integer visitAnd(Expression e, Expression a, Expression b) {
+      return emit(AND, compile(a), compile(b));
+    }
+
+    @Override
+    public Integer visitOr(Expression e, Expression a, Expression b) {
+      return emit(OR, compile(a), compile(b));
+    }
+
+    @Override
+    public Integer visitXor(Expression e, Expression a, Expression b) {
+      return emit(XOR, compile(a), compile(b));
+    }
+
+    @Override
+    public Integer visitXnor(Expression e, Expression a, Expression b) {
+      return emit(NOT, emit(XOR, compile(a), compile(b)), 0);
+    }
+
+    @Override
+    public Integer visitEq(Expression e, Expression a, Expression b) {
+      return visitXnor(e, a, b);
     }
   }
 
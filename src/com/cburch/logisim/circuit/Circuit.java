@@ -31,6 +31,7 @@
 package com.cburch.logisim.circuit;
 
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -115,6 +116,7 @@ public class Circuit implements AttributeDefaultProvider {
 
   private class MyComponentListener implements ComponentListener {
     public void componentInvalidated(ComponentEvent e) {
+      compIndex.update(e.getSource());
       fireEvent(CircuitEvent.ACTION_INVALIDATE, e.getSource());
     }
 
@@ -126,6 +128,7 @@ public class Circuit implements AttributeDefaultProvider {
       EndChangedTransaction xn = new EndChangedTransaction(comp,
           toRemove, toAdd);
       locker.execute(xn);
+      compIndex.update(comp);
       fireEvent(CircuitEvent.ACTION_INVALIDATE, comp);
     }
 
@@ -157,6 +160,18 @@ public class Circuit implements AttributeDefaultProvider {
   private SubcircuitFactory subcircuitFactory;
   private EventSourceWeakSupport<CircuitListener> listeners = new EventSourceWeakSupport<CircuitListener>();
   private HashSet<Component> comps = new HashSet<Component>(); // doesn't include wires
+  private ComponentGrid<Component> compIndex = new ComponentGrid<>(); // same as comps, by location
+
+  // Labels and other decorations can be drawn a little outside of a
+  // component's getBounds(), which is what compIndex goes by, so searches for
+  // those extend this far past the region of interest.
+  private static final int DECORATION_MARGIN = 100;
+
+  // Components in comps are numbered densely for Component.getDataIndex(),
+  // so that CircuitState can keep their data in an array. Indices of removed
+  // components are reused for later additions.
+  private int dataIndexCount = 0;
+  private ArrayList<Integer> freeDataIndices = new ArrayList<>();
   CircuitWires wires = new CircuitWires();
   // wires is package-protected for CircuitState and Analyze only.
   private ArrayList<Component> clocks = new ArrayList<Component>();
@@ -249,7 +264,14 @@ public class Circuit implements AttributeDefaultProvider {
    */
   public void doTestVector(Project project, Instance pin[], Value[] val)
       throws TestException {
-    CircuitState state = project.getCircuitState();
+    doTestVector(project.getCircuitState(), pin, val);
+  }
+
+  // Same as above, but runs the test vector row on the given root state rather
+  // than on the project's current state. Used by ParallelTestRunner, which
+  // gives each worker thread its own cloned root state (and Propagator).
+  public void doTestVector(CircuitState state, Instance pin[], Value[] val)
+      throws TestException {
     state.reset();
 
     for (int i = 0; i < pin.length; ++i) {
@@ -302,8 +324,14 @@ public class Circuit implements AttributeDefaultProvider {
     context.setGraphics(g_copy);
     wires.draw(context, hidden);
 
+    // only draw the components near the area being repainted
+    Rectangle clip = g.getClipBounds();
+    Collection<Component> visible = comps;
+    if (clip != null)
+      visible = compIndex.query(Bounds.create(clip).expand(DECORATION_MARGIN));
+
     if (hidden == null || hidden.size() == 0) {
-      for (Component c : comps) {
+      for (Component c : visible) {
         Graphics g_new = g.create();
         context.setGraphics(g_new);
         g_copy.dispose();
@@ -312,7 +340,7 @@ public class Circuit implements AttributeDefaultProvider {
         c.draw(context);
       }
     } else {
-      for (Component c : comps) {
+      for (Component c : visible) {
         if (!hidden.contains(c)) {
           Graphics g_new = g.create();
           context.setGraphics(g_new);
@@ -347,43 +375,60 @@ public class Circuit implements AttributeDefaultProvider {
 
   public Collection<Component> getAllContaining(Location pt) {
     HashSet<Component> ret = new HashSet<>();
-    for (Component comp : getComponents()) {
+    Bounds near = Bounds.create(pt).expand(2);
+    for (Component comp : compIndex.query(near)) {
       if (comp.contains(pt))
         ret.add(comp);
     }
+    for (Wire w : wires.getWiresNear(near)) {
+      if (w.contains(pt))
+        ret.add(w);
+    }
     return ret;
   }
 
   public Collection<Component> getAllContaining(Location pt, Graphics g) {
     HashSet<Component> ret = new HashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : compIndex.query(Bounds.create(pt).expand(DECORATION_MARGIN))) {
       if (comp.contains(pt, g))
         ret.add(comp);
     }
+    for (Wire w : wires.getWiresNear(Bounds.create(pt).expand(2))) {
+      if (w.contains(pt, g))
+        ret.add(w);
+    }
     return ret;
   }
 
   public Collection<Component> getAllWithin(Bounds bds) {
     HashSet<Component> ret = new HashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : compIndex.query(bds)) {
       if (bds.contains(comp.getBounds()))
         ret.add(comp);
     }
+    for (Wire w : wires.getWiresNear(bds)) {
+      if (bds.contains(w.getBounds()))
+        ret.add(w);
+    }
     return ret;
   }
 
   public Collection<Component> getAllWithin(Bounds bds, Graphics g) {
     HashSet<Component> ret = new HashSet<>();
-    for (Component comp : getComponents()) {
+    for (Component comp : compIndex.query(bds)) {
       if (bds.contains(comp.getBounds(g)))
         ret.add(comp);
     }
+    for (Wire w : wires.getWiresNear(bds)) {
+      if (bds.contains(w.getBounds(g)))
+        ret.add(w);
+    }
     return ret;
   }
 
   public Collection<Wire> getWiresIntersecting(Bounds bds) {
     HashSet<Wire> ret = new HashSet<>();
-    for (Wire w: wires.getWires()) {
+    for (Wire w: wires.getWiresNear(bds)) {
       Bounds b = w.getBounds();
       if (bds.overlaps(b)) // && !bds.contains(b)
         ret.add(w);
@@ -576,6 +621,8 @@ public class Circuit implements AttributeDefaultProvider {
       boolean added = comps.add(c);
       if (!added)
         return;
+      compIndex.add(c);
+      assignDataIndex(c);
 
       wires.add(c);
       ComponentFactory factory = c.getFactory();
@@ -594,11 +641,31 @@ public class Circuit implements AttributeDefaultProvider {
     fireEvent(CircuitEvent.ACTION_ADD, c);
   }
 
+  // A component re-added after being removed, e.g. by undo, gets its old
+  // index back if it is still free. A removed component keeps its index, so
+  // each CircuitState can still find and discard its data afterwards, which
+  // is why CircuitState checks which component an entry belongs to.
+  private void assignDataIndex(Component c) {
+    int index = c.getDataIndex();
+    if (index < 0 || !freeDataIndices.remove(Integer.valueOf(index))) {
+      int n = freeDataIndices.size();
+      index = n > 0 ? freeDataIndices.remove(n - 1) : dataIndexCount++;
+    }
+    c.setDataIndex(index);
+  }
+
+  int getDataIndexCount() {
+    return dataIndexCount;
+  }
+
   public void mutatorClear() {
     locker.checkForWritePermission("clear", this);
 
     Set<Component> oldComps = comps;
     comps = new HashSet<Component>();
+    compIndex.clear();
+    dataIndexCount = 0;
+    freeDataIndices.clear();
     wires = new CircuitWires();
     clocks.clear();
     for (Component comp : oldComps) {
@@ -621,7 +688,9 @@ public class Circuit implements AttributeDefaultProvider {
       wires.remove(c);
     } else {
       wires.remove(c);
-      comps.remove(c);
+      if (comps.remove(c) && c.getDataIndex() >= 0)
+        freeDataIndices.add(c.getDataIndex());
+      compIndex.remove(c);
       ComponentFactory factory = c.getFactory();
       if (factory instanceof Clock) {
         clocks.remove(c);
@@ -31,17 +31,21 @@
 package com.cburch.logisim.circuit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
 // import com.cburch.logisim.circuit.Propagator.DrivenValue;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.ComponentDrawContext;
 import com.cburch.logisim.comp.ComponentState;
+import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.Instance;
@@ -78,6 +82,7 @@ public class CircuitState implements InstanceData {
         // Nothing to do: CircuitWires.BundleMap will be voided, causing
         // everything to be marked dirty.
         Component comp = (Component) event.getData();
+        ensureDataCapacity(circuit.getDataIndexCount());
         // DEBUG: System.out.println("added comp " + comp);
         // if (comp instanceof Wire) {
         //   Wire w = (Wire) comp;
@@ -136,11 +141,9 @@ public class CircuitState implements InstanceData {
         temporaryClock = null;
         knownClocks = false;
         wireData = null;
-        componentData.clear();
-        synchronized (valuesLock) {
-          slowpath_values.clear(); // slow path
-          clearFastpathGrid(); // fast path
-        }
+        Arrays.fill(componentData, null);
+        looseData = null;
+        clearValuesByWire();
         synchronized (dirtyLock) {
           dirtyComponents.clear();
           dirtyPoints.clear();
@@ -165,7 +168,7 @@ public class CircuitState implements InstanceData {
         if (map == null)
           return;
         for (Component comp : map.getRemovals()) {
-          Object compState = componentData.remove(comp);
+          Object compState = putData(comp, null);
           if (compState == null)
             continue;
           Class<?> compFactory = comp.getFactory().getClass();
@@ -202,20 +205,28 @@ public class CircuitState implements InstanceData {
   private Component parentComp; // subcircuit component containing this state
 
   private CircuitWires.State wireData;
-  private HashMap<Component, Object> componentData = new HashMap<>();
+
+  // componentData holds the data of components in this circuit, such as the
+  // contents of flip-flops and RAMs and the substates of subcircuits, in
+  // pairs: a component at 2*i and its data at 2*i+1, where i is the
+  // component's getDataIndex(). Indices of removed components get reused, so
+  // an entry only counts for the component it was stored for. Components
+  // without an index, i.e. ones never added to a circuit, use looseData.
+  private Object[] componentData;
+  private HashMap<Component, Object> looseData;
   
-  private static final int FASTPATH_GRID_WIDTH = 200;
-  private static final int FASTPATH_GRID_HEIGHT = 200;
-
-  // slowpath_values and fastpath_values store values resulting from propagation
-  // *within* this circuit, i.e. the outputs of componnents in this circuit
-  // together with the values carried on wires and buses in this circuit. When
-  // components embedded in this circuit are called upon to re-calculate /
-  // propagate, the components will call getValue() to pick out values from
-  // these data structures. These are the values you would see if you stick a
-  // probe at some location on the circuit sheet.
-  Map<Location, Value> slowpath_values = new HashMap<>(); // protected by valuesLock
-  Value[][] fastpath_values = new Value[FASTPATH_GRID_HEIGHT][FASTPATH_GRID_WIDTH]; // protected by valuesLock
+  // values stores values resulting from propagation *within* this circuit,
+  // i.e. the outputs of componnents in this circuit together with the values
+  // carried on wires and buses in this circuit. When components embedded in
+  // this circuit are called upon to re-calculate / propagate, the components
+  // will call getValue() to pick out values from this array. These are the
+  // values you would see if you stick a probe at some location on the circuit
+  // sheet. Only locations where some component is attached to a wire are
+  // stored, so the array is indexed by the valueIndex from the wire
+  // connectivity map for wireData, and it is allocated only once there is a
+  // wireData. Before that, both are null.
+  private Value[] values; // protected by valuesLock
+  private LocationIndex valueIndex; // protected by valuesLock
 
   // slowpath_drivers and fastpass_drivers store {component,value} pairs for each
   // component that is currently emitting a value *into* this circuit, i.e.
@@ -230,6 +241,17 @@ public class CircuitState implements InstanceData {
 
   Object valuesLock = new Object();
 
+  // changedAreas collects the parts of the circuit sheet whose appearance may
+  // have changed during propagation: the extent of each bus whose value
+  // changed, and the bounds of each component that was propagated (or that
+  // holds a substate in which something was propagated). It stays null, and
+  // nothing is collected, until the canvas first asks for it via
+  // takeChangedAreas(). Overlapping areas are merged as they are added, and
+  // if there get to be too many they are all merged into one.
+  private static final int MAX_CHANGED_AREAS = 16;
+  private volatile ArrayList<Bounds> changedAreas; // protected by changedLock
+  private final Object changedLock = new Object();
+
   // HashSet<Propagator.ComponentPoint> visited = new HashSet<>(); // used by Propagator
   // int visitedNonce; // used by Propagator;
   // The visited member holds the set of every [component,loc] pair (where the
@@ -255,6 +277,7 @@ public class CircuitState implements InstanceData {
     this.proj = proj;
     this.circuit = circuit;
     this.base = prop != null ? prop : new Propagator(this);
+    this.componentData = new Object[2 * circuit.getDataIndexCount()];
     circuit.addCircuitWeakListener(null, myCircuitListener);
     markAllComponentsDirty();
   }
@@ -299,22 +322,19 @@ public class CircuitState implements InstanceData {
         substateData.put(oldSub, newSub);
       }
     }
-    for (Component key : src.componentData.keySet()) {
-      Object oldValue = src.componentData.get(key);
-      if (oldValue instanceof CircuitState) {
-        Object newValue = substateData.get(oldValue);
+    Object[] data = src.componentData.clone();
+    for (int i = 1; i < data.length; i += 2) {
+      data[i] = copyData(data[i], substateData);
+      if (data[i] == null)
+        data[i - 1] = null;
+    }
+    this.componentData = data;
+    if (src.looseData != null) {
+      this.looseData = new HashMap<>();
+      for (Component key : src.looseData.keySet()) {
+        Object newValue = copyData(src.looseData.get(key), substateData);
         if (newValue != null)
-          this.componentData.put(key, newValue);
-        else
-          this.componentData.remove(key);
-      } else {
-        Object newValue;
-        if (oldValue instanceof ComponentState) {
-          newValue = ((ComponentState) oldValue).clone();
-        } else {
-          newValue = oldValue;
-        }
-        this.componentData.put(key, newValue);
+          this.looseData.put(key, newValue);
       }
     }
     // Propagator.copyDrivenValues(this, src);
@@ -322,12 +342,15 @@ public class CircuitState implements InstanceData {
     // (b/c no other threads have a reference to this yet), and to avoid the
     // possibility of deadlock (though that shouldn't happen either since no
     // other threads have references to this yet).
-    this.slowpath_values.clear(); // slow path
-    synchronized (src.valuesLock) {
-      this.slowpath_values.putAll(src.slowpath_values); // slow path
-      for(int y = 0; y < FASTPATH_GRID_HEIGHT; y++) { // fast path
-        System.arraycopy(src.fastpath_values[y], 0,
-            this.fastpath_values[y], 0, FASTPATH_GRID_WIDTH);
+    if (src.wireData != null) {
+      this.wireData = circuit.wires.newState(this); // all buses will be marked as dirty
+      // this.wireData = (CircuitWires.State) src.wireData.clone();
+      this.valueIndex = this.wireData.getValueIndex();
+      this.values = new Value[valueIndex.size()];
+      synchronized (src.valuesLock) {
+        // src values are usable only if connectivity hasn't changed since
+        if (src.valueIndex == this.valueIndex)
+          System.arraycopy(src.values, 0, this.values, 0, values.length);
       }
     }
     synchronized(src.dirtyLock) {
@@ -336,13 +359,24 @@ public class CircuitState implements InstanceData {
       // possibility of deadlock (though that shouldn't happen either since no
       // other threads have references to this yet).
       this.dirtyComponents.addAll(src.dirtyComponents);
-      this.dirtyPoints.addAll(src.dirtyPoints);
+      // Events are recycled by the Propagator that owns them, so we need our
+      // own copies here, owned by our own Propagator.
+      for (Propagator.SimulatorEvent ev : src.dirtyPoints)
+        this.dirtyPoints.add(ev.cloneFor(this));
       // this.dirtyPointVals.addAll(src.dirtyPointVals);
     }
-    if (src.wireData != null) {
-      this.wireData = circuit.wires.newState(this); // all buses will be marked as dirty
-      // this.wireData = (CircuitWires.State) src.wireData.clone();
-    }
+  }
+
+  // Substates are replaced by their copies, and other component data is
+  // cloned if it can be.
+  private static Object copyData(Object oldValue,
+      HashMap<CircuitState, CircuitState> substateData) {
+    if (oldValue instanceof CircuitState)
+      return substateData.get(oldValue);
+    else if (oldValue instanceof ComponentState)
+      return ((ComponentState) oldValue).clone();
+    else
+      return oldValue;
   }
 
   public void drawOscillatingPoints(ComponentDrawContext context) {
@@ -354,7 +388,40 @@ public class CircuitState implements InstanceData {
   }
 
   public Object getData(Component comp) {
-    return componentData.get(comp);
+    int i = comp.getDataIndex();
+    if (i < 0) {
+      HashMap<Component, Object> loose = looseData;
+      return loose == null ? null : loose.get(comp);
+    }
+    Object[] data = componentData;
+    return 2 * i < data.length && data[2 * i] == comp ? data[2 * i + 1] : null;
+  }
+
+  // Stores the data for comp, or removes it if data is null, returning
+  // whatever was there before.
+  private Object putData(Component comp, Object data) {
+    int i = comp.getDataIndex();
+    if (i < 0) {
+      if (looseData == null)
+        looseData = new HashMap<>();
+      return data == null ? looseData.remove(comp) : looseData.put(comp, data);
+    }
+    ensureDataCapacity(i + 1);
+    Object[] d = componentData;
+    Object old = null;
+    if (d[2 * i] == comp)
+      old = d[2 * i + 1];
+    else if (data == null)
+      return null; // don't disturb whichever component now has the index
+    d[2 * i] = data == null ? null : comp;
+    d[2 * i + 1] = data;
+    return old;
+  }
+
+  private void ensureDataCapacity(int n) {
+    if (2 * n > componentData.length)
+      componentData = Arrays.copyOf(componentData,
+          2 * Math.max(n, circuit.getDataIndexCount()));
   }
 
   private InstanceStateImpl reusableInstanceState = new InstanceStateImpl(this, null);
@@ -366,6 +433,8 @@ public class CircuitState implements InstanceData {
       if (comp != ((InstanceComponent)comp).getInstance().getComponent()) 
         throw new IllegalStateException("instanceComponent.getInstance().getComponent() is wrong");
       // return ((InstanceFactory) factory).createInstanceState(this, comp);
+      if (sharedBySubstates)
+        return new InstanceStateImpl(this, comp);
       reusableInstanceState.repurpose(this, comp);
       return reusableInstanceState;
     } else {
@@ -378,6 +447,8 @@ public class CircuitState implements InstanceData {
     Object factory = instance.getFactory();
     if (factory instanceof InstanceFactory) {
       // return ((InstanceFactory) factory).createInstanceState(this, instance);
+      if (sharedBySubstates)
+        return new InstanceStateImpl(this, instance.getComponent());
       reusableInstanceState.repurpose(this, instance.getComponent());
       return reusableInstanceState;
     } else {
@@ -414,20 +485,11 @@ public class CircuitState implements InstanceData {
 
   public Value getValue(Location p) {
     Value v = null;
-    if (p.x >= 0 && p.y >= 0
-        && p.x % 10 == 0 && p.y % 10 == 0
-        && p.x < FASTPATH_GRID_WIDTH*10
-        && p.y < FASTPATH_GRID_HEIGHT*10) {
-      // fast path
-      int x = p.x/10;
-      int y = p.y/10;
-      synchronized (valuesLock) {
-        v = fastpath_values[y][x];
-      }
-    } else {
-      // slow path
-      synchronized (valuesLock) {
-        v = slowpath_values.get(p);
+    synchronized (valuesLock) {
+      if (valueIndex != null) {
+        int i = valueIndex.get(p);
+        if (i >= 0)
+          v = values[i];
       }
     }
     if (v != null)
@@ -438,6 +500,80 @@ public class CircuitState implements InstanceData {
     return Value.createUnknown(circuit.getWidth(p));
   }
 
+  // The slots in values of the ports of the component most recently read
+  // through getPortValue() or isPortConnected(). A component reads its ports
+  // one after another while it propagates, so this one entry is enough to
+  // spare a lookup for all but the first. It is replaced as a whole, so
+  // threads sharing this state only ever see a consistent entry.
+  private static final class PortSlots {
+    final Component comp;
+    final CircuitWires.State wires;
+    final int[] slots;
+
+    PortSlots(Component comp, CircuitWires.State wires, int[] slots) {
+      this.comp = comp;
+      this.wires = wires;
+      this.slots = slots;
+    }
+  }
+  private volatile PortSlots lastPortSlots;
+
+  // Returns the slot in values of comp's port, or -1 if there is none for
+  // the current wire data.
+  private int getPortSlot(CircuitWires.State s, Component comp, int index) {
+    PortSlots ps = lastPortSlots;
+    if (ps == null || ps.comp != comp || ps.wires != s) {
+      int[] slots = s.getPortSlots(comp);
+      if (slots == null)
+        return -1;
+      ps = new PortSlots(comp, s, slots);
+      lastPortSlots = ps;
+    }
+    return index < ps.slots.length ? ps.slots[index] : -1;
+  }
+
+  // Same as getValue(comp.getEnd(index).getLocation()), but once the wires
+  // have been propagated the port's slot in values is found from an array
+  // precomputed with the wire connectivity map, rather than by location.
+  public Value getPortValue(Component comp, int index) {
+    CircuitWires.State s = wireData;
+    if (s != null) {
+      int slot = getPortSlot(s, comp, index);
+      if (slot >= 0) {
+        Value v;
+        synchronized (valuesLock) {
+          if (valueIndex != s.getValueIndex())
+            return getValue(comp.getEnd(index).getLocation());
+          v = values[slot];
+        }
+        return v != null ? v : s.getBusValue(slot);
+      }
+    }
+    return getValue(comp.getEnd(index).getLocation());
+  }
+
+  // Same as circuit.isConnected(comp.getEnd(index).getLocation(), comp),
+  // looked up the same way as getPortValue().
+  public boolean isPortConnected(Component comp, int index) {
+    CircuitWires.State s = wireData;
+    if (s != null) {
+      int slot = getPortSlot(s, comp, index);
+      if (slot >= 0)
+        return s.isSlotConnected(slot);
+    }
+    return circuit.isConnected(comp.getEnd(index).getLocation(), comp);
+  }
+
+  // Identifies the wire connectivity map used by getPortSlot() and
+  // isPortConnected(): the key changes whenever that map is rebuilt, which
+  // happens on every wiring change, so components can cache what they learn
+  // about their connections under it. Null before the wires have first been
+  // propagated.
+  public Object getWiringKey() {
+    CircuitWires.State s = wireData;
+    return s == null ? null : s.getConnectivity();
+  }
+
   CircuitWires.State getWireData() {
     return wireData;
   }
@@ -446,7 +582,7 @@ public class CircuitState implements InstanceData {
     return parentState != null;
   }
 
-  private void markAllComponentsDirty() {
+  void markAllComponentsDirty() {
     synchronized (dirtyLock) {
       dirtyComponents.addAll(circuit.getNonWires());
     }
@@ -493,6 +629,26 @@ public class CircuitState implements InstanceData {
   // DEBUG: void processDirtyComponents() { processDirtyComponents("-="); }
   void processDirtyComponents(/* DEBUG: String tab */) {
     // DEBUG: System.out.printf(tab+" Start of processDirtyComponents(%s)\n", this);
+    processOwnDirtyComponents();
+
+    // DEBUG: boolean moreprogress = false;
+    for (CircuitState substate : substatesWorking) {
+      // DEBUG: moreprogress = true;
+			// DEBUG: System.out.printf("Recurse down for substate %s\n", substate);
+      if (substate == null)
+        break;
+      // DEBUG: substate.processDirtyComponents(tab+"==");
+      substate.processDirtyComponents();
+			// DEBUG: System.out.printf("Done recurse for substate %s\n", substate);
+    }
+
+    // DEBUG: if (moreprogress)
+    // DEBUG:   dumpDirty();
+    
+    // DEBUG: System.out.printf(tab+" End of processDirtyComponents(%s)\n", this);
+  }
+
+  private void processOwnDirtyComponents() {
     // DEBUG: System.out.printf(tab+" NOTE: parentState = %s\n", parentState);
     if (!dirtyComponentsWorking.isEmpty())
       throw new IllegalStateException("INTERNAL ERROR: dirtyComponentsWorking not empty");
@@ -508,15 +664,26 @@ public class CircuitState implements InstanceData {
     }
 
     // DEBUG: boolean finished = false, progress = false;
+    SimulationMetrics metrics = base.getMetrics();
     try { // comp.propagate() can fail if external (or std) library is buggy
       for (Component comp : dirtyComponentsWorking) {
         // DEBUG: progress = true;
 				// DEBUG: System.out.printf("Propagating (from %s) for dirty component %s\n", this, comp);
-        comp.propagate(this);
+        if (metrics == null) {
+          comp.propagate(this);
+        } else {
+          long start = System.nanoTime();
+          comp.propagate(this);
+          metrics.recordComponent(circuit, comp, System.nanoTime() - start);
+        }
         // pin values also get propagated to parent state
         if (comp.getFactory() instanceof Pin && parentState != null)
           parentComp.propagate(parentState);
+        if (changedAreas != null)
+          addChangedArea(comp.getBounds());
       }
+      if (parentState != null && !dirtyComponentsWorking.isEmpty())
+        noteSubstateChanged();
       // DEBUG: finished = true;
     } finally {
       // DEBUG: if (!finished)
@@ -526,30 +693,29 @@ public class CircuitState implements InstanceData {
 
     // DEBUG: if (progress)
     // DEBUG:   dumpDirty();
-
-    // DEBUG: boolean moreprogress = false;
-    for (CircuitState substate : substatesWorking) {
-      // DEBUG: moreprogress = true;
-			// DEBUG: System.out.printf("Recurse down for substate %s\n", substate);
-      if (substate == null)
-        break;
-      // DEBUG: substate.processDirtyComponents(tab+"==");
-      substate.processDirtyComponents();
-			// DEBUG: System.out.printf("Done recurse for substate %s\n", substate);
-    }
-
-    // DEBUG: if (moreprogress)
-    // DEBUG:   dumpDirty();
-    
-    // DEBUG: System.out.printf(tab+" End of processDirtyComponents(%s)\n", this);
   }
 
   // private ArrayList<Location> dirtyPointsWorking = new ArrayList<>();
   // private ArrayList<Value> dirtyPointValsWorking = new ArrayList<>();
   private ArrayList<Propagator.SimulatorEvent> dirtyPointsWorking = new ArrayList<>();
   private CircuitState[] substatesWorking = new CircuitState[0];
+  private ArrayList<Propagator.SimulatorEvent> deferredEvents = new ArrayList<>();
+  private volatile boolean sharedBySubstates = false;
   private boolean substatesDirty = true;
   void processDirtyPoints() {
+    processOwnDirtyPoints();
+    base.recycleEvents(dirtyPointsWorking);
+    dirtyPointsWorking.clear();
+
+    for (CircuitState substate : substatesWorking) {
+      if (substate == null)
+        break;
+      substate.processDirtyPoints();
+    }
+  }
+
+  // Leaves the processed events in dirtyPointsWorking, for the caller to recycle.
+  private void processOwnDirtyPoints() {
     if (!dirtyPointsWorking.isEmpty())
       throw new IllegalStateException("INTERNAL ERROR: dirtyPointsWorking not empty");
     synchronized (dirtyLock) {
@@ -600,36 +766,110 @@ public class CircuitState implements InstanceData {
     // }
     // if (!dirtyPointsWorking.isEmpty()) {
       // circuit.wires.propagate(this, dirtyPointsWorking, dirtyPointValsWorking);
-      circuit.wires.propagate(this, dirtyPointsWorking);
-      dirtyPointsWorking.clear();
+      SimulationMetrics metrics = base.getMetrics();
+      if (metrics == null || dirtyPointsWorking.isEmpty()) {
+        circuit.wires.propagate(this, dirtyPointsWorking);
+      } else {
+        long start = System.nanoTime();
+        circuit.wires.propagate(this, dirtyPointsWorking);
+        metrics.recordWires(circuit, System.nanoTime() - start);
+      }
       // dirtyPointValsWorking.clear();
     // }
+  }
 
+  // Parallel versions of processDirtyPoints() and processDirtyComponents(),
+  // used by Propagator when Options.ATTR_SIM_PARALLEL is set. Each state does
+  // its own work first, then its substates are processed concurrently. That
+  // is safe because processing a state only touches the state itself, its
+  // substates (through subcircuit pins), and its parent (through the
+  // subcircuit component, as for the Pin case in processDirtyComponents()).
+  // The parent is only read, except for its InstanceState, which is not
+  // shared while the substates run, see getInstanceState(). Events are
+  // deferred by the Propagator, and collected per state in deferredEvents.
+  void processDirtyPointsInParallel() {
+    processOwnDirtyPoints();
+    forEachSubstateInParallel(CircuitState::processDirtyPointsInParallel);
+  }
+
+  void recycleDirtyPoints() {
+    base.recycleEvents(dirtyPointsWorking);
+    dirtyPointsWorking.clear();
     for (CircuitState substate : substatesWorking) {
       if (substate == null)
         break;
-      substate.processDirtyPoints();
+      substate.recycleDirtyPoints();
+    }
+  }
+
+  void processDirtyComponentsInParallel() {
+    ArrayList<Propagator.SimulatorEvent> prev = base.setDeferredEvents(deferredEvents);
+    try {
+      processOwnDirtyComponents();
+    } finally {
+      base.setDeferredEvents(prev);
+    }
+    forEachSubstateInParallel(CircuitState::processDirtyComponentsInParallel);
+  }
+
+  // Schedules the deferred events in the order of processDirtyComponents().
+  void scheduleDeferredEvents() {
+    base.scheduleDeferredEvents(deferredEvents);
+    deferredEvents.clear();
+    for (CircuitState substate : substatesWorking) {
+      if (substate == null)
+        break;
+      substate.scheduleDeferredEvents();
+    }
+  }
+
+  // Lists this state and its substates in the order of processDirtyComponents().
+  void addStatesInOrder(List<CircuitState> states) {
+    states.add(this);
+    for (CircuitState substate : substatesWorking) {
+      if (substate == null)
+        break;
+      substate.addStatesInOrder(states);
+    }
+  }
+
+  private void forEachSubstateInParallel(Consumer<CircuitState> work) {
+    int n = 0;
+    while (n < substatesWorking.length && substatesWorking[n] != null)
+      n++;
+    if (n == 1) {
+      work.accept(substatesWorking[0]);
+    } else if (n > 1) {
+      ArrayList<RecursiveAction> tasks = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) {
+        CircuitState substate = substatesWorking[i];
+        tasks.add(new RecursiveAction() {
+          protected void compute() { work.accept(substate); }
+        });
+      }
+      sharedBySubstates = true;
+      try {
+        ForkJoinTask.invokeAll(tasks);
+      } finally {
+        sharedBySubstates = false;
+      }
     }
   }
 
   public void reset() {
     temporaryClock = null;
     wireData = null;
-    for (Iterator<Component> it = componentData.keySet().iterator(); it.hasNext();) {
-      Component comp = it.next();
-      if (comp.getFactory() instanceof Ram) {
-        Ram ram = (Ram)comp.getFactory();
-        boolean remove = ram.reset(this, Instance.getInstanceFor(comp));
-        if (remove)
-          it.remove();
-      } else if (!(comp.getFactory() instanceof SubcircuitFactory)) {
-        it.remove();
+    Object[] data = componentData;
+    for (int i = 0; i < data.length; i += 2) {
+      Component comp = (Component) data[i];
+      if (comp != null && !keepOnReset(comp)) {
+        data[i] = null;
+        data[i + 1] = null;
       }
     }
-    synchronized (valuesLock) {
-      slowpath_values.clear(); // slow path
-      clearFastpathGrid(); // fast path
-    }
+    if (looseData != null)
+      looseData.keySet().removeIf(comp -> !keepOnReset(comp));
+    clearValuesByWire();
     synchronized (dirtyLock) {
       dirtyComponents.clear();
       dirtyPoints.clear();
@@ -642,8 +882,18 @@ public class CircuitState implements InstanceData {
 
   }
 
+  // RAMs may keep their contents across a reset, and subcircuits keep their
+  // substates, which are reset separately.
+  private boolean keepOnReset(Component comp) {
+    if (comp.getFactory() instanceof Ram) {
+      Ram ram = (Ram)comp.getFactory();
+      return !ram.reset(this, Instance.getInstanceFor(comp));
+    }
+    return comp.getFactory() instanceof SubcircuitFactory;
+  }
+
   public CircuitState createCircuitSubstateFor(Component comp, Circuit circ) {
-      CircuitState oldState = (CircuitState)componentData.get(comp);
+      CircuitState oldState = (CircuitState)getData(comp);
       if (oldState != null && oldState.parentComp == comp) {
         // fixme: Does this ever happen?
         System.out.println("fixme: removed stale circuitstate... should never happen");
@@ -665,7 +915,7 @@ public class CircuitState implements InstanceData {
       }
       newState.parentState = this;
       newState.parentComp = comp;
-      componentData.put(comp, newState);
+      putData(comp, newState);
       return newState;
   }
   
@@ -688,7 +938,7 @@ public class CircuitState implements InstanceData {
       // also need to set parentcomp
       // but don't need to add to substates, b/c it should already be there
       sub.parentComp = comp;
-			CircuitState old = (CircuitState)componentData.put(comp, data);
+			CircuitState old = (CircuitState)putData(comp, data);
 			synchronized (dirtyLock) {
 				// DEBUG: System.out.println("removing old substate " + old);
 				if (old != null) {
@@ -702,7 +952,7 @@ public class CircuitState implements InstanceData {
 				dirtyComponents.add(comp);
 			}
     } else {
-			componentData.put(comp, data);
+			putData(comp, data);
 		}
   }
 
@@ -713,36 +963,76 @@ public class CircuitState implements InstanceData {
 			Thread.dumpStack();
       ((CircuitState)data).parentComp = comp;
     }
-    componentData.put(comp, data);
+    putData(comp, data);
   }
 
   public void setValue(Location pt, Value val, Component cause, int delay) {
     base.setValue(this, pt, val, cause, delay);
   }
 
-  private void clearFastpathGrid() { // precondition: valuesLock held
-    for (int y = 0; y < FASTPATH_GRID_HEIGHT; y++)
-      for (int x = 0; x < FASTPATH_GRID_WIDTH; x++)
-        fastpath_values[y][x] = null;
+  boolean isTrackingChanges() {
+    return changedAreas != null;
   }
 
-  // for CircuitWires - to set value at point
-  void setValueByWire(Value v, Location[] points, CircuitWires.BusConnection[] connections) {
-    for (Location p : points) {
-      if (p.x >= 0 && p.y >= 0
-          && p.x % 10 == 0 && p.y % 10 == 0
-          && p.x < FASTPATH_GRID_WIDTH*10
-          && p.y < FASTPATH_GRID_HEIGHT*10) {
-        synchronized (valuesLock) {
-          fastpath(p, v);
+  void addChangedArea(Bounds b) {
+    synchronized (changedLock) {
+      ArrayList<Bounds> areas = changedAreas;
+      if (areas == null)
+        return;
+      for (int i = 0; i < areas.size(); i++) {
+        Bounds a = areas.get(i);
+        if (a.contains(b))
+          return;
+        if (a.overlaps(b)) {
+          areas.set(i, a.add(b));
+          return;
         }
+      }
+      if (areas.size() < MAX_CHANGED_AREAS) {
+        areas.add(b);
       } else {
-        synchronized (valuesLock) {
-          slowpath(p, v);
-        }
+        Bounds all = b;
+        for (Bounds a : areas)
+          all = all.add(a);
+        areas.clear();
+        areas.add(all);
       }
-      base.locationTouched(this, p);
     }
+  }
+
+  // Something was propagated within this substate, so the subcircuit
+  // components containing it, and containing each of its ancestors, may need
+  // to be redrawn (e.g. if their appearance shows LEDs or other dynamic
+  // elements).
+  private void noteSubstateChanged() {
+    for (CircuitState s = this; s.parentState != null; s = s.parentState) {
+      if (s.parentState.changedAreas != null)
+        s.parentState.addChangedArea(s.parentComp.getBounds());
+    }
+  }
+
+  // Returns the areas collected since the last call, or null if changes were
+  // not being tracked (because this is the first call), in which case the
+  // caller should assume everything has changed. Tracking continues from here.
+  public List<Bounds> takeChangedAreas() {
+    synchronized (changedLock) {
+      ArrayList<Bounds> areas = changedAreas;
+      changedAreas = new ArrayList<>();
+      return areas;
+    }
+  }
+
+  // for CircuitWires - to set value at points, where indices are from the
+  // valueIndex of the wireData connectivity map
+  void setValueByWire(Value v, Location[] points, int[] indices,
+      CircuitWires.BusConnection[] connections) {
+    Value stored = v == Value.NIL ? null : v;
+    synchronized (valuesLock) {
+      for (int i : indices)
+        values[i] = stored;
+    }
+    for (Location p : points)
+      base.locationTouched(this, p);
     for (CircuitWires.BusConnection bc : connections) {
       if (bc.isSink || (bc.isBidirectional && !Value.equal(v, bc.drivenValue)))
         markComponentAsDirty(bc.component);
@@ -751,8 +1041,8 @@ public class CircuitState implements InstanceData {
 
   void clearValuesByWire() {
     synchronized (valuesLock) {
-      slowpath_values.clear(); // slow path
-      clearFastpathGrid(); // fast path
+      if (values != null)
+        Arrays.fill(values, null);
     }
   }
 
@@ -776,36 +1066,6 @@ public class CircuitState implements InstanceData {
   //     markDirtyComponentsAt(p);
   // }
 
-  private boolean fastpath(Location p, Value v) { // precondition: valuesLock held
-    int x = p.x/10;
-    int y = p.y/10;
-    if (v == Value.NIL) {
-      if (fastpath_values[y][x] != null) {
-        fastpath_values[y][x] = null;
-        return true;
-      } else {
-        return false;
-      }
-    } else {
-      if (!v.equals(fastpath_values[y][x])) {
-        fastpath_values[y][x] = v;
-        return true;
-      } else {
-        return false;
-      }
-    }
-  }
-  
-  private boolean slowpath(Location p, Value v) { // precondition: valuesLock held
-    if (v == Value.NIL) {
-      Object old = slowpath_values.remove(p);
-      return (old != null && old != Value.NIL);
-    } else {
-      Object old = slowpath_values.put(p, v);
-      return !v.equals(old);
-    }
-  }
-
   // private void markDirtyComponentsAt(Location p) {
   //   boolean found = false;
   //   for (Component comp : circuit.getComponents(p)) {
@@ -833,6 +1093,14 @@ public class CircuitState implements InstanceData {
 
   void setWireData(CircuitWires.State data) {
     wireData = data;
+    if (data == null)
+      return;
+    synchronized (valuesLock) {
+      if (valueIndex != data.getValueIndex()) {
+        valueIndex = data.getValueIndex();
+        values = new Value[valueIndex.size()];
+      }
+    }
   }
 
   boolean toggleClocks(int ticks) {
@@ -940,14 +1208,9 @@ public class CircuitState implements InstanceData {
   // DEBUG:         // Thread.dumpStack();
   // DEBUG:         System.out.printf(t+"{ Dumping %s values: %s\n", this, String.format(msg, fmt));
   // DEBUG:         System.out.printf(t+"  Current values at canvas locations:\n");
-  // DEBUG:         slowpath_values.forEach((loc, val) ->
-  // DEBUG:             System.out.printf(t+"    at %s value = %s (from slowpath)\n", loc, val));
-  // DEBUG:         for (int i = 0; i < FASTPATH_GRID_HEIGHT; i++) {
-  // DEBUG:           for (int j = 0; j < FASTPATH_GRID_WIDTH; j++) {
-  // DEBUG:             Value val = fastpath_values[i][j];
-  // DEBUG:             if (val != null)
-  // DEBUG:               System.out.printf(t+"    at (%d,%d) value = %s\n", 10*j, 10*i, val);
-  // DEBUG:           }
+  // DEBUG:         for (int i = 0; values != null && i < values.length; i++) {
+  // DEBUG:           if (values[i] != null)
+  // DEBUG:             System.out.printf(t+"    at index %d value = %s\n", i, values[i]);
   // DEBUG:         }
   // DEBUG:         if (wireData != null) {
   // DEBUG:           System.out.printf(t+"  Wire data:\n");
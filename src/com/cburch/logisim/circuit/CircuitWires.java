@@ -32,14 +32,18 @@ package com.cburch.logisim.circuit;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.Stroke;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.swing.SwingUtilities;
 
@@ -72,6 +76,8 @@ public class CircuitWires {
   // any Values, which are dynamically computed by the simulator. It holds only
   // the static connectivity defined by the circuit. Within this data structure
   // are:
+  // Edits that only add or remove wires don't recompute it from scratch,
+  // see updateConnectivity().
   // - WireBundle: a bus/wire as drawn by the user. Think: like an unbroken,
   //   physical ribbon cable that acts as a bundle of one or more threads. It
   //   has a width 1 <= n <= 32 (or incompatibilityData if the width is not
@@ -100,18 +106,51 @@ public class CircuitWires {
     // All components except wires, splitters, and pull resistors
     ArrayList<Component> allComponents = new ArrayList<>();
 
-    // All locations touched by a wire bundle
-    ArrayList<Location> allLocations = new ArrayList<>();
-
     // Given a location, returns a list of Components that have a port at that location.
     HashMap<Location, ArrayList<Component>> componentsAtLocations = new HashMap<>();
 
+    // Dense index of the locations in componentsAtLocations, used by each
+    // CircuitState to store the values at those locations in a compact array.
+    LocationIndex valueIndex = LocationIndex.EMPTY;
+
+    // For each component in componentsAtLocations, the valueIndex of each of
+    // its ends (or -1), so that ports can be read without location lookups.
+    IdentityHashMap<Component, int[]> portSlots = new IdentityHashMap<>();
+
+    // For each valueIndex, whether several components (wires included) have
+    // ends there, i.e. whether a port there is connected to anything.
+    boolean[] connectedSlots = new boolean[0];
+
     // The isValid flag remains true unless something goes wrong during initialization.
     volatile boolean isValid = true;
   
     // Info about width incompatibilities, used by GUI to display error.
     HashSet<WidthIncompatibilityData> incompatibilityData = null;
 
+    // The subset of incompatibilityData that comes from bundles.
+    HashSet<WidthIncompatibilityData> bundleIncompatibilityData = new HashSet<>();
+
+    // For a map made by updateConnectivity(), the map it was derived from and
+    // the bundles that were replaced or newly created, so that State objects
+    // for the previous map can be patched rather than rebuilt. The chain of
+    // base maps is cut after MAX_UPDATE_CHAIN steps.
+    volatile Connectivity base;
+    WireBundle[] removedBundles, addedBundles;
+
+    Connectivity() { }
+
+    Connectivity(Connectivity old) {
+      bundles = new HashSet<>(old.bundles);
+      pointBundles = new HashMap<>(old.pointBundles);
+      allComponents = old.allComponents;
+      componentsAtLocations = old.componentsAtLocations;
+      valueIndex = old.valueIndex;
+      portSlots = old.portSlots;
+      connectedSlots = old.connectedSlots;
+      bundleIncompatibilityData.addAll(old.bundleIncompatibilityData);
+      base = old;
+    }
+
     void addWidthIncompatibilityData(WidthIncompatibilityData e) {
       if (incompatibilityData == null)
         incompatibilityData = new HashSet<>();
@@ -260,12 +299,14 @@ public class CircuitWires {
 
     BusConnection[] connections; // sink and source components connected to this bus
     Location[] locations; // set of all locations for those connections
+    int[] indices; // Connectivity.valueIndex for each of those locations
 
     Value localDrivenValue; // sum of connections[i].drivenValue
     Value busVal; // cached, resolved value carried by this bus (or error for conflicts, etc.)
     boolean dirty; // whether localDrivenValue and busVal and valid
     ValuedBus[] dependentBuses; // other buses affected if this one's localDrivenValue changes
     Value pullVal; // only used if dependentBuses is empty
+    Bounds bounds; // extent of the bundle's wires, redrawn when busVal changes
 
     // Location[] componentPoints; // subset of wire bundle xpoints that have components at them
     // Component[][] componentsAffected; // components at each of those points
@@ -278,6 +319,10 @@ public class CircuitWires {
       width = wb.threads == null ? -1 : wb.getWidth().getWidth();
       pullVal = wb.getPullValue();
       dirty = true;
+      Bounds b = Bounds.EMPTY_BOUNDS;
+      for (Location p : wb.xpoints)
+        b = b == Bounds.EMPTY_BOUNDS ? Bounds.create(p) : b.add(p);
+      bounds = b.expand(BUS_AREA_MARGIN);
     }
 
     void filterComponents(Connectivity cmap, Location[] xpoints) {
@@ -294,6 +339,9 @@ public class CircuitWires {
       int n = locs.size();
       locations = n == xpoints.length ? xpoints : locs.toArray(new Location[n]);
       connections = conns.toArray(new BusConnection[conns.size()]);
+      indices = new int[n];
+      for (int i = 0; i < n; i++)
+        indices[i] = cmap.valueIndex.get(locations[i]);
     }
 
     // ValuedBus(ValuedBus vb) { // for cloning
@@ -362,9 +410,9 @@ public class CircuitWires {
         dirty = false;
         return busVal;
       }
-      int error = 0, unknown = 0, value = 0;
+      long error = 0, unknown = 0, value = 0;
       for (int i = 0; i < width; i++) {
-        int mask = 1 << i;
+        long mask = 1L << i;
         Value tv = threads[i].threadValue();
         if (tv == Value.TRUE)
           value |= mask;
@@ -405,11 +453,13 @@ public class CircuitWires {
   static class State {
     private Connectivity connectivity; // original source of connectivity info
     HashMap<Location, ValuedBus> busAt = new HashMap<>();
+    ValuedBus[] busAtSlot; // the bus at each valueIndex, or null if unwired
     ValuedBus[] buses;
     int numDirty;
 
     State(Connectivity cm, State prev) {
       connectivity = cm;
+      busAtSlot = new ValuedBus[cm.valueIndex.size()];
       HashMap<WireBundle, ValuedBus> allBuses = new HashMap<>();
       HashMap<ValuedBus, WireBundle> srcBuses = new HashMap<>();
       // initialize buses[] and busAt<>
@@ -418,6 +468,8 @@ public class CircuitWires {
       for (WireBundle wb : connectivity.bundles) {
         ValuedBus vb = new ValuedBus(idx++, wb, connectivity);
         buses[vb.idx] = vb;
+        for (int i : vb.indices)
+          busAtSlot[i] = vb;
         for (Location loc : wb.xpoints) {
           ValuedBus old = busAt.put(loc, vb);
           if (old != null)
@@ -460,6 +512,96 @@ public class CircuitWires {
     }
     static final ValuedBus[] EMPTY_DEPENDENCIES = new ValuedBus[0];
 
+    // Patches prev for a map derived from its own by updateConnectivity(),
+    // which replaced only bundles that have no splitters. Buses for the
+    // removed bundles are dropped and their points set to NIL, buses for the
+    // added bundles are created dirty, and all other buses are kept as is.
+    State(State prev, Collection<WireBundle> removed, Collection<WireBundle> added,
+        Connectivity cm, CircuitState circState) {
+      connectivity = cm;
+      busAt = new HashMap<>(prev.busAt);
+      busAtSlot = prev.busAtSlot.clone(); // same valueIndex, see updateConnectivity()
+      HashSet<ValuedBus> dropped = new HashSet<>();
+      for (WireBundle wb : removed) {
+        ValuedBus vb = prev.busAt.get(wb.xpoints[0]);
+        if (vb != null) {
+          dropped.add(vb);
+          for (int i : vb.indices)
+            busAtSlot[i] = null;
+        }
+        for (Location loc : wb.xpoints)
+          busAt.remove(loc);
+      }
+      ArrayList<ValuedBus> fresh = new ArrayList<>(added.size());
+      for (WireBundle wb : added) {
+        if (wb.threads != null) {
+          for (WireThread t : wb.threads)
+            if (t.steps > 1)
+              throw new IllegalStateException("bundle is connected to a splitter");
+        }
+        ValuedBus vb = new ValuedBus(0, wb, cm);
+        vb.dependentBuses = EMPTY_DEPENDENCIES;
+        for (int i : vb.indices)
+          busAtSlot[i] = vb;
+        for (BusConnection bc : vb.connections)
+          if (!bc.isSink)
+            bc.drivenValue = prev.getDrivenValue(bc.component, bc.location);
+        for (Location loc : wb.xpoints) {
+          ValuedBus old = busAt.put(loc, vb);
+          if (old != null)
+            throw new IllegalStateException("oops, two wires occupy same location");
+        }
+        fresh.add(vb);
+      }
+      // keep dirty buses ahead of clean ones, as markDirty() expects
+      buses = new ValuedBus[prev.buses.length - dropped.size() + fresh.size()];
+      int n = 0;
+      for (int i = 0; i < prev.numDirty; i++)
+        if (!dropped.contains(prev.buses[i]))
+          buses[n++] = prev.buses[i];
+      for (ValuedBus vb : fresh)
+        buses[n++] = vb;
+      numDirty = n;
+      for (int i = prev.numDirty; i < prev.buses.length; i++)
+        if (!dropped.contains(prev.buses[i]))
+          buses[n++] = prev.buses[i];
+      for (int i = 0; i < buses.length; i++)
+        buses[i].idx = i;
+      for (ValuedBus vb : dropped)
+        circState.setValueByWire(Value.NIL, vb.locations, vb.indices, vb.connections);
+      for (ValuedBus vb : fresh)
+        for (BusConnection bc : vb.connections)
+          circState.markComponentAsDirty(bc.component);
+    }
+
+    LocationIndex getValueIndex() {
+      return connectivity.valueIndex;
+    }
+
+    // A fresh Connectivity is built for every change to the wiring, even
+    // when it keeps the previous valueIndex.
+    Object getConnectivity() {
+      return connectivity;
+    }
+
+    int[] getPortSlots(Component comp) {
+      return connectivity.portSlots.get(comp);
+    }
+
+    // Same as getBusValue(), for the location with the given valueIndex.
+    Value getBusValue(int slot) {
+      ValuedBus vb = busAtSlot[slot];
+      if (vb == null || vb.busVal == null)
+        return Value.NIL;
+      return vb.busVal;
+    }
+
+    // Same as Circuit.isConnected(), for a component port at the location
+    // with the given valueIndex.
+    boolean isSlotConnected(int slot) {
+      return connectivity.connectedSlots[slot];
+    }
+
     Value getDrivenValue(Component c, Location loc) {
       ValuedBus vb = busAt.get(loc);
       if (vb == null)
@@ -542,6 +684,7 @@ public class CircuitWires {
 
   // Elements of the circuit, organized by type.
   private HashSet<Wire> wires = new HashSet<>(); // Components of type Wire
+  private ComponentGrid<Wire> wireIndex = new ComponentGrid<>(); // same as wires, by location
   private HashSet<Splitter> splitters = new HashSet<>(); // Components of type Splitter
   private HashSet<Component> tunnels = new HashSet<>(); // Components having Tunnel factory
   private HashSet<Component> pulls = new HashSet<>(); // Components having PullResistor factory
@@ -561,10 +704,21 @@ public class CircuitWires {
   private Bounds bounds = Bounds.EMPTY_BOUNDS;
   private volatile Connectivity masterConnectivity = null;
 
+  // Pending edits since lastConnectivity was made: if only wires were added or
+  // removed, touchedPoints holds their endpoints and the next map is derived
+  // incrementally, otherwise needFullConnectivity is set.
+  private Connectivity lastConnectivity = null;
+  private HashSet<Location> touchedPoints = new HashSet<>();
+  private boolean needFullConnectivity = true;
+  private static final int MAX_TOUCHED_POINTS = 1000;
+  private static final int MAX_UPDATE_CHAIN = 8;
+  // covers the wire stroke and junction dots around a bundle's points
+  private static final int BUS_AREA_MARGIN = Wire.HIGHLIGHTED_WIDTH_BUS + 2;
+
   CircuitWires() { }
 
-  // NOTE: this could be made much more efficient in most cases to
-  // avoid voiding the connectivity map.
+  // NOTE: adding or removing a wire only voids the map for the points it
+  // touches, see voidConnectivity(Wire). Other edits still void all of it.
   /*synchronized*/ boolean add(Component comp) {
     // DEBUG: System.out.println("wires adding " + comp);
     boolean added = true;
@@ -586,7 +740,10 @@ public class CircuitWires {
     }
     if (added) {
       points.add(comp);
-      voidConnectivity();
+      if (comp instanceof Wire)
+        voidConnectivity((Wire) comp);
+      else
+        voidConnectivity();
     }
     return added;
   }
@@ -601,6 +758,7 @@ public class CircuitWires {
     boolean added = wires.add(w);
     if (!added)
       return false;
+    wireIndex.add(w);
 
     if (bounds != Bounds.EMPTY_BOUNDS) // update bounds
       bounds = bounds.add(w.e0).add(w.e1);
@@ -744,15 +902,11 @@ public class CircuitWires {
     // }
     ret.allComponents.addAll(components);
 
-    // Record all component locations so they can be marked as dirty when this
-    // wire connectivity map is used to initialize a new State.
-    ret.allLocations.addAll(points.getAllLocations());
-
     // Record all interesting component (non-wire, non-splitter) locations so
     // they can be used to filter out uninteresting points when this wire bundle
     // map is used to initialize a new State. We also need to know which
     // interesting components are at those locations.
-    for (Location p : ret.allLocations) {
+    for (Location p : points.getAllLocations()) {
       ArrayList<Component> a = null;
       for (Component comp : points.getComponents(p)) {
         if ((comp instanceof Wire) || (comp instanceof Splitter))
@@ -764,6 +918,21 @@ public class CircuitWires {
       if (a != null)
         ret.componentsAtLocations.put(p, a);
     }
+    ret.valueIndex = new LocationIndex(ret.componentsAtLocations.keySet());
+    ret.connectedSlots = new boolean[ret.valueIndex.size()];
+    for (Map.Entry<Location, ArrayList<Component>> e : ret.componentsAtLocations.entrySet()) {
+      Location p = e.getKey();
+      ret.connectedSlots[ret.valueIndex.get(p)] = points.getComponents(p).size() > 1;
+      for (Component comp : e.getValue()) {
+        if (ret.portSlots.containsKey(comp))
+          continue;
+        List<EndData> ends = comp.getEnds();
+        int[] slots = new int[ends.size()];
+        for (int i = 0; i < slots.length; i++)
+          slots[i] = ret.valueIndex.get(ends.get(i).getLocation());
+        ret.portSlots.put(comp, slots);
+      }
+    }
     
     // Compute the exception set before leaving.
     Collection<WidthIncompatibilityData> exceptions = points
@@ -775,9 +944,189 @@ public class CircuitWires {
     }
     for (WireBundle b : ret.getBundles()) {
       WidthIncompatibilityData e = b.getWidthIncompatibilityData();
+      if (e != null) {
+        ret.addWidthIncompatibilityData(e);
+        ret.bundleIncompatibilityData.add(e);
+      }
+    }
+  }
+
+  // Derives a new map from the old one after edits that only added or removed
+  // wires, whose endpoints are in touchedPoints. Only the bundles at those
+  // points are affected: their points, together with the new wire endpoints,
+  // are regrouped with a local union-find over the wires and tunnels there,
+  // and each group becomes a new bundle. Everything else is shared with the
+  // old map. Returns null if a full recomputation is needed instead, e.g. when
+  // a splitter is involved, since then threads span several bundles.
+  private Connectivity updateConnectivity(Connectivity old) {
+    if (!old.isValid())
+      return null;
+
+    HashSet<WireBundle> oldBundles = new HashSet<>();
+    HashSet<Location> region = new HashSet<>();
+    for (Location p : touchedPoints) {
+      region.add(p);
+      WireBundle b = old.getBundleAt(p);
+      if (b != null && oldBundles.add(b))
+        Collections.addAll(region, b.xpoints);
+    }
+
+    // regroup the points of the region
+    HashMap<Location, Location> parent = new HashMap<>();
+    HashMap<String, Location> tunnelLabels = new HashMap<>();
+    HashSet<Location> live = new HashSet<>(); // points that need a bundle
+    for (Location p : region) {
+      for (Component comp : points.getComponents(p)) {
+        if (comp instanceof Splitter) {
+          return null;
+        } else if (comp instanceof Wire) {
+          Wire w = (Wire) comp;
+          Location q = w.e0.equals(p) ? w.e1 : w.e0;
+          if (!region.contains(q))
+            return null;
+          union(parent, p, q);
+          live.add(p);
+        } else if (comp.getFactory() instanceof Tunnel) {
+          String label = comp.getAttributeSet().getValue(StdAttr.LABEL).trim();
+          if (label.equals(""))
+            continue;
+          Location q = tunnelLabels.putIfAbsent(label, p);
+          if (q != null)
+            union(parent, p, q);
+          live.add(p);
+        } else if (comp.getFactory() instanceof PullResistor) {
+          live.add(p);
+        } else {
+          EndData e = comp.getEnd(p);
+          if (e != null && e.getType() != EndData.INPUT_ONLY)
+            live.add(p);
+        }
+      }
+    }
+    if (!tunnelLabels.isEmpty()) {
+      for (Component comp : tunnels) {
+        String label = comp.getAttributeSet().getValue(StdAttr.LABEL).trim();
+        if (tunnelLabels.containsKey(label) && !region.contains(comp.getLocation()))
+          return null;
+      }
+    }
+    HashMap<Location, WireBundle> groups = new HashMap<>();
+    for (Location p : region) {
+      Location r = find(parent, p);
+      WireBundle b = groups.get(r);
+      if (b == null) {
+        b = new WireBundle(p);
+        groups.put(r, b);
+      }
+      b.tempPoints.add(p);
+    }
+
+    // finish the new bundles, as in computeConnectivity()
+    ArrayList<WireBundle> newBundles = new ArrayList<>();
+    for (WireBundle b : groups.values()) {
+      boolean keep = false;
+      for (Location p : b.tempPoints) {
+        if (live.contains(p)) {
+          keep = true;
+          break;
+        }
+      }
+      if (!keep)
+        continue;
+      for (Location p : b.tempPoints) {
+        for (Component comp : points.getComponents(p)) {
+          if (comp.getFactory() instanceof PullResistor)
+            b.addPullValue(PullResistor.getPullValue(Instance.getInstanceFor(comp)));
+        }
+        BitWidth width = points.getWidth(p);
+        if (width != BitWidth.UNKNOWN)
+          b.setWidth(width, p);
+      }
+      b.xpoints = b.tempPoints.toArray(new Location[b.tempPoints.size()]);
+      b.tempPoints = null;
+      BitWidth width = b.getWidth();
+      if (width != BitWidth.UNKNOWN) {
+        int n = width.getWidth();
+        b.threads = new WireThread[n];
+        for (int i = 0; i < n; i++) {
+          WireThread t = new WireThread();
+          t.addBundlePosition(i, b);
+          t.finishConstructing();
+          b.threads[i] = t;
+        }
+      }
+      newBundles.add(b);
+    }
+
+    Connectivity ret = new Connectivity(old);
+    ret.connectedSlots = old.connectedSlots.clone();
+    for (Location p : touchedPoints) {
+      int slot = ret.valueIndex.get(p);
+      if (slot >= 0)
+        ret.connectedSlots[slot] = points.getComponents(p).size() > 1;
+    }
+    for (WireBundle b : oldBundles) {
+      ret.bundles.remove(b);
+      for (Location p : b.xpoints)
+        ret.pointBundles.remove(p);
+      WidthIncompatibilityData e = b.getWidthIncompatibilityData();
       if (e != null)
+        ret.bundleIncompatibilityData.remove(e);
+    }
+    for (WireBundle b : newBundles) {
+      ret.bundles.add(b);
+      for (Location p : b.xpoints)
+        ret.pointBundles.put(p, b);
+      WidthIncompatibilityData e = b.getWidthIncompatibilityData();
+      if (e != null)
+        ret.bundleIncompatibilityData.add(e);
+    }
+    Collection<WidthIncompatibilityData> exceptions = points
+        .getWidthIncompatibilityData();
+    if (exceptions != null) {
+      for (WidthIncompatibilityData e : exceptions)
         ret.addWidthIncompatibilityData(e);
     }
+    for (WidthIncompatibilityData e : ret.bundleIncompatibilityData)
+      ret.addWidthIncompatibilityData(e);
+    ret.removedBundles = oldBundles.toArray(new WireBundle[oldBundles.size()]);
+    ret.addedBundles = newBundles.toArray(new WireBundle[newBundles.size()]);
+
+    Connectivity c = ret;
+    for (int i = 0; i < MAX_UPDATE_CHAIN && c != null; i++)
+      c = c.base;
+    if (c != null)
+      c.base = null;
+    return ret;
+  }
+
+  private static Location find(HashMap<Location, Location> parent, Location p) {
+    Location r = p;
+    for (Location q = parent.get(r); q != null; q = parent.get(r))
+      r = q;
+    if (!r.equals(p))
+      parent.put(p, r);
+    return r;
+  }
+
+  private static void union(HashMap<Location, Location> parent, Location p, Location q) {
+    Location rp = find(parent, p);
+    Location rq = find(parent, q);
+    if (!rp.equals(rq))
+      parent.put(rp, rq);
+  }
+
+  // Returns the maps derived by updateConnectivity() that lead from one map to
+  // another, oldest first, or null if there is no such chain.
+  private static ArrayList<Connectivity> updatesSince(Connectivity from, Connectivity to) {
+    ArrayList<Connectivity> ret = new ArrayList<>();
+    for (Connectivity c = to; c != from; c = c.base) {
+      if (c == null || ret.size() >= MAX_UPDATE_CHAIN)
+        return null;
+      ret.add(c);
+    }
+    Collections.reverse(ret);
+    return ret;
   }
 
   private void connectPullResistors(Connectivity ret) {
@@ -901,8 +1250,19 @@ public class CircuitWires {
 
     Connectivity cmap = getConnectivity();
     boolean isValid = cmap.isValid();
+
+    // only draw the wires and junctions in the area being repainted; the
+    // junctions are found at the ends of the wires drawn
+    Rectangle clip = g.getClipBounds();
+    Collection<Wire> visible = wires;
+    Bounds area = null;
+    if (clip != null) {
+      area = Bounds.create(clip).expand(Wire.HIGHLIGHTED_WIDTH_BUS);
+      visible = wireIndex.query(area);
+    }
+
     if (hidden == null || hidden.size() == 0) {
-      for (Wire w : wires) {
+      for (Wire w : visible) {
         Location s = w.e0;
         Location t = w.e1;
         WireBundle wb = cmap.getBundleAt(s);
@@ -939,8 +1299,11 @@ public class CircuitWires {
         }
       }
 
-      for (Location loc : points.getAllLocations()) {
-        if (points.getComponentCount(loc) > 2) {
+      for (Wire w : visible) {
+        for (int end = 0; end < 2; end++) {
+          Location loc = end == 0 ? w.e0 : w.e1;
+          if (!isJunctionOf(w, loc, area))
+            continue;
           WireBundle wb = cmap.getBundleAt(loc);
           if (wb != null) {
             if (!wb.isValid()) {
@@ -965,7 +1328,7 @@ public class CircuitWires {
         }
       }
     } else {
-      for (Wire w : wires) {
+      for (Wire w : visible) {
         if (!hidden.contains(w)) {
           Location s = w.e0;
           Location t = w.e1;
@@ -997,8 +1360,11 @@ public class CircuitWires {
       // this is just an approximation, but it's good enough since
       // the problem is minor, and hidden only exists for a short
       // while at a time anyway.
-      for (Location loc : points.getAllLocations()) {
-        if (points.getComponentCount(loc) > 2) {
+      for (Wire w : visible) {
+        for (int end = 0; end < 2; end++) {
+          Location loc = end == 0 ? w.e0 : w.e1;
+          if (!isJunctionOf(w, loc, area))
+            continue;
           int icount = 0;
           for (Component comp : points.getComponents(loc)) {
             if (!hidden.contains(comp))
@@ -1032,6 +1398,18 @@ public class CircuitWires {
     }
   }
 
+  // Whether a junction dot belongs at loc, an end of w, within area (if not
+  // null). Each junction is drawn only for the first wire listed there.
+  private boolean isJunctionOf(Wire w, Location loc, Bounds area) {
+    if (points.getComponentCount(loc) <= 2 || (area != null && !area.contains(loc)))
+      return false;
+    for (Component comp : points.getComponents(loc)) {
+      if (comp instanceof Wire)
+        return comp == w;
+    }
+    return false;
+  }
+
   // There are only two threads that need to use the connectivity map, I think:
   // the AWT event thread, and the simulation worker thread.
   // AWT does modifications to the components and wires, then voids the
@@ -1057,14 +1435,25 @@ public class CircuitWires {
       return ret;
     if (SwingUtilities.isEventDispatchThread()) {
       // AWT event thread.
-      ret = new Connectivity();
       try {
-        computeConnectivity(ret);
+        if (!needFullConnectivity && lastConnectivity != null)
+          ret = updateConnectivity(lastConnectivity);
+        if (ret == null) {
+          ret = new Connectivity();
+          computeConnectivity(ret);
+        }
         masterConnectivity = ret; // volatile write by AWT thread
+        lastConnectivity = ret;
+        needFullConnectivity = false;
       } catch (Exception t) {
+        if (ret == null)
+          ret = new Connectivity();
         ret.invalidate();
+        lastConnectivity = null;
+        needFullConnectivity = true;
         System.err.println(t.getLocalizedMessage());
       }
+      touchedPoints.clear();
       return ret;
     } else {
       // Simulation thread.
@@ -1118,6 +1507,11 @@ public class CircuitWires {
     return cmap.getBundleAt(query);
   }
 
+  // Returns the wires near bds, and perhaps a few more.
+  Collection<Wire> getWiresNear(Bounds bds) {
+    return wireIndex.query(bds);
+  }
+
   Set<Wire> getWires() {
     return wires;
   }
@@ -1155,7 +1549,24 @@ public class CircuitWires {
 
     // get state, or create a new one if current state is outdated
     State s = circState.getWireData();
-    if (s == null || s.connectivity != map) {
+    ArrayList<Connectivity> updates = null;
+    if (s != null && s.connectivity != map)
+      updates = updatesSince(s.connectivity, map);
+    if (updates != null) {
+      // only some bundles changed: patch the state, keeping the other buses
+      // and their values, and mark dirty just the components on new buses
+      HashSet<WireBundle> removed = new HashSet<>();
+      LinkedHashSet<WireBundle> added = new LinkedHashSet<>();
+      for (Connectivity c : updates) {
+        for (WireBundle wb : c.removedBundles) {
+          if (!added.remove(wb))
+            removed.add(wb);
+        }
+        Collections.addAll(added, c.addedBundles);
+      }
+      s = new State(s, removed, added, map, circState);
+      circState.setWireData(s);
+    } else if (s == null || s.connectivity != map) {
       // DEBUG: System.out.printf("computing new State from %s\n", s);
       // if it is outdated, we need to compute for all threads
       s = new State(map, s);
@@ -1235,13 +1646,16 @@ public class CircuitWires {
     // recompute threadVal for all threads passing through dirty buses (if not degenerate),
     // recompute aggregate busVal for all dirty buses,
     // and post those results to the circuit state
+    boolean tracking = circState.isTrackingChanges();
     for (int i = 0; i < s.numDirty; i++) {
       ValuedBus vb = s.buses[i];
       Value old = vb.busVal;
       Value val = vb.recalculate();
       if (Value.equal(old, val))
         continue;
-      circState.setValueByWire(val, vb.locations, vb.connections);
+      circState.setValueByWire(val, vb.locations, vb.indices, vb.connections);
+      if (tracking)
+        circState.addChangedArea(vb.bounds);
       // int n = vb.componentPoints.length;
       // for (int j = 0; j < n; j++) {
       //   Location p = vb.componentPoints[j];
@@ -1303,7 +1717,10 @@ public class CircuitWires {
       }
     }
     points.remove(comp);
-    voidConnectivity();
+    if (comp instanceof Wire)
+      voidConnectivity((Wire) comp);
+    else
+      voidConnectivity();
   }
 
   /*synchronized*/ void remove(Component comp, EndData end) {
@@ -1315,6 +1732,7 @@ public class CircuitWires {
     boolean removed = wires.remove(w);
     if (!removed)
       return;
+    wireIndex.remove(w);
 
     if (bounds != Bounds.EMPTY_BOUNDS) {
       // bounds is valid - invalidate if endpoint on border
@@ -1338,6 +1756,17 @@ public class CircuitWires {
     // This should really only be called by AWT thread, but main() also
     // calls it during startup. It should not be called by the simulation
     // thread.
+    needFullConnectivity = true;
+    masterConnectivity = null; // volatile write by AWT thread (and sometimes main/startup)
+  }
+
+  private void voidConnectivity(Wire w) {
+    if (!needFullConnectivity) {
+      touchedPoints.add(w.e0);
+      touchedPoints.add(w.e1);
+      if (touchedPoints.size() > MAX_TOUCHED_POINTS)
+        needFullConnectivity = true;
+    }
     masterConnectivity = null; // volatile write by AWT thread (and sometimes main/startup)
   }
 }
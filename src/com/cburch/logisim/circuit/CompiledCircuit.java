@@ -0,0 +1,764 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+import static com.cburch.logisim.circuit.Strings.S;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.std.wiring.Clock;
+import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.std.wiring.PullResistor;
+import com.cburch.logisim.std.wiring.Tunnel;
+
+// CompiledCircuit is an alternative to the event-driven Propagator for
+// circuits that are not being edited, such as long-running tty simulations.
+// The whole hierarchy under a root CircuitState is flattened into a netlist
+// of 1-bit nets, with splitters, tunnels, and subcircuit pins all resolved
+// away. Every component other than clocks, pins, and registers must provide a
+// CompiledComponent feature, and the combinational operations are sorted by
+// level into a single int-coded program, so each clock tick is a pass over
+// the registers followed by one straight-line pass over the program.
+//
+// Only circuits whose behavior doesn't depend on gate delays can be compiled:
+// every net read must have exactly one driver, there can be no combinational
+// loops, registers must be clocked directly by a Clock, and nothing can be
+// pulled or left floating. Values are 0 or 1, never unknown or error, so the
+// result matches the event-driven simulation for such circuits.
+//
+// The CircuitState is not updated as the compiled circuit runs. Values of
+// top-level ports can be read with getPortValue(), and sync() writes register
+// contents and the tick count back to the CircuitState and propagates it.
+public class CompiledCircuit {
+
+  public static class CompileException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    CompileException(String message) {
+      super(message);
+    }
+  }
+
+  // Opcodes, the first four being the CompiledComponent gate types.
+  // gate:  op, out, invert, n, in[n] (each net << 1 | negated)
+  private static final int OP_ADD = 4; // op, w, cin, cout, out[w], a[w], b[w]
+  private static final int OP_MUX = 5; // op, w, s, en, out[w], sel[s], data[w << s]
+
+  private static final int ZERO = 0, ONE = 1; // nets holding constants
+
+  // Kinds of driver for a net, other than an operation's index.
+  private static final int NONE = -1, SOURCE = -2, CLOCK = -3, REGISTER = -4;
+
+  // Identifies one bit of a bus that isn't joined to others by splitters.
+  private static final class BitKey {
+    final Object bus;
+    final int bit;
+
+    BitKey(Object bus, int bit) {
+      this.bus = bus;
+      this.bit = bit;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof BitKey && ((BitKey)o).bus == bus && ((BitKey)o).bit == bit;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(bus) * 31 + bit;
+    }
+  }
+
+  private static final class Op {
+    final int kind;
+    final int[] in, out;
+    final int param; // gate: negated inputs, mux: number of select bits
+    final boolean invert;
+    final Component comp;
+    final CircuitState state;
+
+    Op(int kind, int[] in, int[] out, int param, boolean invert,
+        Component comp, CircuitState state) {
+      this.kind = kind;
+      this.in = in;
+      this.out = out;
+      this.param = param;
+      this.invert = invert;
+      this.comp = comp;
+      this.state = state;
+    }
+  }
+
+  private static final class Reg {
+    int[] data, out;
+    int clock, clear, enable;
+    boolean falling;
+    long value;
+    int last; // clock value seen at the previous tick
+    CompiledComponent.RegisterWriter writer;
+    Component comp;
+    CircuitState state;
+  }
+
+  private static final class ClockSource {
+    int net, low, cycle, phase;
+  }
+
+  private final CircuitState root;
+  private final ArrayList<CircuitState> states = new ArrayList<>();
+
+  // while compiling
+  private HashMap<Object, Integer> netOf = new HashMap<>();
+  private int[] parent = new int[64]; // union-find over nets
+  private int numNets = 2;
+  private ArrayList<Op> ops = new ArrayList<>();
+  private ArrayList<Reg> regList = new ArrayList<>();
+  private ArrayList<ClockSource> clockList = new ArrayList<>();
+  private ArrayList<int[]> fixed = new ArrayList<>(); // net, value
+
+  // after compiling
+  private int[] netIndex; // final net for each net numbered while compiling
+  private boolean[] driven;
+  private int[] values;
+  private int[] code;
+  private Reg[] regs;
+  private ClockSource[] clocks;
+  private int ticks;
+  private IdentityHashMap<Component, int[][]> portNets = new IdentityHashMap<>();
+
+  private CompiledCircuit(CircuitState root) {
+    this.root = root;
+    parent[ZERO] = ZERO;
+    parent[ONE] = ONE;
+  }
+
+  // Compiles the circuit under root, which should have been propagated
+  // already so that registers and input pins hold their starting values.
+  public static CompiledCircuit compile(CircuitState root)
+      throws CompileException {
+    CompiledCircuit ret = new CompiledCircuit(root);
+    ret.ticks = root.getPropagator().getTickCount();
+    ret.addState(root);
+    ret.link();
+    return ret;
+  }
+
+  private static CompileException error(String key, Component comp,
+      CircuitState state) {
+    return new CompileException(S.fmt(key, comp.getDisplayName(),
+          state.getCircuit().getName()));
+  }
+
+  private int newNet() {
+    if (numNets == parent.length)
+      parent = Arrays.copyOf(parent, 2 * numNets);
+    parent[numNets] = numNets;
+    return numNets++;
+  }
+
+  private int find(int n) {
+    while (parent[n] != n) {
+      parent[n] = parent[parent[n]];
+      n = parent[n];
+    }
+    return n;
+  }
+
+  private void union(int a, int b) {
+    a = find(a);
+    b = find(b);
+    if (a != b) {
+      if (a < b)
+        parent[b] = a;
+      else
+        parent[a] = b;
+    }
+  }
+
+  // Nets for each bit of a port, or null if nothing else is connected to it.
+  private int[] getPortNets(CircuitState state, Component comp, int index)
+      throws CompileException {
+    if (!state.isPortConnected(comp, index))
+      return null;
+    int w = comp.getEnd(index).getWidth().getWidth();
+    int[] nets = new int[w];
+    CircuitWires.State s = state.getWireData();
+    int[] slots = s == null ? null : s.getPortSlots(comp);
+    CircuitWires.ValuedBus vb = slots == null || index >= slots.length
+        || slots[index] < 0 ? null : s.busAtSlot[slots[index]];
+    if (vb == null) {
+      for (int i = 0; i < w; i++)
+        nets[i] = newNet();
+      return nets;
+    }
+    if (vb.width != w)
+      throw error("compiledWidthError", comp, state);
+    if (vb.pullVal != Value.UNKNOWN)
+      throw error("compiledPullError", comp, state);
+    for (int i = 0; i < w; i++) {
+      Object key;
+      if (vb.threads != null) {
+        CircuitWires.ValuedThread t = vb.threads[i];
+        if (t.pullUp || t.pullDown || t.pullError)
+          throw error("compiledPullError", comp, state);
+        key = t;
+      } else {
+        key = new BitKey(vb, i);
+      }
+      Integer n = netOf.get(key);
+      if (n == null) {
+        n = newNet();
+        netOf.put(key, n);
+      }
+      nets[i] = n;
+    }
+    return nets;
+  }
+
+  private void addState(CircuitState state) throws CompileException {
+    if (state.getWireData() == null)
+      throw new CompileException(S.fmt("compiledNotPropagatedError",
+            state.getCircuit().getName()));
+    if (state.getTemporaryClock() != null)
+      throw new CompileException(S.get("compiledTemporaryClockError"));
+    states.add(state);
+    for (Component comp : state.getCircuit().getNonWires()) {
+      Object factory = comp.getFactory();
+      if (comp instanceof Splitter || factory instanceof Tunnel
+          || factory instanceof PullResistor) {
+        continue; // already accounted for by CircuitWires
+      } else if (factory instanceof SubcircuitFactory) {
+        addSubcircuit(state, comp, (SubcircuitFactory)factory);
+      } else if (factory instanceof Pin) {
+        addPin(state, comp);
+      } else if (factory instanceof Clock) {
+        addClock(state, comp);
+      } else {
+        CompiledComponent cc =
+            (CompiledComponent)comp.getFeature(CompiledComponent.class);
+        if (cc != null) {
+          try {
+            cc.compile(new ContextImpl(state, comp));
+          } catch (CompiledComponent.NotCompilableException e) {
+            throw error("compiledCannotHandleError", comp, state);
+          }
+        } else {
+          // Components that only take inputs, like LEDs and probes, don't
+          // affect the simulation.
+          for (EndData end : comp.getEnds())
+            if (end.getType() != EndData.INPUT_ONLY)
+              throw error("compiledCannotHandleError", comp, state);
+        }
+      }
+    }
+  }
+
+  private void addSubcircuit(CircuitState state, Component comp,
+      SubcircuitFactory factory) throws CompileException {
+    CircuitState sub = factory.getSubstate(state, comp);
+    Instance[] pins =
+        ((CircuitAttributes)comp.getAttributeSet()).getPinInstances();
+    addState(sub);
+    for (int i = 0; i < pins.length; i++) {
+      int[] outer = getPortNets(state, comp, i);
+      int[] inner = getPortNets(sub, pins[i].getComponent(), 0);
+      if (outer == null || inner == null)
+        continue;
+      for (int b = 0; b < outer.length; b++)
+        union(outer[b], inner[b]);
+    }
+  }
+
+  private void addPin(CircuitState state, Component comp)
+      throws CompileException {
+    int[] nets = getPortNets(state, comp, 0);
+    if (nets == null || state != root)
+      return; // subcircuit pins are joined by addSubcircuit
+    if (!Pin.FACTORY.isInputPin(Instance.getInstanceFor(comp)))
+      return;
+    // input pins don't change during a tty simulation
+    Value v = state.getPortValue(comp, 0);
+    if (!v.isFullyDefined() || v.getWidth() != nets.length)
+      throw error("compiledUndefinedError", comp, state);
+    for (int i = 0; i < nets.length; i++)
+      fixed.add(new int[] { nets[i], v.get(i) == Value.TRUE ? 1 : 0 });
+  }
+
+  private void addClock(CircuitState state, Component comp)
+      throws CompileException {
+    int[] nets = getPortNets(state, comp, 0);
+    if (nets == null)
+      return;
+    AttributeSet attrs = comp.getAttributeSet();
+    ClockSource c = new ClockSource();
+    c.net = nets[0];
+    c.low = attrs.getValue(Clock.ATTR_LOW).intValue();
+    c.cycle = c.low + attrs.getValue(Clock.ATTR_HIGH).intValue();
+    c.phase = ((attrs.getValue(Clock.ATTR_PHASE).intValue() % c.cycle)
+        + c.cycle) % c.cycle;
+    clockList.add(c);
+  }
+
+  private class ContextImpl implements CompiledComponent.Context {
+    final CircuitState state;
+    final Component comp;
+
+    ContextImpl(CircuitState state, Component comp) {
+      this.state = state;
+      this.comp = comp;
+    }
+
+    public CircuitState getCircuitState() {
+      return state;
+    }
+
+    public int[] getPort(int index) throws CompileException {
+      return getPortNets(state, comp, index);
+    }
+
+    public int getConstant(boolean value) {
+      return value ? ONE : ZERO;
+    }
+
+    private int[] outputs(int[] out) {
+      if (out == null)
+        return null;
+      out = out.clone();
+      for (int i = 0; i < out.length; i++)
+        if (out[i] < 0)
+          out[i] = newNet();
+      return out;
+    }
+
+    public void addConstant(int out, boolean value) {
+      if (out >= 0)
+        fixed.add(new int[] { out, value ? 1 : 0 });
+    }
+
+    public void addGate(int type, int[] inputs, int negated, boolean invert,
+        int out) {
+      if (out < 0)
+        return;
+      if (inputs.length == 0)
+        throw new IllegalArgumentException("gate without inputs");
+      ops.add(new Op(type, inputs.clone(), new int[] { out }, negated, invert,
+            comp, state));
+    }
+
+    public void addAdder(int[] a, int[] b, int carryIn, int[] out,
+        int carryOut) {
+      int w = a.length;
+      if (out == null) {
+        out = new int[w];
+        Arrays.fill(out, -1);
+      }
+      int[] in = new int[2 * w + 1];
+      System.arraycopy(a, 0, in, 0, w);
+      System.arraycopy(b, 0, in, w, w);
+      in[2 * w] = carryIn;
+      int[] o = Arrays.copyOf(out, w + 1);
+      o[w] = carryOut;
+      ops.add(new Op(OP_ADD, in, outputs(o), 0, false, comp, state));
+    }
+
+    public void addMux(int[] data, int[] select, int enable, int[] out) {
+      if (out == null)
+        return;
+      int s = select.length;
+      int[] in = new int[s + 1 + data.length];
+      System.arraycopy(select, 0, in, 0, s);
+      in[s] = enable;
+      System.arraycopy(data, 0, in, s + 1, data.length);
+      ops.add(new Op(OP_MUX, in, outputs(out), s, false, comp, state));
+    }
+
+    public void addRegister(int[] data, int clock, int clear, int enable,
+        int[] out, boolean falling, long value,
+        CompiledComponent.RegisterWriter writer) {
+      if (out == null) {
+        out = new int[data.length];
+        Arrays.fill(out, -1);
+      }
+      Reg r = new Reg();
+      r.data = data.clone();
+      r.out = outputs(out);
+      r.clock = clock;
+      r.clear = clear;
+      r.enable = enable;
+      r.falling = falling;
+      r.value = value;
+      r.writer = writer;
+      r.comp = comp;
+      r.state = state;
+      regList.add(r);
+    }
+  }
+
+  // Resolves subcircuit pins, checks that every net read has a single
+  // driver, and levelizes the combinational operations.
+  private void link() throws CompileException {
+    netIndex = new int[numNets];
+    int n = 0;
+    for (int i = 0; i < numNets; i++)
+      if (find(i) == i)
+        netIndex[i] = n++;
+    for (int i = 0; i < numNets; i++)
+      netIndex[i] = netIndex[find(i)];
+    for (Op op : ops) {
+      remap(op.in);
+      remap(op.out);
+    }
+    for (Reg r : regList) {
+      remap(r.data);
+      remap(r.out);
+      r.clock = netIndex[r.clock];
+      r.clear = netIndex[r.clear];
+      r.enable = netIndex[r.enable];
+    }
+    for (ClockSource c : clockList)
+      c.net = netIndex[c.net];
+    for (int[] f : fixed)
+      f[0] = netIndex[f[0]];
+
+    // find the driver of each net
+    int[] driver = new int[n];
+    Arrays.fill(driver, NONE);
+    driver[ZERO] = driver[ONE] = SOURCE;
+    values = new int[n];
+    values[ONE] = 1;
+    for (int[] f : fixed) {
+      if (driver[f[0]] != NONE)
+        throw new CompileException(S.get("compiledConflictError"));
+      driver[f[0]] = SOURCE;
+      values[f[0]] = f[1];
+    }
+    for (ClockSource c : clockList) {
+      if (driver[c.net] != NONE)
+        throw new CompileException(S.get("compiledConflictError"));
+      driver[c.net] = CLOCK;
+    }
+    for (Reg r : regList) {
+      for (int q : r.out) {
+        if (driver[q] != NONE)
+          throw new CompileException(S.get("compiledConflictError"));
+        driver[q] = REGISTER;
+      }
+    }
+    for (int i = 0; i < ops.size(); i++) {
+      for (int q : ops.get(i).out) {
+        if (driver[q] != NONE)
+          throw new CompileException(S.get("compiledConflictError"));
+        driver[q] = i;
+      }
+    }
+    driven = new boolean[n];
+    for (int i = 0; i < n; i++)
+      driven[i] = driver[i] != NONE;
+
+    // check the inputs of each register and operation
+    for (Reg r : regList) {
+      for (int d : r.data)
+        checkInput(driver[d], r.comp, r.state);
+      checkInput(driver[r.enable], r.comp, r.state);
+      if (driver[r.clock] != CLOCK && r.clock != ZERO)
+        throw error("compiledClockError", r.comp, r.state);
+      if (driver[r.clear] != SOURCE)
+        throw error("compiledClearError", r.comp, r.state);
+    }
+    int[] pending = new int[ops.size()]; // inputs driven by unsorted ops
+    ArrayList<ArrayList<Integer>> readers = new ArrayList<>();
+    for (int i = 0; i < n; i++)
+      readers.add(null);
+    for (int i = 0; i < ops.size(); i++) {
+      Op op = ops.get(i);
+      for (int x : op.in) {
+        checkInput(driver[x], op.comp, op.state);
+        if (driver[x] >= 0) {
+          pending[i]++;
+          if (readers.get(x) == null)
+            readers.set(x, new ArrayList<>());
+          readers.get(x).add(i);
+        }
+      }
+    }
+
+    // levelize, emitting each operation once all its inputs are computed
+    int[] order = new int[ops.size()];
+    int head = 0, tail = 0;
+    for (int i = 0; i < ops.size(); i++)
+      if (pending[i] == 0)
+        order[tail++] = i;
+    while (head < tail) {
+      Op op = ops.get(order[head++]);
+      for (int q : op.out) {
+        ArrayList<Integer> rd = readers.get(q);
+        if (rd == null)
+          continue;
+        for (int j : rd)
+          if (--pending[j] == 0)
+            order[tail++] = j;
+      }
+    }
+    if (tail < ops.size())
+      throw new CompileException(S.get("compiledCircularError"));
+    int size = 0;
+    for (Op op : ops)
+      size += 4 + op.in.length + op.out.length;
+    code = new int[size];
+    int pc = 0;
+    for (int i : order)
+      pc = emit(ops.get(i), pc);
+    code = Arrays.copyOf(code, pc);
+
+    regs = regList.toArray(new Reg[regList.size()]);
+    clocks = clockList.toArray(new ClockSource[clockList.size()]);
+    ops = null;
+    regList = null;
+    clockList = null;
+    fixed = null;
+
+    // starting state
+    setClocks();
+    for (Reg r : regs) {
+      r.last = values[r.clock];
+      writeRegister(r);
+    }
+    evaluate();
+  }
+
+  // Only registers may be clocked, since the timing of anything else reading
+  // a clock would depend on gate delays.
+  private static void checkInput(int driver, Component comp,
+      CircuitState state) throws CompileException {
+    if (driver == NONE)
+      throw error("compiledUndrivenError", comp, state);
+    if (driver == CLOCK)
+      throw error("compiledClockUseError", comp, state);
+  }
+
+  private void remap(int[] nets) {
+    for (int i = 0; i < nets.length; i++)
+      nets[i] = netIndex[nets[i]];
+  }
+
+  private int emit(Op op, int pc) {
+    int[] c = code;
+    c[pc++] = op.kind;
+    if (op.kind == OP_ADD) {
+      int w = op.out.length - 1;
+      c[pc++] = w;
+      c[pc++] = op.in[2 * w];
+      c[pc++] = op.out[w];
+      System.arraycopy(op.out, 0, c, pc, w);
+      System.arraycopy(op.in, 0, c, pc + w, 2 * w);
+      return pc + 3 * w;
+    } else if (op.kind == OP_MUX) {
+      int w = op.out.length, s = op.param;
+      c[pc++] = w;
+      c[pc++] = s;
+      c[pc++] = op.in[s];
+      System.arraycopy(op.out, 0, c, pc, w);
+      pc += w;
+      System.arraycopy(op.in, 0, c, pc, s);
+      pc += s;
+      System.arraycopy(op.in, s + 1, c, pc, w << s);
+      return pc + (w << s);
+    } else {
+      c[pc++] = op.out[0];
+      c[pc++] = op.invert ? 1 : 0;
+      c[pc++] = op.in.length;
+      for (int i = 0; i < op.in.length; i++)
+        c[pc++] = (op.in[i] << 1) | ((op.param >>> i) & 1);
+      return pc;
+    }
+  }
+
+  private void evaluate() {
+    final int[] v = values;
+    final int[] c = code;
+    int pc = 0;
+    while (pc < c.length) {
+      switch (c[pc]) {
+      case CompiledComponent.AND: {
+        int end = pc + 4 + c[pc + 3], r = 1;
+        for (int i = pc + 4; i < end; i++)
+          r &= v[c[i] >>> 1] ^ (c[i] & 1);
+        v[c[pc + 1]] = r ^ c[pc + 2];
+        pc = end;
+        break; }
+      case CompiledComponent.OR: {
+        int end = pc + 4 + c[pc + 3], r = 0;
+        for (int i = pc + 4; i < end; i++)
+          r |= v[c[i] >>> 1] ^ (c[i] & 1);
+        v[c[pc + 1]] = r ^ c[pc + 2];
+        pc = end;
+        break; }
+      case CompiledComponent.XOR_ODD: {
+        int end = pc + 4 + c[pc + 3], r = 0;
+        for (int i = pc + 4; i < end; i++)
+          r ^= v[c[i] >>> 1] ^ (c[i] & 1);
+        v[c[pc + 1]] = r ^ c[pc + 2];
+        pc = end;
+        break; }
+      case CompiledComponent.XOR_ONE: {
+        int end = pc + 4 + c[pc + 3], count = 0;
+        for (int i = pc + 4; i < end; i++)
+          count += v[c[i] >>> 1] ^ (c[i] & 1);
+        v[c[pc + 1]] = (count == 1 ? 1 : 0) ^ c[pc + 2];
+        pc = end;
+        break; }
+      case OP_ADD: {
+        int w = c[pc + 1], carry = v[c[pc + 2]];
+        int out = pc + 4, a = out + w, b = a + w;
+        for (int i = 0; i < w; i++) {
+          int x = v[c[a + i]], y = v[c[b + i]];
+          v[c[out + i]] = x ^ y ^ carry;
+          carry = (x & y) | (carry & (x ^ y));
+        }
+        v[c[pc + 3]] = carry;
+        pc = b + w;
+        break; }
+      case OP_MUX: {
+        int w = c[pc + 1], s = c[pc + 2];
+        int out = pc + 4, sel = out + w, data = sel + s;
+        if (v[c[pc + 3]] == 0) {
+          for (int i = 0; i < w; i++)
+            v[c[out + i]] = 0;
+        } else {
+          int k = 0;
+          for (int i = 0; i < s; i++)
+            k |= v[c[sel + i]] << i;
+          int src = data + k * w;
+          for (int i = 0; i < w; i++)
+            v[c[out + i]] = v[c[src + i]];
+        }
+        pc = data + (w << s);
+        break; }
+      default:
+        throw new IllegalStateException("bad opcode " + c[pc]);
+      }
+    }
+  }
+
+  private void setClocks() {
+    for (ClockSource c : clocks)
+      values[c.net] = ((ticks + c.phase) % c.cycle) < c.low ? 0 : 1;
+  }
+
+  private void writeRegister(Reg r) {
+    long x = r.value;
+    for (int i = 0; i < r.out.length; i++)
+      values[r.out[i]] = (int)(x >>> i) & 1;
+  }
+
+  // Advances one half clock cycle, like Propagator.toggleClocks() followed by
+  // Propagator.propagate().
+  public void tick() {
+    final int[] v = values;
+    ticks++;
+    setClocks();
+    for (Reg r : regs) {
+      int clk = v[r.clock];
+      boolean edge = r.falling ? (r.last == 1 && clk == 0)
+          : (r.last == 0 && clk == 1);
+      r.last = clk;
+      if (v[r.clear] != 0) {
+        r.value = 0;
+      } else if (edge && v[r.enable] != 0) {
+        long x = 0;
+        for (int i = 0; i < r.data.length; i++)
+          x |= (long)v[r.data[i]] << i;
+        r.value = x;
+      }
+    }
+    for (Reg r : regs)
+      writeRegister(r);
+    evaluate();
+  }
+
+  public int getTickCount() {
+    return ticks;
+  }
+
+  // Returns the value at a port of a component in the root circuit.
+  public Value getPortValue(Component comp, int index) {
+    int[][] nets = portNets.get(comp);
+    if (nets == null) {
+      nets = new int[comp.getEnds().size()][];
+      portNets.put(comp, nets);
+    }
+    if (nets[index] == null) {
+      try {
+        int[] raw = getPortNets(root, comp, index);
+        if (raw == null)
+          raw = new int[0];
+        nets[index] = new int[raw.length];
+        for (int i = 0; i < raw.length; i++)
+          nets[index][i] = raw[i] < netIndex.length ? netIndex[raw[i]] : -1;
+      } catch (CompileException e) {
+        nets[index] = new int[0];
+      }
+    }
+    BitWidth width = comp.getEnd(index).getWidth();
+    int[] bits = nets[index];
+    if (bits.length != width.getWidth())
+      return Value.createUnknown(width);
+    long x = 0;
+    for (int i = 0; i < bits.length; i++) {
+      if (bits[i] < 0 || !driven[bits[i]])
+        return Value.createUnknown(width);
+      x |= (long)values[bits[i]] << i;
+    }
+    return Value.createKnown(width, x);
+  }
+
+  // Stores the compiled circuit's state back into the CircuitState hierarchy
+  // and propagates it, so the circuit can be displayed, logged, or simulated
+  // further by the event-driven Propagator.
+  public void sync() {
+    for (Reg r : regs)
+      r.writer.write(r.value, r.last == 1 ? Value.TRUE : Value.FALSE);
+    Propagator prop = root.getPropagator();
+    prop.setTickCount(ticks);
+    for (CircuitState state : states)
+      state.markAllComponentsDirty();
+    prop.propagate();
+  }
+}
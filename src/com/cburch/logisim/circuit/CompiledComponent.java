@@ -0,0 +1,102 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.data.Value;
+
+public interface CompiledComponent {
+  public static final int AND = 0;
+  public static final int OR = 1;
+  public static final int XOR_ODD = 2; // true if an odd number of inputs are true
+  public static final int XOR_ONE = 3; // true if exactly one input is true
+
+  /**
+   * Adds the operations computing this component's outputs to a compiled
+   * netlist (see CompiledCircuit). Each bit of each port is identified by a
+   * net number, and the operations are evaluated over 0/1 values only, so
+   * they need only be correct when all inputs are 0 or 1.
+   *
+   * If the component, in its current configuration, cannot be expressed with
+   * the operations available, it throws <code>NotCompilableException</code>.
+   * Other <code>CompileException</code>s, such as those from getPort(), are
+   * passed on as they are.
+   */
+  public void compile(Context ctx) throws CompiledCircuit.CompileException;
+
+  public static class NotCompilableException
+      extends CompiledCircuit.CompileException {
+    private static final long serialVersionUID = 1L;
+
+    public NotCompilableException() {
+      super(null);
+    }
+  }
+
+  public interface Context {
+    public CircuitState getCircuitState();
+
+    // Returns the nets for each bit of the given port, or null if nothing
+    // else is connected to the port.
+    public int[] getPort(int index) throws CompiledCircuit.CompileException;
+
+    // Net that is always 0 or always 1, for unconnected inputs.
+    public int getConstant(boolean value);
+
+    public void addConstant(int out, boolean value);
+
+    // Combines the inputs, each inverted first if its bit is set in negated,
+    // using AND, OR, XOR_ODD, or XOR_ONE, and inverts the result if invert is
+    // true. With a single input this is a buffer or a NOT gate.
+    public void addGate(int type, int[] inputs, int negated, boolean invert,
+        int out);
+
+    // out = a + b + carryIn, with carryOut getting the carry from the top bit.
+    public void addAdder(int[] a, int[] b, int carryIn, int[] out,
+        int carryOut);
+
+    // out = data[select] if enable is 1, or 0 otherwise. The data inputs are
+    // listed one after another, each as wide as out.
+    public void addMux(int[] data, int[] select, int enable, int[] out);
+
+    // An edge-triggered register loading data into out on a rising (or
+    // falling) edge of clock when enable is 1, and holding 0 while clear is
+    // 1. The clock must come straight from a Clock component, and clear from
+    // a constant or input pin. The writer is called to store the register's
+    // final value back into the circuit state.
+    public void addRegister(int[] data, int clock, int clear, int enable,
+        int[] out, boolean falling, long value, RegisterWriter writer);
+  }
+
+  public interface RegisterWriter {
+    public void write(long value, Value clock);
+  }
+
+}
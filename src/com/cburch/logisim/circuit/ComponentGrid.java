@@ -0,0 +1,145 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Bounds;
+
+// ComponentGrid is a spatial index of components, so that drawing and
+// hit-testing only need to look at the components near some region rather
+// than all of them. The plane is divided into square cells, and each
+// component is listed in every cell its bounds overlap. The bounds recorded
+// when a component is indexed are kept, so it can be found and moved when its
+// bounds change, see update(). Queries return every component listed in the
+// cells overlapping the region, which can include a few components outside
+// the region itself, so callers still check the bounds they care about.
+// Components can be re-indexed by the simulator thread (e.g. when a Probe
+// changes size), so all methods are synchronized.
+class ComponentGrid<T extends Component> {
+
+  private static final int CELL_SHIFT = 7; // 128 x 128 pixel cells
+
+  private HashMap<Long, ArrayList<T>> cells = new HashMap<>();
+  private HashMap<T, Bounds> indexed = new HashMap<>();
+
+  private static long cellKey(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+  }
+
+  synchronized void add(T comp) {
+    if (indexed.containsKey(comp))
+      return;
+    Bounds b = comp.getBounds();
+    indexed.put(comp, b);
+    int cx0 = b.getX() >> CELL_SHIFT, cx1 = (b.getX() + b.getWidth()) >> CELL_SHIFT;
+    int cy0 = b.getY() >> CELL_SHIFT, cy1 = (b.getY() + b.getHeight()) >> CELL_SHIFT;
+    for (int cx = cx0; cx <= cx1; cx++) {
+      for (int cy = cy0; cy <= cy1; cy++) {
+        long key = cellKey(cx, cy);
+        ArrayList<T> cell = cells.get(key);
+        if (cell == null) {
+          cell = new ArrayList<>(4);
+          cells.put(key, cell);
+        }
+        cell.add(comp);
+      }
+    }
+  }
+
+  synchronized void remove(T comp) {
+    Bounds b = indexed.remove(comp);
+    if (b == null)
+      return;
+    int cx0 = b.getX() >> CELL_SHIFT, cx1 = (b.getX() + b.getWidth()) >> CELL_SHIFT;
+    int cy0 = b.getY() >> CELL_SHIFT, cy1 = (b.getY() + b.getHeight()) >> CELL_SHIFT;
+    for (int cx = cx0; cx <= cx1; cx++) {
+      for (int cy = cy0; cy <= cy1; cy++) {
+        long key = cellKey(cx, cy);
+        ArrayList<T> cell = cells.get(key);
+        if (cell == null)
+          continue;
+        cell.remove(comp);
+        if (cell.isEmpty())
+          cells.remove(key);
+      }
+    }
+  }
+
+  // Moves comp to the right cells if its bounds changed since it was indexed.
+  synchronized void update(T comp) {
+    Bounds b = indexed.get(comp);
+    if (b == null || b.equals(comp.getBounds()))
+      return;
+    remove(comp);
+    add(comp);
+  }
+
+  synchronized void clear() {
+    cells.clear();
+    indexed.clear();
+  }
+
+  // Returns the components in the cells overlapping bds, in no particular order.
+  synchronized Collection<T> query(Bounds bds) {
+    int cx0 = bds.getX() >> CELL_SHIFT, cx1 = (bds.getX() + bds.getWidth()) >> CELL_SHIFT;
+    int cy0 = bds.getY() >> CELL_SHIFT, cy1 = (bds.getY() + bds.getHeight()) >> CELL_SHIFT;
+    if (cx0 == cx1 && cy0 == cy1) {
+      ArrayList<T> cell = cells.get(cellKey(cx0, cy0));
+      return cell == null ? new ArrayList<T>() : new ArrayList<T>(cell);
+    }
+    HashSet<T> ret = new HashSet<>();
+    long n = (long) (cx1 - cx0 + 1) * (cy1 - cy0 + 1);
+    if (n > cells.size()) {
+      // region is mostly empty cells, so look at the occupied ones instead
+      for (Map.Entry<Long, ArrayList<T>> e : cells.entrySet()) {
+        long key = e.getKey();
+        int cx = (int) (key >> 32), cy = (int) key;
+        if (cx0 <= cx && cx <= cx1 && cy0 <= cy && cy <= cy1)
+          ret.addAll(e.getValue());
+      }
+    } else {
+      for (int cx = cx0; cx <= cx1; cx++) {
+        for (int cy = cy0; cy <= cy1; cy++) {
+          ArrayList<T> cell = cells.get(cellKey(cx, cy));
+          if (cell != null)
+            ret.addAll(cell);
+        }
+      }
+    }
+    return ret;
+  }
+}
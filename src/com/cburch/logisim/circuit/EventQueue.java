@@ -0,0 +1,63 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+// EventQueue is the minimal priority queue API needed by Propagator. Objects in
+// the queue must be subclasses of SplayQueue.Node, and are ordered by their
+// (unique) long keys. Several implementations are available, with different
+// performance characteristics, selectable by Options.ATTR_SIM_QUEUE:
+// - LinkedQueue: a sorted doubly-linked list, searched from the tail. This is
+//   very fast when new events almost always go at (or near) the end of the
+//   queue, as is the case when most component delays are equal, but it
+//   degrades to linear time per insertion otherwise.
+// - SplayQueue: a splay tree, with good amortized performance for any mix of
+//   delays, but somewhat higher constant factors.
+// - HeapQueue: a binary heap, with logarithmic worst-case performance.
+// - WheelQueue: a timing wheel (calendar queue) with one bucket per time step,
+//   which is constant time per operation when delays are small integers.
+public interface EventQueue<T extends SplayQueue.Node> {
+
+  // add(t) inserts a new node into the queue.
+  public void add(T t);
+
+  public int size();
+
+  public boolean isEmpty();
+
+  public void clear();
+
+  // peek() returns the smallest node, or null if the queue is empty.
+  public T peek();
+
+  // remove() removes the smallest node, or null if the queue is empty.
+  public T remove();
+
+}
@@ -0,0 +1,111 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.Arrays;
+
+// A simple binary heap implementation, using keys of type long, and values
+// that extend type SplayQueue.Node. This supports (approximately) a subset of
+// the java.util.PriorityQueue API, but only enough to support Propagator.
+// Unlike java.util.PriorityQueue, it compares the keys directly rather than
+// going through Comparable.compareTo().
+public class HeapQueue<T extends SplayQueue.Node> implements EventQueue<T> {
+
+  private SplayQueue.Node[] heap = new SplayQueue.Node[64]; // only ever holds Ts
+  private int size;
+
+  // add(t) inserts a new node into the queue.
+  public void add(T t) {
+    if (size == heap.length)
+      heap = Arrays.copyOf(heap, 2 * size);
+    // sift up from the new leaf
+    long k = t.key;
+    int i = size++;
+    while (i > 0) {
+      int p = (i - 1) >>> 1;
+      SplayQueue.Node parent = heap[p];
+      if (k >= parent.key)
+        break;
+      heap[i] = parent;
+      i = p;
+    }
+    heap[i] = t;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    Arrays.fill(heap, 0, size, null);
+    size = 0;
+  }
+
+  // peek() returns the smallest node, or null if the queue is empty.
+  @SuppressWarnings("unchecked")
+  public T peek() {
+    return (T)heap[0];
+  }
+
+  // remove() removes the smallest node, or null if the queue is empty.
+  @SuppressWarnings("unchecked")
+  public T remove() {
+    if (size == 0)
+      return null;
+    T ret = (T)heap[0];
+    SplayQueue.Node last = heap[--size];
+    heap[size] = null;
+    if (size > 0) {
+      // sift down from the root
+      long k = last.key;
+      int i = 0;
+      int half = size >>> 1;
+      while (i < half) {
+        int c = 2 * i + 1;
+        SplayQueue.Node child = heap[c];
+        int r = c + 1;
+        if (r < size && heap[r].key < child.key)
+          child = heap[c = r];
+        if (k <= child.key)
+          break;
+        heap[i] = child;
+        i = c;
+      }
+      heap[i] = last;
+    }
+    return ret;
+  }
+
+}
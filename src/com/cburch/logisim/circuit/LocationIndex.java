@@ -0,0 +1,118 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+
+import com.cburch.logisim.data.Location;
+
+// LocationIndex assigns a dense index, 0 to size()-1, to each of a set of
+// locations, so per-state data for those locations can be kept in a plain
+// array. CircuitWires builds one for each connectivity map, covering the
+// component locations within the circuit, and every CircuitState simulating
+// that circuit uses it to size and index its array of wire values. Most
+// locations are on the 10-pixel grid and close together, so lookups normally
+// go through a grid covering the bounding box of the locations. Off-grid
+// locations, or circuits too sparse for the grid to be worthwhile, use a map.
+class LocationIndex {
+
+  // The grid is used only if it is no more than this many times larger than
+  // the number of locations (or smaller than MIN_GRID_CELLS).
+  private static final int MAX_GRID_SPARSITY = 16;
+  private static final int MIN_GRID_CELLS = 1 << 16;
+
+  static final LocationIndex EMPTY = new LocationIndex(Collections.<Location>emptyList());
+
+  private final int size;
+  private final int x0, y0, width, height; // grid bounds, in grid units
+  private final int[] grid; // index+1 for each grid cell, or 0 if not indexed
+  private final HashMap<Location, Integer> others = new HashMap<>();
+
+  LocationIndex(Collection<Location> locations) {
+    int xmin = Integer.MAX_VALUE, ymin = Integer.MAX_VALUE;
+    int xmax = Integer.MIN_VALUE, ymax = Integer.MIN_VALUE;
+    int ongrid = 0;
+    for (Location p : locations) {
+      if (!onGrid(p))
+        continue;
+      ongrid++;
+      xmin = Math.min(xmin, p.x / 10);
+      ymin = Math.min(ymin, p.y / 10);
+      xmax = Math.max(xmax, p.x / 10);
+      ymax = Math.max(ymax, p.y / 10);
+    }
+    long cells = ongrid == 0 ? 0 : (long)(xmax - xmin + 1) * (ymax - ymin + 1);
+    if (ongrid > 0 && cells <= Math.max(MIN_GRID_CELLS, (long)MAX_GRID_SPARSITY * ongrid)) {
+      x0 = xmin;
+      y0 = ymin;
+      width = xmax - xmin + 1;
+      height = ymax - ymin + 1;
+      grid = new int[(int)cells];
+    } else {
+      x0 = y0 = width = height = 0;
+      grid = null;
+    }
+    int n = 0;
+    for (Location p : locations) {
+      if (grid != null && onGrid(p)) {
+        int i = (p.y / 10 - y0) * width + (p.x / 10 - x0);
+        if (grid[i] == 0)
+          grid[i] = ++n;
+      } else if (!others.containsKey(p)) {
+        others.put(p, n++);
+      }
+    }
+    size = n;
+  }
+
+  private static boolean onGrid(Location p) {
+    return p.x >= 0 && p.y >= 0 && p.x % 10 == 0 && p.y % 10 == 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  // get(p) returns the index for p, or -1 if p is not indexed.
+  int get(Location p) {
+    if (grid != null && onGrid(p)) {
+      int x = p.x / 10 - x0;
+      int y = p.y / 10 - y0;
+      if (x < 0 || y < 0 || x >= width || y >= height)
+        return -1;
+      return grid[y * width + x] - 1;
+    }
+    Integer i = others.get(p);
+    return i == null ? -1 : i;
+  }
+}
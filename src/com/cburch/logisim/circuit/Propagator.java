@@ -30,7 +30,7 @@
 
 package com.cburch.logisim.circuit;
 
-//import java.util.PriorityQueue;
+import java.util.ArrayList;
 import java.util.Random;
 import java.lang.ref.WeakReference;
 
@@ -41,6 +41,8 @@ import com.cburch.logisim.data.AttributeListener;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.file.Options;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.hdl.VhdlSimulator;
 
 public class Propagator {
   // static class ComponentPoint {
@@ -85,6 +87,10 @@ public class Propagator {
         p.updateRandomness();
       else if (e.getAttribute().equals(Options.ATTR_SIM_LIMIT))
         p.updateSimLimit();
+      else if (e.getAttribute().equals(Options.ATTR_SIM_QUEUE))
+        p.updateQueueType();
+      else if (e.getAttribute().equals(Options.ATTR_SIM_PARALLEL))
+        p.updateParallel();
     }
   }
 
@@ -120,10 +126,22 @@ public class Propagator {
       // catch (Exception e) { e.printStackTrace(); }
     }
 
+    // For recycled events, see Propagator.obtainEvent().
+    private void reinit(int time, int serialNumber,
+        CircuitState state, Location loc, Component cause, Value val) {
+      this.key = ((long)time << 32) | (serialNumber & 0xFFFFFFFFL);
+      this.time = time;
+      this.serialNumber = serialNumber;
+      this.state = state;
+      this.cause = cause;
+      this.loc = loc;
+      this.val = val;
+    }
+
     public SimulatorEvent cloneFor(CircuitState newState) {
       Propagator newProp = newState.getPropagator();
       int dtime = newProp.clock - state.getPropagator().clock;
-      SimulatorEvent ret = new SimulatorEvent(time + dtime,
+      SimulatorEvent ret = newProp.obtainEvent(time + dtime,
           newProp.eventSerialNumber++, newState, loc, cause, val);
       return ret;
     }
@@ -198,16 +216,19 @@ public class Propagator {
    */
   private volatile int simRandomShift;
 
-  // The simulator event queue can be implemented by a PriorityQueue,
-  // SplayQueue, or LinkedQueue. LinkedQueue seems fastest in practice, though
-  // it has poor worst-case performance. SplayQueue should have good
-  // expected-case performance, but it seems a bit slower than LinkedQueue.
-  // Priority queue seems slightly worse than the others. It is trivial to
-  // switch between the implementations, just re-comment these next lines.
-
-  // private PriorityQueue<SimulatorEvent> toProcess = new PriorityQueue<>();
-  // private SplayQueue<SimulatorEvent> toProcess = new SplayQueue<>();
-  private LinkedQueue<SimulatorEvent> toProcess = new LinkedQueue<>();
+  // The simulator event queue can be implemented by a LinkedQueue, SplayQueue,
+  // HeapQueue, or WheelQueue, selected by Options.ATTR_SIM_QUEUE. LinkedQueue
+  // is fast when nearly all delays are equal, but it has very poor worst-case
+  // performance when delays vary. SplayQueue and HeapQueue have good
+  // expected-case performance for any delays, but are a bit slower. WheelQueue
+  // is as fast as LinkedQueue in the best case and much faster than all the
+  // others otherwise (see EventQueueBenchmark), so it is the default. The option
+  // can change at any time (on the AWT thread), so the change is recorded in
+  // pendingQueueType and applied by the simulator thread before it next
+  // touches the queue.
+  private EventQueue<SimulatorEvent> toProcess = new WheelQueue<>();
+  private Object queueType = Options.SIM_QUEUE_WHEEL;
+  private volatile Object pendingQueueType = null;
 
   private int clock = 0;
   private boolean isOscillating = false;
@@ -217,7 +238,28 @@ public class Propagator {
   private Random noiseSource = new Random();
   private int noiseCount = 0;
 
+  // Optional parallel propagation, selected by Options.ATTR_SIM_PARALLEL. The
+  // dirty points and components of sibling subcircuit states are processed
+  // concurrently on the common ForkJoinPool, each state's own work being
+  // done by one thread at a time. See processDirty().
+  private volatile boolean parallel = false;
+  private boolean deferring = false;
+  private final ThreadLocal<ArrayList<SimulatorEvent>> deferredEvents = new ThreadLocal<>();
+
   private int eventSerialNumber = 0;
+  // Total events processed so far. SimulationMetrics takes per-step counts
+  // from it, and EventQueueBenchmark (in testing/) compares queues with it.
+  long eventCount = 0;
+  private volatile SimulationMetrics metrics; // null unless collecting
+
+  // Events are recycled once CircuitState.processDirtyPoints() has consumed
+  // them, to avoid allocating a new event for every value emitted by every
+  // component. The pool is a linked list through SplayQueue.Node.right, and it
+  // is only touched by the simulator thread, like toProcess.
+  private static final int MAX_POOLED_EVENTS = 1 << 16;
+  private SimulatorEvent eventPool;
+  private int eventPoolSize;
+  private long eventsAllocated, eventsRecycled;
 
   static int lastId = 0;
   int id = lastId++;
@@ -234,6 +276,37 @@ public class Propagator {
     root.getProject().getOptions().getAttributeSet().addAttributeWeakListener(this, l);
     updateRandomness();
     updateSimLimit();
+    updateQueueType();
+    applyQueueType();
+    updateParallel();
+  }
+
+  static <T extends SplayQueue.Node> EventQueue<T> createQueue(Object type) {
+    if (type == Options.SIM_QUEUE_SPLAY)
+      return new SplayQueue<>();
+    else if (type == Options.SIM_QUEUE_HEAP)
+      return new HeapQueue<>();
+    else if (type == Options.SIM_QUEUE_LINKED)
+      return new LinkedQueue<>();
+    else
+      return new WheelQueue<>();
+  }
+
+  private void applyQueueType() { // Safe to call from sim thread
+    Object type = pendingQueueType;
+    if (type == null)
+      return;
+    pendingQueueType = null;
+    if (type == queueType)
+      return;
+    EventQueue<SimulatorEvent> q = createQueue(type);
+    while (!toProcess.isEmpty()) {
+      SimulatorEvent ev = toProcess.remove();
+      ev.left = ev.right = null;
+      q.add(ev);
+    }
+    toProcess = q;
+    queueType = type;
   }
 
   // // precondition: state.valuesLock held
@@ -283,6 +356,13 @@ public class Propagator {
     return halfClockCycles;
   }
 
+  // Catches the clocks up with a CompiledCircuit that was run in place of
+  // this propagator.
+  void setTickCount(int ticks) {
+    halfClockCycles = ticks;
+    root.toggleClocks(ticks);
+  }
+
   public boolean isOscillating() {
     return isOscillating;
   }
@@ -292,8 +372,11 @@ public class Propagator {
   }
 
   void locationTouched(CircuitState state, Location loc) {
-    if (oscAdding)
-      oscPoints.add(state, loc);
+    if (oscAdding) {
+      synchronized (oscPoints) { // may be called from several threads, see processDirty()
+        oscPoints.add(state, loc);
+      }
+    }
   }
 
   public boolean propagate() {
@@ -301,9 +384,9 @@ public class Propagator {
   }
 
   public boolean propagate(Simulator.ProgressListener propListener, Simulator.Event propEvent) { // Safe to call from sim thread
+    applyQueueType();
     oscPoints.clear();
-    root.processDirtyPoints();
-    root.processDirtyComponents();
+    processDirty();
 
     int oscThreshold = simLimit;
     int logThreshold = 3 * oscThreshold / 4;
@@ -321,15 +404,29 @@ public class Propagator {
       } else {
         isOscillating = true;
         oscAdding = false;
+        if (metrics != null)
+          metrics.recordPropagate(iters);
         return true;
       }
     }
     isOscillating = false;
     oscAdding = false;
     oscPoints.clear();
+    if (metrics != null)
+      metrics.recordPropagate(iters);
     return iters > 0;
   }
 
+  public SimulationMetrics getMetrics() {
+    return metrics;
+  }
+
+  // Attaches metrics to be updated as this propagator runs, or detaches them
+  // when given null.
+  public void setMetrics(SimulationMetrics value) {
+    metrics = value;
+  }
+
   // // precondition: state.valuesLock held
   // private static DrivenValue removeCause(CircuitState state, DrivenValue head, 
   //     Location loc, Component cause) {
@@ -370,6 +467,24 @@ public class Propagator {
     if (delay <= 0) {
       delay = 1;
     }
+    if (deferring) {
+      ArrayList<SimulatorEvent> events = deferredEvents.get();
+      if (events != null) {
+        events.add(new SimulatorEvent(delay, 0, state, pt, cause, val));
+        return;
+      }
+    }
+    delay = noisyDelay(delay, cause);
+    toProcess.add(obtainEvent(clock + delay, eventSerialNumber, state, pt, cause, val));
+
+    // DEBUG: System.out.printf("%s: set %s in %s to %s by %s after %s\n",
+    // DEBUG:     clock, pt, state, val, cause, delay);
+    // DEBUG: Thread.dumpStack();
+
+    eventSerialNumber++;
+  }
+
+  private int noisyDelay(int delay, Component cause) {
     int randomShift = simRandomShift;
     if (randomShift > 0) { // random noise is turned on
       // multiply the delay by 32 so that the random noise
@@ -384,19 +499,54 @@ public class Propagator {
         }
       }
     }
-    toProcess.add(new SimulatorEvent(clock + delay, eventSerialNumber, state, pt, cause, val));
+    return delay;
+  }
 
-    // DEBUG: System.out.printf("%s: set %s in %s to %s by %s after %s\n",
-    // DEBUG:     clock, pt, state, val, cause, delay);
-    // DEBUG: Thread.dumpStack();
+  private SimulatorEvent obtainEvent(int time, int serialNumber,
+      CircuitState state, Location loc, Component cause, Value val) {
+    SimulatorEvent ev = eventPool;
+    if (ev == null) {
+      eventsAllocated++;
+      return new SimulatorEvent(time, serialNumber, state, loc, cause, val);
+    }
+    eventPool = (SimulatorEvent)ev.right;
+    eventPoolSize--;
+    eventsRecycled++;
+    ev.right = null;
+    ev.reinit(time, serialNumber, state, loc, cause, val);
+    return ev;
+  }
 
-    eventSerialNumber++;
+  // Called by CircuitState.processDirtyPoints() once the events are consumed.
+  void recycleEvents(ArrayList<SimulatorEvent> events) { // Safe to call from sim thread
+    int n = events.size();
+    for (int i = 0; i < n && eventPoolSize < MAX_POOLED_EVENTS; i++) {
+      SimulatorEvent ev = events.get(i);
+      ev.state = null; // don't keep these alive while pooled
+      ev.cause = null;
+      ev.loc = null;
+      ev.val = null;
+      ev.left = null;
+      ev.right = eventPool;
+      eventPool = ev;
+      eventPoolSize++;
+    }
+  }
+
+  // Number of SimulatorEvent objects allocated so far.
+  public long getEventsAllocated() {
+    return eventsAllocated;
+  }
+
+  // Number of SimulatorEvent allocations avoided by reusing pooled events.
+  public long getEventsRecycled() {
+    return eventsRecycled;
   }
 
   boolean step(PropagationPoints changedPoints) { // Safe to call from sim thread
+    applyQueueType();
     oscPoints.clear();
-    root.processDirtyPoints();
-    root.processDirtyComponents();
+    processDirty();
 
     if (toProcess.isEmpty())
       return false;
@@ -421,6 +571,11 @@ public class Propagator {
 
     // update clock
     clock = toProcess.peek().time;
+    SimulationMetrics m = metrics;
+    // Events only leave the queue in the loop below, and only join it in
+    // processDirty(), so its largest size is either now or after that.
+    int queueSize = m == null ? 0 : toProcess.size();
+    long eventsBefore = eventCount;
     // visitedNonce++; // used to ensure a fresh circuitState.visited set.
 
     // propagate all values for this clock tick
@@ -429,6 +584,7 @@ public class Propagator {
       if (ev == null || ev.time != clock)
         break;
       toProcess.remove();
+      eventCount++;
       CircuitState state = ev.state;
 
       // // if it's already handled for this clock tick, continue
@@ -462,17 +618,78 @@ public class Propagator {
     }
 
 		// DEBUG: System.out.println("-- process dirty points --");
-		// DEBUG: root.dump("for %s before processDirtyPoints", this);
-    root.processDirtyPoints();
-		// DEBUG: root.dump("for %s after processDirtyPoints, before processDirtyComponents", this);
-		// DEBUG: System.out.println("-- process dirty components --");
-    root.processDirtyComponents();
-		// DEBUG: root.dump("for %s after processDirtyComponents", this);
+		// DEBUG: root.dump("for %s before processDirty", this);
+    processDirty();
+    if (m != null)
+      m.recordStep((int)(eventCount - eventsBefore),
+          Math.max(queueSize, toProcess.size()));
+		// DEBUG: root.dump("for %s after processDirty", this);
 		// DEBUG: System.out.println("-- Done --");
   }
 
+  private void processDirty() { // Safe to call from sim thread
+    if (!parallel) {
+      root.processDirtyPoints();
+      root.processDirtyComponents();
+      flushVhdlSimulator();
+      return;
+    }
+    root.processDirtyPointsInParallel();
+    root.recycleDirtyPoints();
+    deferring = true;
+    try {
+      root.processDirtyComponentsInParallel();
+    } finally {
+      deferring = false;
+      root.scheduleDeferredEvents();
+    }
+    flushVhdlSimulator();
+  }
+
+  // VHDL entities only queue their inputs when propagated, so that all of
+  // those propagated in this step are simulated in a single exchange with the
+  // binder. Their outputs are scheduled here, with the same delay as before.
+  // The exchanges happen on this thread, taking the states in serial order,
+  // so the results are the same whether or not the step ran in parallel.
+  private void flushVhdlSimulator() {
+    Project proj = root.getProject();
+    if (proj == null)
+      return;
+    VhdlSimulator vhdl = proj.getVhdlSimulator();
+    if (vhdl == null || !vhdl.hasQueued())
+      return;
+    ArrayList<CircuitState> states = new ArrayList<>();
+    root.addStatesInOrder(states);
+    vhdl.flush(states);
+  }
+
+  // While the states are processed in parallel, setValue() can't touch the
+  // queue or the serial numbers. Instead each new event is appended, with its
+  // delay in place of a time, to the list of the state being processed by the
+  // current thread (see CircuitState.processDirtyComponentsInParallel()).
+  // Those lists are then scheduled in the order the serial engine would have
+  // produced the events, so the serial numbers and random noise are the same.
+  ArrayList<SimulatorEvent> setDeferredEvents(ArrayList<SimulatorEvent> events) {
+    ArrayList<SimulatorEvent> prev = deferredEvents.get();
+    deferredEvents.set(events);
+    return prev;
+  }
+
+  void scheduleDeferredEvents(ArrayList<SimulatorEvent> events) { // Safe to call from sim thread
+    int n = events.size();
+    for (int i = 0; i < n; i++) {
+      SimulatorEvent ev = events.get(i);
+      int delay = noisyDelay(ev.time, ev.cause);
+      ev.reinit(clock + delay, eventSerialNumber++, ev.state, ev.loc, ev.cause, ev.val);
+      toProcess.add(ev);
+    }
+    eventsAllocated += n;
+  }
+
   public boolean toggleClocks() {
     halfClockCycles++;
+    if (metrics != null)
+      metrics.recordHalfCycle();
     return root.toggleClocks(halfClockCycles);
   }
 
@@ -498,4 +715,14 @@ public class Propagator {
     simLimit = val;
   }
 
+  private void updateParallel() {
+    Options opts = root.getProject().getOptions();
+    parallel = opts.getAttributeSet().getValue(Options.ATTR_SIM_PARALLEL);
+  }
+
+  private void updateQueueType() {
+    Options opts = root.getProject().getOptions();
+    pendingQueueType = opts.getAttributeSet().getValue(Options.ATTR_SIM_QUEUE);
+  }
+
 }
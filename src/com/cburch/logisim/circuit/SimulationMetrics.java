@@ -0,0 +1,272 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.instance.StdAttr;
+
+// SimulationMetrics collects throughput figures for one Propagator, to find
+// out where simulation time goes: how many events are processed, how deep the
+// event queue gets, how many steps each propagate() takes, and how much time
+// is spent propagating wires versus components, broken down by component and
+// by circuit. Collection is off unless a SimulationMetrics is attached with
+// Propagator.setMetrics() (or Simulator.setMetricsEnabled()), since timing
+// every component is not free. The per-component and per-circuit counts may
+// be updated from several threads when Options.ATTR_SIM_PARALLEL is set, so
+// their times are then CPU time summed across threads rather than wall time.
+public class SimulationMetrics {
+
+  public static class ComponentStats {
+    private final Circuit circuit;
+    private final Component comp;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    ComponentStats(Circuit circuit, Component comp) {
+      this.circuit = circuit;
+      this.comp = comp;
+    }
+
+    public Circuit getCircuit() { return circuit; }
+    public Component getComponent() { return comp; }
+    public long getCount() { return count.sum(); }
+    public long getNanos() { return nanos.sum(); }
+
+    public String getDescription() {
+      String desc = comp.getFactory().getName() + " " + comp.getLocation();
+      if (comp.getAttributeSet().containsAttribute(StdAttr.LABEL)) {
+        String label = comp.getAttributeSet().getValue(StdAttr.LABEL);
+        if (label != null && label.length() > 0)
+          desc += " \"" + label + "\"";
+      }
+      return desc;
+    }
+  }
+
+  // A snapshot of the time spent in one circuit, made by getCircuitStats().
+  public static class CircuitStats {
+    private final Circuit circuit;
+    private final long wireCount, wireNanos;
+    private final long componentCount, componentNanos;
+
+    CircuitStats(Circuit circuit, long wireCount, long wireNanos,
+        long componentCount, long componentNanos) {
+      this.circuit = circuit;
+      this.wireCount = wireCount;
+      this.wireNanos = wireNanos;
+      this.componentCount = componentCount;
+      this.componentNanos = componentNanos;
+    }
+
+    public Circuit getCircuit() { return circuit; }
+    public long getWireCount() { return wireCount; }
+    public long getWireNanos() { return wireNanos; }
+    public long getComponentCount() { return componentCount; }
+    public long getComponentNanos() { return componentNanos; }
+    public long getTotalNanos() { return wireNanos + componentNanos; }
+  }
+
+  private static class WireStats {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+  }
+
+  // updated only by the simulator thread
+  private final long startNanos = System.nanoTime();
+  private long events, steps, halfCycles;
+  private long propagateCalls, propagateIterations, maxIterations;
+  private int queueHighWater;
+
+  private final ConcurrentHashMap<Component, ComponentStats> components = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<Circuit, WireStats> wires = new ConcurrentHashMap<>();
+
+  // queueSize is the largest the queue got during the step.
+  void recordStep(int eventsProcessed, int queueSize) {
+    steps++;
+    events += eventsProcessed;
+    if (queueSize > queueHighWater)
+      queueHighWater = queueSize;
+  }
+
+  void recordPropagate(int iterations) {
+    propagateCalls++;
+    propagateIterations += iterations;
+    if (iterations > maxIterations)
+      maxIterations = iterations;
+  }
+
+  // Called by Propagator.toggleClocks(), so once per half clock cycle.
+  void recordHalfCycle() {
+    halfCycles++;
+  }
+
+  void recordComponent(Circuit circuit, Component comp, long nanos) {
+    ComponentStats s = components.get(comp);
+    if (s == null)
+      s = components.computeIfAbsent(comp, c -> new ComponentStats(circuit, c));
+    s.count.increment();
+    s.nanos.add(nanos);
+  }
+
+  void recordWires(Circuit circuit, long nanos) {
+    WireStats s = wires.get(circuit);
+    if (s == null)
+      s = wires.computeIfAbsent(circuit, c -> new WireStats());
+    s.count.increment();
+    s.nanos.add(nanos);
+  }
+
+  public long getElapsedNanos() { return System.nanoTime() - startNanos; }
+  public long getEventCount() { return events; }
+  public long getStepCount() { return steps; }
+  public long getHalfCycleCount() { return halfCycles; }
+  public long getPropagateCount() { return propagateCalls; }
+  public long getPropagateIterations() { return propagateIterations; }
+  public long getMaxPropagateIterations() { return maxIterations; }
+  public int getQueueHighWater() { return queueHighWater; }
+
+  public long getWireNanos() {
+    long sum = 0;
+    for (WireStats s : wires.values())
+      sum += s.nanos.sum();
+    return sum;
+  }
+
+  public long getComponentNanos() {
+    long sum = 0;
+    for (ComponentStats s : components.values())
+      sum += s.getNanos();
+    return sum;
+  }
+
+  // Returns the n components with the highest count, or time when byTime.
+  public List<ComponentStats> getTopComponents(int n, boolean byTime) {
+    ArrayList<ComponentStats> all = new ArrayList<>(components.values());
+    Comparator<ComponentStats> cmp = byTime
+        ? Comparator.comparingLong(ComponentStats::getNanos)
+        : Comparator.comparingLong(ComponentStats::getCount);
+    all.sort(cmp.reversed());
+    return all.subList(0, Math.min(n, all.size()));
+  }
+
+  // Returns the time spent in each circuit, wires and components together,
+  // busiest first. A subcircuit's own contents are counted against it, not
+  // against the circuits that contain it.
+  public List<CircuitStats> getCircuitStats() {
+    HashMap<Circuit, long[]> counts = new HashMap<>();
+    for (ComponentStats c : components.values()) {
+      long[] n = counts.computeIfAbsent(c.circuit, k -> new long[2]);
+      n[0] += c.getCount();
+      n[1] += c.getNanos();
+    }
+    ArrayList<CircuitStats> ret = new ArrayList<>();
+    for (Circuit circuit : wires.keySet())
+      counts.computeIfAbsent(circuit, k -> new long[2]);
+    for (Circuit circuit : counts.keySet()) {
+      long[] n = counts.get(circuit);
+      WireStats w = wires.get(circuit);
+      ret.add(w == null
+          ? new CircuitStats(circuit, 0, 0, n[0], n[1])
+          : new CircuitStats(circuit, w.count.sum(), w.nanos.sum(), n[0], n[1]));
+    }
+    ret.sort(Comparator.comparingLong(CircuitStats::getTotalNanos).reversed());
+    return ret;
+  }
+
+  public String toJson(int topN) {
+    StringBuilder b = new StringBuilder();
+    double ms = 1e-6;
+    b.append("{\n");
+    b.append(String.format(Locale.ROOT, "  \"elapsedMs\": %.3f,\n", getElapsedNanos() * ms));
+    b.append("  \"halfCycles\": ").append(halfCycles).append(",\n");
+    b.append("  \"events\": ").append(events).append(",\n");
+    b.append("  \"steps\": ").append(steps).append(",\n");
+    b.append("  \"queueHighWater\": ").append(queueHighWater).append(",\n");
+    b.append("  \"propagateCalls\": ").append(propagateCalls).append(",\n");
+    b.append("  \"propagateIterations\": ").append(propagateIterations).append(",\n");
+    b.append("  \"maxPropagateIterations\": ").append(maxIterations).append(",\n");
+    b.append(String.format(Locale.ROOT, "  \"iterationsPerHalfCycle\": %.3f,\n",
+          halfCycles == 0 ? 0.0 : (double) propagateIterations / halfCycles));
+    b.append(String.format(Locale.ROOT, "  \"wireMs\": %.3f,\n", getWireNanos() * ms));
+    b.append(String.format(Locale.ROOT, "  \"componentMs\": %.3f,\n", getComponentNanos() * ms));
+    b.append("  \"circuits\": [");
+    String sep = "\n";
+    for (CircuitStats s : getCircuitStats()) {
+      b.append(sep).append("    {\"name\": ").append(quote(s.circuit.getName()));
+      b.append(", \"wirePropagates\": ").append(s.getWireCount());
+      b.append(String.format(Locale.ROOT, ", \"wireMs\": %.3f", s.getWireNanos() * ms));
+      b.append(", \"componentPropagates\": ").append(s.getComponentCount());
+      b.append(String.format(Locale.ROOT, ", \"componentMs\": %.3f}", s.getComponentNanos() * ms));
+      sep = ",\n";
+    }
+    b.append("\n  ],\n");
+    appendComponents(b, "topByCount", getTopComponents(topN, false));
+    b.append(",\n");
+    appendComponents(b, "topByTime", getTopComponents(topN, true));
+    b.append("\n}\n");
+    return b.toString();
+  }
+
+  private static void appendComponents(StringBuilder b, String key, List<ComponentStats> list) {
+    b.append("  ").append(quote(key)).append(": [");
+    String sep = "\n";
+    for (ComponentStats s : list) {
+      b.append(sep).append("    {\"circuit\": ").append(quote(s.circuit.getName()));
+      b.append(", \"component\": ").append(quote(s.getDescription()));
+      b.append(", \"propagates\": ").append(s.getCount());
+      b.append(String.format(Locale.ROOT, ", \"ms\": %.3f}", s.getNanos() * 1e-6));
+      sep = ",\n";
+    }
+    b.append("\n  ]");
+  }
+
+  private static String quote(String s) {
+    StringBuilder b = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\')
+        b.append('\\').append(c);
+      else if (c < 0x20)
+        b.append(String.format("\\u%04x", (int) c));
+      else
+        b.append(c);
+    }
+    return b.append('"').toString();
+  }
+}
@@ -621,6 +621,23 @@ public class Simulator {
     return prop != null && prop.isOscillating();
   }
 
+  // Returns the metrics being collected for the current circuit state, or
+  // null if collection is off, see SimulationMetrics.
+  public SimulationMetrics getMetrics() {
+    Propagator prop = simThread.getPropagator();
+    return prop == null ? null : prop.getMetrics();
+  }
+
+  public void setMetricsEnabled(boolean enable) {
+    Propagator prop = simThread.getPropagator();
+    if (prop == null)
+      return;
+    if (!enable)
+      prop.setMetrics(null);
+    else if (prop.getMetrics() == null)
+      prop.setMetrics(new SimulationMetrics());
+  }
+
   public CircuitState getCircuitState() {
     Propagator prop = simThread.getPropagator();
     return prop == null ? null : prop.getRootState();
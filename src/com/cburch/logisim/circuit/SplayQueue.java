@@ -36,11 +36,13 @@ package com.cburch.logisim.circuit;
 // A simple splay tree implementation, using keys of type long, and values that
 // extend type SplayQueue.Node. This supports (approximately) a subset of the
 // java.util.PriorityQueue API, but only enough to support Propagator.
-public class SplayQueue<T extends SplayQueue.Node> {
+public class SplayQueue<T extends SplayQueue.Node> implements EventQueue<T> {
 
-  // Objects in the queue must be subclasses of Node.
+  // Objects in the queue must be subclasses of Node. The key must not change
+  // while the node is in a queue, but a node can be given a new key (and
+  // reused) once it has been removed, as Propagator does with its events.
   public static class Node {
-    final long key;
+    long key;
     Node left, right;
     public Node(long key) { this.key = key; }
   }
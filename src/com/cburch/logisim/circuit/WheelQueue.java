@@ -0,0 +1,188 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+// A timing wheel (or calendar queue) implementation, using keys of type long,
+// and values that extend type SplayQueue.Node. This supports (approximately) a
+// subset of the java.util.PriorityQueue API, but only enough to support
+// Propagator.
+//
+// The upper 32 bits of each key are taken to be a simulation time, as they are
+// for Propagator.SimulatorEvent. The wheel has one slot per time step, each
+// holding a list of nodes sorted by key. Nodes whose times fall within the
+// window [base, base + SLOTS) live in the wheel, all others live in an overflow
+// heap. As the window moves forward, overflow nodes move into the wheel. When
+// delays are small integers, as they are for nearly all components, every
+// operation takes (amortized) constant time.
+public class WheelQueue<T extends SplayQueue.Node> implements EventQueue<T> {
+
+  private static final int SLOTS = 1024; // must be a power of two
+  private static final int MASK = SLOTS - 1;
+
+  private SplayQueue.Node[] head = new SplayQueue.Node[SLOTS]; // only ever holds Ts
+  private SplayQueue.Node[] tail = new SplayQueue.Node[SLOTS];
+  private HeapQueue<T> overflow = new HeapQueue<>();
+  private int base; // start of window, time of most recently removed node
+  private int cursor; // no nodes in wheel with time in [base, cursor)
+  private int inWheel; // number of nodes in wheel, not counting overflow
+  private int size;
+
+  private static int timeOf(SplayQueue.Node t) {
+    return (int)(t.key >>> 32);
+  }
+
+  // add(t) inserts a new node into the queue.
+  public void add(T t) {
+    int time = timeOf(t);
+    if (size == 0) {
+      base = cursor = time;
+    } else if (time - base < 0) {
+      // Rare: node precedes the window, so we shift the window back.
+      rebase(time);
+    }
+    size++;
+    if (time - base >= SLOTS) {
+      overflow.add(t);
+      return;
+    }
+    insert(t, time);
+  }
+
+  private void insert(SplayQueue.Node t, int time) {
+    inWheel++;
+    if (time - cursor < 0)
+      cursor = time;
+    int s = time & MASK;
+    SplayQueue.Node p = tail[s];
+    t.left = null;
+    if (p == null) {
+      t.right = null;
+      head[s] = tail[s] = t;
+    } else if (p.key < t.key) {
+      // common case: events for the same time arrive in order
+      t.right = null;
+      p.right = t;
+      tail[s] = t;
+    } else {
+      SplayQueue.Node prev = null;
+      p = head[s];
+      while (p.key < t.key) {
+        prev = p;
+        p = p.right;
+      }
+      t.right = p;
+      if (prev == null)
+        head[s] = t;
+      else
+        prev.right = t;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void rebase(int time) {
+    // move everything into the overflow, then refill the wheel
+    for (int i = 0; i < SLOTS && inWheel > 0; i++) {
+      for (SplayQueue.Node p = head[i]; p != null; ) {
+        SplayQueue.Node next = p.right;
+        overflow.add((T)p);
+        inWheel--;
+        p = next;
+      }
+      head[i] = tail[i] = null;
+    }
+    base = cursor = time;
+    migrate();
+  }
+
+  // migrate() moves nodes from the overflow into the wheel, once they fall
+  // within the window.
+  private void migrate() {
+    while (!overflow.isEmpty()) {
+      T t = overflow.peek();
+      int time = timeOf(t);
+      if (time - base >= SLOTS)
+        break;
+      overflow.remove();
+      insert(t, time);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    for (int i = 0; i < SLOTS; i++)
+      head[i] = tail[i] = null;
+    overflow.clear();
+    inWheel = 0;
+    size = 0;
+  }
+
+  // peek() returns the smallest node, or null if the queue is empty.
+  @SuppressWarnings("unchecked")
+  public T peek() {
+    if (inWheel == 0)
+      return overflow.peek();
+    // All nodes in the wheel are within the window, so this terminates.
+    while (head[cursor & MASK] == null)
+      cursor++;
+    return (T)head[cursor & MASK];
+  }
+
+  // remove() removes the smallest node, or null if the queue is empty.
+  public T remove() {
+    if (size == 0)
+      return null;
+    size--;
+    T t;
+    if (inWheel == 0) {
+      t = overflow.remove();
+      base = cursor = timeOf(t);
+    } else {
+      t = peek();
+      int s = cursor & MASK;
+      head[s] = t.right;
+      if (t.right == null)
+        tail[s] = null;
+      t.right = null;
+      inWheel--;
+      base = cursor;
+    }
+    migrate();
+    return t;
+  }
+
+}
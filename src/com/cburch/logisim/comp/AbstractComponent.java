@@ -38,6 +38,8 @@ import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Location;
 
 public abstract class AbstractComponent implements Component {
+  private int dataIndex = -1;
+
   protected AbstractComponent() {
   }
 
@@ -65,6 +67,16 @@ public abstract class AbstractComponent implements Component {
 
   public abstract Bounds getBounds();
 
+  @Override
+  public int getDataIndex() {
+    return dataIndex;
+  }
+
+  @Override
+  public void setDataIndex(int index) {
+    dataIndex = index;
+  }
+
   public Bounds getBounds(Graphics g) {
     return getBounds();
   }
@@ -125,6 +125,14 @@ public interface Component extends Location.At {
 
   default public void fireInvalidated() { }
 
+  // A small index, unique among the components currently in the circuit, that
+  // CircuitState uses to find the component's data in an array rather than
+  // by hashing. Circuit assigns it when the component is added, and -1 means
+  // none was ever assigned. Wires never have data, so they have no index.
+  default public int getDataIndex() { return -1; }
+
+  default public void setDataIndex(int index) { }
+
   default public String getDisplayName() {
     String label = getAttributeSet().getValue(StdAttr.LABEL);
     Location loc = this instanceof Wire ? null : getLocation();
@@ -36,15 +36,20 @@ import com.cburch.logisim.util.StringGetter;
 public class BitWidth implements Comparable<BitWidth> {
   static class Attribute extends com.cburch.logisim.data.Attribute<BitWidth> {
     private BitWidth[] choices;
+    private int min, max;
 
     public Attribute(String name, StringGetter disp) {
       super(name, disp);
       ensurePrefab();
       choices = prefab;
+      min = 0;
+      max = Value.MAX_WIDTH;
     }
 
     public Attribute(String name, StringGetter disp, int min, int max) {
       super(name, disp);
+      this.min = min;
+      this.max = max;
       choices = new BitWidth[max - min + 1];
       for (int i = 0; i < choices.length; i++) {
         choices[i] = BitWidth.create(min + i);
@@ -67,7 +72,11 @@ public class BitWidth implements Comparable<BitWidth> {
 
     @Override
     public BitWidth parse(String value) {
-      return BitWidth.parse(value);
+      BitWidth ret = BitWidth.parse(value);
+      if (ret.width < min || ret.width > max)
+        throw new NumberFormatException("width " + ret.width
+            + " out of range " + min + ".." + max);
+      return ret;
     }
   }
 
@@ -89,7 +98,7 @@ public class BitWidth implements Comparable<BitWidth> {
 
   private static void ensurePrefab() {
     if (prefab == null) {
-      prefab = new BitWidth[Math.min(32, Value.MAX_WIDTH)];
+      prefab = new BitWidth[Value.MAX_WIDTH];
       prefab[0] = ONE;
       for (int i = 1; i < prefab.length; i++) {
         prefab[i] = new BitWidth(i + 1);
@@ -133,12 +142,21 @@ public class BitWidth implements Comparable<BitWidth> {
   public int getMask() {
     if (width == 0)
       return 0;
-    else if (width == 32)
+    else if (width >= 32)
       return -1;
     else
       return (1 << width) - 1;
   }
 
+  public long getLongMask() {
+    if (width == 0)
+      return 0;
+    else if (width == 64)
+      return -1L;
+    else
+      return (1L << width) - 1;
+  }
+
   public int getWidth() {
     return width;
   }
@@ -32,14 +32,26 @@ package com.cburch.logisim.data;
 import static com.cburch.logisim.data.Strings.S;
 
 import java.awt.Color;
+import java.math.BigInteger;
 import java.util.Arrays;
 
-import com.cburch.logisim.util.Cache;
 import com.cburch.logisim.circuit.CircuitWires.BusConnection;
 
 public final class Value {
 
-  private static Value create(int width, int error, int unknown, int value) {
+  // Values up to MAX_WIDTH bits wide are packed into longs. Bits above the
+  // width are always zero, so values of 32 bits or less hash and compare
+  // exactly as they did when they were packed into ints.
+  private static long mask(int width) {
+    return width >= 64 ? -1L : ~(-1L << width);
+  }
+
+  private static int hash(int width, long error, long unknown, long value) {
+    return 31 * (31 * (31 * width + Long.hashCode(error))
+        + Long.hashCode(unknown)) + Long.hashCode(value);
+  }
+
+  private static Value create(int width, long error, long unknown, long value) {
     if (width == 0) {
       return Value.NIL;
     } else if (width == 1) {
@@ -52,30 +64,30 @@ public final class Value {
       else
         return Value.FALSE;
     } else {
-      int mask = (width == 32 ? -1 : ~(-1 << width));
+      long mask = mask(width);
       error = error & mask;
       unknown = unknown & mask & ~error;
       value = value & mask & ~unknown & ~error;
 
-      int hashCode = 31 * (31 * (31 * width + error) + unknown) + value;
-      Value val = cache.get(hashCode);
-      if (val != null && val.value == value && val.width == width
-            && val.error == error && val.unknown == unknown)
-          return val;
+      int hashCode = hash(width, error, unknown, value);
+      ValueCache c = cache;
+      Value val = c.get(hashCode, width, error, unknown, value);
+      if (val != null)
+        return val;
       Value ret = new Value(width, error, unknown, value);
-      cache.put(hashCode, ret);
+      c.put(hashCode, ret);
       return ret;
     }
   }
 
-  public static Value create_unsafe(int width, int error, int unknown, int value) {
-    int hashCode = 31 * (31 * (31 * width + error) + unknown) + value;
-    Value val = cache.get(hashCode);
-    if (val != null && val.value == value && val.width == width
-        && val.error == error && val.unknown == unknown)
+  public static Value create_unsafe(int width, long error, long unknown, long value) {
+    int hashCode = hash(width, error, unknown, value);
+    ValueCache c = cache;
+    Value val = c.get(hashCode, width, error, unknown, value);
+    if (val != null)
       return val;
     Value ret = new Value(width, error, unknown, value);
-    cache.put(hashCode, ret);
+    c.put(hashCode, ret);
     return ret;
   }
 
@@ -89,11 +101,11 @@ public final class Value {
           + " bits in a value");
 
     int width = values.length;
-    int value = 0;
-    int unknown = 0;
-    int error = 0;
+    long value = 0;
+    long unknown = 0;
+    long error = 0;
     for (int i = 0; i < values.length; i++) {
-      int mask = 1 << i;
+      long mask = 1L << i;
       if (values[i] == TRUE)
         value |= mask;
       else if (values[i] == FALSE) /* do nothing */
@@ -113,7 +125,7 @@ public final class Value {
     return Value.create(bits.getWidth(), -1, 0, 0);
   }
 
-  public static Value createKnown(BitWidth bits, int value) {
+  public static Value createKnown(BitWidth bits, long value) {
     return Value.create(bits.getWidth(), 0, 0, value);
   }
 
@@ -132,28 +144,36 @@ public final class Value {
   public static Value fromLogString(BitWidth width, String t)
       throws Exception {
     int radix = radixOfLogString(width, t);
-    int offset;
+    int w = width.getWidth();
 
-    if (radix == 16 || radix == 8)
-      offset = 2;
-    else if (radix == 10 && t.startsWith("-"))
-      offset = 1;
-    else
-      offset = 0;
+    if (radix == 10) {
+      BigInteger n;
+      try {
+        n = new BigInteger(t);
+      } catch (NumberFormatException e) {
+        throw new Exception("unexpected characters in \"" + t + "\"");
+      }
+      BigInteger lo = BigInteger.ONE.shiftLeft(w - 1).negate();
+      BigInteger hi = BigInteger.ONE.shiftLeft(w);
+      if (n.compareTo(lo) < 0 || n.compareTo(hi) >= 0)
+        throw new Exception("too many bits in \"" + t + "\"");
+      return create(w, 0, 0, n.longValue());
+    }
 
+    int offset = (radix == 16 || radix == 8) ? 2 : 0;
+    int shift = (radix == 16 ? 4 : radix == 8 ? 3 : 1);
     int n = t.length();
 
     if (n <= offset)
       throw new Exception("expected digits");
 
-    int w = width.getWidth();
     long value = 0, unknown = 0;
 
     for (int i = offset; i < n; i++) {
       char c = t.charAt(i);
       int d;
 
-      if (c == 'x' && radix != 10)
+      if (c == 'x')
         d = -1;
       else if ('0' <= c && c <= '9')
         d = c - '0';
@@ -169,39 +189,21 @@ public final class Value {
         throw new Exception("unexpected character '"
             + t.substring(i, i + 1) + "' in \"" + t + "\"");
 
-      value *= radix;
-      unknown *= radix;
-      if ((value >> (radix == 10 ? 33 : w)) != 0 || (unknown >> 36) != 0)
+      if ((value >>> (64 - shift)) != 0)
         throw new Exception("too many bits in \"" + t + "\"");
 
-      if (radix != 10) {
-        if (d == -1)
-          unknown |= (radix - 1);
-        else
-          value |= d;
-      } else {
-        if (d == -1)
-          unknown += (radix - 1);
-        else
-          value += d;
-      }
-
+      value <<= shift;
+      unknown <<= shift;
+      if (d == -1)
+        unknown |= (radix - 1);
+      else
+        value |= d;
     }
-    if (radix == 10 && t.charAt(0) == '-')
-      value = -value;
 
-    if (w == 32) {
-      if (((value & 0x7FFFFFFF) >> (w - 1)) != 0)
-        throw new Exception("too many bits in \"" + t + "\"");
-    } else {
-      if ((value >> w) != 0)
-        throw new Exception("too many bits in \"" + t + "\"");
-    }
+    if ((value & ~mask(w)) != 0)
+      throw new Exception("too many bits in \"" + t + "\"");
 
-    unknown &= ((1L << w) - 1);
-    int v = (int) (value & 0x00000000ffffffff);
-    int u = (int) (unknown & 0x00000000ffffffff);
-    return create(w, 0, u, v);
+    return create(w, 0, unknown, value);
   }
 
   /**
@@ -237,7 +239,19 @@ public final class Value {
     }
   }
 
-  private static final Cache<Value> cache = new Cache<>();
+  private static volatile ValueCache cache =
+      new ValueCache(ValueCache.DEFAULT_LOG_SIZE);
+
+  public static ValueCache getCache() {
+    return cache;
+  }
+
+  // Replaces the interning table with an empty one of 2^logSize slots.
+  // Existing values stay valid, they just won't be found in the new table.
+  public static void setCacheSize(int logSize) {
+    if (cache.getCapacity() != (1 << logSize))
+      cache = new ValueCache(logSize);
+  }
 
   // these are not cached, instead they are checked explicitly in create()
   public static final Value FALSE = new Value(1, 0, 0, 0);
@@ -246,7 +260,7 @@ public final class Value {
   public static final Value ERROR = new Value(1, 1, 0, 0);
   public static final Value NIL = new Value(0, 0, 0, 0);
 
-  public static final int MAX_WIDTH = 32;
+  public static final int MAX_WIDTH = 64;
   public static final Color NIL_COLOR = Color.GRAY;
   public static final Color FALSE_COLOR = new Color(0, 100, 0);
   public static final Color TRUE_COLOR = new Color(0, 210, 0);
@@ -262,11 +276,11 @@ public final class Value {
 
 
   private final int width;
-  private final int error;
-  private final int unknown;
-  private final int value;
+  private final long error;
+  private final long unknown;
+  private final long value;
 
-  private Value(int width, int error, int unknown, int value) {
+  private Value(int width, long error, long unknown, long value) {
     // To ensure that the one-bit values are unique, this should be called
     // only for the one-bit values and by the private create method
     this.width = width;
@@ -275,6 +289,11 @@ public final class Value {
     this.value = value;
   }
 
+  boolean matches(int width, long error, long unknown, long value) {
+    return this.value == value && this.width == width
+        && this.error == error && this.unknown == unknown;
+  }
+
   public Value and(Value other) {
     if (other == null)
       return this;
@@ -285,9 +304,9 @@ public final class Value {
         return TRUE;
       return ERROR;
     } else {
-      int false0 = ~this.value & ~this.error & ~this.unknown;
-      int false1 = ~other.value & ~other.error & ~other.unknown;
-      int falses = false0 | false1;
+      long false0 = ~this.value & ~this.error & ~this.unknown;
+      long false1 = ~other.value & ~other.error & ~other.unknown;
+      long falses = false0 | false1;
       return Value.create(Math.max(this.width, other.width), (this.error
             | other.error | this.unknown | other.unknown)
           & ~falses, 0, this.value & other.value);
@@ -306,8 +325,8 @@ public final class Value {
     } else if (this.width != other.width) {
       return Value.create(other.width, -1, 0, 0);
     } else {
-      int enabled = (this.value | this.unknown) & ~this.error;
-      int disabled = ~this.value & ~this.unknown & ~this.error;
+      long enabled = (this.value | this.unknown) & ~this.error;
+      long disabled = ~this.value & ~this.unknown & ~this.error;
       return Value.create(other.width,
           (this.error | (other.error & ~disabled)),
           (disabled | other.unknown),
@@ -331,16 +350,16 @@ public final class Value {
         return this;
       return ERROR;
     } else if (this.width == other.width) {
-      int disagree = (this.value ^ other.value) & ~(this.unknown | other.unknown);
+      long disagree = (this.value ^ other.value) & ~(this.unknown | other.unknown);
       return Value.create(
           width,
           this.error | other.error | disagree,
           this.unknown & other.unknown,
           this.value | other.value);
     } else {
-      int thisknown = ~this.unknown & (this.width == 32 ? -1 : ~(-1 << this.width));
-      int otherknown = ~other.unknown & (other.width == 32 ? -1 : ~(-1 << other.width));
-      int disagree = (this.value ^ other.value) & thisknown & otherknown;
+      long thisknown = ~this.unknown & mask(this.width);
+      long otherknown = ~other.unknown & mask(other.width);
+      long disagree = (this.value ^ other.value) & thisknown & otherknown;
       return Value.create(
           Math.max(this.width, other.width),
           this.error | other.error | disagree,
@@ -355,16 +374,16 @@ public final class Value {
     for (int i = 0; i < n; i++) {
       Value v = vals[i].drivenValue;
       if (v != null && v != NIL) {
-        int error = v.error;
-        int unknown = v.unknown;
-        int value = v.value;
+        long error = v.error;
+        long unknown = v.unknown;
+        long value = v.value;
         for (int j = i+1; j < n; j++) {
           v = vals[j].drivenValue;
           if (v == null || v == NIL)
             continue;
           if (v.width != width)
             throw new IllegalArgumentException("INTERNAL ERROR: mismatched widths in Value.combine");
-          int disagree = (value ^ v.value) & ~(unknown | v.unknown);
+          long disagree = (value ^ v.value) & ~(unknown | v.unknown);
           error |= v.error | disagree;
           unknown &= v.unknown;
           value |= v.value;
@@ -400,7 +419,7 @@ public final class Value {
   public Value extendWidth(int newWidth, Value others) {
     if (width == newWidth)
       return this;
-    int maskInverse = (width == 32 ? 0 : (-1 << width));
+    long maskInverse = ~mask(width);
     if (others == Value.ERROR) {
       return Value.create(newWidth, error | maskInverse, unknown, value);
     } else if (others == Value.FALSE) {
@@ -415,7 +434,7 @@ public final class Value {
   public Value get(int which) {
     if (which < 0 || which >= width)
       return ERROR;
-    int mask = 1 << which;
+    long mask = 1L << which;
     if ((error & mask) != 0)
       return ERROR;
     else if ((unknown & mask) != 0)
@@ -461,11 +480,7 @@ public final class Value {
 
   @Override
   public int hashCode() {
-    int ret = width;
-    ret = 31 * ret + error;
-    ret = 31 * ret + unknown;
-    ret = 31 * ret + value;
-    return ret;
+    return hash(width, error, unknown, value);
   }
 
   public boolean isErrorValue() {
@@ -477,11 +492,7 @@ public final class Value {
   }
 
   public boolean isUnknown() {
-    if (width == 32) {
-      return error == 0 && unknown == -1;
-    } else {
-      return error == 0 && unknown == ((1 << width) - 1);
-    }
+    return error == 0 && unknown == mask(width);
   }
 
   public Value not() {
@@ -507,9 +518,9 @@ public final class Value {
         return FALSE;
       return ERROR;
     } else {
-      int true0 = this.value & ~this.error & ~this.unknown;
-      int true1 = other.value & ~other.error & ~other.unknown;
-      int trues = true0 | true1;
+      long true0 = this.value & ~this.error & ~this.unknown;
+      long true1 = other.value & ~other.error & ~other.unknown;
+      long trues = true0 | true1;
       return Value.create(Math.max(this.width, other.width), (this.error
             | other.error | this.unknown | other.unknown)
           & ~trues, 0, this.value | other.value);
@@ -524,7 +535,7 @@ public final class Value {
     } else if (width == 1) {
       return val;
     } else {
-      int mask = ~(1 << which);
+      long mask = ~(1L << which);
       return Value.create(this.width, (this.error & mask)
           | (val.error << which), (this.unknown & mask)
           | (val.unknown << which), (this.value & mask)
@@ -562,14 +573,14 @@ public final class Value {
     if (!isFullyDefined())
       return S.get("valueUnknown");
 
-    int value = toIntValue();
+    long value = toLongValue();
     if (signed) {
-      if (width < 32 && (value >> (width - 1)) != 0) {
-        value |= (-1) << width;
+      if (width < 64 && (value >> (width - 1)) != 0) {
+        value |= (-1L) << width;
       }
       return "" + value;
     } else {
-      return "" + ((long) value & 0xFFFFFFFFL);
+      return Long.toUnsignedString(value);
     }
   }
 
@@ -612,7 +623,9 @@ public final class Value {
         return S.get("valueError");
       if (!isFullyDefined())
         return S.get("valueUnknown");
-      return Integer.toString(toIntValue(), radix);
+      if (width <= 32)
+        return Integer.toString(toIntValue(), radix);
+      return Long.toString(toLongValue(), radix);
     }
   }
 
@@ -649,6 +662,14 @@ public final class Value {
   }
 
   public int toIntValue() {
+    if (error != 0)
+      return -1;
+    if (unknown != 0)
+      return -1;
+    return (int) value;
+  }
+
+  public long toLongValue() {
     if (error != 0)
       return -1;
     if (unknown != 0)
@@ -746,9 +767,9 @@ public final class Value {
     // wherever this is unknown, use other's value for that bit instead
     if (width <= 0 || unknown == 0 || other.width <= 0)
       return this;
-    int e = error | (unknown & other.error);
-    int v = value | (unknown & other.value);
-    int u = unknown & (other.unknown | (other.width == 32 ? 0 : (-1 << other.width)));
+    long e = error | (unknown & other.error);
+    long v = value | (unknown & other.value);
+    long u = unknown & (other.unknown | ~mask(other.width));
     return Value.create(width, e, u, v);
   }
 
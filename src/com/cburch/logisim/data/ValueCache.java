@@ -0,0 +1,108 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.data;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Interning table for multi-bit values, used by Value.create(). It is open
+ * addressed: a value may live in any of PROBES consecutive slots starting at
+ * its hash, and only when all of those are taken is one of them evicted. Slots
+ * are read and written atomically without locking, so several simulator
+ * threads can create values at once. Two threads racing to insert the same
+ * value may both succeed, which just leaves a harmless duplicate.
+ */
+public final class ValueCache {
+  public static final int DEFAULT_LOG_SIZE = 16;
+  public static final int MIN_LOG_SIZE = 8;
+  public static final int MAX_LOG_SIZE = 24;
+
+  private static final int PROBES = 4;
+
+  private final AtomicReferenceArray<Value> slots;
+  private final int shift;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  ValueCache(int logSize) {
+    logSize = Math.max(MIN_LOG_SIZE, Math.min(MAX_LOG_SIZE, logSize));
+    slots = new AtomicReferenceArray<>((1 << logSize) + PROBES - 1);
+    shift = 32 - logSize;
+  }
+
+  private int index(int hashCode) {
+    return (hashCode * 0x9E3779B9) >>> shift;
+  }
+
+  Value get(int hashCode, int width, long error, long unknown, long value) {
+    int i = index(hashCode);
+    for (int p = 0; p < PROBES; p++) {
+      Value v = slots.get(i + p);
+      if (v == null)
+        break;
+      if (v.matches(width, error, unknown, value)) {
+        hits.increment();
+        return v;
+      }
+    }
+    misses.increment();
+    return null;
+  }
+
+  void put(int hashCode, Value val) {
+    int i = index(hashCode);
+    for (int p = 0; p < PROBES; p++) {
+      if (slots.get(i + p) == null && slots.compareAndSet(i + p, null, val))
+        return;
+    }
+    slots.set(i + ThreadLocalRandom.current().nextInt(PROBES), val);
+    evictions.increment();
+  }
+
+  public int getCapacity() {
+    return slots.length() - (PROBES - 1);
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+}
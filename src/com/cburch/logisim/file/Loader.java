@@ -76,7 +76,8 @@ public class Loader implements LibraryLoader {
 
   public static final FileFilter LOGISIM_FILTER =
       makeFileFilter(S.getter("logisimFileFilter"),
-          LogisimFile.LOGISIM_EXTENSION, LogisimFile.LOGISIM_EXTENSION_ALT);
+          LogisimFile.LOGISIM_EXTENSION, LogisimFile.LOGISIM_EXTENSION_ALT,
+          LogisimFile.LOGISIM_EXTENSION_ARCHIVE);
 
   public static final FileFilter JAR_FILTER =
       makeFileFilter(S.getter("jarFileFilter"), ".jar");
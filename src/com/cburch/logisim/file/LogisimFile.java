@@ -186,7 +186,14 @@ public class LogisimFile extends Library implements LibraryEventSource {
     }
 
     XmlProjectReader xmlReader = new XmlProjectReader(loader, srcFile);
-    FileWithSimulations ret = xmlReader.parseProjectWithSimulations(inBuffered);
+    FileWithSimulations ret;
+    if (ProjectArchive.isArchive(inBuffered)) {
+      ProjectArchive.Images images = new ProjectArchive.Images();
+      InputStream xml = ProjectArchive.read(inBuffered, images);
+      ret = xmlReader.parseProjectWithSimulations(xml, images);
+    } else {
+      ret = xmlReader.parseProjectWithSimulations(inBuffered);
+    }
     ret.file.loader = loader;
     return ret;
   }
@@ -607,7 +614,10 @@ public class LogisimFile extends Library implements LibraryEventSource {
 
   void write(OutputStream out, File dest, Project proj) throws IOException {
     try {
-      XmlWriter.write(this, proj, out, dest);
+      if (isArchiveName(dest))
+        ProjectArchive.write(this, proj, out, dest);
+      else
+        XmlWriter.write(this, proj, out, dest);
     } catch (TransformerConfigurationException e) {
       Errors.project(dest).show("internal error configuring transformer", e);
     } catch (ParserConfigurationException e) {
@@ -696,10 +706,18 @@ public class LogisimFile extends Library implements LibraryEventSource {
     }
   }
 
+  // Files with the archive extension are saved as a ProjectArchive. Any file
+  // can be opened either way, since the format is detected when loading.
+  static boolean isArchiveName(File file) {
+    return file != null && file.getName().endsWith(LOGISIM_EXTENSION_ARCHIVE);
+  }
+
   private static File determineBackupName(File base) {
     File dir = base.getParentFile();
     String name = base.getName();
-    if (name.endsWith(LOGISIM_EXTENSION)) {
+    if (name.endsWith(LOGISIM_EXTENSION_ARCHIVE)) {
+      name = name.substring(0, name.length() - LOGISIM_EXTENSION_ARCHIVE.length());
+    } else if (name.endsWith(LOGISIM_EXTENSION)) {
       name = name.substring(0, name.length() - LOGISIM_EXTENSION.length());
     } else if (name.endsWith(LOGISIM_EXTENSION_ALT)) {
       name = name.substring(0, name.length() - LOGISIM_EXTENSION_ALT.length());
@@ -715,7 +733,9 @@ public class LogisimFile extends Library implements LibraryEventSource {
 
   public static String toProjectName(File file) {
     String ret = file.getName();
-    if (ret.endsWith(LOGISIM_EXTENSION)) {
+    if (ret.endsWith(LOGISIM_EXTENSION_ARCHIVE)) {
+      return ret.substring(0, ret.length() - LOGISIM_EXTENSION_ARCHIVE.length());
+    } else if (ret.endsWith(LOGISIM_EXTENSION)) {
       return ret.substring(0, ret.length() - LOGISIM_EXTENSION.length());
     } else if (ret.endsWith(LOGISIM_EXTENSION_ALT)) {
       return ret.substring(0, ret.length() - LOGISIM_EXTENSION_ALT.length());
@@ -726,5 +746,6 @@ public class LogisimFile extends Library implements LibraryEventSource {
 
   public static final String LOGISIM_EXTENSION = ".circ";
   public static final String LOGISIM_EXTENSION_ALT = ".circ.xml";
+  public static final String LOGISIM_EXTENSION_ARCHIVE = ".circz";
 
 }
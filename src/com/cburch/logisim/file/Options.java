@@ -32,6 +32,8 @@ package com.cburch.logisim.file;
 import static com.cburch.logisim.file.Strings.S;
 
 import com.cburch.logisim.data.Attribute;
+import com.cburch.logisim.data.AttributeEvent;
+import com.cburch.logisim.data.AttributeListener;
 import com.cburch.logisim.data.AttributeOption;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.AttributeSets;
@@ -43,6 +45,15 @@ public class Options {
   public static final AttributeOption GATE_UNDEFINED_ERROR = new AttributeOption(
       "error", S.getter("gateUndefinedError"));
 
+  public static final AttributeOption SIM_QUEUE_LINKED = new AttributeOption(
+      "linked", S.getter("simQueueLinked"));
+  public static final AttributeOption SIM_QUEUE_SPLAY = new AttributeOption(
+      "splay", S.getter("simQueueSplay"));
+  public static final AttributeOption SIM_QUEUE_HEAP = new AttributeOption(
+      "heap", S.getter("simQueueHeap"));
+  public static final AttributeOption SIM_QUEUE_WHEEL = new AttributeOption(
+      "wheel", S.getter("simQueueWheel"));
+
   public static final Attribute<Integer> ATTR_SIM_LIMIT = Attributes
       .forInteger("simlimit", S.getter("simLimitOption"));
   public static final Attribute<Integer> ATTR_SIM_RAND = Attributes
@@ -51,20 +62,41 @@ public class Options {
       .forOption("gateUndefined", S.getter("gateUndefinedOption"),
           new AttributeOption[] { GATE_UNDEFINED_IGNORE,
             GATE_UNDEFINED_ERROR });
+  public static final Attribute<AttributeOption> ATTR_SIM_QUEUE = Attributes
+      .forOption("simqueue", S.getter("simQueueOption"),
+          new AttributeOption[] { SIM_QUEUE_LINKED, SIM_QUEUE_SPLAY,
+            SIM_QUEUE_HEAP, SIM_QUEUE_WHEEL });
+  public static final Attribute<Boolean> ATTR_SIM_PARALLEL = Attributes
+      .forBoolean("simparallel", S.getter("simParallelOption"));
 
   public static final Integer sim_rand_dflt = Integer.valueOf(32);
 
   private static final Attribute<?>[] ATTRIBUTES = { ATTR_GATE_UNDEFINED,
-    ATTR_SIM_LIMIT, ATTR_SIM_RAND, };
+    ATTR_SIM_LIMIT, ATTR_SIM_RAND, ATTR_SIM_QUEUE, ATTR_SIM_PARALLEL, };
   private static final Object[] DEFAULTS = { GATE_UNDEFINED_IGNORE,
-    Integer.valueOf(1000), Integer.valueOf(0), };
+    Integer.valueOf(1000), Integer.valueOf(0), SIM_QUEUE_WHEEL, Boolean.FALSE, };
+
+  // Components consult ATTR_GATE_UNDEFINED every time they propagate, so the
+  // setting is kept here as a flag, updated whenever the attribute changes.
+  private class MyListener implements AttributeListener {
+    public void attributeListChanged(AttributeEvent e) { }
+
+    public void attributeValueChanged(AttributeEvent e) {
+      if (e.getAttribute() == ATTR_GATE_UNDEFINED)
+        gateUndefinedError = GATE_UNDEFINED_ERROR.equals(e.getValue());
+    }
+  }
 
   private AttributeSet attrs;
   private MouseMappings mmappings;
   private ToolbarData toolbar;
+  private MyListener myListener = new MyListener();
+  private volatile boolean gateUndefinedError;
 
   public Options() {
     attrs = AttributeSets.fixedSet(ATTRIBUTES, DEFAULTS);
+    attrs.addAttributeWeakListener(this, myListener);
+    gateUndefinedError = GATE_UNDEFINED_ERROR.equals(attrs.getValue(ATTR_GATE_UNDEFINED));
     mmappings = new MouseMappings();
     toolbar = new ToolbarData();
   }
@@ -79,6 +111,11 @@ public class Options {
     return attrs;
   }
 
+  // Same as ATTR_GATE_UNDEFINED being GATE_UNDEFINED_ERROR.
+  public boolean isGateUndefinedError() {
+    return gateUndefinedError;
+  }
+
   public MouseMappings getMouseMappings() {
     return mmappings;
   }
@@ -0,0 +1,229 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.file;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+
+import org.w3c.dom.Element;
+
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.memory.MemContents;
+
+/**
+ * A compact binary container for projects, used for files with the
+ * LOGISIM_EXTENSION_ARCHIVE extension. It is a zip file holding the usual xml
+ * project (PROJECT_ENTRY), except that memory contents attributes refer to
+ * separate entries under IMAGE_DIR rather than holding the contents as hex
+ * text. For example:
+ *
+ *   {@code <a name="contents" image="images/0.bin" addr="20" data="32"/>}
+ *
+ * Each image is a raw little-endian dump of the memory, one word per 1 to 4
+ * bytes depending on the data width, with trailing zero words left off.
+ * Opening an archive gives exactly the same project as opening the
+ * equivalent xml file, so saving it again in either format is lossless.
+ */
+class ProjectArchive {
+
+  static final String PROJECT_ENTRY = "project.circ";
+  static final String IMAGE_DIR = "images/";
+
+  static final String IMAGE_ATTR = "image";
+  static final String ADDR_ATTR = "addr";
+  static final String DATA_ATTR = "data";
+
+  private static final int CHUNK_WORDS = 4096;
+
+  // Checks for the zip signature, leaving the stream positioned where it was.
+  static boolean isArchive(BufferedInputStream in) throws IOException {
+    byte[] magic = new byte[4];
+    in.mark(magic.length);
+    int n = 0;
+    while (n < magic.length) {
+      int k = in.read(magic, n, magic.length - n);
+      if (k < 0)
+        break;
+      n += k;
+    }
+    in.reset();
+    return n == magic.length
+        && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4;
+  }
+
+  // Collects memory images while a project is being written, handing out an
+  // entry name for each. The same contents shared by several attributes are
+  // stored only once.
+  static class ImageWriter {
+    private final IdentityHashMap<MemContents, String> names = new IdentityHashMap<>();
+    private final ArrayList<MemContents> images = new ArrayList<>();
+
+    void addImage(Element a, MemContents contents) {
+      String name = names.get(contents);
+      if (name == null) {
+        name = IMAGE_DIR + images.size() + ".bin";
+        names.put(contents, name);
+        images.add(contents);
+      }
+      a.setAttribute(IMAGE_ATTR, name);
+      a.setAttribute(ADDR_ATTR, "" + contents.getLogLength());
+      a.setAttribute(DATA_ATTR, "" + contents.getWidth());
+    }
+  }
+
+  // Memory images read from an archive, keyed by entry name.
+  static class Images {
+    private final HashMap<String, byte[]> entries = new HashMap<>();
+
+    MemContents get(String name, int addrBits, int width) throws IOException {
+      byte[] image = entries.get(name);
+      if (image == null)
+        throw new IOException("missing memory image: " + name);
+      // Same data width limit as Mem.DATA_ATTR and MemContents.
+      if (addrBits < 1 || addrBits > 32 || width < 1 || width > 32)
+        throw new IOException(String.format(
+              "bad dimensions for memory image %s: addr/data %d %d", name, addrBits, width));
+      MemContents contents = MemContents.create(addrBits, width);
+      readImage(contents, image);
+      return contents;
+    }
+  }
+
+  static void write(LogisimFile file, Project proj, OutputStream out, File dest)
+      throws IOException, ParserConfigurationException, TransformerException {
+    ImageWriter images = new ImageWriter();
+    ByteArrayOutputStream xml = new ByteArrayOutputStream();
+    XmlWriter.write(file, proj, xml, dest, images);
+
+    // Images go first, so a reader sees every image before any xml that
+    // refers to it, though this class does not depend on that.
+    ZipOutputStream zip = new ZipOutputStream(out);
+    zip.setLevel(Deflater.BEST_SPEED);
+    byte[] buf = new byte[CHUNK_WORDS * 4];
+    for (int i = 0; i < images.images.size(); i++) {
+      zip.putNextEntry(new ZipEntry(IMAGE_DIR + i + ".bin"));
+      writeImage(images.images.get(i), zip, buf);
+      zip.closeEntry();
+    }
+    zip.putNextEntry(new ZipEntry(PROJECT_ENTRY));
+    xml.writeTo(zip);
+    zip.closeEntry();
+    zip.finish();
+  }
+
+  // Reads the whole archive. The xml is returned as a stream, and the images
+  // are left in images for the xml loader to pick up.
+  static InputStream read(InputStream in, Images images) throws IOException {
+    ZipInputStream zip = new ZipInputStream(in);
+    byte[] xml = null;
+    for (ZipEntry e = zip.getNextEntry(); e != null; e = zip.getNextEntry()) {
+      String name = e.getName();
+      if (name.equals(PROJECT_ENTRY))
+        xml = readEntry(zip);
+      else if (name.startsWith(IMAGE_DIR))
+        images.entries.put(name, readEntry(zip));
+      zip.closeEntry();
+    }
+    if (xml == null)
+      throw new IOException("archive has no " + PROJECT_ENTRY + " entry");
+    return new ByteArrayInputStream(xml);
+  }
+
+  private static byte[] readEntry(ZipInputStream zip) throws IOException {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    byte[] buf = new byte[65536];
+    for (int n = zip.read(buf); n >= 0; n = zip.read(buf))
+      data.write(buf, 0, n);
+    return data.toByteArray();
+  }
+
+  private static int bytesPerWord(MemContents contents) {
+    return (contents.getWidth() + 7) / 8;
+  }
+
+  private static void writeImage(MemContents contents, OutputStream out, byte[] buf)
+      throws IOException {
+    int bytesPerWord = bytesPerWord(contents);
+    long end = contents.getLastOffset() + 1;
+    while (end > 0 && contents.get(end - 1) == 0)
+      end--;
+    int n = 0;
+    for (long addr = 0; addr < end; addr++) {
+      int val = contents.get(addr);
+      for (int b = 0; b < bytesPerWord; b++) {
+        buf[n++] = (byte)val;
+        val >>>= 8;
+      }
+      if (n == buf.length) {
+        out.write(buf, 0, n);
+        n = 0;
+      }
+    }
+    out.write(buf, 0, n);
+  }
+
+  // Loads the image a chunk at a time, each chunk lining up with a page of
+  // the memory. A partial last word is padded with zeros, and anything beyond
+  // the end of the memory is ignored.
+  private static void readImage(MemContents contents, byte[] image) {
+    int bytesPerWord = bytesPerWord(contents);
+    long size = contents.getLastOffset() + 1;
+    long words = Math.min(size, (image.length + bytesPerWord - 1) / bytesPerWord);
+    int[] chunk = new int[(int)Math.min(size, CHUNK_WORDS)];
+    for (long start = 0; start < words; start += chunk.length) {
+      int n = (int)Math.min(chunk.length, words - start);
+      int[] vals = n == chunk.length ? chunk : new int[n];
+      int pos = (int)(start * bytesPerWord);
+      for (int i = 0; i < n; i++) {
+        int val = 0;
+        for (int b = 0; b < bytesPerWord && pos < image.length; b++)
+          val |= (image[pos++] & 0xff) << (8 * b);
+        vals[i] = val;
+      }
+      contents.set(start, vals);
+    }
+  }
+}
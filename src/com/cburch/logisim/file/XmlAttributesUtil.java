@@ -39,10 +39,17 @@ import com.cburch.logisim.Main;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeDefaultProvider;
 import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.std.memory.MemContents;
 
 public class XmlAttributesUtil {
   static void addAttributeSetContent(Document doc, String outFilepath,
       Element elt, AttributeSet attrs, AttributeDefaultProvider source) {
+    addAttributeSetContent(doc, outFilepath, elt, attrs, source, null);
+  }
+
+  static void addAttributeSetContent(Document doc, String outFilepath,
+      Element elt, AttributeSet attrs, AttributeDefaultProvider source,
+      ProjectArchive.ImageWriter images) {
     if (attrs == null)
       return;
     LogisimVersion ver = Main.VERSION;
@@ -58,6 +65,11 @@ public class XmlAttributesUtil {
         if (dflt == null || !dflt.equals(val)) {
           Element a = doc.createElement("a");
           a.setAttribute("name", attr.getName());
+          if (images != null && val instanceof MemContents) {
+            images.addImage(a, (MemContents)val);
+            elt.appendChild(a);
+            continue;
+          }
           String value = attr.toStandardString(val);
           if (value.indexOf("\n") >= 0)
             a.appendChild(doc.createTextNode(value));
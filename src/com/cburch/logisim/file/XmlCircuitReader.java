@@ -36,6 +36,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.w3c.dom.Element;
 
@@ -54,12 +57,15 @@ import com.cburch.logisim.data.Location;
 import com.cburch.logisim.tools.AddTool;
 import com.cburch.logisim.tools.Library;
 import com.cburch.logisim.tools.Tool;
+import com.cburch.logisim.util.Dag;
 
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 public class XmlCircuitReader extends CircuitTransaction {
 
-  static boolean trackercomp_warned = false;
+  // Set by whichever thread first finds a tracker component.
+  static final AtomicBoolean trackercomp_warned = new AtomicBoolean();
 
   /**
    * Get a circuit's component from a read XML file. 
@@ -77,8 +83,8 @@ public class XmlCircuitReader extends CircuitTransaction {
     // Someone (REDS-HEIG?) apparently has files containing this secret
     // value and only shows these components in special "tracker" versions
     // of logisim. 
-    if (!trackercomp_warned && elt.getAttribute("trackercomp") != "") {
-      trackercomp_warned = true;
+    if (elt.getAttribute("trackercomp") != ""
+        && trackercomp_warned.compareAndSet(false, true)) {
       String msg =
           "WARNING: This file contains mysterious \"tracked\" components and may not\n"
           + "work properly in this version of Logisim-Evolution. The file will be opened\n"
@@ -89,7 +95,7 @@ public class XmlCircuitReader extends CircuitTransaction {
       if (Main.headless) {
         System.err.println(msg);
       } else {
-        JOptionPane.showMessageDialog(null, msg);
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null, msg));
       }
     }
 
@@ -288,14 +294,109 @@ public class XmlCircuitReader extends CircuitTransaction {
     return access;
   }
 
+  // Groups the circuits into levels, such that every circuit used as a
+  // subcircuit is in an earlier level than the circuits that use it. Circuits
+  // that (incorrectly) use each other recursively just end up in the same
+  // level, in file order.
+  private List<List<XmlReader.CircuitData>> getLevels() {
+    HashMap<String, XmlReader.CircuitData> byName = new HashMap<>();
+    for (XmlReader.CircuitData cd : circuitsData)
+      byName.put(cd.circuit.getName(), cd);
+    Dag dag = new Dag();
+    HashMap<XmlReader.CircuitData, List<XmlReader.CircuitData>> uses = new HashMap<>();
+    for (XmlReader.CircuitData cd : circuitsData) {
+      ArrayList<XmlReader.CircuitData> subs = new ArrayList<>();
+      for (String name : cd.getSubcircuitNames()) {
+        XmlReader.CircuitData sub = byName.get(name);
+        if (sub != null && dag.addEdge(sub, cd))
+          subs.add(sub);
+      }
+      uses.put(cd, subs);
+    }
+    HashMap<XmlReader.CircuitData, Integer> level = new HashMap<>();
+    List<List<XmlReader.CircuitData>> levels = new ArrayList<>();
+    for (XmlReader.CircuitData cd : circuitsData) {
+      int k = getLevel(cd, uses, level);
+      while (levels.size() <= k)
+        levels.add(new ArrayList<>());
+      levels.get(k).add(cd);
+    }
+    return levels;
+  }
+
+  private static int getLevel(XmlReader.CircuitData cd,
+      HashMap<XmlReader.CircuitData, List<XmlReader.CircuitData>> uses,
+      HashMap<XmlReader.CircuitData, Integer> level) {
+    Integer k = level.get(cd);
+    if (k != null)
+      return k;
+    int n = 0;
+    for (XmlReader.CircuitData sub : uses.get(cd))
+      n = Math.max(n, getLevel(sub, uses, level) + 1);
+    level.put(cd, n);
+    return n;
+  }
+
+  // Creates the components for several circuits at once. Each circuit's
+  // components are independent of the others, except for subcircuit
+  // components, which only read the (already built) subcircuit.
+  // AddTool and FactoryDescription load their factories lazily and without
+  // locking, so each factory is loaded here, on one thread, before the
+  // components are built in parallel. Otherwise two threads could each
+  // create a factory, and components from the losing one would not be
+  // found in their library when the file is saved.
+  private void resolveFactories(List<XmlReader.CircuitData> level) {
+    for (XmlReader.CircuitData cd : level) {
+      if (cd.componentsLoaded)
+        continue;
+      for (Element elt : XmlIterator.forChildElements(cd.circuitElement, "comp")) {
+        try {
+          Library lib = reader.findLibrary(elt.getAttribute("lib"));
+          Tool tool = lib == null ? null : lib.getTool(elt.getAttribute("name"));
+          if (tool instanceof AddTool)
+            ((AddTool) tool).getFactory();
+        } catch (XmlReaderException e) {
+          // reported again, with context, by getComponent()
+        }
+      }
+    }
+  }
+
+  private void loadComponentsInParallel(List<XmlReader.CircuitData> level) {
+    resolveFactories(level);
+    ArrayList<RecursiveAction> tasks = new ArrayList<>(level.size());
+    for (XmlReader.CircuitData cd : level) {
+      if (cd.componentsLoaded)
+        continue;
+      tasks.add(new RecursiveAction() {
+        protected void compute() { cd.loadComponents(reader); }
+      });
+    }
+    if (tasks.size() == 1)
+      tasks.get(0).invoke();
+    else if (tasks.size() > 1)
+      ForkJoinTask.invokeAll(tasks);
+  }
+
   @Override
   protected void run(CircuitMutator mutator) {
-    for (XmlReader.CircuitData circuitData : circuitsData) {
-      buildCircuit(circuitData, mutator);
+    // Subcircuits are built first, so that components for them can be
+    // created with the right ports and bounds from the start.
+    for (List<XmlReader.CircuitData> level : getLevels()) {
+      long start = System.nanoTime();
+      loadComponentsInParallel(level);
+      reader.addTiming("components", start);
+      start = System.nanoTime();
+      for (XmlReader.CircuitData circuitData : level) {
+        buildCircuit(circuitData, mutator);
+      }
+      reader.addTiming("build", start);
     }
+    long start = System.nanoTime();
     for (XmlReader.CircuitData circuitData : circuitsData) {
       buildDynamicAppearance(circuitData, mutator);
     }
+    reader.addTiming("appearance", start);
   }
 
   private String toComponentString(Element elt) {
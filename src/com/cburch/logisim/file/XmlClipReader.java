@@ -162,6 +162,7 @@ public class XmlClipReader extends XmlReader {
       Circuit circ = new Circuit(name, file);
       // this part is in a transaction that gets executed later
       CircuitData circData = new CircuitData(this, elt, circ);
+      circData.loadComponents(this);
       circuitsData.add(circData);
       Tool tool = new AddTool(null, circ.getSubcircuitFactory());
       tools.put(name, tool);
@@ -38,6 +38,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.JOptionPane;
 
@@ -58,6 +59,7 @@ import com.cburch.logisim.std.wiring.Pin;
 import com.cburch.logisim.tools.AddTool;
 import com.cburch.logisim.tools.Library;
 import com.cburch.logisim.tools.Tool;
+import com.cburch.logisim.util.Debug;
 import com.cburch.logisim.util.Errors;
 import com.cburch.logisim.util.InputEventUtil;
 
@@ -174,13 +176,16 @@ public class XmlProjectReader extends XmlReader {
       }
 
       // first, load the sublibraries
+      long start = System.nanoTime();
       for (Element o : XmlIterator.forChildElements(elt, "lib")) {
         Library lib = toLibrary(o);
         if (lib != null)
           file.addLibrary(lib);
       }
+      addTiming("libraries", start);
 
       // second, create the circuits - empty for now - and the vhdl entities
+      start = System.nanoTime();
       List<CircuitData> circuitsData = new ArrayList<>();
       for (Element subElt : XmlIterator.forChildElements(elt)) {
         switch (subElt.getTagName()) {
@@ -191,7 +196,7 @@ public class XmlProjectReader extends XmlReader {
           }
           break;
         case "circuit":
-          CircuitData circData = parseCircuit(subElt);
+          CircuitData circData = createCircuit(subElt);
           if (circData != null) {
             file.addCircuit(circData.circuit);
             circuitsData.add(circData);
@@ -240,11 +245,15 @@ public class XmlProjectReader extends XmlReader {
         }
       }
 
-      // fourth, execute a transaction that initializes all the circuits
+      addTiming("circuits", start);
+
+      // fourth, execute a transaction that initializes all the circuits,
+      // creating components for independent circuits in parallel
       XmlCircuitReader builder = new XmlCircuitReader(this, circuitsData);
       builder.execute();
 
       // fifth, load any saved simulations
+      start = System.nanoTime();
       for (CircuitData cd : circuitsData) {
         ArrayList<HashMap<String, AttributeSet>> simData = new ArrayList<>();
         for (HashMap<String, Element> sim : cd.simulations) {
@@ -276,6 +285,8 @@ public class XmlProjectReader extends XmlReader {
           simulations.put(cd.circuit, simData);
       }
 
+      addTiming("simulations", start);
+
       // last, configure AddTool attributes for circuits within the project
       for (CircuitData cd : circuitsData) {
         AddTool tool = file.findToolFor(cd.circuit);
@@ -306,15 +317,29 @@ public class XmlProjectReader extends XmlReader {
 
   LogisimFile.FileWithSimulations parseProjectWithSimulations(InputStream is)
       throws IOException, SAXException, LoadCanceledByUser {
-    Document doc = loadXmlFrom(is);
+    return parseProjectWithSimulations(is, null);
+  }
+
+  // images is non-null when the xml comes from a ProjectArchive.
+  LogisimFile.FileWithSimulations parseProjectWithSimulations(InputStream is,
+      ProjectArchive.Images images) throws IOException, SAXException, LoadCanceledByUser {
+    long start = System.nanoTime();
+    StreamRepairs repairs = new StreamRepairs();
+    Document doc = loadXmlFrom(is, repairs, images);
     Element elt = doc.getDocumentElement();
+    long parsed = System.nanoTime();
 
-    considerRepairs(doc, elt);
+    considerRepairs(doc, elt, repairs);
     LogisimFile file = new LogisimFile(loader);
     ReadProjectContext context = new ReadProjectContext(file,
         srcFile == null ? null : srcFile.getAbsolutePath());
+    context.timings.put("xml", parsed - start);
+    context.addTiming("repairs", parsed);
 
     context.parseProject(elt);
+    context.addTiming("total", start);
+    if (Debug.isEnabled())
+      printTimings(context.timings);
 
     if (file.getCircuits().size() == 0)
       file.addCircuit(new Circuit("main", file));
@@ -333,6 +358,19 @@ public class XmlProjectReader extends XmlReader {
     return ret;
   }
 
+  private void printTimings(Map<String, Long> timings) {
+    StringBuilder msg = new StringBuilder("Loaded");
+    if (srcFile != null)
+      msg.append(" ").append(srcFile.getName());
+    msg.append(" in");
+    String sep = " ";
+    for (Map.Entry<String, Long> t : timings.entrySet()) {
+      msg.append(String.format("%s%s %.1f ms", sep, t.getKey(), t.getValue() / 1e6));
+      sep = ", ";
+    }
+    System.out.println(msg);
+  }
+
   private Loader loader;
   private File srcFile; // used for de-relativizing paths in xml
 
@@ -365,9 +403,14 @@ public class XmlProjectReader extends XmlReader {
     }
   }
 
-  private void considerRepairs(Document doc, Element root) {
+  private void considerRepairs(Document doc, Element root, StreamRepairs repairs) {
     LogisimVersion version = LogisimVersion.parse(root.getAttribute("source"));
 
+    // If some library was declared after a circuit, the streaming repairs may
+    // have missed components from that library, so apply them all again.
+    if (repairs.libAfterCircuit)
+      repairs.reapply(root);
+
     if (version.compareTo(LogisimVersion.get(2, 3, 0)) < 0) {
       // This file was saved before an Edit tool existed. Most likely
       // we should replace the Select and Wiring tools in the toolbar
@@ -395,127 +438,158 @@ public class XmlProjectReader extends XmlReader {
     }
 
     if (version.compareTo(LogisimVersion.get(2, 6, 3)) < 0) {
-      for (Element circElt : XmlIterator.forChildElements(root, "circuit")) {
-        for (Element attrElt : XmlIterator.forChildElements(circElt, "a")) {
-          String name = attrElt.getAttribute("name");
-          if (name != null && name.startsWith("label")) {
-            attrElt.setAttribute("name", "c" + name);
-          }
-        }
-      }
-
       repairForWiringLibrary(doc, root);
       repairByEradicatingLibrary(doc, root, "Legacy", "#Legacy");
     }
 
-    if (version.compareTo(LogisimVersion.get(2, 7, 2)) < 0) {
+    if (version.compareTo(LogisimVersion.get(2, 7, 2)) < 0)
       addBuiltinLibrariesIfMissing(doc, root, null);
-      // pre logisim-evolution, we didn't have "Appearance" labels
-      // on many components. Add StdAttr.APPEAR_CLASSIC on each subcircuit
-      // and instances of FlipFlops, Registers, Counters, RAM, ROM, and
-      // Shift Registers.
-      String memLibName = findLibNameByDesc(root, "#Memory");
-      for (Element circElt : XmlIterator.forChildElements(root, "circuit")) {
-        setDefaultAttribute(doc, circElt, "appearance", "classic");
-        if (memLibName != null) {
-          for (Element compElt : XmlIterator.forChildElements(circElt, "comp")) {
-            String lib = compElt.getAttribute("lib");
-            String name = compElt.getAttribute("name");
-            if (lib == null || name == null || !lib.equals(memLibName))
-              continue;
-            if (name.equals("J-K Flip-Flop") || name.equals("S-R Flip-Flop")
-                || name.equals("T Flip-Flop") || name.equals("D Flip-Flop")
-                || name.equals("RAM") || name.equals("ROM")
-                || name.equals("Register") || name.equals("Shift Register")
-                || name.equals("Counter") || name.equals("Random")) {
-              setDefaultAttribute(doc, compElt, "appearance", "classic");
-            }
-            if (name.equals("J-K Flip-Flop") || name.equals("S-R Flip-Flop")
-                || name.equals("T Flip-Flop") || name.equals("D Flip-Flop")) {
-              setDefaultAttribute(doc, compElt, "enable", "true");
-            }
-          }
+
+    // As of version 4.0.0-HC, the #TCL library is gone.
+    repairByEradicatingLibrary(doc, root, "TCL", "#TCL");
+
+    if (repairs.wideQuadGates) {
+      String msg =
+            "Warning: The shapes of certain quad-input primitive gates used in\n"
+          + "this file have changed in recent versions of Logisim-Evolution.\n"
+          + "This include quad-input AND, OR, NAND, NOR, XOR, XNOR, Even-Parity,\n"
+          + "and Odd-Parity gates that are configured with 'Wide' appearance.\n"
+          + "Please reconnect input wires as needed for these gates.";
+      if (Main.headless)
+        System.err.println("WARNING:\n" + msg);
+      else
+        JOptionPane.showMessageDialog(null, msg, "Warning: Legacy Circuit", JOptionPane.WARNING_MESSAGE);
+    }
+
+    if (version.compareTo(LogisimVersion.get(4, 0, 3)) < 0) {
+      repairForAnalogLibrary(doc, root);
+    }
+
+  }
+
+  // Repairs that only involve a single circuit, component, or tool element,
+  // applied by XmlStreamLoader as each element is read so the document never
+  // needs a separate pass. These depend on the <lib> declarations, which
+  // Logisim always writes ahead of the circuits. Repairs that move tools
+  // between libraries are left to considerRepairs().
+  private class StreamRepairs implements XmlStreamLoader.Repairs {
+    LogisimVersion version;
+    HashMap<String, String> libLabels = new HashMap<>(); // desc -> name, first only
+    boolean circuitSeen, libAfterCircuit, wideQuadGates;
+
+    public void elementEnded(Element elt) {
+      Document doc = elt.getOwnerDocument();
+      Element root = doc.getDocumentElement();
+      if (elt == root)
+        return;
+      if (version == null)
+        version = LogisimVersion.parse(root.getAttribute("source"));
+      Node parent = elt.getParentNode();
+      String tag = elt.getTagName();
+
+      if (parent == root && tag.equals("lib")) {
+        if (circuitSeen)
+          libAfterCircuit = true;
+        String desc = elt.getAttribute("desc");
+        String name = elt.getAttribute("name");
+        if (!desc.equals("") && !name.equals(""))
+          libLabels.putIfAbsent(desc, name);
+      } else if (parent == root && tag.equals("circuit")) {
+        circuitSeen = true;
+        // pre logisim-evolution, we didn't have "Appearance" labels
+        // on many components. Add StdAttr.APPEAR_CLASSIC on each subcircuit
+        // and instances of FlipFlops, Registers, Counters, RAM, ROM, and
+        // Shift Registers (the latter are done below).
+        if (version.compareTo(LogisimVersion.get(2, 7, 2)) < 0)
+          setDefaultAttribute(doc, elt, "appearance", "classic");
+      } else if (tag.equals("a") && parent.getParentNode() == root
+          && ((Element)parent).getTagName().equals("circuit")) {
+        if (version.compareTo(LogisimVersion.get(2, 6, 3)) < 0) {
+          String name = elt.getAttribute("name");
+          if (name != null && name.startsWith("label"))
+            elt.setAttribute("name", "c" + name);
         }
+      } else if (tag.equals("comp") || tag.equals("tool")) {
+        // Before version 4.0.0-HC, Pin components had attributes:
+        //   output=true|false
+        //   tristate=true|false
+        //   pull=up|down (or missing)
+        // These are now consolodated into two attributes:
+        //   type=input|output
+        //   behavior=simple|tristate|pullup|pulldown
+        // Before version 2.6.3, Pin was in #Base, which later becomes #Wiring.
+        String wiringLibName = libLabels.get("#Wiring");
+        if (wiringLibName == null && version.compareTo(LogisimVersion.get(2, 6, 3)) < 0)
+          wiringLibName = libLabels.get("#Base");
+        if (wiringLibName != null)
+          convertObsoletePinAttributes(doc, elt, wiringLibName);
+        if (tag.equals("comp") && ((Element)parent).getTagName().equals("circuit"))
+          repairComponent(doc, elt);
       }
     }
 
-    // As of version 4.0.0-HC, the #TCL library is gone.
-    repairByEradicatingLibrary(doc, root, "TCL", "#TCL");
+    private void repairComponent(Document doc, Element compElt) {
+      String lib = compElt.getAttribute("lib");
+      String name = compElt.getAttribute("name");
+      if (lib == null || name == null)
+        return;
 
-    // Before version 4.0.0-HC, Pin components had attributes:
-    //   output=true|false
-    //   tristate=true|false
-    //   pull=up|down (or missing)
-    // These are now consolodated into two attributes:
-    //   type=input|output
-    //   behavior=simple|tristate|pullup|pulldown
-    String wiringLibName = findLibNameByDesc(root, "#Wiring");
-    if (wiringLibName != null) {
-      for (Element compElt : XmlIterator.forDescendantElements(root, "comp"))
-        convertObsoletePinAttributes(doc, compElt, wiringLibName);
-      for (Element toolElt : XmlIterator.forDescendantElements(root, "tool"))
-        convertObsoletePinAttributes(doc, toolElt, wiringLibName);
-    }
-
-    // As of version 4.0.2, quad-input wide primitive gates have reasonable layout.
-    if (version.compareTo(LogisimVersion.get(4, 0, 2)) < 0) {
+      String memLibName = libLabels.get("#Memory");
+      if (version.compareTo(LogisimVersion.get(2, 7, 2)) < 0 && lib.equals(memLibName)) {
+        if (name.equals("J-K Flip-Flop") || name.equals("S-R Flip-Flop")
+            || name.equals("T Flip-Flop") || name.equals("D Flip-Flop")
+            || name.equals("RAM") || name.equals("ROM")
+            || name.equals("Register") || name.equals("Shift Register")
+            || name.equals("Counter") || name.equals("Random")) {
+          setDefaultAttribute(doc, compElt, "appearance", "classic");
+        }
+        if (name.equals("J-K Flip-Flop") || name.equals("S-R Flip-Flop")
+            || name.equals("T Flip-Flop") || name.equals("D Flip-Flop")) {
+          setDefaultAttribute(doc, compElt, "enable", "true");
+        }
+      }
+
+      // As of version 4.0.2, quad-input wide primitive gates have reasonable layout.
       // Version 4.0.2 fixed the spacing of input pins for certain primitive
       // gates like AND and OR when they were configured with size=Wide and
       // inputs=4. Warn about this backwards-incompatible change.
-      String gatesLib = findLibNameByDesc(root, "#Gates");
-      if (gatesLib != null) {
-        wideQuadCheck:
-        for (Element circElt : XmlIterator.forChildElements(root, "circuit")) {
-          for (Element compElt : XmlIterator.forChildElements(circElt, "comp")) {
-            String lib = compElt.getAttribute("lib");
-            String name = compElt.getAttribute("name");
-            if (lib == null || name == null || !lib.equals(gatesLib))
-              continue;
-            if (!(name.equals("AND Gate") || name.equals("OR Gate")
-                  || name.equals("NAND Gate") || name.equals("NOR Gate")
-                  || name.equals("XOR Gate") || name.equals("XNOR Gate")
-                  || name.equals("Odd Parity") || name.equals("Even Parity")))
-              continue;
-            boolean wide = false, quad = false;
-            for (Element attrElt : XmlIterator.forChildElements(compElt, "a")) {
-              String aname = attrElt.getAttribute("name");
-              String aval = attrElt.getAttribute("val");
-              if (aname == null || aval == null)
-                continue;
-              if (aname.equals("inputs")) {
-                if (aval.trim().equals("4"))
-                  quad = true;
-                else
-                  break;
-              }
-              else if (aname.equals("size"))
-                if (aval.trim().equals("70"))
-                  wide = true;
-                else
-                  break;
-            }
-            if (wide && quad) {
-              String msg =
-                    "Warning: The shapes of certain quad-input primitive gates used in\n"
-                  + "this file have changed in recent versions of Logisim-Evolution.\n"
-                  + "This include quad-input AND, OR, NAND, NOR, XOR, XNOR, Even-Parity,\n"
-                  + "and Odd-Parity gates that are configured with 'Wide' appearance.\n"
-                  + "Please reconnect input wires as needed for these gates.";
-              if (Main.headless)
-                System.err.println("WARNING:\n" + msg);
-              else
-                JOptionPane.showMessageDialog(null, msg, "Warning: Legacy Circuit", JOptionPane.WARNING_MESSAGE);
-              break wideQuadCheck;
-            }
+      String gatesLib = libLabels.get("#Gates");
+      if (!wideQuadGates && version.compareTo(LogisimVersion.get(4, 0, 2)) < 0
+          && lib.equals(gatesLib)) {
+        if (!(name.equals("AND Gate") || name.equals("OR Gate")
+              || name.equals("NAND Gate") || name.equals("NOR Gate")
+              || name.equals("XOR Gate") || name.equals("XNOR Gate")
+              || name.equals("Odd Parity") || name.equals("Even Parity")))
+          return;
+        boolean wide = false, quad = false;
+        for (Element attrElt : XmlIterator.forChildElements(compElt, "a")) {
+          String aname = attrElt.getAttribute("name");
+          String aval = attrElt.getAttribute("val");
+          if (aname == null || aval == null)
+            continue;
+          if (aname.equals("inputs")) {
+            if (aval.trim().equals("4"))
+              quad = true;
+            else
+              break;
           }
+          else if (aname.equals("size"))
+            if (aval.trim().equals("70"))
+              wide = true;
+            else
+              break;
         }
+        if (wide && quad)
+          wideQuadGates = true;
       }
     }
 
-    if (version.compareTo(LogisimVersion.get(4, 0, 3)) < 0) {
-      repairForAnalogLibrary(doc, root);
+    // Applies the repairs again to every element, in document order.
+    void reapply(Element elt) {
+      for (Element sub : XmlIterator.forChildElements(elt))
+        reapply(sub);
+      elementEnded(elt);
     }
-
   }
 
   private void convertObsoletePinAttributes(Document doc, Element elt, String wiringLibName) {
@@ -840,16 +914,6 @@ public class XmlProjectReader extends XmlReader {
     }
   }
 
-  private static String findLibNameByDesc(Element root, String libdesc) {
-    for (Element libElt : XmlIterator.forChildElements(root, "lib")) {
-      String desc = libElt.getAttribute("desc");
-      String name = libElt.getAttribute("name");
-      if (name != null && desc != null && desc.equals(libdesc))
-        return name;
-    }
-    return null;
-  }
-
   public static ArrayList<Component> findComponent(Circuit circuit, String path) {
     if (!path.startsWith("/"))
       return null;
@@ -36,11 +36,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import java.util.Set;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -72,12 +72,26 @@ class XmlReader {
     Map<Element, Component> knownComponents = new HashMap<>();
     List<AbstractCanvasObject> appearance = new ArrayList<>();
     List<HashMap<String, Element>> simulations = new ArrayList<>();
+    boolean componentsLoaded;
 
     public CircuitData(ReadContext ctx, Element elt, Circuit circ) {
       circuitElement = elt;
       circuit = circ;
+      // load fpga configs
+      for (Element e : XmlIterator.forChildElements(elt, "fpgaconfig"))
+        loadFPGAConfig(ctx, e, circ.getName() + ".fpgaconfig");
+      // load non-volatile simulation state
+      for (Element e : XmlIterator.forChildElements(elt, "simulation"))
+        loadSimulation(ctx, e, circ.getName() + ".simulation");
+    }
+
+    // Creates the components and static appearance shapes for this circuit.
+    // This only reads from the context and from other circuits, so several
+    // circuits can be done at once, on different threads.
+    void loadComponents(ReadContext ctx) {
+      componentsLoaded = true;
       // load known components
-      for (Element e : XmlIterator.forChildElements(elt, "comp")) try {
+      for (Element e : XmlIterator.forChildElements(circuitElement, "comp")) try {
           Component comp = XmlCircuitReader.getComponent(e, ctx);
           if (comp != null)
             knownComponents.put(e, comp);
@@ -85,14 +99,19 @@ class XmlReader {
         ctx.addErrors(ex, "parsing component from xml");
       }
       // load appearance
-      for (Element e : XmlIterator.forChildElements(elt, "appear"))
-        loadAppearance(ctx, e, circ.getName() + ".appear");
-      // load fpga configs
-      for (Element e : XmlIterator.forChildElements(elt, "fpgaconfig"))
-        loadFPGAConfig(ctx, e, circ.getName() + ".fpgaconfig");
-      // load non-volatile simulation state
-      for (Element e : XmlIterator.forChildElements(elt, "simulation"))
-        loadSimulation(ctx, e, circ.getName() + ".simulation");
+      for (Element e : XmlIterator.forChildElements(circuitElement, "appear"))
+        loadAppearance(ctx, e, circuit.getName() + ".appear");
+    }
+
+    // Names of the circuits (or vhdl entities) in this file that are used as
+    // subcircuits within this circuit.
+    Set<String> getSubcircuitNames() {
+      HashSet<String> names = new HashSet<>();
+      for (Element e : XmlIterator.forChildElements(circuitElement, "comp")) {
+        if (e.getAttribute("lib").equals(""))
+          names.add(e.getAttribute("name"));
+      }
+      return names;
     }
 
     private void loadAppearance(ReadContext ctx, Element elt, String context) {
@@ -167,11 +186,20 @@ class XmlReader {
         srcDirPath = srcFilePath.substring(0, srcFilePath.lastIndexOf(File.separator));
     }
 
-    void addError(String message, String context) {
+    // Time spent in each phase of loading, in nanoseconds, in order.
+    LinkedHashMap<String, Long> timings = new LinkedHashMap<>();
+
+    void addTiming(String phase, long startNanos) {
+      timings.merge(phase, System.nanoTime() - startNanos, Long::sum);
+    }
+
+    // Errors may be reported by several threads at once while loading
+    // components, see CircuitData.loadComponents().
+    synchronized void addError(String message, String context) {
       messages.add(message + " [" + context + "]");
     }
 
-    void addErrors(XmlReaderException exception, String context) {
+    synchronized void addErrors(XmlReaderException exception, String context) {
       for (String msg : exception.getMessages())
         messages.add(msg + " [" + context + "]");
     }
@@ -179,6 +207,14 @@ class XmlReader {
     abstract Library findLibrary(String libName) throws XmlReaderException;
 
     CircuitData parseCircuit(Element elt) {
+      CircuitData ret = createCircuit(elt);
+      if (ret != null)
+        ret.loadComponents(this);
+      return ret;
+    }
+
+    // Like parseCircuit(), but leaves the components to be loaded later.
+    CircuitData createCircuit(Element elt) {
       String name = elt.getAttribute("name");
       if (name == null || name.equals("")) {
         addError(S.get("circNameMissingError"), "C??");
@@ -237,6 +273,7 @@ class XmlReader {
       ArrayList<String> messages = null;
 
       HashMap<String, String> attrsDefined = new HashMap<>();
+      HashMap<String, XmlStreamLoader.ParsedValue> attrsParsed = null;
       for (Element attrElt : XmlIterator.forChildElements(parentElt, "a")) {
         if (!attrElt.hasAttribute("name")) {
           if (messages == null)
@@ -244,6 +281,14 @@ class XmlReader {
           messages.add(S.get("attrNameMissingError"));
         } else {
           String attrName = attrElt.getAttribute("name");
+          Object parsed = attrElt.getUserData(XmlStreamLoader.PARSED_VALUE);
+          if (parsed != null) {
+            // already decoded while loading, the text is gone
+            if (attrsParsed == null)
+              attrsParsed = new HashMap<>();
+            attrsParsed.put(attrName, (XmlStreamLoader.ParsedValue) parsed);
+            continue;
+          }
           String attrVal;
           if (attrElt.hasAttribute("val"))
             attrVal = attrElt.getAttribute("val");
@@ -271,6 +316,14 @@ class XmlReader {
           continue; // ignore attributes that should never have been saved (like circuit name)
         String attrName = attr.getName();
         String attrVal = attrsDefined.get(attrName);
+        XmlStreamLoader.ParsedValue parsed =
+            attrsParsed == null ? null : attrsParsed.get(attrName);
+        if (parsed != null && parsed.attr == attr) {
+          attrs.setAttr(attr, parsed.value);
+          continue;
+        } else if (parsed != null) {
+          attrVal = parsed.toStandardString(); // unlikely: decoded for some other attribute
+        }
         if (attrVal == null) {
           if (setDefaults) {
             Object val = defaults.getDefaultAttributeValue(attr, sourceVersion);
@@ -296,13 +349,17 @@ class XmlReader {
   }
 
   static Document loadXmlFrom(InputStream is) throws SAXException, IOException {
-    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-    factory.setNamespaceAware(true);
-    try {
-      return factory.newDocumentBuilder().parse(is);
-    } catch (ParserConfigurationException e) {
-      throw new IOException("XML parse configuration error: " + e.getMessage(), e);
-    }
+    return XmlStreamLoader.load(is, null);
+  }
+
+  static Document loadXmlFrom(InputStream is, XmlStreamLoader.Repairs repairs)
+      throws SAXException, IOException {
+    return XmlStreamLoader.load(is, repairs, null);
+  }
+
+  static Document loadXmlFrom(InputStream is, XmlStreamLoader.Repairs repairs,
+      ProjectArchive.Images images) throws SAXException, IOException {
+    return XmlStreamLoader.load(is, repairs, images);
   }
 
 }
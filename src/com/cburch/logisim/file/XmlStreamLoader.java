@@ -0,0 +1,329 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+package com.cburch.logisim.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.util.ArrayList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import com.cburch.logisim.data.Attribute;
+import com.cburch.logisim.std.memory.MemContents;
+import com.cburch.logisim.std.memory.Rom;
+
+/**
+ * Loads an xml document using a streaming (StAX) parser, building a compact
+ * DOM as elements arrive rather than parsing the whole file into a DOM first.
+ * Whitespace between elements is dropped. Memory contents attributes, which
+ * can be tens of megabytes of text for large ROM images, are decoded straight
+ * from the stream into MemContents and never stored as text: the resulting
+ * {@code <a>} element is left empty, with the decoded value attached as
+ * user data under PARSED_VALUE. Callers can also supply Repairs, which get to
+ * fix up each element as soon as it has been read. Memory contents stored
+ * as separate images in a ProjectArchive are decoded the same way, from the
+ * Images supplied by the caller.
+ */
+class XmlStreamLoader {
+
+  // Fixes for legacy files that can be applied to each element on its own (or
+  // using only what came before it in the document). elementEnded() is called
+  // for each element after all of its children have been read, at which point
+  // it has already been added to its parent.
+  interface Repairs {
+    void elementEnded(Element elt);
+  }
+
+  static final String PARSED_VALUE = "logisim.parsedValue";
+
+  static class ParsedValue {
+    final Attribute<?> attr;
+    final Object value;
+
+    ParsedValue(Attribute<?> attr, Object value) {
+      this.attr = attr;
+      this.value = value;
+    }
+
+    @SuppressWarnings("unchecked")
+    String toStandardString() {
+      return ((Attribute<Object>)attr).toStandardString(value);
+    }
+  }
+
+  private static final String CONTENTS_HEADER = "addr/data:";
+
+  private final XMLStreamReader in;
+  private final Document doc;
+  private final Repairs repairs;
+  private final ProjectArchive.Images images; // null unless reading an archive
+  private final ArrayList<Element> elts = new ArrayList<>(); // open elements
+  private final StringBuilder text = new StringBuilder(); // pending text for innermost element
+
+  private XmlStreamLoader(XMLStreamReader in, Document doc, Repairs repairs,
+      ProjectArchive.Images images) {
+    this.in = in;
+    this.doc = doc;
+    this.repairs = repairs;
+    this.images = images;
+  }
+
+  static Document load(InputStream is, Repairs repairs) throws SAXException, IOException {
+    return load(is, repairs, null);
+  }
+
+  static Document load(InputStream is, Repairs repairs, ProjectArchive.Images images)
+      throws SAXException, IOException {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    Document doc;
+    try {
+      doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+    } catch (ParserConfigurationException e) {
+      throw new IOException("XML parse configuration error: " + e.getMessage(), e);
+    }
+    XMLStreamReader in = null;
+    try {
+      in = factory.createXMLStreamReader(is);
+      new XmlStreamLoader(in, doc, repairs, images).run();
+    } catch (XMLStreamException e) {
+      throw new SAXException(e.getMessage(), e);
+    } finally {
+      if (in != null) {
+        try { in.close(); }
+        catch (XMLStreamException e) { }
+      }
+    }
+    if (doc.getDocumentElement() == null)
+      throw new SAXException("XML document has no root element");
+    return doc;
+  }
+
+  private void run() throws XMLStreamException, IOException {
+    for (int ev = in.getEventType(); ; ev = in.next()) {
+      switch (ev) {
+      case XMLStreamConstants.START_ELEMENT:
+        startElement();
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        endElement();
+        break;
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.CDATA:
+      case XMLStreamConstants.SPACE:
+        if (!elts.isEmpty())
+          text.append(in.getTextCharacters(), in.getTextStart(), in.getTextLength());
+        break;
+      case XMLStreamConstants.END_DOCUMENT:
+        return;
+      default:
+        break; // comments, processing instructions, etc.
+      }
+    }
+  }
+
+  private void flushText(boolean keepWhitespace) {
+    if (text.length() == 0)
+      return;
+    if (keepWhitespace || !isWhitespace(text))
+      elts.get(elts.size() - 1).appendChild(doc.createTextNode(text.toString()));
+    text.setLength(0);
+  }
+
+  private static boolean isWhitespace(CharSequence s) {
+    for (int i = 0; i < s.length(); i++) {
+      if (!Character.isWhitespace(s.charAt(i)))
+        return false;
+    }
+    return true;
+  }
+
+  private static String qname(String prefix, String localName) {
+    return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+  }
+
+  private void startElement() throws XMLStreamException, IOException {
+    if (!elts.isEmpty())
+      flushText(false);
+    Element elt = doc.createElementNS(in.getNamespaceURI(),
+        qname(in.getPrefix(), in.getLocalName()));
+    for (int i = 0; i < in.getNamespaceCount(); i++) {
+      String prefix = in.getNamespacePrefix(i);
+      elt.setAttributeNS("http://www.w3.org/2000/xmlns/",
+          prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix,
+          in.getNamespaceURI(i));
+    }
+    for (int i = 0; i < in.getAttributeCount(); i++) {
+      String uri = in.getAttributeNamespace(i);
+      elt.setAttributeNS(uri == null || uri.isEmpty() ? null : uri,
+          qname(in.getAttributePrefix(i), in.getAttributeLocalName(i)),
+          in.getAttributeValue(i));
+    }
+    if (elts.isEmpty())
+      doc.appendChild(elt);
+    else
+      elts.get(elts.size() - 1).appendChild(elt);
+    elts.add(elt);
+
+    if (elt.getTagName().equals("a") && elt.hasAttribute(ProjectArchive.IMAGE_ATTR)) {
+      readImage(elt);
+    } else if (elt.getTagName().equals("a") && !elt.hasAttribute("val")
+        && elt.getAttribute("name").equals(Rom.CONTENTS_ATTR.getName())) {
+      readContents(elt);
+      endElement(); // reader is now positioned at the end tag
+    }
+  }
+
+  private void endElement() {
+    // Text is kept as is, unless it is only whitespace after a child element.
+    Element elt = elts.get(elts.size() - 1);
+    Node last = elt.getLastChild();
+    flushText(last == null || last.getNodeType() != Node.ELEMENT_NODE);
+    elts.remove(elts.size() - 1);
+    if (repairs != null)
+      repairs.elementEnded(elt);
+  }
+
+  // Decodes memory contents from an archive image, leaving the element
+  // itself to be closed as usual.
+  private void readImage(Element elt) throws IOException {
+    String name = elt.getAttribute(ProjectArchive.IMAGE_ATTR);
+    if (images == null)
+      throw new IOException("memory image " + name + " found outside of a project archive");
+    int addrBits, width;
+    try {
+      addrBits = Integer.parseInt(elt.getAttribute(ProjectArchive.ADDR_ATTR));
+      width = Integer.parseInt(elt.getAttribute(ProjectArchive.DATA_ATTR));
+    } catch (NumberFormatException e) {
+      throw new IOException("bad dimensions for memory image " + name, e);
+    }
+    MemContents val = images.get(name, addrBits, width);
+    elt.setUserData(PARSED_VALUE, new ParsedValue(Rom.CONTENTS_ATTR, val), null);
+  }
+
+  // Decodes memory contents from the text of the current element, if it starts
+  // with the usual header, otherwise just collects the text as usual. Either
+  // way, the element's text is consumed up to its end tag.
+  private void readContents(Element elt) throws IOException {
+    ElementTextReader src = new ElementTextReader(in);
+    PushbackReader peek = new PushbackReader(src, CONTENTS_HEADER.length());
+    char[] hdr = new char[CONTENTS_HEADER.length()];
+    int n = 0;
+    while (n < hdr.length) {
+      int k = peek.read(hdr, n, hdr.length - n);
+      if (k < 0)
+        break;
+      n += k;
+    }
+    peek.unread(hdr, 0, n);
+    if (n == hdr.length && CONTENTS_HEADER.equals(new String(hdr))) {
+      MemContents val = Rom.parseContents(peek);
+      if (val != null)
+        elt.setUserData(PARSED_VALUE, new ParsedValue(Rom.CONTENTS_ATTR, val), null);
+      src.skipRest(); // in case decoding stopped early
+      return;
+    }
+    char[] buf = new char[4096];
+    for (int k = peek.read(buf); k >= 0; k = peek.read(buf))
+      text.append(buf, 0, k);
+  }
+
+  // Presents the text of the element at which an XMLStreamReader is
+  // positioned as a Reader, chunk by chunk. Reading stops at the element's
+  // end tag, leaving the XMLStreamReader positioned there.
+  private static class ElementTextReader extends Reader {
+    private final XMLStreamReader in;
+    private boolean started = false, done = false;
+    private int pos; // position within current text event
+
+    ElementTextReader(XMLStreamReader in) {
+      this.in = in;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      if (len == 0)
+        return 0;
+      try {
+        while (!done) {
+          if (!started) {
+            started = true;
+          } else {
+            int ev = in.getEventType();
+            if (ev == XMLStreamConstants.CHARACTERS || ev == XMLStreamConstants.CDATA
+                || ev == XMLStreamConstants.SPACE) {
+              int n = in.getTextCharacters(pos, cbuf, off, len);
+              if (n > 0) {
+                pos += n;
+                return n;
+              }
+            } else if (ev == XMLStreamConstants.END_ELEMENT) {
+              done = true;
+              break;
+            } else if (ev == XMLStreamConstants.START_ELEMENT) {
+              throw new IOException("unexpected <" + in.getLocalName() + "> within attribute text");
+            }
+          }
+          in.next();
+          pos = 0;
+        }
+        return -1;
+      } catch (XMLStreamException e) {
+        throw new IOException(e.getMessage(), e);
+      }
+    }
+
+    void skipRest() throws IOException {
+      char[] buf = new char[4096];
+      while (read(buf, 0, buf.length) >= 0)
+        ;
+    }
+
+    @Override
+    public void close() {
+      // leave the underlying XMLStreamReader open
+    }
+  }
+}
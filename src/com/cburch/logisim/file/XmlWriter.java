@@ -192,12 +192,21 @@ public class XmlWriter {
 
   static void write(LogisimFile file, Project proj, OutputStream out, File destFile)
       throws ParserConfigurationException, TransformerConfigurationException, TransformerException {
+    write(file, proj, out, destFile, null);
+  }
+
+  // If images is non-null, memory contents are handed to it rather than
+  // written inline as text, see ProjectArchive.
+  static void write(LogisimFile file, Project proj, OutputStream out, File destFile,
+      ProjectArchive.ImageWriter images)
+      throws ParserConfigurationException, TransformerConfigurationException, TransformerException {
 
     DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
     DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
     Document doc = docBuilder.newDocument();
 
     XmlWriter context = new XmlWriter(file, proj, doc, destFile);
+    context.images = images;
     context.fromLogisimFile();
     xform(doc, out);
   }
@@ -228,6 +237,7 @@ public class XmlWriter {
   private File destFile; // file being written, used to relativize library paths
   private String destDir; // dir path of circ file begin written, used to relativize paths of components
   private HashMap<Library, String> libIDs = new HashMap<>();
+  private ProjectArchive.ImageWriter images; // null unless writing an archive
 
   private XmlWriter(LogisimFile file, Project proj, Document doc, File destFile) {
     this.file = file;
@@ -262,7 +272,7 @@ public class XmlWriter {
 
   void addAttributeSetContent(Element elt,
       AttributeSet attrs, AttributeDefaultProvider source) {
-    XmlAttributesUtil.addAttributeSetContent(doc, destDir, elt, attrs, source);
+    XmlAttributesUtil.addAttributeSetContent(doc, destDir, elt, attrs, source, images);
   }
 
   private static String subcircPathName(String circName, Location loc) {
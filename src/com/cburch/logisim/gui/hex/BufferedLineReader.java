@@ -67,6 +67,44 @@ abstract class BufferedLineReader {
     return new ReaderForFile(filename);
   }
 
+  /**
+   * Construct a BufferedLineReader reading characters from r, which is
+   * consumed only once. The overall size is not known in advance, raw byte
+   * reads are not supported, and reset() only works before anything is read.
+   */
+  public static BufferedLineReader forReader(Reader r) {
+    return new ReaderForStream(r);
+  }
+
+  private static class ReaderForStream extends BufferedLineReader {
+    Reader cin;
+    ReaderForStream(Reader r) {
+      cin = r;
+      bsize = -1;
+      bpos = 0;
+      cpos = 0;
+    }
+    public void reset() throws IOException {
+      if (cpos != 0 || bufCount != 0)
+        throw new IOException("stream can't be reset");
+      super.reset();
+    }
+    public void close() throws IOException {
+      try {
+        cin.close();
+      } finally {
+        cin = null;
+        buf = null;
+      }
+    }
+    int underlyingReadUtf8(char[] cbuf, int off, int len) throws IOException {
+      return cin.read(cbuf, off, len);
+    }
+    int underlyingReadBytes(byte[] bbuf, int off, int len) throws IOException {
+      throw new IOException("raw byte read from character stream");
+    }
+  }
+
   private static class ReaderForString extends BufferedLineReader {
     StringReader cin;
     ByteArrayInputStream bin;
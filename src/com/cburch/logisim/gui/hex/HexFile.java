@@ -157,12 +157,17 @@ import static com.cburch.logisim.gui.hex.Strings.S;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Arrays;
@@ -1400,6 +1405,19 @@ public class HexFile {
   }
 
   private static boolean open(MemContents dst, File src, String desc) throws IOException {
+    // Raw binary images are mapped in place rather than decoded, so that
+    // very large images do not need to be copied onto the heap.
+    boolean mappable = dst.isFileBacked() && dst.canMapFile();
+    if (mappable && desc != null && desc.startsWith("Binary")) {
+      dst.mapFile(src, !desc.endsWith("little-endian"));
+      return true;
+    }
+    // Without a header, a file exactly the size of the memory is taken to be
+    // a big-endian raw binary image, without decoding it or asking first.
+    if (mappable && desc == null && isRawImage(dst, src)) {
+      dst.mapFile(src, true);
+      return true;
+    }
     BufferedLineReader in = BufferedLineReader.forFile(src);
     try {
       HexReader r = new HexReader(in, dst.getLogLength(), dst.getValueWidth());
@@ -1412,6 +1430,13 @@ public class HexFile {
       }
       if (loaded == null)
         return false;
+      // Any other headerless file can only be binary if the user picked that
+      // in the format dialog, so it is mapped only after asking.
+      if (mappable && desc == null && r.taggedOrUnset("radix", "binary")
+          && !hasTextHeader(src)) {
+        dst.mapFile(src, !r.tagged("endian", "little-endian"));
+        return true;
+      }
       dst.copyFrom(0, loaded, 0, (int)(loaded.getLastOffset()+1));
       return true;
     } finally {
@@ -1420,6 +1445,27 @@ public class HexFile {
     }
   }
 
+  private static boolean isRawImage(MemContents dst, File src) throws IOException {
+    long bytes = (dst.getLastOffset() + 1) * (dst.getValueWidth() / 8);
+    return src.length() == bytes && !hasTextHeader(src);
+  }
+
+  private static boolean hasTextHeader(File src) throws IOException {
+    byte[] hdr = new byte[256];
+    int n = 0;
+    try (FileInputStream in = new FileInputStream(src)) {
+      while (n < hdr.length) {
+        int c = in.read(hdr, n, hdr.length - n);
+        if (c < 0)
+          break;
+        n += c;
+      }
+    }
+    String s = new String(hdr, 0, n, "ISO-8859-1").trim();
+    return s.regionMatches(true, 0, "v2.0 ", 0, 5)
+        || s.regionMatches(true, 0, "v3.0 ", 0, 5);
+  }
+
   public static class ParseResult {
     public MemContents model;
     public int numWords;
@@ -1437,27 +1483,60 @@ public class HexFile {
 
   public static MemContents parseFromCircFile(String src, int addrSize, int wordSize)
       throws IOException {
-    if (src.startsWith("compressed\n")) {
-      byte[] bytes = src.getBytes("UTF-8");
-      ByteArrayInputStream input = new ByteArrayInputStream(bytes, 11, bytes.length-11);
-      InputStream decoded = Base64.getMimeDecoder().wrap(input);
+    return parseFromCircFile(new StringReader(src), addrSize, wordSize);
+  }
+
+  // Decodes the data as it is read from src, so neither the (possibly
+  // compressed) text nor the decompressed text need be held in memory.
+  public static MemContents parseFromCircFile(Reader src, int addrSize, int wordSize)
+      throws IOException {
+    PushbackReader in = new PushbackReader(src, COMPRESSED_HEADER.length());
+    char[] hdr = new char[COMPRESSED_HEADER.length()];
+    int n = 0;
+    while (n < hdr.length) {
+      int k = in.read(hdr, n, hdr.length - n);
+      if (k < 0)
+        break;
+      n += k;
+    }
+    Reader text;
+    if (n == hdr.length && COMPRESSED_HEADER.equals(new String(hdr))) {
+      InputStream decoded = Base64.getMimeDecoder().wrap(new AsciiInputStream(in));
       InflaterInputStream uncompress = new InflaterInputStream(decoded, new Inflater());
+      text = new InputStreamReader(uncompress, "UTF-8");
+    } else {
+      in.unread(hdr, 0, n);
+      text = in;
+    }
+    BufferedLineReader lines = BufferedLineReader.forReader(text);
+    return parse(false, lines, "v2.0 raw", addrSize, wordSize).model;
+  }
 
-      ByteArrayOutputStream result = new ByteArrayOutputStream();
-      byte[] buffer = new byte[1024];
-      int length;
-      while ((length = uncompress.read(buffer)) != -1)
-        result.write(buffer, 0, length);
-      src = result.toString("UTF-8");
-      uncompress.close();
-    }
-    return parse(false, src, "v2.0 raw", addrSize, wordSize).model;
+  private static final String COMPRESSED_HEADER = "compressed\n";
+
+  // Base64 text is plain ascii, so each char is one byte.
+  private static class AsciiInputStream extends InputStream {
+    Reader in;
+    AsciiInputStream(Reader r) { in = r; }
+    public int read() throws IOException { return in.read(); }
+    public int read(byte[] b, int off, int len) throws IOException {
+      char[] c = new char[Math.min(len, 4096)];
+      int n = in.read(c, 0, c.length);
+      for (int i = 0; i < n; i++)
+        b[off+i] = (byte)c[i];
+      return n;
+    }
   }
 
   private static ParseResult parse(boolean interactive,
       String src, String desc, int addrSize, int wordSize)
       throws IOException {
-    BufferedLineReader in = BufferedLineReader.forString(src);
+    return parse(interactive, BufferedLineReader.forString(src), desc, addrSize, wordSize);
+  }
+
+  private static ParseResult parse(boolean interactive,
+      BufferedLineReader in, String desc, int addrSize, int wordSize)
+      throws IOException {
     try {
       HexReader r = new HexReader(in, addrSize, wordSize);
       r.parseFormat(desc);
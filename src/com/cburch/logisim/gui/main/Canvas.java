@@ -54,6 +54,7 @@ import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollBar;
 import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
 import javax.swing.event.MouseInputListener;
 import javax.swing.event.PopupMenuEvent;
 import javax.swing.event.PopupMenuListener;
@@ -430,7 +431,17 @@ public class Canvas extends JPanel
 
     @Override
     public void propagationCompleted(Simulator.Event e) {
-      paintThread.requestRepaint();
+      // When running normally, only the buses and components whose values
+      // changed need repainting. Single stepping and oscillation markers are
+      // drawn over the whole circuit, so those need a full repaint.
+      Simulator sim = e.getSource();
+      CircuitState circState = proj.getCircuitState();
+      List<Bounds> areas = circState == null ? null : circState.takeChangedAreas();
+      if (areas == null || e.didSingleStep() || !sim.isAutoPropagating()
+          || sim.isOscillating())
+        paintThread.requestRepaint();
+      else
+        paintThread.requestRepaint(areas);
       // if (e.didTick())
       //   waitForRepaintDone();
     }
@@ -1041,6 +1052,37 @@ public class Canvas extends JPanel
     super.repaint(x, y, width, height);
   }
 
+  // Paints the given areas of the circuit sheet right away, each one
+  // separately, so that changes in far apart parts of a large circuit don't
+  // cause everything in between to be repainted. Called from CanvasPaintThread.
+  void repaintAreas(List<Bounds> areas) {
+    SwingUtilities.invokeLater(() -> {
+      double zoom = getZoomFactor();
+      Rectangle visible = getVisibleRect();
+      long visibleArea = (long) visible.width * visible.height;
+      long total = 0;
+      Rectangle[] rects = new Rectangle[areas.size()];
+      for (int i = 0; i < rects.length; i++) {
+        Bounds b = areas.get(i);
+        int x0 = (int) Math.floor(b.getX() * zoom);
+        int y0 = (int) Math.floor(b.getY() * zoom);
+        int x1 = (int) Math.ceil((b.getX() + b.getWidth()) * zoom);
+        int y1 = (int) Math.ceil((b.getY() + b.getHeight()) * zoom);
+        rects[i] = visible.intersection(new Rectangle(x0, y0, x1 - x0, y1 - y0));
+        if (!rects[i].isEmpty())
+          total += (long) rects[i].width * rects[i].height;
+      }
+      if (total > visibleArea / 2) {
+        repaint();
+        return;
+      }
+      for (Rectangle r : rects) {
+        if (!r.isEmpty())
+          paintImmediately(r);
+      }
+    });
+  }
+
   @Override
   public void repaint(Rectangle r) {
     double zoom = getZoomFactor();
@@ -30,18 +30,22 @@
 
 package com.cburch.logisim.gui.main;
 
-import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.util.UniquelyNamedThread;
 
 class CanvasPaintThread extends UniquelyNamedThread {
   private static final int REPAINT_TIMESPAN = 50; // 50 ms between repaints
+  private static final int MAX_REPAINT_AREAS = 64;
 
   private Canvas canvas;
   private Object lock;
   private boolean repaintRequested;
   private long nextRepaint;
   private boolean alive;
-  private Rectangle repaintRectangle;
+  private ArrayList<Bounds> repaintAreas; // null when the whole canvas needs repainting
 
   public CanvasPaintThread(Canvas canvas) {
     super("CanvasPaintThread");
@@ -52,15 +56,20 @@ class CanvasPaintThread extends UniquelyNamedThread {
     nextRepaint = System.currentTimeMillis();
   }
 
-  public void requentRepaint(Rectangle rect) {
+  // Requests a repaint of just the given areas of the circuit sheet. Areas
+  // requested before the next repaint accumulate, and if there are too many
+  // of them, or a full repaint was requested, the whole canvas is repainted.
+  public void requestRepaint(List<Bounds> areas) {
     synchronized (lock) {
       if (repaintRequested) {
-        if (repaintRectangle != null) {
-          repaintRectangle.add(rect);
+        if (repaintAreas != null) {
+          repaintAreas.addAll(areas);
+          if (repaintAreas.size() > MAX_REPAINT_AREAS)
+            repaintAreas = null;
         }
-      } else {
+      } else if (!areas.isEmpty()) {
         repaintRequested = true;
-        repaintRectangle = rect;
+        repaintAreas = new ArrayList<>(areas);
         lock.notifyAll();
       }
     }
@@ -70,9 +79,9 @@ class CanvasPaintThread extends UniquelyNamedThread {
     synchronized (lock) {
       if (!repaintRequested) {
         repaintRequested = true;
-        repaintRectangle = null;
         lock.notifyAll();
       }
+      repaintAreas = null;
     }
   }
 
@@ -86,6 +95,7 @@ class CanvasPaintThread extends UniquelyNamedThread {
   @Override
   public void run() {
     while (alive) {
+      ArrayList<Bounds> areas;
       long now = System.currentTimeMillis();
       synchronized (lock) {
         long wait = nextRepaint - now;
@@ -104,9 +114,14 @@ class CanvasPaintThread extends UniquelyNamedThread {
         if (!alive)
           break;
         repaintRequested = false;
+        areas = repaintAreas;
+        repaintAreas = null;
         nextRepaint = now + REPAINT_TIMESPAN;
       }
-      canvas.repaint();
+      if (areas == null)
+        canvas.repaint();
+      else
+        canvas.repaintAreas(areas);
     }
   }
 }
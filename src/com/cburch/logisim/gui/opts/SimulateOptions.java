@@ -74,6 +74,19 @@ class SimulateOptions extends OptionsPanel {
               OptionsActions.setAttribute(attrs,
                 Options.ATTR_GATE_UNDEFINED, opt.getValue()));
         }
+      } else if (source == simQueue) {
+        ComboOption opt = (ComboOption) simQueue.getSelectedItem();
+        if (opt != null) {
+          AttributeSet attrs = getOptions().getAttributeSet();
+          getProject().doAction(
+              OptionsActions.setAttribute(attrs,
+                Options.ATTR_SIM_QUEUE, opt.getValue()));
+        }
+      } else if (source == simParallel) {
+        AttributeSet attrs = getOptions().getAttributeSet();
+        getProject().doAction(
+            OptionsActions.setAttribute(attrs,
+              Options.ATTR_SIM_PARALLEL, simParallel.isSelected()));
       }
     }
 
@@ -89,6 +102,10 @@ class SimulateOptions extends OptionsPanel {
         loadSimRandomness((Integer) val);
       } else if (attr == Options.ATTR_GATE_UNDEFINED) {
         loadGateUndefined(val);
+      } else if (attr == Options.ATTR_SIM_QUEUE) {
+        loadSimQueue(val);
+      } else if (attr == Options.ATTR_SIM_PARALLEL) {
+        loadSimParallel((Boolean) val);
       }
     }
 
@@ -96,6 +113,10 @@ class SimulateOptions extends OptionsPanel {
       ComboOption.setSelected(gateUndefined, val);
     }
 
+    private void loadSimQueue(Object val) {
+      ComboOption.setSelected(simQueue, val);
+    }
+
     @SuppressWarnings("rawtypes")
     private void loadSimLimit(Integer val) {
       int value = val.intValue();
@@ -111,6 +132,10 @@ class SimulateOptions extends OptionsPanel {
     private void loadSimRandomness(Integer val) {
       simRandomness.setSelected(val.intValue() > 0);
     }
+
+    private void loadSimParallel(Boolean val) {
+      simParallel.setSelected(val.booleanValue());
+    }
   }
 
   private static final long serialVersionUID = 1L;
@@ -130,6 +155,14 @@ class SimulateOptions extends OptionsPanel {
   private JComboBox gateUndefined = new JComboBox(new Object[] {
       new ComboOption(Options.GATE_UNDEFINED_IGNORE),
       new ComboOption(Options.GATE_UNDEFINED_ERROR) });
+  private JLabel simQueueLabel = new JLabel();
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private JComboBox simQueue = new JComboBox(new Object[] {
+      new ComboOption(Options.SIM_QUEUE_LINKED),
+      new ComboOption(Options.SIM_QUEUE_SPLAY),
+      new ComboOption(Options.SIM_QUEUE_HEAP),
+      new ComboOption(Options.SIM_QUEUE_WHEEL) });
+  private JCheckBox simParallel = new JCheckBox();
 
   public SimulateOptions(OptionsFrame window) {
     super(window);
@@ -144,18 +177,28 @@ class SimulateOptions extends OptionsPanel {
     gateUndefinedPanel.add(gateUndefined);
     gateUndefined.addActionListener(myListener);
 
+    JPanel simQueuePanel = new JPanel();
+    simQueuePanel.add(simQueueLabel);
+    simQueuePanel.add(simQueue);
+    simQueue.addActionListener(myListener);
+
     simRandomness.addActionListener(myListener);
+    simParallel.addActionListener(myListener);
 
     setLayout(new TableLayout(1));
     add(simLimitPanel);
     add(gateUndefinedPanel);
+    add(simQueuePanel);
     add(simRandomness);
+    add(simParallel);
 
     window.getOptions().getAttributeSet().addAttributeWeakListener(null, myListener);
     AttributeSet attrs = getOptions().getAttributeSet();
     myListener.loadSimLimit(attrs.getValue(Options.ATTR_SIM_LIMIT));
     myListener.loadGateUndefined(attrs.getValue(Options.ATTR_GATE_UNDEFINED));
     myListener.loadSimRandomness(attrs.getValue(Options.ATTR_SIM_RAND));
+    myListener.loadSimQueue(attrs.getValue(Options.ATTR_SIM_QUEUE));
+    myListener.loadSimParallel(attrs.getValue(Options.ATTR_SIM_PARALLEL));
   }
 
   @Override
@@ -172,6 +215,8 @@ class SimulateOptions extends OptionsPanel {
   public void localeChanged() {
     simLimitLabel.setText(S.get("simulateLimit"));
     gateUndefinedLabel.setText(S.get("gateUndefined"));
+    simQueueLabel.setText(S.get("simulateQueue"));
     simRandomness.setText(S.get("simulateRandomness"));
+    simParallel.setText(S.get("simulateParallel"));
   }
 }
@@ -47,6 +47,8 @@ class ExperimentalOptions extends OptionsPanel {
   private PrefOptionList accel;
   // private JLabel dualScreenRestart = new JLabel();
   private PrefOptionList dualScreen;
+  private JLabel valueCacheRestart = new JLabel();
+  private PrefOptionList valueCache;
 
   public ExperimentalOptions(PreferencesFrame window) {
     super(window);
@@ -97,10 +99,32 @@ class ExperimentalOptions extends OptionsPanel {
     JPanel dualScreenPanel2 = new JPanel();
     dualScreenPanel2.add(dualScreenPanel);
 
+    valueCache = new PrefOptionList(AppPreferences.VALUE_CACHE_SIZE,
+        S.getter("valueCacheLabel"), new PrefOption[] {
+          new PrefOption(AppPreferences.VALUE_CACHE_SMALL,
+              S.getter("valueCacheSmall")),
+          new PrefOption(AppPreferences.VALUE_CACHE_DEFAULT,
+              S.getter("valueCacheDefault")),
+          new PrefOption(AppPreferences.VALUE_CACHE_LARGE,
+              S.getter("valueCacheLarge")),
+          new PrefOption(AppPreferences.VALUE_CACHE_HUGE,
+              S.getter("valueCacheHuge")), });
+
+    JPanel valueCachePanel = new JPanel(new BorderLayout());
+    valueCachePanel.add(valueCache.getJLabel(), BorderLayout.LINE_START);
+    valueCachePanel.add(valueCache.getJComboBox(), BorderLayout.CENTER);
+    valueCachePanel.add(valueCacheRestart, BorderLayout.PAGE_END);
+    valueCacheRestart.setFont(valueCacheRestart.getFont().deriveFont(Font.ITALIC));
+    valueCacheRestart.setVisible(false);
+    valueCache.getJComboBox().addActionListener((ae) -> valueCacheRestart.setVisible(true));
+    JPanel valueCachePanel2 = new JPanel();
+    valueCachePanel2.add(valueCachePanel);
+
     setLayout(new BoxLayout(this, BoxLayout.PAGE_AXIS));
     add(Box.createGlue());
     add(accelPanel2);
     add(dualScreenPanel2);
+    add(valueCachePanel2);
     add(Box.createGlue());
   }
 
@@ -119,6 +143,8 @@ class ExperimentalOptions extends OptionsPanel {
     accel.localeChanged();
     accelRestart.setText(S.get("accelRestartLabel"));
     dualScreen.localeChanged();
+    valueCache.localeChanged();
+    valueCacheRestart.setText(S.get("accelRestartLabel"));
     // dualScreenRestart.setText(S.get("dualScreenRestartLabel"));
   }
 }
@@ -0,0 +1,389 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.gui.start;
+import static com.cburch.logisim.gui.start.Strings.S;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.cburch.logisim.circuit.Analyze;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.util.UniquelyNamedThread;
+
+// SimulationServer is a long-lived, headless alternative to "-tty" for running
+// many short simulations without paying for JVM startup and file loading each
+// time. Jobs arrive one per line, on stdin or over a TCP connection to a
+// loopback port, and each is answered with one line of output. Jobs run
+// concurrently on a pool of worker threads, so replies may come back out of
+// order, each tagged with the job's id. A job line has whitespace-separated
+// key=value fields:
+//
+//   id=j1 file=adder.circ circuit=main in:a=0x3 in:b=5 ticks=0 out=sum,cout
+//
+//   file=path      circuit file (required), cached until it is modified
+//   circuit=name   circuit to simulate, the main circuit by default
+//   in:pin=value   drive an input pin, value in binary, 0x-hex, or decimal
+//   load=path      load a memory image into every RAM, as with "-load"
+//   ticks=n        clock ticks to simulate, 0 by default, stopping early if a
+//                  "halt" output pin goes high or the circuit oscillates
+//   out=pin,...    output pins to report, all of them (except halt) by default
+//   id=tag         echoed back in the reply
+//
+// The reply is "id=j1 status=ok ticks=0 sum=0x08 cout=0", where status is ok,
+// halted or oscillating, or "id=j1 status=error msg=..." for a bad job. A line
+// with only "quit" closes the connection once its pending jobs are done. A
+// line with only "shutdown" also stops the server, once every connection's
+// pending jobs are done.
+class SimulationServer {
+
+  // A loaded file, reloaded if the file changes on disk. Circuit states are
+  // created on worker threads, but creating a state touches the project's
+  // option listeners and circuit wire connectivity, so each job clones its root
+  // state from a per-circuit template while holding the lock on this object.
+  private static class CachedFile {
+    final long lastModified;
+    final Project proj;
+    final LogisimFile file;
+    final HashMap<Circuit, CachedCircuit> circuits = new HashMap<>();
+
+    CachedFile(long lastModified, LogisimFile.FileWithSimulations file) {
+      this.lastModified = lastModified;
+      this.proj = new Project(file);
+      this.file = file.file;
+    }
+
+    synchronized CachedCircuit getCircuit(String name) {
+      Circuit circ = name == null ? file.getMainCircuit() : file.getCircuit(name);
+      if (circ == null)
+        return null;
+      CachedCircuit c = circuits.get(circ);
+      if (c == null) {
+        c = new CachedCircuit(proj, circ);
+        circuits.put(circ, c);
+      }
+      return c;
+    }
+
+    synchronized CircuitState newState(CachedCircuit c) {
+      return c.template.cloneAsNewRootState();
+    }
+  }
+
+  private static class CachedCircuit {
+    final CircuitState template;
+    final HashMap<String, Instance> inputs = new HashMap<>();
+    final LinkedHashMap<String, Instance> outputs = new LinkedHashMap<>();
+    Instance haltPin;
+
+    CachedCircuit(Project proj, Circuit circ) {
+      for (Map.Entry<Instance, String> entry : Analyze.getPinLabels(circ).entrySet()) {
+        Instance pin = entry.getKey();
+        String name = entry.getValue();
+        if (Pin.FACTORY.isInputPin(pin))
+          inputs.put(name, pin);
+        else if (name.equals("halt"))
+          haltPin = pin;
+        else
+          outputs.put(name, pin);
+      }
+      template = CircuitState.createRootState(proj, circ);
+      // as in TtyInterface, propagate once to populate the substates
+      template.getPropagator().propagate();
+    }
+  }
+
+  private static class JobException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    JobException(String msg) { super(msg); }
+  }
+
+  private final Map<String, String> substitutions;
+  private final HashMap<File, CachedFile> files = new HashMap<>();
+  private final Object loadLock = new Object();
+  private final ExecutorService workers;
+
+  SimulationServer(Map<String, String> substitutions, int nthreads) {
+    this.substitutions = substitutions;
+    this.workers = Executors.newFixedThreadPool(nthreads,
+        r -> new UniquelyNamedThread(r, "SimulationServer-worker"));
+  }
+
+  static void run(Startup args) {
+    SimulationServer server = new SimulationServer(args.getSubstitutions(),
+        Runtime.getRuntime().availableProcessors());
+    int port = args.getServerPort();
+    if (port < 0) {
+      server.serve(System.in, System.out);
+      server.shutdown();
+      return;
+    }
+    try (ServerSocket listener = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+      System.out.println(S.fmt("serverListening", listener.getLocalPort()));
+      while (true) {
+        Socket conn = listener.accept();
+        new UniquelyNamedThread(() -> {
+          boolean shutdown = false;
+          try {
+            shutdown = server.serve(conn.getInputStream(), conn.getOutputStream());
+          } catch (IOException e) {
+            // connection dropped, nothing to report back
+          } finally {
+            try { conn.close(); } catch (IOException e) { }
+          }
+          if (shutdown) {
+            server.shutdown();
+            System.exit(0);
+          }
+        }, "SimulationServer-connection").start();
+      }
+    } catch (IOException e) {
+      System.out.println(S.fmt("serverSocketError", port, e.getMessage()));
+      System.exit(-1);
+    }
+  }
+
+  void shutdown() {
+    workers.shutdown();
+    try {
+      workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+    }
+  }
+
+  // Reads and runs jobs until end of input, "quit" or "shutdown", then waits
+  // for the jobs to finish. Returns true if the connection asked for the
+  // whole server to shut down.
+  boolean serve(InputStream in, OutputStream out) {
+    PrintStream replies = out instanceof PrintStream ? (PrintStream)out : new PrintStream(out, true);
+    ArrayList<Future<?>> pending = new ArrayList<>();
+    boolean shutdown = false;
+    try {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#"))
+          continue;
+        if (line.equals("quit"))
+          break;
+        if (line.equals("shutdown")) {
+          shutdown = true;
+          break;
+        }
+        String job = line;
+        pending.add(workers.submit(() -> {
+          String reply = runJob(job);
+          synchronized (replies) {
+            replies.println(reply);
+            replies.flush();
+          }
+        }));
+      }
+    } catch (IOException e) {
+      // treat as end of input
+    } catch (RejectedExecutionException e) {
+      // another connection shut the server down
+    }
+    for (Future<?> f : pending) {
+      try {
+        f.get();
+      } catch (Exception e) {
+      }
+    }
+    return shutdown;
+  }
+
+  private CachedFile getFile(String path) throws JobException {
+    File f;
+    try {
+      f = new File(path).getCanonicalFile();
+    } catch (IOException e) {
+      throw new JobException(S.fmt("ttyLoadError", path));
+    }
+    long modified = f.lastModified();
+    synchronized (loadLock) {
+      CachedFile cached = files.get(f);
+      if (cached != null && cached.lastModified == modified)
+        return cached;
+      try {
+        Loader loader = new Loader(null);
+        cached = new CachedFile(modified, loader.openLogisimFile(f, substitutions));
+      } catch (Exception e) {
+        throw new JobException(S.fmt("ttyLoadError", path));
+      }
+      files.put(f, cached);
+      return cached;
+    }
+  }
+
+  String runJob(String job) {
+    String id = null;
+    try {
+      LinkedHashMap<String, String> fields = new LinkedHashMap<>();
+      for (String field : job.split("\\s+")) {
+        int eq = field.indexOf('=');
+        if (eq <= 0)
+          throw new JobException(S.fmt("serverFieldError", field));
+        fields.put(field.substring(0, eq), field.substring(eq + 1));
+      }
+      id = fields.get("id");
+      return reply(id, simulate(fields));
+    } catch (JobException e) {
+      return reply(id, "status=error msg=" + e.getMessage().replaceAll("\\s+", "_"));
+    } catch (Throwable t) {
+      return reply(id, "status=error msg=" + t.toString().replaceAll("\\s+", "_"));
+    }
+  }
+
+  private static String reply(String id, String result) {
+    return id == null ? result : "id=" + id + " " + result;
+  }
+
+  private String simulate(Map<String, String> fields) throws JobException {
+    String path = fields.get("file");
+    if (path == null)
+      throw new JobException(S.get("serverNoFileError"));
+    CachedFile cached = getFile(path);
+    CachedCircuit circ = cached.getCircuit(fields.get("circuit"));
+    if (circ == null)
+      throw new JobException(S.fmt("serverNoCircuitError", fields.get("circuit")));
+
+    long ticks = 0;
+    ArrayList<String> outNames = new ArrayList<>(circ.outputs.keySet());
+    File loadFile = null;
+    HashMap<Instance, Value> inputs = new HashMap<>();
+    for (Map.Entry<String, String> field : fields.entrySet()) {
+      String key = field.getKey();
+      String val = field.getValue();
+      if (key.equals("ticks")) {
+        try {
+          ticks = Long.parseLong(val);
+        } catch (NumberFormatException e) {
+          throw new JobException(S.fmt("serverFieldError", key + "=" + val));
+        }
+      } else if (key.equals("out")) {
+        outNames.clear();
+        for (String name : val.split(",")) {
+          if (!circ.outputs.containsKey(name))
+            throw new JobException(S.fmt("serverNoPinError", name));
+          outNames.add(name);
+        }
+      } else if (key.equals("load")) {
+        loadFile = new File(val);
+      } else if (key.startsWith("in:")) {
+        String name = key.substring(3);
+        Instance pin = circ.inputs.get(name);
+        if (pin == null)
+          throw new JobException(S.fmt("serverNoPinError", name));
+        try {
+          inputs.put(pin, Value.fromLogString(pin.getAttributeValue(StdAttr.WIDTH), val));
+        } catch (Exception e) {
+          throw new JobException(S.fmt("serverFieldError", key + "=" + val));
+        }
+      } else if (!key.equals("id") && !key.equals("file") && !key.equals("circuit")) {
+        throw new JobException(S.fmt("serverFieldError", key + "=" + val));
+      }
+    }
+
+    CircuitState state = cached.newState(circ);
+    Propagator prop = state.getPropagator();
+    if (loadFile != null) {
+      try {
+        if (!TtyInterface.loadRam(state, loadFile))
+          throw new JobException(S.get("loadNoRamError"));
+      } catch (IOException e) {
+        throw new JobException(S.get("loadIoError") + ": " + e.getMessage());
+      }
+    }
+    for (Map.Entry<Instance, Value> entry : inputs.entrySet()) {
+      InstanceState pinState = state.getInstanceState(entry.getKey());
+      Pin.FACTORY.driveInputPin(pinState, entry.getValue());
+    }
+    prop.propagate();
+
+    String status = "ok";
+    long tickCount = 0;
+    while (true) {
+      if (prop.isOscillating()) {
+        status = "oscillating";
+        break;
+      }
+      if (circ.haltPin != null) {
+        Value halt = Pin.FACTORY.getValue(state.getInstanceState(circ.haltPin));
+        if (halt.equals(Value.TRUE)) {
+          status = "halted";
+          break;
+        }
+      }
+      if (tickCount >= ticks)
+        break;
+      tickCount++;
+      prop.toggleClocks();
+      prop.propagate();
+    }
+
+    StringBuilder ret = new StringBuilder();
+    ret.append("status=").append(status).append(" ticks=").append(tickCount);
+    for (String name : outNames) {
+      Value val = Pin.FACTORY.getValue(state.getInstanceState(circ.outputs.get(name)));
+      ret.append(' ').append(name).append('=').append(TtyInterface.valueFormat(val, 0));
+    }
+    return ret.toString();
+  }
+}
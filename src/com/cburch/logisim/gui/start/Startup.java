@@ -94,6 +94,7 @@ public class Startup {
     options.put("-tty", HEADLESS | ONEPARAM | NEEDFILE);
     options.put("-circuit", HEADLESS | ONEPARAM);
     options.put("-load", HEADLESS | ONEPARAM);
+    options.put("-server", HEADLESS | ONEPARAM);
 
     options.put("-?", HEADLESS); // undocumented synonym for -help
     options.put("-clearprops", 0); // obsolete synonym for -clearprefs
@@ -135,6 +136,8 @@ public class Startup {
     if (GraphicsEnvironment.isHeadless() && !Main.headless)
       fail(S.get("argHeadlessError"));
 
+    AppPreferences.handleValueCacheSize();
+
     if (!Main.headless) {
       // we're using the GUI: Set up the Look&Feel to match the platform
       System.setProperty(
@@ -199,6 +202,14 @@ public class Startup {
             ret.ttyFormat |= TtyInterface.FORMAT_HALT;
           else if (fmt.equals("stats"))
             ret.ttyFormat |= TtyInterface.FORMAT_STATISTICS;
+          else if (fmt.equals("compiled"))
+            ret.ttyFormat |= TtyInterface.FORMAT_COMPILED;
+          else if (fmt.equals("metrics"))
+            ret.ttyFormat |= TtyInterface.FORMAT_METRICS;
+          else if (fmt.startsWith("metrics:")) {
+            ret.ttyFormat |= TtyInterface.FORMAT_METRICS;
+            TtyInterface.metricsFile = fmt.substring(8);
+          }
           else if (fmt.equals("binary"))
             ret.ttyFormat |= TtyInterface.FORMAT_TABLE_BIN;
           else if (fmt.equals("hex"))
@@ -239,6 +250,19 @@ public class Startup {
         ret.headlessPngCircuits = circuits;
       } else if (arg.equals("-list")) {
         ret.headlessList = true;
+      } else if (arg.equals("-server")) {
+        ret.headlessServer = true;
+        if (param0.equals("stdin")) {
+          ret.serverPort = -1;
+        } else {
+          try {
+            ret.serverPort = Integer.parseInt(param0);
+          } catch (NumberFormatException e) {
+            fail(S.get("argServerOptionError"));
+          }
+          if (ret.serverPort < 0 || ret.serverPort > 65535)
+            fail(S.get("argServerOptionError"));
+        }
       } else if (arg.equals("-sub")) {
         if (ret.substitutions.containsKey(param0))
           fail(S.get("argDuplicateSubstitutionError"));
@@ -373,6 +397,7 @@ public class Startup {
     System.err.println("   " + S.get("argTtyOption")); // OK
     System.err.println("   " + S.get("argCircuitOption")); // OK
     System.err.println("   " + S.get("argLoadOption")); // OK
+    System.err.println("   " + S.get("argServerOption")); // OK
     System.exit(0);
   }
 
@@ -465,7 +490,7 @@ public class Startup {
   }
 
   // based on command line
-  boolean headlessTty, headlessPng, headlessList;
+  boolean headlessTty, headlessPng, headlessList, headlessServer;
   String headlessPngCircuits[];
   private File templFile = null;
   private boolean templEmpty = false;
@@ -478,6 +503,7 @@ public class Startup {
   private File loadFile;
   private HashMap<String, String> substitutions = new HashMap<>();
   private int ttyFormat = 0;
+  private int serverPort = -1;
   private int ttyRandomHead, ttyRandomBody, ttyRandomTail;
   // from other sources
   private boolean initialized = false;
@@ -524,6 +550,7 @@ public class Startup {
   }
 
   int getTtyFormat() { return ttyFormat; }
+  int getServerPort() { return serverPort; }
   int getTtyRandomHead() { return ttyRandomHead; }
   int getTtyRandomBody() { return ttyRandomBody; }
   int getTtyRandomTail() { return ttyRandomTail; }
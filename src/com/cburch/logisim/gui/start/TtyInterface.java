@@ -32,6 +32,7 @@ package com.cburch.logisim.gui.start;
 import static com.cburch.logisim.gui.start.Strings.S;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
@@ -46,10 +47,13 @@ import com.cburch.logisim.analyze.model.Var;
 import com.cburch.logisim.circuit.Analyze;
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.CompiledCircuit;
 import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.circuit.SimulationMetrics;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Value;
+import com.cburch.logisim.data.ValueCache;
 import com.cburch.logisim.file.FileStatistics;
 import com.cburch.logisim.file.LoadCanceledByUser;
 import com.cburch.logisim.file.LoadFailedException;
@@ -151,6 +155,19 @@ public class TtyInterface {
     System.out.println(S.fmt("ttySpeedMsg", hertzStr, tickCount, elapse));
   }
 
+  private static void displayMetrics(SimulationMetrics metrics) {
+    String json = metrics.toJson(METRICS_TOP_COMPONENTS);
+    if (metricsFile == null) {
+      System.out.print(json);
+      return;
+    }
+    try (FileWriter out = new FileWriter(metricsFile)) {
+      out.write(json);
+    } catch (IOException e) {
+      System.err.println(S.fmt("ttyMetricsWriteError", metricsFile, e.getMessage()));
+    }
+  }
+
   private static void displayStatistics(LogisimFile file) {
     FileStatistics stats = FileStatistics.compute(file,
         file.getMainCircuit());
@@ -238,7 +255,7 @@ public class TtyInterface {
     return shouldPrint;
   }
 
-  private static String valueFormat(Object o, int format) {
+  static String valueFormat(Object o, int format) {
     if (!(o instanceof Value))
       return o.toString();
     Value v = (Value)o;
@@ -265,7 +282,7 @@ public class TtyInterface {
     }
   }
 
-  private static boolean loadRam(CircuitState circState, File loadFile)
+  static boolean loadRam(CircuitState circState, File loadFile)
       throws IOException {
     if (loadFile == null)
       return false;
@@ -310,6 +327,11 @@ public class TtyInterface {
   }
 
   public static void run(Startup args) {
+    if (args.headlessServer) {
+      SimulationServer.run(args);
+      System.exit(0);
+      return;
+    }
     File fileToOpen = args.getFilesToOpen().get(0);
     Loader loader = new Loader(null);
     LogisimFile.FileWithSimulations file;
@@ -485,6 +507,8 @@ public class TtyInterface {
     boolean showTty = (format & FORMAT_TTY) != 0;
     boolean showTuring = (format & FORMAT_TURING) != 0;
     boolean showHalt = (format & FORMAT_HALT) != 0;
+    boolean showMetrics = (format & FORMAT_METRICS) != 0;
+    boolean useCompiled = (format & FORMAT_COMPILED) != 0;
 
     ArrayList<InstanceState> keyboardStates = null;
     StdinThread stdinThread = null;
@@ -524,6 +548,19 @@ public class TtyInterface {
     ArrayList<String> headers = new ArrayList<String>();
     ArrayList<String> formats = new ArrayList<String>();
     Propagator prop = circState.getPropagator();
+    if (showMetrics)
+      prop.setMetrics(new SimulationMetrics());
+    CompiledCircuit compiled = null;
+    if (useCompiled && (showTty || tape != null)) {
+      // Keyboards, TTYs, and paper tapes only work with the propagator
+      System.err.println(S.get("ttyCompiledUnsupported"));
+    } else if (useCompiled) {
+      try {
+        compiled = CompiledCircuit.compile(circState);
+      } catch (CompiledCircuit.CompileException e) {
+        System.err.println(S.fmt("ttyCompileError", e.getMessage()));
+      }
+    }
     boolean needTableHeader = true;
     for (Instance pin : outputPins) {
       if (pin == haltPin)
@@ -543,8 +580,13 @@ public class TtyInterface {
     while (true) {
       ArrayList<Object> curOutputs = new ArrayList<>();
       for (Instance pin : outputPins) {
-        InstanceState pinState = circState.getInstanceState(pin);
-        Value val = Pin.FACTORY.getValue(pinState);
+        Value val;
+        if (compiled != null) {
+          val = compiled.getPortValue(pin.getComponent(), 0);
+        } else {
+          InstanceState pinState = circState.getInstanceState(pin);
+          val = Pin.FACTORY.getValue(pinState);
+        }
         if (pin == haltPin) {
           halted |= val.equals(Value.TRUE);
         } else if (showTable) {
@@ -598,10 +640,16 @@ public class TtyInterface {
       }
       prevOutputs = curOutputs;
       tickCount++;
-      prop.toggleClocks();
-      prop.propagate();
+      if (compiled != null) {
+        compiled.tick();
+      } else {
+        prop.toggleClocks();
+        prop.propagate();
+      }
     }
     long elapse = System.currentTimeMillis() - start;
+    if (compiled != null)
+      compiled.sync();
     if (showTty)
       ensureLineTerminated();
     if (showHalt || retCode != 0) {
@@ -613,7 +661,14 @@ public class TtyInterface {
     }
     if (showSpeed) {
       displaySpeed(tickCount, elapse);
-    }
+      System.out.println(S.fmt("ttyEventPoolMsg",
+            prop.getEventsAllocated(), prop.getEventsRecycled()));
+      ValueCache cache = Value.getCache();
+      System.out.println(S.fmt("ttyValueCacheMsg", cache.getHits(),
+            cache.getMisses(), cache.getEvictions(), cache.getCapacity()));
+    }
+    if (showMetrics)
+      displayMetrics(prop.getMetrics());
     return retCode;
   }
 
@@ -814,5 +869,11 @@ public class TtyInterface {
   public static String turingInitialTape = "";
   public static int turingMaxSteps = -1;
 
+  public static final int FORMAT_METRICS = 1 << 10;
+  public static String metricsFile = null; // null for stdout
+  private static final int METRICS_TOP_COMPONENTS = 10;
+
+  public static final int FORMAT_COMPILED = 1 << 11;
+
   private static boolean lastIsNewline = true;
 }
@@ -0,0 +1,153 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.gui.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.data.TestException;
+import com.cburch.logisim.data.TestVector;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.Instance;
+
+// ParallelTestRunner runs the rows of a test vector on a fork-join pool. Each
+// row of a test vector is independent of the others (the circuit state is
+// reset before each row is driven), so rows can be split into chunks and each
+// chunk run against its own root CircuitState, cloned from the project's
+// state, each with its own Propagator. Results are collected into an array
+// indexed by row, so callers see them in the same order as the serial runner.
+class ParallelTestRunner {
+
+  // Rows per leaf task. Large enough to amortize task overhead, small enough
+  // that work-stealing can balance uneven rows (e.g. oscillating ones).
+  private static final int CHUNK_SIZE = 64;
+
+  private final Circuit circuit;
+  private final Instance[] pin;
+  private final TestVector vector;
+  private final TestException[] results;
+  private final ArrayList<CircuitState> freeStates = new ArrayList<>();
+
+  ParallelTestRunner(CircuitState template, Circuit circuit,
+      Instance[] pin, TestVector vector, int nthreads) {
+    this.circuit = circuit;
+    this.pin = pin;
+    this.vector = vector;
+    this.results = new TestException[vector.data.size()];
+    // Clone all the worker states up front, on the calling thread: creating a
+    // state registers listeners with the project options and may need the
+    // circuit's wire connectivity, neither of which is safe from the pool.
+    for (int i = 0; i < nthreads; i++)
+      freeStates.add(template.cloneAsNewRootState());
+  }
+
+  static int defaultParallelism() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  // Runs all rows, then returns the per-row results: null for a row that
+  // passed, otherwise the FailException or TestException it raised. If a
+  // worker is interrupted, its chunk is abandoned and this throws
+  // CancellationException.
+  TestException[] run() {
+    int n = freeStates.size();
+    ForkJoinPool pool = new ForkJoinPool(n);
+    try {
+      pool.invoke(new Chunk(0, results.length));
+    } finally {
+      pool.shutdown();
+    }
+    return results;
+  }
+
+  private CircuitState acquireState() {
+    synchronized (freeStates) {
+      // Normally there is one state per pool thread, but the pool may add
+      // compensation threads while others are joining, so we may need to wait.
+      while (freeStates.isEmpty()) {
+        try {
+          freeStates.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new CancellationException("test run interrupted");
+        }
+      }
+      return freeStates.remove(freeStates.size() - 1);
+    }
+  }
+
+  private void releaseState(CircuitState state) {
+    synchronized (freeStates) {
+      freeStates.add(state);
+      freeStates.notify();
+    }
+  }
+
+  private class Chunk extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    final int start, end;
+
+    Chunk(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start > CHUNK_SIZE) {
+        int mid = (start + end) >>> 1;
+        invokeAll(new Chunk(start, mid), new Chunk(mid, end));
+        return;
+      }
+      CircuitState state = acquireState();
+      try {
+        List<Value[]> data = vector.data;
+        for (int i = start; i < end; i++) {
+          if (Thread.currentThread().isInterrupted())
+            throw new CancellationException("test run interrupted");
+          try {
+            circuit.doTestVector(state, pin, data.get(i));
+          } catch (TestException e) {
+            results[i] = e;
+          }
+        }
+      } finally {
+        releaseState(state);
+      }
+    }
+  }
+}
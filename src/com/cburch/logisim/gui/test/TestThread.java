@@ -75,22 +75,35 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
 
     System.out.println(S.fmt("testRunning", Integer.toString(vec.data.size())));
 
+    int nthreads = Math.min(ParallelTestRunner.defaultParallelism(),
+        vec.data.size() / PARALLEL_MIN_ROWS);
+    if (nthreads > 1) {
+      // Rows are independent, so run them concurrently on cloned states, then
+      // report the results in row order, exactly as the serial loop would.
+      ParallelTestRunner runner = new ParallelTestRunner(
+          proj.getCircuitState(), circuit, tester.pin, vec, nthreads);
+      TestException[] results = runner.run();
+      int numFail = 0;
+      for (int i = 0; i < results.length; i++) {
+        if (results[i] != null) {
+          reportFailure(i, results[i]);
+          numFail++;
+        }
+      }
+      int numPass = results.length - numFail;
+      System.out.println(S.fmt("testResults", Integer.toString(numPass), Integer.toString(numFail)));
+      return 0;
+    }
+
     int numPass = 0, numFail = 0;
     for (int i = 0; i < vec.data.size(); i++) {
       try {
         System.out.print((i + 1) + " \r");
         tester.test(i);
         numPass++;
-      } catch (FailException e) {
-        System.out.println();
-        System.err.println(S.fmt("testFailed", Integer.toString(i + 1)));
-        for (; e != null; e = e.getMore())
-          System.out.println("  " + e.getMessage());
-        numFail++;
-        continue;
       } catch (TestException e) {
         System.out.println();
-        System.err.println(S.fmt("testFailed", Integer.toString(i + 1) + " " + e.getMessage()));
+        reportFailure(i, e);
         numFail++;
         continue;
       }
@@ -99,6 +112,20 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
     System.out.println(S.fmt("testResults", Integer.toString(numPass), Integer.toString(numFail)));
     return 0;
   }
+
+  private static void reportFailure(int i, TestException err) {
+    if (err instanceof FailException) {
+      System.err.println(S.fmt("testFailed", Integer.toString(i + 1)));
+      for (FailException e = (FailException)err; e != null; e = e.getMore())
+        System.out.println("  " + e.getMessage());
+    } else {
+      System.err.println(S.fmt("testFailed", Integer.toString(i + 1) + " " + err.getMessage()));
+    }
+  }
+
+  // Vectors with fewer rows than this per available thread are run serially.
+  private static final int PARALLEL_MIN_ROWS = 256;
+
   private Instance[] pin;
   private Project project;
   private Circuit circuit;
@@ -36,7 +36,6 @@ import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.EndData;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
-import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.proj.Project;
 
@@ -99,8 +98,7 @@ public class InstanceStateImpl implements InstanceState {
   }
 
   public Value getPortValue(int portIndex) {
-    EndData data = component.getEnd(portIndex);
-    return circuitState.getValue(data.getLocation());
+    return circuitState.getPortValue(component, portIndex);
   }
 
   public Project getProject() {
@@ -116,9 +114,7 @@ public class InstanceStateImpl implements InstanceState {
   }
 
   public boolean isPortConnected(int index) {
-    Circuit circ = circuitState.getCircuit();
-    Location loc = component.getEnd(index).getLocation();
-    return circ.isConnected(loc, component);
+    return circuitState.isPortConnected(component, index);
   }
 
   public void repurpose(CircuitState circuitState, Component component) {
@@ -46,6 +46,7 @@ import javax.swing.JFrame;
 import com.cburch.logisim.Main;
 import com.cburch.logisim.circuit.RadixOption;
 import com.cburch.logisim.data.Direction;
+import com.cburch.logisim.data.Value;
 import com.cburch.logisim.gui.start.Startup;
 import com.cburch.logisim.util.LocaleListener;
 import com.cburch.logisim.util.LocaleManager;
@@ -291,6 +292,13 @@ public class AppPreferences {
     }
   }
 
+  public static void handleValueCacheSize() {
+    try {
+      Value.setCacheSize(Integer.parseInt(VALUE_CACHE_SIZE.get()));
+    } catch (NumberFormatException e) {
+    }
+  }
+
   public static void setTemplateFile(File value) {
     getPrefs();
     setTemplateFile(value, null);
@@ -425,6 +433,16 @@ public class AppPreferences {
     new PrefMonitor("dualScreenFixes",
           new String[] { DUALSCREEN_NONE, DUALSCREEN_FIX, DUALSCREEN_MORE, DUALSCREEN_MOST },
           DUALSCREEN_NONE);
+  // log2 of the number of slots in the Value interning table
+  public static final String VALUE_CACHE_SMALL = "12";
+  public static final String VALUE_CACHE_DEFAULT = "16";
+  public static final String VALUE_CACHE_LARGE = "20";
+  public static final String VALUE_CACHE_HUGE = "24";
+  public static final PrefMonitor<String> VALUE_CACHE_SIZE =
+    new PrefMonitor<>("valueCacheSize",
+          new String[] { VALUE_CACHE_SMALL, VALUE_CACHE_DEFAULT,
+            VALUE_CACHE_LARGE, VALUE_CACHE_HUGE },
+          VALUE_CACHE_DEFAULT);
 
   // Third party softwares preferences
   public static final PrefMonitor<String>
@@ -371,7 +371,8 @@ public class ProjectActions {
 
     File f = chooser.getSelectedFile();
     String circExt = LogisimFile.LOGISIM_EXTENSION;
-    if (!f.getName().endsWith(circExt)) {
+    if (!f.getName().endsWith(circExt)
+        && !f.getName().endsWith(LogisimFile.LOGISIM_EXTENSION_ARCHIVE)) {
       String old = f.getName();
       int ext0 = old.lastIndexOf('.');
       if (ext0 < 0
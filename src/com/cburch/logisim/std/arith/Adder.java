@@ -35,12 +35,15 @@ import java.awt.Color;
 import java.awt.Graphics;
 
 import com.bfh.logisim.hdlgenerator.HDLSupport;
+import com.cburch.logisim.circuit.CompiledCircuit;
+import com.cburch.logisim.circuit.CompiledComponent;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceFactory;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
@@ -55,18 +58,18 @@ public class Adder extends InstanceFactory {
     if (c_in == Value.UNKNOWN || c_in == Value.NIL)
       c_in = Value.FALSE;
     if (a.isFullyDefined() && b.isFullyDefined() && c_in.isFullyDefined()) {
-      if (w >= 32) {
-        long mask = (1L << w) - 1;
-        long ax = (long) a.toIntValue() & mask;
-        long bx = (long) b.toIntValue() & mask;
-        long cx = (long) c_in.toIntValue() & mask;
-        long sum = ax + bx + cx;
-        return new Value[] { Value.createKnown(width, (int) sum),
-          ((sum >> w) & 1) == 0 ? Value.FALSE : Value.TRUE };
+      long ax = a.toLongValue();
+      long bx = b.toLongValue();
+      long cx = c_in.toLongValue();
+      long sum = ax + bx + cx;
+      if (w < 64) {
+        return new Value[] { Value.createKnown(width, sum),
+          ((sum >>> w) & 1) == 0 ? Value.FALSE : Value.TRUE };
       } else {
-        int sum = a.toIntValue() + b.toIntValue() + c_in.toIntValue();
+        // carry out of bit 63 is unsigned overflow
+        boolean carry = Long.compareUnsigned(sum, ax) < 0 || (cx != 0 && sum == ax);
         return new Value[] { Value.createKnown(width, sum),
-          ((sum >> w) & 1) == 0 ? Value.FALSE : Value.TRUE };
+          carry ? Value.TRUE : Value.FALSE };
       }
     } else {
       Value[] bits = new Value[w];
@@ -154,6 +157,26 @@ public class Adder extends InstanceFactory {
     GraphicsUtil.switchToWidth(g, 1);
   }
 
+  @Override
+  protected Object getInstanceFeature(Instance instance, Object key) {
+    if (key == CompiledComponent.class) {
+      return new CompiledComponent() {
+        public void compile(CompiledComponent.Context ctx)
+            throws CompiledCircuit.CompileException {
+          int[] a = ctx.getPort(IN0);
+          int[] b = ctx.getPort(IN1);
+          int[] c_in = ctx.getPort(C_IN);
+          int[] c_out = ctx.getPort(C_OUT);
+          if (a == null || b == null)
+            throw new CompiledComponent.NotCompilableException();
+          ctx.addAdder(a, b, c_in == null ? ctx.getConstant(false) : c_in[0],
+              ctx.getPort(OUT), c_out == null ? -1 : c_out[0]);
+        }
+      };
+    }
+    return super.getInstanceFeature(instance, key);
+  }
+
   @Override
   public void propagate(InstanceState state) {
     // get attributes
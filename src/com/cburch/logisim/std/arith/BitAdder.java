@@ -154,6 +154,12 @@ public class BitAdder extends InstanceFactory {
     int maxCount = 0; // number that are definitely not 0 (incl X/Z)
     for (int i = 1; i <= inputs; i++) {
       Value v = state.getPortValue(i);
+      if (v.isFullyDefined()) {
+        int n = Long.bitCount(v.toLongValue());
+        minCount += n;
+        maxCount += n;
+        continue;
+      }
       Value[] bits = v.getAll();
       for (int j = 0; j < bits.length; j++) {
         Value b = bits[j];
@@ -125,6 +125,23 @@ public class Comparator extends InstanceFactory {
 
     Value a = state.getPortValue(IN0);
     Value b = state.getPortValue(IN1);
+    if (a.isFullyDefined() && b.isFullyDefined()
+        && a.getWidth() == b.getWidth()) {
+      long ax = a.toLongValue();
+      long bx = b.toLongValue();
+      int cmp;
+      if (state.getAttributeValue(MODE_ATTRIBUTE) == UNSIGNED_OPTION) {
+        cmp = Long.compareUnsigned(ax, bx);
+      } else {
+        int s = 64 - a.getWidth();
+        cmp = Long.compare((ax << s) >> s, (bx << s) >> s);
+      }
+      int delay = (dataWidth.getWidth() + 2) * Adder.PER_DELAY;
+      state.setPort(GT, cmp > 0 ? Value.TRUE : Value.FALSE, delay);
+      state.setPort(EQ, cmp == 0 ? Value.TRUE : Value.FALSE, delay);
+      state.setPort(LT, cmp < 0 ? Value.TRUE : Value.FALSE, delay);
+      return;
+    }
     Value[] ax = a.getAll();
     Value[] bx = b.getAll();
     int maxlen = Math.max(ax.length, bx.length);
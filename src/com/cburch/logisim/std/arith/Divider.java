@@ -62,17 +62,16 @@ public class Divider extends InstanceFactory {
     if (upper == Value.NIL /* || upper.isUnknown() */)
       upper = Value.createKnown(width, unsigned ? 0 : a.get(w-1) == Value.TRUE ? -1 : 0);
     if (a.isFullyDefined() && b.isFullyDefined() && upper.isFullyDefined()) {
-      BigInteger uu = BigInteger.valueOf(Multiplier.extend(w, upper.toIntValue(), unsigned));
-      BigInteger aa = BigInteger.valueOf(Multiplier.extend(w, a.toIntValue(), true)); // zero extend
-      BigInteger bb = BigInteger.valueOf(Multiplier.extend(w, b.toIntValue(), unsigned));
+      BigInteger uu = Multiplier.extendBig(w, upper.toLongValue(), unsigned);
+      BigInteger aa = Multiplier.extendBig(w, a.toLongValue(), true); // zero extend
+      BigInteger bb = Multiplier.extendBig(w, b.toLongValue(), unsigned);
 
       BigInteger num = uu.shiftLeft(w).or(aa);
       BigInteger den = bb.equals(BigInteger.ZERO) ? BigInteger.valueOf(1) : bb;
 
       BigInteger res[] = num.divideAndRemainder(den);
-      long mask = (1L << w) - 1;
-      int result = res[0].and(BigInteger.valueOf(mask)).intValue();
-      int rem = res[1].and(BigInteger.valueOf(mask)).intValue();
+      long result = res[0].longValue();
+      long rem = res[1].longValue();
       // if (rem < 0) {
       //   if (den >= 0) {
       //     rem += den;
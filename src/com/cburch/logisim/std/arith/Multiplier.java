@@ -57,11 +57,19 @@ public class Multiplier extends InstanceFactory {
   public static final AttributeOption UNSIGNED_OPTION = Comparator.UNSIGNED_OPTION;
   public static final Attribute<AttributeOption> MODE_ATTR = Comparator.MODE_ATTRIBUTE;
 
-  static long extend(int w, int v, boolean unsigned) {
-    long mask = (1L << w) - 1;
+  static long extend(int w, long v, boolean unsigned) {
+    long mask = w >= 64 ? -1L : (1L << w) - 1;
     if (unsigned) return v & mask;
-    else if ((v & (1<<(w-1))) != 0) return (long)v | ~mask;
-    else return (long)v;
+    else if ((v & (1L<<(w-1))) != 0) return v | ~mask;
+    else return v;
+  }
+
+  // Like extend(), but a full-width unsigned value stays positive.
+  static BigInteger extendBig(int w, long v, boolean unsigned) {
+    BigInteger ret = BigInteger.valueOf(extend(w, v, unsigned));
+    if (unsigned && w >= 64 && v < 0)
+      ret = ret.add(BigInteger.ONE.shiftLeft(64));
+    return ret;
   }
 
   static Value[] computeProduct(BitWidth width, Value a, Value b, Value c_in, boolean unsigned) {
@@ -69,42 +77,50 @@ public class Multiplier extends InstanceFactory {
     if (c_in == Value.NIL || c_in.isUnknown())
       c_in = Value.createKnown(width, 0);
     if (a.isFullyDefined() && b.isFullyDefined() && c_in.isFullyDefined()) {
-      BigInteger aa = BigInteger.valueOf(extend(w, a.toIntValue(), unsigned));
-      BigInteger bb = BigInteger.valueOf(extend(w, b.toIntValue(), unsigned));
-      BigInteger cc = BigInteger.valueOf(extend(w, c_in.toIntValue(), unsigned));
+      if (w <= 32) {
+        // the full product fits in 64 bits (unsigned, for unsigned mode)
+        long aa = extend(w, a.toLongValue(), unsigned);
+        long bb = extend(w, b.toLongValue(), unsigned);
+        long cc = extend(w, c_in.toLongValue(), unsigned);
+        long rr = aa * bb + cc;
+        long hi = unsigned ? rr >>> w : rr >> w;
+        return new Value[] { Value.createKnown(width, rr), Value.createKnown(width, hi) };
+      }
+      BigInteger aa = extendBig(w, a.toLongValue(), unsigned);
+      BigInteger bb = extendBig(w, b.toLongValue(), unsigned);
+      BigInteger cc = extendBig(w, c_in.toLongValue(), unsigned);
       BigInteger rr = aa.multiply(bb).add(cc);
-      long mask = (1L << w) - 1;
-      int lo = rr.and(BigInteger.valueOf(mask)).intValue();
-      int hi = rr.shiftRight(w).and(BigInteger.valueOf(mask)).intValue();
+      long lo = rr.longValue();
+      long hi = rr.shiftRight(w).longValue();
       return new Value[] { Value.createKnown(width, lo), Value.createKnown(width, hi) };
     } else {
       Value[] avals = a.getAll();
       int aOk = findUnknown(avals);
       int aErr = findError(avals);
-      int ax = getKnown(avals);
+      long ax = getKnown(avals);
       Value[] bvals = b.getAll();
       int bOk = findUnknown(bvals);
       int bErr = findError(bvals);
-      int bx = getKnown(bvals);
+      long bx = getKnown(bvals);
       Value[] cvals = c_in.getAll();
       int cOk = findUnknown(cvals);
       int cErr = findError(cvals);
-      int cx = getKnown(cvals);
+      long cx = getKnown(cvals);
 
       int known = Math.min(Math.min(aOk, bOk), cOk);
       int error = Math.min(Math.min(aErr, bErr), cErr);
 
       // note: this is probably wrong, but the inputs were bad anyway
-      BigInteger aa = BigInteger.valueOf(extend(w, ax, unsigned));
-      BigInteger bb = BigInteger.valueOf(extend(w, bx, unsigned));
-      BigInteger cc = BigInteger.valueOf(extend(w, cx, unsigned));
+      BigInteger aa = extendBig(w, ax, unsigned);
+      BigInteger bb = extendBig(w, bx, unsigned);
+      BigInteger cc = extendBig(w, cx, unsigned);
       BigInteger rr = aa.multiply(bb).add(cc);
       long ret = rr.longValue();
 
       Value[] bits = new Value[w];
       for (int i = 0; i < w; i++) {
         if (i < known) {
-          bits[i] = ((ret & (1 << i)) != 0 ? Value.TRUE : Value.FALSE);
+          bits[i] = ((ret & (1L << i)) != 0 ? Value.TRUE : Value.FALSE);
         } else if (i < error) {
           bits[i] = Value.UNKNOWN;
         } else {
@@ -133,10 +149,10 @@ public class Multiplier extends InstanceFactory {
     return vals.length;
   }
 
-  private static int getKnown(Value[] vals) {
-    int ret = 0;
+  private static long getKnown(Value[] vals) {
+    long ret = 0;
     for (int i = 0; i < vals.length; i++) {
-      int val = vals[i].toIntValue();
+      long val = vals[i].toLongValue();
       if (val < 0)
         return ret;
       ret |= val << i;
@@ -33,12 +33,15 @@ package com.cburch.logisim.std.gates;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.util.Arrays;
 
 import javax.swing.Icon;
 
 import com.cburch.logisim.LogisimVersion;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.CompiledCircuit;
+import com.cburch.logisim.circuit.CompiledComponent;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
@@ -47,11 +50,11 @@ import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
-import com.cburch.logisim.file.Options;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceFactory;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.InstanceStateImpl;
 import com.cburch.logisim.instance.Port;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.prefs.AppPreferences;
@@ -144,6 +147,11 @@ abstract class AbstractGate extends InstanceFactory {
   protected abstract Value computeOutput(Value[] inputs, int numInputs,
       InstanceState state);
 
+  // Adds the operation computing one bit of the output from the same bit of
+  // each connected input, for CompiledComponent.
+  protected abstract void compileOutput(CompiledComponent.Context ctx,
+      int[] inputs, int negated, int out, AttributeSet attrs);
+
   void computePorts(Instance instance) {
     GateAttributes attrs = (GateAttributes) instance.getAttributeSet();
     int inputs = attrs.inputs;
@@ -354,6 +362,42 @@ abstract class AbstractGate extends InstanceFactory {
         }
       };
     }
+    if (key == CompiledComponent.class) {
+      return new CompiledComponent() {
+        public void compile(CompiledComponent.Context ctx)
+            throws CompiledCircuit.CompileException {
+          GateAttributes attrs = (GateAttributes) instance
+              .getAttributeSet();
+          boolean errorIfUndefined = ctx.getCircuitState().getProject()
+              .getOptions().isGateUndefinedError();
+          if (attrs.out != GateAttributes.OUTPUT_01)
+            throw new CompiledComponent.NotCompilableException();
+          int[] out = ctx.getPort(0);
+          if (out == null)
+            return;
+          int[][] inputs = new int[attrs.inputs][];
+          int numInputs = 0;
+          int negated = 0;
+          for (int i = 1; i <= attrs.inputs; i++) {
+            int[] in = ctx.getPort(i);
+            if (in != null) {
+              negated |= ((attrs.negated >> (i - 1)) & 1) << numInputs;
+              inputs[numInputs++] = in;
+            } else if (errorIfUndefined) {
+              throw new CompiledComponent.NotCompilableException();
+            }
+          }
+          if (numInputs == 0)
+            throw new CompiledComponent.NotCompilableException();
+          for (int b = 0; b < out.length; b++) {
+            int[] bits = new int[numInputs];
+            for (int i = 0; i < numInputs; i++)
+              bits[i] = inputs[i][b];
+            compileOutput(ctx, bits, negated, out[b], attrs);
+          }
+        }
+      };
+    }
     return super.getInstanceFeature(instance, key);
   }
 
@@ -404,6 +448,7 @@ abstract class AbstractGate extends InstanceFactory {
       computeLabel(instance);
     } else if (attr == GateAttributes.ATTR_INPUTS
         || attr instanceof NegateAttribute) {
+      ((GateAttributes) instance.getAttributeSet()).plan = null;
       instance.recomputeBounds();
       computePorts(instance);
     } else if (attr == GateAttributes.ATTR_XOR) {
@@ -552,40 +597,58 @@ abstract class AbstractGate extends InstanceFactory {
   protected abstract void paintShape(InstancePainter painter, int width,
       int height);
 
-  @Override
-  public void propagate(InstanceState state) {
-    GateAttributes attrs = (GateAttributes) state.getAttributeSet();
+  // Finds which inputs are connected, reusing the plan from the previous
+  // propagation unless the circuit has been rewired since.
+  private static GateAttributes.Plan getPlan(InstanceState state,
+      GateAttributes attrs) {
+    Object wiring = null;
+    if (state instanceof InstanceStateImpl)
+      wiring = ((InstanceStateImpl) state).getCircuitState().getWiringKey();
+    GateAttributes.Plan plan = attrs.plan;
+    if (plan != null && wiring != null && plan.wiring == wiring)
+      return plan;
     int inputCount = attrs.inputs;
-    int negated = attrs.negated;
-    AttributeSet opts = state.getProject().getOptions().getAttributeSet();
-    boolean errorIfUndefined = opts.getValue(Options.ATTR_GATE_UNDEFINED)
-        .equals(Options.GATE_UNDEFINED_ERROR);
-
-    Value[] inputs = new Value[inputCount];
+    int[] ports = new int[inputCount];
     int numInputs = 0;
-    boolean error = false;
+    int negated = 0;
     for (int i = 1; i <= inputCount; i++) {
       if (state.isPortConnected(i)) {
-        int negatedBit = (negated >> (i - 1)) & 1;
-        if (negatedBit == 1) {
-          inputs[numInputs] = state.getPortValue(i).not();
-        } else {
-          inputs[numInputs] = state.getPortValue(i);
-        }
-        numInputs++;
-      } else {
-        if (errorIfUndefined) {
-          error = true;
-        }
+        negated |= ((attrs.negated >> (i - 1)) & 1) << numInputs;
+        ports[numInputs++] = i;
       }
     }
-    Value out = null;
-    if (numInputs == 0 || error) {
-      out = Value.createError(attrs.width);
-    } else {
-      out = computeOutput(inputs, numInputs, state);
-      out = pullOutput(out, attrs.out);
+    if (numInputs < inputCount)
+      ports = Arrays.copyOf(ports, numInputs);
+    plan = new GateAttributes.Plan(wiring, ports, negated,
+        numInputs < inputCount);
+    if (wiring != null)
+      attrs.plan = plan;
+    return plan;
+  }
+
+  // Gates on different substates may propagate in parallel, so each thread
+  // gets its own buffer of input values.
+  private static final ThreadLocal<Value[]> scratch = ThreadLocal
+      .withInitial(() -> new Value[GateAttributes.MAX_INPUTS]);
+
+  @Override
+  public void propagate(InstanceState state) {
+    GateAttributes attrs = (GateAttributes) state.getAttributeSet();
+    GateAttributes.Plan plan = getPlan(state, attrs);
+    int numInputs = plan.ports.length;
+    if (numInputs == 0 || (plan.unconnected
+          && state.getProject().getOptions().isGateUndefinedError())) {
+      state.setPort(0, Value.createError(attrs.width), GateAttributes.DELAY);
+      return;
+    }
+
+    Value[] inputs = scratch.get();
+    for (int i = 0; i < numInputs; i++) {
+      Value v = state.getPortValue(plan.ports[i]);
+      inputs[i] = ((plan.negated >> i) & 1) == 1 ? v.not() : v;
     }
+    Value out = computeOutput(inputs, numInputs, state);
+    out = pullOutput(out, attrs.out);
     state.setPort(0, out, GateAttributes.DELAY);
   }
 
@@ -37,6 +37,8 @@ import java.awt.Graphics2D;
 
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expression;
+import com.cburch.logisim.circuit.CompiledCircuit;
+import com.cburch.logisim.circuit.CompiledComponent;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
@@ -45,7 +47,6 @@ import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
-import com.cburch.logisim.file.Options;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceFactory;
 import com.cburch.logisim.instance.InstancePainter;
@@ -59,10 +60,8 @@ import com.cburch.logisim.util.Icons;
 class Buffer extends InstanceFactory {
 
   static Value repair(InstanceState state, Value v) {
-    AttributeSet opts = state.getProject().getOptions().getAttributeSet();
-    Object onUndefined = opts.getValue(Options.ATTR_GATE_UNDEFINED);
-    boolean errorIfUndefined = onUndefined
-        .equals(Options.GATE_UNDEFINED_ERROR);
+    boolean errorIfUndefined = state.getProject().getOptions()
+        .isGateUndefinedError();
     Value repaired;
     if (errorIfUndefined) {
       int vw = v.getWidth();
@@ -137,6 +136,22 @@ class Buffer extends InstanceFactory {
         }
       };
     }
+    if (key == CompiledComponent.class) {
+      return new CompiledComponent() {
+        public void compile(CompiledComponent.Context ctx)
+            throws CompiledCircuit.CompileException {
+          int[] in = ctx.getPort(1);
+          int[] out = ctx.getPort(0);
+          if (out == null)
+            return;
+          if (in == null)
+            throw new CompiledComponent.NotCompilableException();
+          for (int b = 0; b < out.length; b++)
+            ctx.addGate(CompiledComponent.AND, new int[] { in[b] }, 0, false,
+                out[b]);
+        }
+      };
+    }
     return super.getInstanceFeature(instance, key);
   }
 
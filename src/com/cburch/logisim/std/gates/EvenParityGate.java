@@ -34,6 +34,8 @@ import static com.cburch.logisim.std.Strings.S;
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.CompiledComponent;
+import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
@@ -63,6 +65,12 @@ class EvenParityGate extends AbstractGate {
     return GateFunctions.computeOddParity(inputs, numInputs).not();
   }
 
+  @Override
+  protected void compileOutput(CompiledComponent.Context ctx, int[] inputs,
+      int negated, int out, AttributeSet attrs) {
+    ctx.addGate(CompiledComponent.XOR_ODD, inputs, negated, true, out);
+  }
+
   @Override
   protected Value getIdentity() {
     return Value.FALSE;
@@ -90,13 +90,31 @@ class GateAttributes extends AbstractAttributeSet {
   String label = "";
   Font labelFont = StdAttr.DEFAULT_LABEL_FONT;
 
+  // Which inputs are connected, computed by AbstractGate.getPlan() for the
+  // wiring in effect when the gate last propagated.
+  static final class Plan {
+    final Object wiring; // from CircuitState.getWiringKey()
+    final int[] ports; // connected input ports, in order
+    final int negated; // negation bits for the connected inputs only
+    final boolean unconnected; // whether any input is left unconnected
+
+    Plan(Object wiring, int[] ports, int negated, boolean unconnected) {
+      this.wiring = wiring;
+      this.ports = ports;
+      this.negated = negated;
+      this.unconnected = unconnected;
+    }
+  }
+
+  volatile Plan plan; // cleared whenever the inputs or negation change
+
   GateAttributes(boolean isXor) {
     xorBehave = isXor ? XOR_ONE : null;
   }
 
   @Override
   protected void copyInto(AbstractAttributeSet dest) {
-    ; // nothing to do
+    ((GateAttributes) dest).plan = null;
   }
 
   @Override
@@ -36,6 +36,8 @@ import java.awt.Graphics;
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.CompiledComponent;
+import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
@@ -67,6 +69,12 @@ class NandGate extends AbstractGate {
     return GateFunctions.computeAnd(inputs, numInputs).not();
   }
 
+  @Override
+  protected void compileOutput(CompiledComponent.Context ctx, int[] inputs,
+      int negated, int out, AttributeSet attrs) {
+    ctx.addGate(CompiledComponent.AND, inputs, negated, true, out);
+  }
+
   @Override
   protected Value getIdentity() {
     return Value.TRUE;
@@ -36,6 +36,8 @@ import java.awt.Graphics;
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.CompiledComponent;
+import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstancePainter;
@@ -70,6 +72,12 @@ class NorGate extends AbstractGate {
     return GateFunctions.computeOr(inputs, numInputs).not();
   }
 
+  @Override
+  protected void compileOutput(CompiledComponent.Context ctx, int[] inputs,
+      int negated, int out, AttributeSet attrs) {
+    ctx.addGate(CompiledComponent.OR, inputs, negated, true, out);
+  }
+
   @Override
   protected Value getIdentity() {
     return Value.FALSE;
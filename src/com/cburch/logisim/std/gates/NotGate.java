@@ -40,6 +40,8 @@ import javax.swing.Icon;
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.CompiledCircuit;
+import com.cburch.logisim.circuit.CompiledComponent;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
@@ -159,6 +161,22 @@ class NotGate extends InstanceFactory {
         }
       };
     }
+    if (key == CompiledComponent.class) {
+      return new CompiledComponent() {
+        public void compile(CompiledComponent.Context ctx)
+            throws CompiledCircuit.CompileException {
+          int[] in = ctx.getPort(1);
+          int[] out = ctx.getPort(0);
+          if (out == null)
+            return;
+          if (in == null)
+            throw new CompiledComponent.NotCompilableException();
+          for (int b = 0; b < out.length; b++)
+            ctx.addGate(CompiledComponent.AND, new int[] { in[b] }, 0, true,
+                out[b]);
+        }
+      };
+    }
     return super.getInstanceFeature(instance, key);
   }
 
@@ -38,6 +38,8 @@ import java.awt.Graphics;
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.CompiledComponent;
+import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
@@ -68,6 +70,12 @@ class OddParityGate extends AbstractGate {
     return GateFunctions.computeOddParity(inputs, numInputs);
   }
 
+  @Override
+  protected void compileOutput(CompiledComponent.Context ctx, int[] inputs,
+      int negated, int out, AttributeSet attrs) {
+    ctx.addGate(CompiledComponent.XOR_ODD, inputs, negated, false, out);
+  }
+
   @Override
   protected Value getIdentity() {
     return Value.FALSE;
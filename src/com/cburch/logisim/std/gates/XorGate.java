@@ -36,6 +36,7 @@ import java.awt.Graphics;
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.CompiledComponent;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.Instance;
@@ -82,6 +83,15 @@ class XorGate extends AbstractGate {
     }
   }
 
+  @Override
+  protected void compileOutput(CompiledComponent.Context ctx, int[] inputs,
+      int negated, int out, AttributeSet attrs) {
+    Object behavior = attrs.getValue(GateAttributes.ATTR_XOR);
+    int type = behavior == GateAttributes.XOR_ODD ? CompiledComponent.XOR_ODD
+        : CompiledComponent.XOR_ONE;
+    ctx.addGate(type, inputs, negated, false, out);
+  }
+
   @Override
   protected Value getIdentity() {
     return Value.FALSE;
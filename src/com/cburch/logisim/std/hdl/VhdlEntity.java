@@ -68,6 +68,7 @@ import com.cburch.logisim.instance.InstanceComponent;
 import com.cburch.logisim.instance.InstanceFactory;
 import com.cburch.logisim.instance.InstancePainter;
 import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.InstanceStateImpl;
 import com.cburch.logisim.instance.Port;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.std.wiring.Pin;
@@ -255,53 +256,23 @@ public class VhdlEntity extends InstanceFactory implements HdlModelListener {
 
       VhdlSimulator vhdlSimulator = state.getProject().getVhdlSimulator();
 
+      String vhdlEntityName = getHDLNameForInstanceSimulation(state.getAttributeSet());
       List<Port> ports = state.getInstance().getPorts();
       int n = ports.size();
+      ArrayList<String> messages = new ArrayList<String>(n);
       for (int i = 0; i < n; i++) {
         Port p = ports.get(i);
         Value val = state.getPortValue(i);
-        String vhdlEntityName = getHDLNameForInstanceSimulation(state.getAttributeSet());
         String message = p.getType() + ":" + vhdlEntityName + "_"
             + p.getToolTip() + ":" + val.toBinaryString() + ":" + i;
-        vhdlSimulator.send(message);
+        messages.add(message);
       }
 
-      vhdlSimulator.send("sync");
-
-      /* Get response from tcl server */
-      String server_response = vhdlSimulator.receive();
-      while (server_response != null
-          && server_response.length() > 0
-          && !server_response.equals("sync")) {
-
-        String[] parameters = server_response.split("\\:");
-        String busValue = parameters[1];
-        Value vector_values[] = new Value[busValue.length()];
-
-        int k = busValue.length() - 1;
-        for (char bit : busValue.toCharArray()) {
-
-          try {
-            switch (Character.getNumericValue(bit)) {
-            case 0:
-              vector_values[k] = Value.FALSE;
-              break;
-            case 1:
-              vector_values[k] = Value.TRUE;
-              break;
-            default:
-              vector_values[k] = Value.UNKNOWN;
-              break;
-            }
-          } catch (NumberFormatException e) {
-            vector_values[k] = Value.UNKNOWN;
-          }
-          k--;
-        }
-
-        state.setPort(Integer.parseInt(parameters[2]),
-            Value.create(vector_values), 1);
-      }
+      /* The outputs are set when the propagator flushes the simulator, in
+       * one batch with the other VHDL entities of this step */
+      InstanceStateImpl impl = (InstanceStateImpl) state;
+      vhdlSimulator.queue(messages, impl.getCircuitState(),
+          impl.getComponent());
 
     } else { // VhdlSimulation stopped or disabled
       List<Port> ports = state.getInstance().getPorts();
@@ -37,8 +37,10 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.help.UnsupportedOperationException;
 
@@ -47,6 +49,7 @@ import com.cburch.logisim.circuit.CircuitEvent;
 import com.cburch.logisim.circuit.CircuitListener;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Value;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.util.SocketClient;
 
@@ -65,6 +68,73 @@ public class VhdlSimulator implements CircuitListener {
     DISABLED, ENABLED, STARTING, RUNNING;
   }
 
+  /* The component and circuit state whose port a simulated signal drives */
+  private static class Target {
+    final CircuitState state;
+    final Component comp;
+
+    Target(CircuitState state, Component comp) {
+      this.state = state;
+      this.comp = comp;
+    }
+  }
+
+  /* The port messages of one propagated entity */
+  private static class Queued {
+    final List<String> messages;
+    final Target target;
+
+    Queued(List<String> messages, Target target) {
+      this.messages = messages;
+      this.target = target;
+    }
+  }
+
+  /**
+   * Send messages to the binder followed by a sync, and collect the lines it
+   * answers with until its own sync.
+   */
+  static List<String> exchange(SocketClient client, List<String> messages) {
+    ArrayList<String> batch = new ArrayList<String>(messages.size() + 1);
+    batch.addAll(messages);
+    batch.add("sync");
+    client.send(batch);
+
+    ArrayList<String> responses = new ArrayList<String>();
+    String response = client.receive();
+    while (response != null && response.length() > 0
+        && !response.equals("sync")) {
+      responses.add(response);
+      response = client.receive();
+    }
+    return responses;
+  }
+
+  /**
+   * Parse a bus value as examined by the simulator, most significant bit
+   * first. Anything other than 0 or 1 (U, X, Z, ...) is unknown.
+   */
+  static Value parseValue(String busValue) {
+    Value vector_values[] = new Value[busValue.length()];
+
+    int k = busValue.length() - 1;
+    for (char bit : busValue.toCharArray()) {
+      switch (bit) {
+      case '0':
+        vector_values[k] = Value.FALSE;
+        break;
+      case '1':
+        vector_values[k] = Value.TRUE;
+        break;
+      default:
+        vector_values[k] = Value.UNKNOWN;
+        break;
+      }
+      k--;
+    }
+    return Value.create(vector_values);
+  }
+
   public static List<Component> getVhdlComponents(CircuitState s) {
 
     LinkedList<Component> vhdlComp = new LinkedList<Component>();
@@ -105,6 +175,13 @@ public class VhdlSimulator implements CircuitListener {
 
   private State state = State.DISABLED;
 
+  /* Port messages of the entities propagated since the last flush, per
+   * circuit state. With Options.ATTR_SIM_PARALLEL, states are propagated on
+   * several threads, but each state's list is only appended to by the thread
+   * propagating that state. */
+  private final ConcurrentHashMap<CircuitState, ArrayList<Queued>> pending =
+      new ConcurrentHashMap<CircuitState, ArrayList<Queued>>();
+
   public VhdlSimulator(Project circuitState) {
     this.project = circuitState;
   }
@@ -307,6 +384,77 @@ public class VhdlSimulator implements CircuitListener {
     return socketClient.receive();
   }
 
+  /**
+   * Queue the port messages of one VHDL entity. Nothing is sent until
+   * flush(), which the propagator calls once all the components of a
+   * propagation step have been propagated, so every entity updated in that
+   * step shares one round trip to the binder. Each message has the form
+   * type:signal:value:port.
+   */
+  public void queue(List<String> messages, CircuitState circState,
+      Component comp) {
+    pending.computeIfAbsent(circState, s -> new ArrayList<Queued>())
+        .add(new Queued(messages, new Target(circState, comp)));
+  }
+
+  public boolean hasQueued() {
+    return !pending.isEmpty();
+  }
+
+  /**
+   * Send the queued port messages in as few batches as possible, taking
+   * the circuit states in the given order, run one simulation step per
+   * batch, and drive the outputs it returns onto their components. The
+   * same entity in two circuit states drives the same signals, so the
+   * second one starts a new batch. Must be called from the simulator
+   * thread, with the states in the order the serial engine processes them,
+   * so that the batches and the order of the outputs do not depend on
+   * which thread propagated what.
+   */
+  public void flush(List<CircuitState> order) {
+    ArrayList<String> messages = new ArrayList<String>();
+    HashMap<String, Target> signals = new HashMap<String, Target>();
+    for (CircuitState circState : order) {
+      ArrayList<Queued> queued = pending.remove(circState);
+      if (queued == null)
+        continue;
+      for (Queued q : queued) {
+        for (String message : q.messages) {
+          if (signals.containsKey(message.split("\\:")[1])) {
+            exchange(messages, signals);
+            messages = new ArrayList<String>();
+            signals = new HashMap<String, Target>();
+            break;
+          }
+        }
+        for (String message : q.messages) {
+          messages.add(message);
+          signals.put(message.split("\\:")[1], q.target);
+        }
+      }
+    }
+    if (!messages.isEmpty())
+      exchange(messages, signals);
+    // states no longer in the circuit
+    pending.clear();
+  }
+
+  private void exchange(List<String> messages, HashMap<String, Target> signals) {
+    if (!isRunning())
+      return;
+
+    for (String response : exchange(socketClient, messages)) {
+      String[] parameters = response.split("\\:");
+      Target target = signals.get(parameters[0]);
+      if (target == null || parameters.length < 3)
+        continue;
+      Component comp = target.comp;
+      int port = Integer.parseInt(parameters[2]);
+      target.state.setValue(comp.getEnd(port).getLocation(),
+          parseValue(parameters[1]), comp, 1);
+    }
+  }
+
   public void removeVhdlSimStateListener(VhdlSimulatorListener l) {
     listeners.remove(l);
   }
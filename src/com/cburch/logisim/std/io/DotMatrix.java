@@ -181,11 +181,9 @@ public class DotMatrix extends InstanceFactory {
           new AttributeOption[] { INPUT_COLUMN, INPUT_ROW,
             INPUT_SELECT });
   static final Attribute<Integer> ATTR_MATRIX_COLS = Attributes
-      .forIntegerRange("matrixcols", S.getter("ioMatrixCols"), 1,
-          Value.MAX_WIDTH);
+      .forIntegerRange("matrixcols", S.getter("ioMatrixCols"), 1, 32);
   static final Attribute<Integer> ATTR_MATRIX_ROWS = Attributes
-      .forIntegerRange("matrixrows", S.getter("ioMatrixRows"), 1,
-          Value.MAX_WIDTH);
+      .forIntegerRange("matrixrows", S.getter("ioMatrixRows"), 1, 32);
   static final Attribute<AttributeOption> ATTR_DOT_SHAPE = Attributes
       .forOption("dotshape", S.getter("ioMatrixShape"),
           new AttributeOption[] { SHAPE_CIRCLE, SHAPE_SQUARE });
@@ -41,9 +41,11 @@ import static com.cburch.logisim.std.Strings.S;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
 import java.awt.image.DirectColorModel;
 import java.awt.image.IndexColorModel;
 import java.awt.Graphics;
+import java.util.Arrays;
 
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.comp.Component;
@@ -90,12 +92,13 @@ class Video extends ManagedComponent implements ToolTipMaker, AttributeListener
   static final String[] COLOR_OPTIONS = { COLOR_RGB, COLOR_555_RGB, COLOR_565_RGB, COLOR_111_RGB, COLOR_ATARI, COLOR_XTERM16, COLOR_XTERM256, COLOR_GRAY4 };
 
   static final Integer[] SIZE_OPTIONS = { 2, 4, 8, 16, 32, 64, 128, 256 };
+  static final Integer[] PIXELS_OPTIONS = { 1, 2, 4, 8, 16 };
 
-  public static final Attribute BLINK_OPTION = Attributes.forOption("cursor",
+  public static final Attribute<String> BLINK_OPTION = Attributes.forOption("cursor",
       S.getter("rgbVideoCursor"), BLINK_OPTIONS);
-  public static final Attribute RESET_OPTION = Attributes.forOption("reset",
+  public static final Attribute<String> RESET_OPTION = Attributes.forOption("reset",
       S.getter("rgbVideoReset"), RESET_OPTIONS);
-  public static final Attribute COLOR_OPTION = Attributes.forOption("color",
+  public static final Attribute<String> COLOR_OPTION = Attributes.forOption("color",
       S.getter("rgbVideoColor"), COLOR_OPTIONS);
   public static final Attribute<Integer> WIDTH_OPTION = Attributes.forOption("width",
       S.getter("rgbVideoWidth"), SIZE_OPTIONS);
@@ -103,8 +106,13 @@ class Video extends ManagedComponent implements ToolTipMaker, AttributeListener
       S.getter("rgbVideoHeight"), SIZE_OPTIONS);
   public static final Attribute<Integer> SCALE_OPTION = Attributes.forIntegerRange("scale",
       S.getter("rgbVideoScale"), 1, 8);
+  public static final Attribute<Integer> PIXELS_OPTION = Attributes.forOption("pixels",
+      S.getter("rgbVideoPixels"), PIXELS_OPTIONS);
 
-  private static final Attribute[] ATTRIBUTES = { BLINK_OPTION, RESET_OPTION, COLOR_OPTION, WIDTH_OPTION, HEIGHT_OPTION, SCALE_OPTION };
+  private static final Attribute<?>[] ATTRIBUTES = { BLINK_OPTION, RESET_OPTION, COLOR_OPTION, WIDTH_OPTION, HEIGHT_OPTION, SCALE_OPTION, PIXELS_OPTION };
+
+  // The framebuffer is always this big, whatever the width and height.
+  static final int FB_SIZE = 256;
 
   private static class Factory extends AbstractComponentFactory {
     private Factory() { }
@@ -112,7 +120,7 @@ class Video extends ManagedComponent implements ToolTipMaker, AttributeListener
     public String getDisplayName() { return S.get("rgbVideoComponent"); }
     public AttributeSet createAttributeSet() {
       return AttributeSets.fixedSet(ATTRIBUTES, new Object[] {
-        BLINK_OPTIONS[0], RESET_OPTIONS[0], COLOR_OPTIONS[0], new Integer(128), new Integer(128), new Integer(2) });
+        BLINK_OPTIONS[0], RESET_OPTIONS[0], COLOR_OPTIONS[0], Integer.valueOf(128), Integer.valueOf(128), Integer.valueOf(2), Integer.valueOf(1) });
     }
     public Component createComponent(Location loc, AttributeSet attrs) { return new Video(loc, attrs); }
     public Bounds getOffsetBounds(AttributeSet attrs) {
@@ -150,37 +158,54 @@ class Video extends ManagedComponent implements ToolTipMaker, AttributeListener
   Value val(CircuitState s, int pin) { return s.getValue(loc(pin)); }
   int addr(CircuitState s, int pin) { return val(s, pin).toIntValue(); }
 
+  // Pixels written per clock: the data input holds this many pixels, the
+  // first in the lowest bits, which go into a row starting at (x, y). There
+  // are fewer than asked for if they wouldn't all fit in 64 bits.
+  static int pixelsPerWrite(AttributeSet attrs) {
+    Integer n = attrs.getValue(PIXELS_OPTION);
+    int bpp = getColorModel(attrs.getValue(COLOR_OPTION)).getPixelSize();
+    int max = Integer.highestOneBit(Value.MAX_WIDTH / bpp);
+    return n == null ? 1 : Math.min(n, max);
+  }
+
   public void propagate(CircuitState circuitState) {
     State state = getState(circuitState);
     AttributeSet attrs = getAttributeSet();
     int x = addr(circuitState, P_X);
     int y = addr(circuitState, P_Y);
-    int color = addr(circuitState, P_DATA);
+    long data = val(circuitState, P_DATA).toLongValue();
+    ColorModel cm = getColorModel(attrs.getValue(COLOR_OPTION));
+    int bpp = cm.getPixelSize();
+    long mask = (1L << bpp) - 1;
+    int n = pixelsPerWrite(attrs);
+    int color = n == 1 ? (int) data : (int) (data & mask);
     state.last_x = x;
     state.last_y = y;
     state.color = color;
 
     Object reset_option = attrs.getValue(RESET_OPTION);
     if (reset_option == null) reset_option = RESET_OPTIONS[0];
-    ColorModel cm = getColorModel(attrs.getValue(COLOR_OPTION));
     int w = attrs.getValue(WIDTH_OPTION);
     int h = attrs.getValue(HEIGHT_OPTION);
 
     if (state.tick(val(circuitState, P_CLK)) && val(circuitState, P_WE) == Value.TRUE) {
-      Graphics g = state.img.getGraphics();
-      g.setColor(new Color(cm.getRGB(color)));
-      g.fillRect(x, y, 1, 1);
-      if (RESET_SYNC.equals(reset_option) && val(circuitState, P_RST) == Value.TRUE) {
-        g.setColor(Color.BLACK);
-        g.fillRect(0, 0, w, h);
+      if (y >= 0 && y < h && x >= 0 && x < w) {
+        if (n == 1) {
+          state.pixels[y * FB_SIZE + x] = 0xFF000000 | cm.getRGB(color);
+        } else {
+          n = Math.min(n, w - x);
+          for (int i = 0; i < n; i++)
+            state.pixels[y * FB_SIZE + x + i] = 0xFF000000
+                | cm.getRGB((int) ((data >>> (i * bpp)) & mask));
+        }
+        state.markDirty(x, y, x + n, y + 1);
       }
+      if (RESET_SYNC.equals(reset_option) && val(circuitState, P_RST) == Value.TRUE)
+        state.fill(w, h, 0xFF000000);
     }
 
-    if (!RESET_SYNC.equals(reset_option) && val(circuitState, P_RST) == Value.TRUE) {
-      Graphics g = state.img.getGraphics();
-      g.setColor(Color.BLACK);
-      g.fillRect(0, 0, w, h);
-    }
+    if (!RESET_SYNC.equals(reset_option) && val(circuitState, P_RST) == Value.TRUE)
+      state.fill(w, h, 0xFF000000);
   }
 
   public void draw(ComponentDrawContext context) {
@@ -317,7 +342,7 @@ class Video extends ManagedComponent implements ToolTipMaker, AttributeListener
     }
     context.drawClock(this, P_CLK, Direction.NORTH);
     g.drawRect(x+6, y+6, s*w+2, s*h+2);
-    g.drawImage(state.img, x+7, y+7, x+7+s*w, y+7+s*h, 0, 0, w, h, null);
+    g.drawImage(state.getScaledImage(w, h, s), x+7, y+7, null);
     // draw a little cursor for sanity
     if (blink_option == null) blink_option = BLINK_OPTIONS[0];
     if (BLINK_YES.equals(blink_option) && blink()
@@ -331,29 +356,86 @@ class Video extends ManagedComponent implements ToolTipMaker, AttributeListener
   private State getState(CircuitState circuitState) {
     State state = (State) circuitState.getData(this);
     if (state == null) {
-      state = new State(new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB));
+      state = new State(new BufferedImage(FB_SIZE, FB_SIZE, BufferedImage.TYPE_INT_ARGB));
       circuitState.setData(this, state);
     }
     return state;
   }
 
+  // Pixels are written straight into the raster of img, and the area changed
+  // since the last draw is tracked so only that part of the scaled copy used
+  // for drawing needs to be redone.
   private class State implements ComponentState, Cloneable {
     public Value lastClock = null;
     public BufferedImage img;
+    public int[] pixels; // raster of img, FB_SIZE pixels per row
     public int last_x, last_y, color;
 
+    private BufferedImage scaled; // img scaled up for drawing, or null
+    private int scale;
+    private int dirtyX0, dirtyY0, dirtyX1, dirtyY1; // protected by this
+
     State(BufferedImage img) {
       this.img = img;
+      this.pixels = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
       reset();
     }
 
     public void reset() {
-      Graphics g = img.getGraphics();
-      g.setColor(Color.YELLOW);
-      g.fillRect(0, 0, img.getWidth(), img.getHeight());
+      fill(FB_SIZE, FB_SIZE, 0xFFFFFF00); // yellow
+    }
+
+    void fill(int w, int h, int argb) {
+      for (int y = 0; y < h; y++)
+        Arrays.fill(pixels, y * FB_SIZE, y * FB_SIZE + w, argb);
+      markDirty(0, 0, w, h);
     }
 
-    public Object clone() { try { return super.clone(); } catch(CloneNotSupportedException e) { return null; } }
+    synchronized void markDirty(int x0, int y0, int x1, int y1) {
+      if (dirtyX0 >= dirtyX1) {
+        dirtyX0 = x0; dirtyY0 = y0; dirtyX1 = x1; dirtyY1 = y1;
+      } else {
+        dirtyX0 = Math.min(dirtyX0, x0); dirtyY0 = Math.min(dirtyY0, y0);
+        dirtyX1 = Math.max(dirtyX1, x1); dirtyY1 = Math.max(dirtyY1, y1);
+      }
+    }
+
+    // Brings the scaled copy of the top-left w x h pixels up to date, redoing
+    // only the dirty area unless the size or scale has changed.
+    synchronized BufferedImage getScaledImage(int w, int h, int s) {
+      if (scaled == null || scaled.getWidth() != w * s
+          || scaled.getHeight() != h * s || scale != s) {
+        scaled = new BufferedImage(w * s, h * s, BufferedImage.TYPE_INT_ARGB);
+        scale = s;
+        markDirty(0, 0, w, h);
+      }
+      int x0 = dirtyX0, y0 = dirtyY0;
+      int x1 = Math.min(dirtyX1, w), y1 = Math.min(dirtyY1, h);
+      dirtyX0 = dirtyX1 = 0;
+      if (x0 >= x1 || y0 >= y1)
+        return scaled;
+      int[] dst = ((DataBufferInt) scaled.getRaster().getDataBuffer()).getData();
+      int sw = w * s;
+      for (int y = y0; y < y1; y++) {
+        int row = y * s * sw;
+        for (int x = x0; x < x1; x++)
+          Arrays.fill(dst, row + x * s, row + (x + 1) * s, pixels[y * FB_SIZE + x]);
+        for (int i = 1; i < s; i++)
+          System.arraycopy(dst, row + x0 * s, dst, row + i * sw + x0 * s, (x1 - x0) * s);
+      }
+      return scaled;
+    }
+
+    public Object clone() {
+      try {
+        State ret = (State) super.clone();
+        ret.img = new BufferedImage(FB_SIZE, FB_SIZE, BufferedImage.TYPE_INT_ARGB);
+        ret.pixels = ((DataBufferInt) ret.img.getRaster().getDataBuffer()).getData();
+        System.arraycopy(pixels, 0, ret.pixels, 0, pixels.length);
+        ret.scaled = null;
+        return ret;
+      } catch(CloneNotSupportedException e) { return null; }
+    }
 
     public boolean tick(Value clk) {
       boolean rising = (lastClock == null || (lastClock == Value.FALSE && clk == Value.TRUE));
@@ -405,7 +487,7 @@ class Video extends ManagedComponent implements ToolTipMaker, AttributeListener
     int ys = 31 - Integer.numberOfLeadingZeros(attrs.getValue(HEIGHT_OPTION));
     setEnd(P_X, getLocation().translate(40, 0), BitWidth.create(xs), EndData.INPUT_ONLY);
     setEnd(P_Y, getLocation().translate(50, 0), BitWidth.create(ys), EndData.INPUT_ONLY);
-    setEnd(P_DATA, getLocation().translate(60, 0), BitWidth.create(bpp), EndData.INPUT_ONLY);
+    setEnd(P_DATA, getLocation().translate(60, 0), BitWidth.create(bpp * pixelsPerWrite(attrs)), EndData.INPUT_ONLY);
     recomputeBounds();
     fireComponentInvalidated(new ComponentEvent(this));
   }
@@ -74,6 +74,10 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
 
   static final AttributeOption ON_GOAL_LOAD = new AttributeOption("load",
       "load", S.getter("counterGoalLoad"));
+  // The count and maximum are held as ints, so unlike StdAttr.WIDTH this
+  // attribute stops at 32 bits.
+  static final Attribute<BitWidth> ATTR_WIDTH = Attributes.forBitWidth(
+      "width", S.getter("stdDataWidthAttr"), 1, 32);
   static final Attribute<Integer> ATTR_MAX = Attributes.forHexInteger("max",
       S.getter("counterMaxAttr"));
 
@@ -100,7 +104,7 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
     setInstancePoker(CounterPoker.class);
     setInstanceLogger(RegisterLogger.class);
     setKeyConfigurator(JoinedConfigurator.create(
-          new BitWidthConfigurator(StdAttr.WIDTH),
+          new BitWidthConfigurator(ATTR_WIDTH, 1, 32),
           new DirectionConfigurator(StdAttr.LABEL_LOC, KeyEvent.ALT_DOWN_MASK)));
   }
 
@@ -113,12 +117,12 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
 
   private void configurePorts(Instance instance) {
     Bounds bds = instance.getBounds();
-    BitWidth widthVal = instance.getAttributeValue(StdAttr.WIDTH);
+    BitWidth widthVal = instance.getAttributeValue(ATTR_WIDTH);
     int width = widthVal == null ? 8 : widthVal.getWidth();
     Port[] ps = new Port[8];
     if (instance.getAttributeValue(StdAttr.APPEARANCE) == StdAttr.APPEAR_CLASSIC) {
-      ps[OUT] = new Port(0, 0, Port.OUTPUT, StdAttr.WIDTH);
-      ps[IN] = new Port(-30, 0, Port.INPUT, StdAttr.WIDTH);
+      ps[OUT] = new Port(0, 0, Port.OUTPUT, ATTR_WIDTH);
+      ps[IN] = new Port(-30, 0, Port.INPUT, ATTR_WIDTH);
       ps[CK] = new Port(-20, 20, Port.INPUT, 1);
       ps[CLR] = new Port(-10, 20, Port.INPUT, 1);
       ps[LD] = new Port(-30, -10, Port.INPUT, 1);
@@ -128,12 +132,12 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
     } else {
       if (width == 1) {
         ps[OUT] = new Port(SymbolWidth(width) + 40, 120, Port.OUTPUT,
-            StdAttr.WIDTH);
-        ps[IN] = new Port(0, 120, Port.INPUT, StdAttr.WIDTH);
+            ATTR_WIDTH);
+        ps[IN] = new Port(0, 120, Port.INPUT, ATTR_WIDTH);
       } else {
         ps[OUT] = new Port(SymbolWidth(width) + 40, 110, Port.OUTPUT,
-            StdAttr.WIDTH);
-        ps[IN] = new Port(0, 110, Port.INPUT, StdAttr.WIDTH);
+            ATTR_WIDTH);
+        ps[IN] = new Port(0, 110, Port.INPUT, ATTR_WIDTH);
       }
       ps[CK] = new Port(0, 80, Port.INPUT, 1);
       ps[CLR] = new Port(0, 20, Port.INPUT, 1);
@@ -161,7 +165,7 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
   private void DrawControl(InstancePainter painter, int xpos, int ypos) {
     Graphics g = painter.getGraphics();
     GraphicsUtil.switchToWidth(g, 2);
-    BitWidth widthVal = painter.getAttributeValue(StdAttr.WIDTH);
+    BitWidth widthVal = painter.getAttributeValue(ATTR_WIDTH);
     int width = widthVal == null ? 8 : widthVal.getWidth();
     g.drawLine(xpos + 20, ypos, xpos + 20 + SymbolWidth(width), ypos);
     g.drawLine(xpos + 20, ypos, xpos + 20, ypos + 100);
@@ -178,12 +182,12 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
     painter.drawClockSymbol(xpos + 20, ypos + 90);
     /* Draw Label */
     int max = painter.getAttributeValue(ATTR_MAX).intValue();
-    boolean IsCTRm = (max == painter.getAttributeValue(StdAttr.WIDTH)
+    boolean IsCTRm = (max == painter.getAttributeValue(ATTR_WIDTH)
         .getMask());
     Object onGoal = painter.getAttributeValue(ATTR_ON_GOAL);
     IsCTRm |= onGoal == ON_GOAL_CONT;
     String Label = (IsCTRm) ? "CTR"
-        + Integer.toString(painter.getAttributeValue(StdAttr.WIDTH)
+        + Integer.toString(painter.getAttributeValue(ATTR_WIDTH)
             .getWidth()) : "CTR DIV0x" + Integer.toHexString(max);
     GraphicsUtil.drawCenteredText(g, Label, xpos + (SymbolWidth(width) / 2)
         + 20, ypos + 5);
@@ -260,7 +264,7 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
       int len = (width + 3) / 4;
       int xcenter = SymbolWidth(width) - 25;
       RegisterData state = (RegisterData) painter.getData();
-      int val = state == null ? 0 : state.value;
+      int val = state == null ? 0 : (int) state.value;
       String Value = StringUtil.toHexString(width, val).toUpperCase();
       g.setColor(Color.LIGHT_GRAY);
       g.fillRect(xpos + xcenter - len * 4, ypos + 22, len * 8, 16);
@@ -334,8 +338,8 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
     if (painter.getShowState()) {
       /* Here we draw the bit value */
       RegisterData state = (RegisterData) painter.getData();
-      int val = state == null ? 0 : state.value;
-      BitWidth widthVal = painter.getAttributeValue(StdAttr.WIDTH);
+      int val = state == null ? 0 : (int) state.value;
+      BitWidth widthVal = painter.getAttributeValue(ATTR_WIDTH);
       int width = widthVal == null ? 8 : widthVal.getWidth();
       int xcenter = (SymbolWidth(width) / 2) + 10;
       int value = ((1 << BitNr) & val) != 0 ? 1 : 0;
@@ -350,7 +354,7 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
 
   @Override
   public Bounds getOffsetBounds(AttributeSet attrs) {
-    BitWidth widthVal = attrs.getValue(StdAttr.WIDTH);
+    BitWidth widthVal = attrs.getValue(ATTR_WIDTH);
     int width = widthVal == null ? 8 : widthVal.getWidth();
     if (attrs.getValue(StdAttr.APPEARANCE) == StdAttr.APPEAR_CLASSIC)
       return Bounds.create(-30, -20, 30, 40);
@@ -365,7 +369,7 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
 
   @Override
   protected void instanceAttributeChanged(Instance instance, Attribute<?> attr) {
-    if (attr == StdAttr.WIDTH || attr == StdAttr.APPEARANCE) {
+    if (attr == ATTR_WIDTH || attr == StdAttr.APPEARANCE) {
       instance.recomputeBounds();
       configurePorts(instance);
       instance.computeLabelTextField(Instance.AVOID_SIDES);
@@ -378,14 +382,14 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
     Graphics g = painter.getGraphics();
     Bounds bds = painter.getBounds();
     RegisterData state = (RegisterData) painter.getData();
-    BitWidth widthVal = painter.getAttributeValue(StdAttr.WIDTH);
+    BitWidth widthVal = painter.getAttributeValue(ATTR_WIDTH);
     int width = widthVal == null ? 8 : widthVal.getWidth();
 
     // determine text to draw in label
     String a;
     String b = null;
     if (painter.getShowState()) {
-      int val = state == null ? 0 : state.value;
+      int val = state == null ? 0 : (int) state.value;
       String str = StringUtil.toHexString(width, val);
       if (str.length() <= 4) {
         a = str;
@@ -446,7 +450,7 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
     painter.drawLabel();
 
     DrawControl(painter, Xpos, Ypos);
-    BitWidth widthVal = painter.getAttributeValue(StdAttr.WIDTH);
+    BitWidth widthVal = painter.getAttributeValue(ATTR_WIDTH);
     int width = widthVal == null ? 8 : widthVal.getWidth();
     for (int bit = 0; bit < width; bit++) {
       DrawDataBlock(painter, Xpos, Ypos + 110, bit, width);
@@ -461,7 +465,7 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
       state.setData(data);
     }
 
-    BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+    BitWidth dataWidth = state.getAttributeValue(ATTR_WIDTH);
     Object triggerType = state.getAttributeValue(StdAttr.EDGE_TRIGGER);
     int max = state.getAttributeValue(ATTR_MAX).intValue();
     Value clock = state.getPortValue(CK);
@@ -476,7 +480,7 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
       boolean ld = state.getPortValue(LD) == Value.TRUE;
       boolean en = state.getPortValue(EN) != Value.FALSE;
       boolean UpCount = state.getPortValue(UD) != Value.FALSE;
-      int oldVal = data.value;
+      int oldVal = (int) data.value;
       int newVal;
       if (!triggered) {
         newVal = oldVal;
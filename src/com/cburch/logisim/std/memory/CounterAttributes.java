@@ -39,7 +39,7 @@ import com.cburch.logisim.instance.StdAttr;
 class CounterAttributes extends AttributeSets.ArrayBacked {
 
   public CounterAttributes() {
-    super(new Attribute<?>[] { StdAttr.WIDTH,
+    super(new Attribute<?>[] { Counter.ATTR_WIDTH,
       Counter.ATTR_MAX, Counter.ATTR_ON_GOAL, StdAttr.EDGE_TRIGGER,
       StdAttr.LABEL, StdAttr.LABEL_FONT, StdAttr.LABEL_LOC, 
       Register.ATTR_SHOW_IN_TAB, StdAttr.APPEARANCE },
@@ -51,8 +51,8 @@ class CounterAttributes extends AttributeSets.ArrayBacked {
   
   @Override
   public <V> void updateAttr(Attribute<V> attr, V value) {
-    if (attr == StdAttr.WIDTH) {
-      BitWidth oldWidth = getValue(StdAttr.WIDTH);
+    if (attr == Counter.ATTR_WIDTH) {
+      BitWidth oldWidth = getValue(Counter.ATTR_WIDTH);
       super.updateAttr(attr, value);
       // if width changes, update max accordingly
       BitWidth newWidth = (BitWidth) value;
@@ -65,7 +65,7 @@ class CounterAttributes extends AttributeSets.ArrayBacked {
       setAttr(Counter.ATTR_MAX, newMax);
     } else if (attr == Counter.ATTR_MAX) {
       // if max changes, ensure it fits within existing width
-      BitWidth width = getValue(StdAttr.WIDTH);
+      BitWidth width = getValue(Counter.ATTR_WIDTH);
       int newVal = ((Integer) value).intValue() & width.getMask();
       super.updateAttr(Counter.ATTR_MAX, newVal);
     } else {
@@ -36,7 +36,8 @@ public class CounterHDLGenerator extends HDLGenerator {
 
   public CounterHDLGenerator(ComponentContext ctx) {
     super(ctx, "memory", "Counter", "i_Ctr");
-    parameters.add("BitWidth", stdWidth());
+    parameters.add("BitWidth",
+        _attrs.getValue(Counter.ATTR_WIDTH).getWidth());
     parameters.add("MaxVal", _attrs.getValue(Counter.ATTR_MAX));
     parameters.add("Mode", mode());
 
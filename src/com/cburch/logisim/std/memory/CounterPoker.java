@@ -42,7 +42,7 @@ public class CounterPoker extends RegisterPoker {
   @Override
   public void paint(InstancePainter painter) {
     Bounds bds = painter.getBounds();
-    BitWidth dataWidth = painter.getAttributeValue(StdAttr.WIDTH);
+    BitWidth dataWidth = painter.getAttributeValue(Counter.ATTR_WIDTH);
     int width = dataWidth == null ? 8 : dataWidth.getWidth();
     int len = (width + 3) / 4;
 
@@ -93,12 +93,22 @@ public abstract class Mem extends InstanceFactory {
       "line", S.getter("memLineSize"), new AttributeOption[] {
         SINGLE, DUAL, QUAD });
 
+  // With BACKING_MAPPED, raw binary images are memory-mapped rather than
+  // copied onto the heap when loaded, see MemContents.mapFile().
+  static final AttributeOption BACKING_HEAP = new AttributeOption("heap",
+      S.getter("memBackingHeap"));
+  static final AttributeOption BACKING_MAPPED = new AttributeOption("mapped",
+      S.getter("memBackingMapped"));
+  static final Attribute<AttributeOption> BACKING_ATTR = Attributes.forOption(
+      "backing", S.getter("memBackingAttr"), new AttributeOption[] {
+        BACKING_HEAP, BACKING_MAPPED });
+
   public static final int SymbolWidth = 200;
   public static final Attribute<BitWidth> ADDR_ATTR = Attributes.forBitWidth(
       "addrWidth", S.getter("ramAddrWidthAttr"), 2, 24);
 
   public static final Attribute<BitWidth> DATA_ATTR = Attributes.forBitWidth(
-      "dataWidth", S.getter("ramDataWidthAttr"));
+      "dataWidth", S.getter("ramDataWidthAttr"), 1, 32);
   // port-related constants
   static final int DATA = 0;
   static final int ADDR = 1;
@@ -113,7 +123,8 @@ public abstract class Mem extends InstanceFactory {
     currentInstanceFiles = new WeakHashMap<Instance, File>();
     setInstancePoker(MemPoker.class);
     setKeyConfigurator(JoinedConfigurator.create(new BitWidthConfigurator(
-            ADDR_ATTR, 2, 24, 0), new BitWidthConfigurator(DATA_ATTR)));
+            ADDR_ATTR, 2, 24, 0), new BitWidthConfigurator(
+            DATA_ATTR, 1, 32)));
 
     setOffsetBounds(Bounds.create(-140, -40, 140, 80));
   }
@@ -30,7 +30,15 @@
 
 package com.cburch.logisim.std.memory;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.cburch.hex.HexModel;
 import com.cburch.hex.HexModelListener;
@@ -51,6 +59,7 @@ public class MemContents implements Cloneable, HexModel {
   private int addrBits;
   private int mask;
   private Page[] pages;
+  private boolean fileBacked; // see mapFile()
 
   private MemContents(int addrBits, int width) {
     listeners = null;
@@ -83,7 +92,7 @@ public class MemContents implements Cloneable, HexModel {
         changed = true;
     }
     if (changed) {
-      pages[index] = null;
+      dropPage(index);
       fireBytesChanged(index << PAGE_SIZE_BITS, oldValues.length,
           oldValues);
     }
@@ -94,11 +103,10 @@ public class MemContents implements Cloneable, HexModel {
     try {
       MemContents ret = (MemContents) super.clone();
       ret.listeners = null;
-      ret.pages = new Page[this.pages.length];
-      for (int i = 0; i < ret.pages.length; i++) {
-        if (this.pages[i] != null) {
-          ret.pages[i] = this.pages[i].clone();
-        }
+      ret.pages = this.pages.clone();
+      for (Page page : ret.pages) {
+        if (page != null)
+          page.refs.incrementAndGet();
       }
       return ret;
     } catch (CloneNotSupportedException ex) {
@@ -113,6 +121,30 @@ public class MemContents implements Cloneable, HexModel {
     }
   }
 
+  // Pages are shared, copy-on-write, between a MemContents and its clones:
+  // clone() copies only the page table and bumps each page's reference count,
+  // so a page must be copied before it is modified if another MemContents may
+  // still be using it. The count is never decremented when a clone is garbage
+  // collected, so at worst a page is copied once when it needn't have been.
+  // Pages mapped from a file are read-only, and are always copied.
+  private Page writablePage(int index) {
+    Page page = pages[index];
+    if (page.refs.get() > 1 || page.isReadOnly()) {
+      Page copy = page.clone();
+      page.refs.decrementAndGet();
+      pages[index] = page = copy;
+    }
+    return page;
+  }
+
+  private void dropPage(int index) {
+    Page page = pages[index];
+    if (page != null) {
+      page.refs.decrementAndGet();
+      pages[index] = null;
+    }
+  }
+
   public void fill(long start, long len, int value) {
     if (len == 0)
       return;
@@ -130,9 +162,10 @@ public class MemContents implements Cloneable, HexModel {
       Page page = pages[pageStart];
       if (!page.matches(vals, startOffs, mask)) {
         int[] oldValues = page.get(startOffs, (int) len);
+        page = writablePage(pageStart);
         page.load(startOffs, vals, mask);
         if (value == 0 && page.isClear())
-          pages[pageStart] = null;
+          dropPage(pageStart);
         fireBytesChanged(start, len, oldValues);
       }
     } else {
@@ -148,9 +181,10 @@ public class MemContents implements Cloneable, HexModel {
           Page page = pages[pageStart];
           if (!page.matches(vals, startOffs, mask)) {
             int[] oldValues = page.get(startOffs, vals.length);
+            page = writablePage(pageStart);
             page.load(startOffs, vals, mask);
             if (value == 0 && page.isClear())
-              pages[pageStart] = null;
+              dropPage(pageStart);
             fireBytesChanged(start, PAGE_SIZE - pageStart,
                 oldValues);
           }
@@ -169,7 +203,7 @@ public class MemContents implements Cloneable, HexModel {
           Page page = pages[i];
           if (!page.matches(vals, 0, mask)) {
             int[] oldValues = page.get(0, PAGE_SIZE);
-            page.load(0, vals, mask);
+            writablePage(i).load(0, vals, mask);
             fireBytesChanged((long) i << PAGE_SIZE_BITS, PAGE_SIZE,
                 oldValues);
           }
@@ -181,13 +215,15 @@ public class MemContents implements Cloneable, HexModel {
           // nothing to do
         } else {
           ensurePage(pageEnd);
+          page = pages[pageEnd];
           int[] vals = new int[endOffs + 1];
           Arrays.fill(vals, value);
           if (!page.matches(vals, 0, mask)) {
             int[] oldValues = page.get(0, endOffs + 1);
+            page = writablePage(pageEnd);
             page.load(0, vals, mask);
             if (value == 0 && page.isClear())
-              pages[pageEnd] = null;
+              dropPage(pageEnd);
             fireBytesChanged((long) pageEnd << PAGE_SIZE_BITS,
                 endOffs + 1, oldValues);
           }
@@ -248,6 +284,71 @@ public class MemContents implements Cloneable, HexModel {
     return width;
   }
 
+  // A file-backed memory (see Mem.BACKING_ATTR) loads raw binary images using
+  // mapFile() rather than copying them onto the heap, if canMapFile().
+  public boolean isFileBacked() {
+    return fileBacked;
+  }
+
+  public void setFileBacked(boolean value) {
+    fileBacked = value;
+  }
+
+  public boolean canMapFile() {
+    return width == 8 || width == 16 || width == 32;
+  }
+
+  // Replaces the contents with those of a raw binary image file, one word per
+  // 1, 2, or 4 bytes depending on the width, without loading the file onto
+  // the heap: the file itself is mapped read-only, and only pages that are
+  // written to get copied onto the heap, see writablePage(). A partial last
+  // page is copied onto the heap right away. Any part of the memory not
+  // covered by the file is cleared. The file must not be truncated while it
+  // is mapped, since reading the lost pages would then fault (SIGBUS) in the
+  // middle of a simulation, and on Windows it can't be deleted or replaced
+  // until the mapping is garbage collected.
+  public void mapFile(File file, boolean bigEndian) throws IOException {
+    if (!canMapFile())
+      throw new IOException(String.format(
+            "memory width must be 8, 16, or 32 bits to map a file, not %d", width));
+    int bytesPerWord = width / 8;
+    int pageLength = pages.length == 1 ? (int)(getLastOffset() + 1) : PAGE_SIZE;
+    long maxBytes = (getLastOffset() + 1) * bytesPerWord;
+    MappedByteBuffer map;
+    try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      map = ch.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(ch.size(), maxBytes));
+    }
+    ByteOrder order = bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    int pageBytes = pageLength * bytesPerWord;
+    int size = map.capacity();
+    for (int i = 0; i < pages.length; i++) {
+      dropPage(i);
+      int offs = i * pageBytes;
+      if (offs >= size)
+        continue;
+      ByteBuffer slice = ((ByteBuffer)map.duplicate().position(offs)).slice();
+      if (slice.capacity() >= pageBytes) {
+        slice.limit(pageBytes);
+        pages[i] = MemContentsSub.createMappedPage(slice.slice().order(order), width);
+      } else {
+        // partial last page, and possibly a partial last word, copy it
+        slice.order(order);
+        Page page = MemContentsSub.createPage(pageLength, width);
+        byte[] tail = new byte[bytesPerWord];
+        for (int j = 0; j * bytesPerWord < slice.capacity(); j++) {
+          Arrays.fill(tail, (byte)0);
+          int n = Math.min(bytesPerWord, slice.capacity() - j * bytesPerWord);
+          slice.get(tail, 0, n);
+          ByteBuffer w = ByteBuffer.wrap(tail).order(order);
+          page.set(j, bytesPerWord == 1 ? w.get(0) & 0xff
+              : bytesPerWord == 2 ? w.getShort(0) & 0xffff : w.getInt(0));
+        }
+        pages[i] = page;
+      }
+    }
+    fireMetainfoChanged();
+  }
+
   public boolean isClear() {
     for (int i = 0; i < pages.length; i++) {
       Page page = pages[i];
@@ -277,10 +378,8 @@ public class MemContents implements Cloneable, HexModel {
     int old = pages[page] == null ? 0 : pages[page].get(offs) & mask;
     int val = value & mask;
     if (old != val) {
-      if (pages[page] == null) {
-        pages[page] = MemContentsSub.createPage(PAGE_SIZE, width);
-      }
-      pages[page].set(offs, val);
+      ensurePage(page);
+      writablePage(page).set(offs, val);
       fireBytesChanged(addr, 1, new int[] { old });
     }
   }
@@ -299,9 +398,10 @@ public class MemContents implements Cloneable, HexModel {
       Page page = pages[pageStart];
       if (!page.matches(values, startOffs, mask)) {
         int[] oldValues = page.get(startOffs, values.length);
+        page = writablePage(pageStart);
         page.load(startOffs, values, mask);
         if (page.isClear())
-          pages[pageStart] = null;
+          dropPage(pageStart);
         fireBytesChanged(start, values.length, oldValues);
       }
     } else {
@@ -316,9 +416,10 @@ public class MemContents implements Cloneable, HexModel {
         Page page = pages[pageStart];
         if (!page.matches(vals, startOffs, mask)) {
           int[] oldValues = page.get(startOffs, vals.length);
+          page = writablePage(pageStart);
           page.load(startOffs, vals, mask);
           if (page.isClear())
-            pages[pageStart] = null;
+            dropPage(pageStart);
           fireBytesChanged(start, PAGE_SIZE - pageStart, oldValues);
         }
         nextOffs = vals.length;
@@ -344,9 +445,10 @@ public class MemContents implements Cloneable, HexModel {
           System.arraycopy(values, offs, vals, 0, PAGE_SIZE);
           if (!page.matches(vals, startOffs, mask)) {
             int[] oldValues = page.get(0, PAGE_SIZE);
+            page = writablePage(i);
             page.load(0, vals, mask);
             if (page.isClear())
-              pages[i] = null;
+              dropPage(i);
             fireBytesChanged((long) i << PAGE_SIZE_BITS, PAGE_SIZE,
                 oldValues);
           }
@@ -359,9 +461,10 @@ public class MemContents implements Cloneable, HexModel {
         Page page = pages[pageEnd];
         if (!page.matches(vals, startOffs, mask)) {
           int[] oldValues = page.get(0, endOffs + 1);
+          page = writablePage(pageEnd);
           page.load(0, vals, mask);
           if (page.isClear())
-            pages[pageEnd] = null;
+            dropPage(pageEnd);
           fireBytesChanged((long) pageEnd << PAGE_SIZE_BITS,
               endOffs + 1, oldValues);
         }
@@ -403,8 +506,8 @@ public class MemContents implements Cloneable, HexModel {
         // clearing locations di..di+n on this page
         fill(dp*PAGE_SIZE+di, n, 0);
       } else {
-        if (dstPage == null)
-          dstPage = pages[dp] = MemContentsSub.createPage(PAGE_SIZE, width);
+        ensurePage(dp);
+        dstPage = writablePage(dp);
         // copy locations di..di+n on this page
         int[] oldVals = dstPage.get(di, n);
         int[] vals = srcPage.get(si, n);
@@ -429,6 +532,10 @@ public class MemContents implements Cloneable, HexModel {
   public void setDimensions(int addrBits, int width) {
     if (addrBits == this.addrBits && width == this.width)
       return;
+    // Words are stored as ints, so Mem.DATA_ATTR stops at 32 bits too.
+    if (width < 1 || width > 32)
+      throw new IllegalArgumentException("memory width " + width
+          + " must be between 1 and 32");
     this.addrBits = addrBits;
     this.width = width;
     this.mask = width == 32 ? 0xffffffff : ((1 << width) - 1);
@@ -448,6 +555,7 @@ public class MemContents implements Cloneable, HexModel {
       int n = Math.min(oldPages.length, pages.length);
       for (int i = 0; i < n; i++) {
         if (oldPages[i] != null) {
+          oldPages[i].refs.decrementAndGet();
           pages[i] = MemContentsSub.createPage(pageLength, width);
           int m = Math.max(oldPages[i].getLength(), pageLength);
           for (int j = 0; j < m; j++) {
@@ -463,12 +571,17 @@ public class MemContents implements Cloneable, HexModel {
   }
 
   static abstract class Page implements Cloneable {
+    // Number of MemContents sharing this page, see writablePage().
+    private AtomicInteger refs = new AtomicInteger(1);
+
     abstract void clear();
 
     @Override
     public Page clone() {
       try {
-        return (Page) super.clone();
+        Page ret = (Page) super.clone();
+        ret.refs = new AtomicInteger(1);
+        return ret;
       } catch (CloneNotSupportedException e) {
         return this;
       }
@@ -476,6 +589,10 @@ public class MemContents implements Cloneable, HexModel {
 
     abstract int get(int addr);
 
+    boolean isReadOnly() {
+      return false;
+    }
+
     int[] get(int start, int len) {
       int[] ret = new int[len];
       for (int i = 0; i < ret.length; i++)
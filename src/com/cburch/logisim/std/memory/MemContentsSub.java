@@ -30,6 +30,7 @@
 
 package com.cburch.logisim.std.memory;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 class MemContentsSub {
@@ -189,6 +190,71 @@ class MemContentsSub {
     }
   }
 
+  // A page whose data lives in a read-only memory-mapped file, with 1, 2, or
+  // 4 bytes per word. The page itself is never written: MemContents copies it
+  // onto the heap first, see MemContents.writablePage(), and cloning makes an
+  // ordinary on-heap copy.
+  private static class MappedPage extends MemContents.Page {
+    private ByteBuffer data;
+    private int bits, bytesPerWord, length;
+
+    public MappedPage(ByteBuffer data, int bits) {
+      this.data = data;
+      this.bits = bits;
+      this.bytesPerWord = bits / 8;
+      this.length = data.capacity() / bytesPerWord;
+    }
+
+    @Override
+    void clear() {
+      assert false : "mapped page cleared without writablePage()";
+    }
+
+    @Override
+    public MemContents.Page clone() {
+      MemContents.Page ret = createPage(length, bits);
+      for (int i = 0; i < length; i++)
+        ret.set(i, get(i));
+      return ret;
+    }
+
+    @Override
+    int get(int addr) {
+      if (addr < 0 || addr >= length)
+        return 0;
+      switch (bytesPerWord) {
+      case 1: return data.get(addr) & 0xff;
+      case 2: return data.getShort(2 * addr) & 0xffff;
+      default: return data.getInt(4 * addr);
+      }
+    }
+
+    @Override
+    int getLength() {
+      return length;
+    }
+
+    @Override
+    boolean isReadOnly() {
+      return true;
+    }
+
+    @Override
+    void load(int start, int[] values, int mask) {
+      assert false : "mapped page loaded without writablePage()";
+    }
+
+    @Override
+    void set(int addr, int value) {
+      assert false : "mapped page set without writablePage()";
+    }
+  }
+
+  // Buffer must hold a whole number of words, with the desired byte order.
+  static MemContents.Page createMappedPage(ByteBuffer data, int bits) {
+    return new MappedPage(data, bits);
+  }
+
   static MemContents.Page createPage(int size, int bits) {
     if (bits <= 8)
       return new BytePage(size);
@@ -653,6 +653,7 @@ public class Ram extends Mem {
       int addrBits = state.getAttributeValue(ADDR_ATTR).getWidth();
       int dataBits = state.getAttributeValue(DATA_ATTR).getWidth();
       MemContents contents = MemContents.create(addrBits, dataBits);
+      contents.setFileBacked(state.getAttributeValue(BACKING_ATTR) == BACKING_MAPPED);
       Instance instance = state.getInstance();
       ret = new RamState(instance, contents, new MemListener(instance));
       state.setData(ret);
@@ -61,7 +61,7 @@ public class RamAttributes extends AbstractAttributeSet {
 
   private static List<Attribute<?>> ATTRIBUTES = Arrays
       .asList(new Attribute<?>[] { Mem.ADDR_ATTR, Mem.DATA_ATTR, Mem.LINE_ATTR,
-        StdAttr.TRIGGER, ATTR_TYPE, ATTR_DBUS,
+        StdAttr.TRIGGER, ATTR_TYPE, ATTR_DBUS, Mem.BACKING_ATTR,
         StdAttr.LABEL, StdAttr.LABEL_FONT,
         StdAttr.APPEARANCE});
 
@@ -72,6 +72,7 @@ public class RamAttributes extends AbstractAttributeSet {
   private AttributeOption Trigger = StdAttr.TRIG_RISING;
   private AttributeOption Type = VOLATILE; // NONVOLATILE;
   private AttributeOption BusStyle = BUS_SEP; // BUS_BIDIR;
+  private AttributeOption backing = Mem.BACKING_HEAP;
   private Font LabelFont = StdAttr.DEFAULT_LABEL_FONT;
   private AttributeOption Appearance = StdAttr.APPEAR_CLASSIC;
 
@@ -84,6 +85,7 @@ public class RamAttributes extends AbstractAttributeSet {
     d.dataBits = dataBits;
     d.Trigger = Trigger;
     d.BusStyle = BusStyle;
+    d.backing = backing;
     d.LabelFont = LabelFont;
     d.Appearance = Appearance;
     d.lineSize = lineSize;
@@ -95,6 +97,7 @@ public class RamAttributes extends AbstractAttributeSet {
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public <V> V getValue(Attribute<V> attr) {
     if (attr == Mem.ADDR_ATTR)
       return (V) addrBits;
@@ -110,6 +113,8 @@ public class RamAttributes extends AbstractAttributeSet {
       return (V) Type;
     if (attr == ATTR_DBUS)
       return (V) BusStyle;
+    if (attr == Mem.BACKING_ATTR)
+      return (V) backing;
     if (attr == StdAttr.LABEL_FONT)
       return (V) LabelFont;
     if (attr == StdAttr.APPEARANCE)
@@ -133,6 +138,8 @@ public class RamAttributes extends AbstractAttributeSet {
       Type = (AttributeOption) value;
     else if (attr == ATTR_DBUS)
       BusStyle = (AttributeOption) value;
+    else if (attr == Mem.BACKING_ATTR)
+      backing = (AttributeOption) value;
     else if (attr == StdAttr.LABEL_FONT)
       LabelFont = (Font) value;
     else if (attr == StdAttr.APPEARANCE)
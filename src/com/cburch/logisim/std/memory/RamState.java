@@ -66,6 +66,7 @@ public class RamState extends MemState
     BitWidth addrBits = attrs.getValue(Mem.ADDR_ATTR);
     BitWidth dataBits = attrs.getValue(Mem.DATA_ATTR);
     getContents().setDimensions(addrBits.getWidth(), dataBits.getWidth());
+    getContents().setFileBacked(attrs.getValue(Mem.BACKING_ATTR) == Mem.BACKING_MAPPED);
   }
 
   @Override
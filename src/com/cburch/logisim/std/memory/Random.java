@@ -68,12 +68,12 @@ public class Random extends InstanceFactory {
 
     @Override
     public BitWidth getBitWidth(InstanceState state, Object option) {
-      return state.getAttributeValue(StdAttr.WIDTH);
+      return state.getAttributeValue(ATTR_WIDTH);
     }
 
     @Override
     public Value getLogValue(InstanceState state, Object option) {
-      BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+      BitWidth dataWidth = state.getAttributeValue(ATTR_WIDTH);
       if (dataWidth == null)
         dataWidth = BitWidth.create(0);
       StateData data = (StateData) state.getData();
@@ -92,7 +92,7 @@ public class Random extends InstanceFactory {
     boolean isPressed = true;
 
     private boolean isInside(InstanceState state, MouseEvent e) {
-      BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+      BitWidth dataWidth = state.getAttributeValue(ATTR_WIDTH);
       int width = (dataWidth == null ? 8 : dataWidth.getWidth());
       Location loc = state.getInstance().getLocation();
       int x = loc.getX();
@@ -191,6 +191,11 @@ public class Random extends InstanceFactory {
     }
   }
 
+  // The generator yields 32 bits per step, so unlike StdAttr.WIDTH this
+  // attribute stops at 32 bits.
+  static final Attribute<BitWidth> ATTR_WIDTH = Attributes.forBitWidth(
+      "width", S.getter("stdDataWidthAttr"), 1, 32);
+
   static final Attribute<Integer> ATTR_SEED = Attributes.forInteger("seed",
       S.getter("randomSeedAttr"));
 
@@ -201,13 +206,13 @@ public class Random extends InstanceFactory {
 
   public Random() {
     super("Random", S.getter("randomComponent"));
-    setAttributes(new Attribute[] { StdAttr.WIDTH, ATTR_SEED,
+    setAttributes(new Attribute[] { ATTR_WIDTH, ATTR_SEED,
       StdAttr.EDGE_TRIGGER, StdAttr.LABEL, StdAttr.LABEL_FONT,
       StdAttr.APPEARANCE, },
       new Object[] { BitWidth.create(8), Integer.valueOf(0),
         StdAttr.TRIG_RISING, "", StdAttr.DEFAULT_LABEL_FONT,
         StdAttr.APPEAR_CLASSIC,});
-    setKeyConfigurator(new BitWidthConfigurator(StdAttr.WIDTH));
+    setKeyConfigurator(new BitWidthConfigurator(ATTR_WIDTH, 1, 32));
 
     setIconName("random.gif");
     setInstancePoker(Poker.class);
@@ -298,7 +303,7 @@ public class Random extends InstanceFactory {
     Graphics g = painter.getGraphics();
     Bounds bds = painter.getBounds();
     StateData state = (StateData) painter.getData();
-    BitWidth widthVal = painter.getAttributeValue(StdAttr.WIDTH);
+    BitWidth widthVal = painter.getAttributeValue(ATTR_WIDTH);
     int width = widthVal == null ? 8 : widthVal.getWidth();
 
     // determine text to draw in label
@@ -353,7 +358,7 @@ public class Random extends InstanceFactory {
     int y = bds.getY();
     StateData state = (StateData) painter.getData();
     int val = state == null ? 0 : state.value;
-    BitWidth widthVal = painter.getAttributeValue(StdAttr.WIDTH);
+    BitWidth widthVal = painter.getAttributeValue(ATTR_WIDTH);
     int width = widthVal == null ? 8 : widthVal.getWidth();
 
     painter.drawLabel();
@@ -370,7 +375,7 @@ public class Random extends InstanceFactory {
       state.setData(data);
     }
 
-    BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+    BitWidth dataWidth = state.getAttributeValue(ATTR_WIDTH);
     Object triggerType = state.getAttributeValue(StdAttr.EDGE_TRIGGER);
     boolean triggered = data.updateClock(state.getPortValue(CK), triggerType);
 
@@ -389,12 +394,12 @@ public class Random extends InstanceFactory {
   private void updatePorts(Instance instance) {
     Port[] ps = new Port[4];
     if (instance.getAttributeValue(StdAttr.APPEARANCE) == StdAttr.APPEAR_CLASSIC) {
-      ps[OUT] = new Port(40, 20, Port.OUTPUT, StdAttr.WIDTH);
+      ps[OUT] = new Port(40, 20, Port.OUTPUT, ATTR_WIDTH);
       ps[CK] = new Port(10, 40, Port.INPUT, 1);
       ps[NXT] = new Port(0, 30, Port.INPUT, 1);
       ps[RST] = new Port(30, 40, Port.INPUT, 1);
     } else {
-      ps[OUT] = new Port(80, 80, Port.OUTPUT, StdAttr.WIDTH);
+      ps[OUT] = new Port(80, 80, Port.OUTPUT, ATTR_WIDTH);
       ps[CK] = new Port(0, 50, Port.INPUT, 1);
       ps[NXT] = new Port(0, 40, Port.INPUT, 1);
       ps[RST] = new Port(0, 30, Port.INPUT, 1);
@@ -39,7 +39,8 @@ public class RandomHDLGenerator  extends HDLGenerator {
     int seed = _attrs.getValue(Random.ATTR_SEED);
     if (seed == 0)
       seed = (int) System.currentTimeMillis();
-    parameters.add("BitWidth", stdWidth());
+    parameters.add("BitWidth",
+        _attrs.getValue(Random.ATTR_WIDTH).getWidth());
     parameters.add("Seed", seed);
     inPorts.add("Clear", 1, Random.RST, false);
     inPorts.add("Enable", 1, Random.NXT, true);
@@ -36,8 +36,12 @@ import java.awt.Graphics;
 import java.awt.event.KeyEvent;
 
 import com.bfh.logisim.hdlgenerator.HDLSupport;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.CompiledCircuit;
+import com.cburch.logisim.circuit.CompiledComponent;
 import com.cburch.logisim.circuit.appear.DynamicElement;
 import com.cburch.logisim.circuit.appear.DynamicElementProvider;
+import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Attributes;
@@ -213,7 +217,7 @@ public class Register extends InstanceFactory implements DynamicElementProvider
     String a;
     String b = null;
     if (painter.getShowState()) {
-      int val = state == null ? 0 : state.value;
+      long val = state == null ? 0 : state.value;
       String str = StringUtil.toHexString(width, val);
       if (str.length() <= 4) {
         a = str;
@@ -272,7 +276,7 @@ public class Register extends InstanceFactory implements DynamicElementProvider
 
       // determine text to draw in label
       String a;
-      int val = state == null ? 0 : state.value;
+      long val = state == null ? 0 : state.value;
       a = StringUtil.toHexString(width, val);
       Object Trigger = painter.getAttributeValue(StdAttr.TRIGGER);
       boolean IsLatch = Trigger.equals(StdAttr.TRIG_HIGH)
@@ -294,6 +298,44 @@ public class Register extends InstanceFactory implements DynamicElementProvider
     }
   }
 
+  @Override
+  protected Object getInstanceFeature(Instance instance, Object key) {
+    if (key == CompiledComponent.class) {
+      return new CompiledComponent() {
+        public void compile(CompiledComponent.Context ctx)
+            throws CompiledCircuit.CompileException {
+          Object trigger = instance.getAttributeValue(StdAttr.TRIGGER);
+          if (trigger == StdAttr.TRIG_HIGH || trigger == StdAttr.TRIG_LOW)
+            throw new CompiledComponent.NotCompilableException();
+          CircuitState circState = ctx.getCircuitState();
+          Component comp = instance.getComponent();
+          RegisterData data = (RegisterData) circState.getData(comp);
+          int[] in = ctx.getPort(IN);
+          int[] ck = ctx.getPort(CK);
+          int[] clr = ctx.getPort(CLR);
+          int[] en = ctx.getPort(EN);
+          if (in == null)
+            throw new CompiledComponent.NotCompilableException();
+          ctx.addRegister(in, ck == null ? ctx.getConstant(false) : ck[0],
+              clr == null ? ctx.getConstant(false) : clr[0],
+              en == null ? ctx.getConstant(true) : en[0],
+              ctx.getPort(OUT), trigger == StdAttr.TRIG_FALLING,
+              data == null ? 0 : data.value,
+              (value, clock) -> {
+                RegisterData d = (RegisterData) circState.getData(comp);
+                if (d == null) {
+                  d = new RegisterData();
+                  circState.setData(comp, d);
+                }
+                d.value = value;
+                d.updateClock(clock, trigger);
+              });
+        }
+      };
+    }
+    return super.getInstanceFeature(instance, key);
+  }
+
   @Override
   public void propagate(InstanceState state) {
     RegisterData data = (RegisterData) state.getData();
@@ -311,7 +353,7 @@ public class Register extends InstanceFactory implements DynamicElementProvider
     } else if (triggered && state.getPortValue(EN) != Value.FALSE) {
       Value in = state.getPortValue(IN);
       if (in.isFullyDefined())
-        data.value = in.toIntValue();
+        data.value = in.toLongValue();
     }
 
     state.setPort(OUT, Value.createKnown(dataWidth, data.value), DELAY);
@@ -43,14 +43,20 @@ public class RegisterLogger extends InstanceLogger {
     return ret != null && !ret.equals("") ? ret : null;
   }
 
+  // Counter shares this logger but has its own, narrower, width attribute.
+  private static BitWidth dataWidth(InstanceState state) {
+    BitWidth width = state.getAttributeValue(StdAttr.WIDTH);
+    return width != null ? width : state.getAttributeValue(Counter.ATTR_WIDTH);
+  }
+
   @Override
   public BitWidth getBitWidth(InstanceState state, Object option) {
-    return state.getAttributeValue(StdAttr.WIDTH);
+    return dataWidth(state);
   }
 
   @Override
   public Value getLogValue(InstanceState state, Object option) {
-    BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
+    BitWidth dataWidth = dataWidth(state);
     if (dataWidth == null)
       dataWidth = BitWidth.create(0);
     RegisterData data = (RegisterData) state.getData();
@@ -37,6 +37,8 @@ import java.awt.Window;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 
@@ -81,17 +83,31 @@ public class Rom extends Mem {
 
     @Override
     public MemContents parse(String value) {
-      int lineBreak = value.indexOf('\n');
-      String first = lineBreak < 0 ? value : value.substring(0, lineBreak);
-      String rest = lineBreak < 0 ? "" : value.substring(lineBreak + 1);
-      StringTokenizer toks = new StringTokenizer(first);
+      try {
+        return parse(new StringReader(value));
+      } catch (IOException e) {
+        e.printStackTrace();
+        return null;
+      }
+    }
+
+    // Parses the contents directly from a stream of text, e.g. as it is read
+    // from a .circ file, without first collecting it all into a String.
+    public MemContents parse(Reader in) throws IOException {
+      StringBuilder first = new StringBuilder();
+      for (int c = in.read(); c >= 0 && c != '\n'; c = in.read()) {
+        if (first.length() > MAX_HEADER_LENGTH)
+          return null;
+        first.append((char)c);
+      }
+      StringTokenizer toks = new StringTokenizer(first.toString());
       try {
         String header = toks.nextToken();
         if (!header.equals("addr/data:"))
           return null;
         int addr = Integer.parseInt(toks.nextToken());
         int data = Integer.parseInt(toks.nextToken());
-        return HexFile.parseFromCircFile(rest, addr, data);
+        return HexFile.parseFromCircFile(in, addr, data);
       } catch (IOException e) {
         e.printStackTrace();
         return null;
@@ -104,6 +120,8 @@ public class Rom extends Mem {
       }
     }
 
+    private static final int MAX_HEADER_LENGTH = 100;
+
     @Override
     public String toDisplayString(MemContents value) {
       return S.get("romContentsValue");
@@ -155,6 +173,11 @@ public class Rom extends Mem {
 
   public static Attribute<MemContents> CONTENTS_ATTR = new ContentsAttribute();
 
+  // Parses a contents attribute value directly from a stream of text.
+  public static MemContents parseContents(Reader in) throws IOException {
+    return ((ContentsAttribute) CONTENTS_ATTR).parse(in);
+  }
+
   public Rom() {
     super("ROM", S.getter("romComponent"), 0);
     setIconName("rom.gif");
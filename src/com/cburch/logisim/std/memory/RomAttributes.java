@@ -77,7 +77,7 @@ class RomAttributes extends AbstractAttributeSet {
 
   private static List<Attribute<?>> ATTRIBUTES = Arrays
       .asList(new Attribute<?>[] { Mem.ADDR_ATTR, Mem.DATA_ATTR, Mem.LINE_ATTR,
-        Rom.CONTENTS_ATTR, StdAttr.LABEL, StdAttr.LABEL_FONT,
+        Rom.CONTENTS_ATTR, Mem.BACKING_ATTR, StdAttr.LABEL, StdAttr.LABEL_FONT,
         StdAttr.APPEARANCE});
 
   // fixme: this isn't necessary since EventSourceWeakSupport now has an owner
@@ -89,6 +89,7 @@ class RomAttributes extends AbstractAttributeSet {
   private BitWidth dataBits = BitWidth.create(8);
   private MemContents contents;
   private AttributeOption lineSize = Mem.SINGLE;
+  private AttributeOption backing = Mem.BACKING_HEAP;
   private String Label = "";
   private Font LabelFont = StdAttr.DEFAULT_LABEL_FONT;
   private AttributeOption Appearance = StdAttr.APPEAR_CLASSIC;
@@ -104,6 +105,7 @@ class RomAttributes extends AbstractAttributeSet {
     d.dataBits = dataBits;
     d.contents = contents.clone();
     d.lineSize = lineSize;
+    d.backing = backing;
     d.LabelFont = LabelFont;
     d.Appearance = Appearance;
   }
@@ -114,6 +116,7 @@ class RomAttributes extends AbstractAttributeSet {
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public <V> V getValue(Attribute<V> attr) {
     if (attr == Mem.ADDR_ATTR)
       return (V) addrBits;
@@ -123,6 +126,8 @@ class RomAttributes extends AbstractAttributeSet {
       return (V) contents;
     if (attr == Mem.LINE_ATTR)
       return (V) lineSize;
+    if (attr == Mem.BACKING_ATTR)
+      return (V) backing;
     if (attr == StdAttr.LABEL)
       return (V) Label;
     if (attr == StdAttr.LABEL_FONT)
@@ -147,8 +152,13 @@ class RomAttributes extends AbstractAttributeSet {
     }
     else if (attr == Mem.LINE_ATTR)
       lineSize = (AttributeOption) value;
-    else if (attr == Rom.CONTENTS_ATTR)
+    else if (attr == Rom.CONTENTS_ATTR) {
       contents = (MemContents) value;
+      contents.setFileBacked(backing == Mem.BACKING_MAPPED);
+    } else if (attr == Mem.BACKING_ATTR) {
+      backing = (AttributeOption) value;
+      contents.setFileBacked(backing == Mem.BACKING_MAPPED);
+    }
     else if (attr == StdAttr.LABEL)
       Label = (String) value;
     else if (attr == StdAttr.LABEL_FONT)
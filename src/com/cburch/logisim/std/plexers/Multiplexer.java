@@ -36,6 +36,8 @@ import java.awt.Graphics;
 
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.LogisimVersion;
+import com.cburch.logisim.circuit.CompiledCircuit;
+import com.cburch.logisim.circuit.CompiledComponent;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
@@ -271,6 +273,38 @@ public class Multiplexer extends InstanceFactory {
     painter.drawPorts();
   }
 
+  @Override
+  protected Object getInstanceFeature(Instance instance, Object key) {
+    if (key == CompiledComponent.class) {
+      return new CompiledComponent() {
+        public void compile(CompiledComponent.Context ctx)
+            throws CompiledCircuit.CompileException {
+          int width = instance.getAttributeValue(StdAttr.WIDTH).getWidth();
+          BitWidth select = instance.getAttributeValue(Plexers.ATTR_SELECT);
+          boolean enable = instance.getAttributeValue(Plexers.ATTR_ENABLE);
+          int inputs = 1 << select.getWidth();
+          int[] sel = ctx.getPort(inputs);
+          int[] en = enable ? ctx.getPort(inputs + 1) : null;
+          if (sel == null)
+            throw new CompiledComponent.NotCompilableException();
+          if (en != null && instance.getAttributeValue(Plexers.ATTR_DISABLED)
+              != Plexers.DISABLED_ZERO)
+            throw new CompiledComponent.NotCompilableException();
+          int[] data = new int[inputs * width];
+          for (int i = 0; i < inputs; i++) {
+            int[] in = ctx.getPort(i);
+            if (in == null)
+              throw new CompiledComponent.NotCompilableException();
+            System.arraycopy(in, 0, data, i * width, width);
+          }
+          ctx.addMux(data, sel, en == null ? ctx.getConstant(true) : en[0],
+              ctx.getPort(inputs + (enable ? 2 : 1)));
+        }
+      };
+    }
+    return super.getInstanceFeature(instance, key);
+  }
+
   @Override
   public void propagate(InstanceState state) {
     BitWidth data = state.getAttributeValue(StdAttr.WIDTH);
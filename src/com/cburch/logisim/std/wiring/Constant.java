@@ -39,6 +39,8 @@ import java.util.List;
 
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.CompiledCircuit;
+import com.cburch.logisim.circuit.CompiledComponent;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.data.AbstractAttributeSet;
 import com.cburch.logisim.data.Attribute;
@@ -82,7 +84,7 @@ public class Constant extends InstanceFactory {
     public <V> V getValue(Attribute<V> attr) {
       if (attr == StdAttr.FACING)
         return (V) facing;
-      if (attr == StdAttr.WIDTH)
+      if (attr == ATTR_WIDTH)
         return (V) width;
       if (attr == ATTR_VALUE)
         return (V) Integer.valueOf(value.toIntValue());
@@ -93,7 +95,7 @@ public class Constant extends InstanceFactory {
     public <V> void updateAttr(Attribute<V> attr, V value) {
       if (attr == StdAttr.FACING) {
         facing = (Direction) value;
-      } else if (attr == StdAttr.WIDTH) {
+      } else if (attr == ATTR_WIDTH) {
         width = (BitWidth) value;
         this.value = this.value.extendWidth(width.getWidth(),
             this.value.get(this.value.getWidth() - 1));
@@ -113,7 +115,7 @@ public class Constant extends InstanceFactory {
 
     public void computeExpression(ExpressionComputer.Map expressionMap) {
       AttributeSet attrs = instance.getAttributeSet();
-      int width = attrs.getValue(StdAttr.WIDTH).getWidth();
+      int width = attrs.getValue(ATTR_WIDTH).getWidth();
       Value v = Value.createKnown(BitWidth.create(width), attrs.getValue(ATTR_VALUE));
       for (int b = 0; b < width; b++) {
         expressionMap.put(instance.getLocation(), b,
@@ -122,6 +124,11 @@ public class Constant extends InstanceFactory {
     }
   }
 
+  // The value attribute is an int, so unlike StdAttr.WIDTH this attribute
+  // stops at 32 bits.
+  public static final Attribute<BitWidth> ATTR_WIDTH = Attributes.forBitWidth(
+      "width", S.getter("stdDataWidthAttr"), 1, 32);
+
   public static final Attribute<Integer> ATTR_VALUE = Attributes
       .forHexInteger("value", S.getter("constantValueAttr"));
 
@@ -132,7 +139,7 @@ public class Constant extends InstanceFactory {
   private static final Font DEFAULT_FONT = new Font("monospaced", Font.PLAIN, 12);
 
   private static final List<Attribute<?>> ATTRIBUTES = Arrays
-      .asList(new Attribute<?>[] { StdAttr.FACING, StdAttr.WIDTH,
+      .asList(new Attribute<?>[] { StdAttr.FACING, ATTR_WIDTH,
         ATTR_VALUE });
 
   public Constant() {
@@ -140,7 +147,7 @@ public class Constant extends InstanceFactory {
     setFacingAttribute(StdAttr.FACING);
     setKeyConfigurator(JoinedConfigurator.create(
           new ConstantConfigurator(), new BitWidthConfigurator(
-            StdAttr.WIDTH)));
+            ATTR_WIDTH, 1, 32)));
   }
 
   @Override
@@ -158,13 +165,26 @@ public class Constant extends InstanceFactory {
   protected Object getInstanceFeature(Instance instance, Object key) {
     if (key == ExpressionComputer.class)
       return new ConstantExpression(instance);
+    if (key == CompiledComponent.class) {
+      return new CompiledComponent() {
+        public void compile(CompiledComponent.Context ctx)
+            throws CompiledCircuit.CompileException {
+          int[] out = ctx.getPort(0);
+          long value = instance.getAttributeValue(ATTR_VALUE).intValue();
+          if (out == null)
+            return;
+          for (int b = 0; b < out.length; b++)
+            ctx.addConstant(out[b], ((value >>> b) & 1) != 0);
+        }
+      };
+    }
     return super.getInstanceFeature(instance, key);
   }
 
   @Override
   public Bounds getOffsetBounds(AttributeSet attrs) {
     Direction facing = attrs.getValue(StdAttr.FACING);
-    BitWidth width = attrs.getValue(StdAttr.WIDTH);
+    BitWidth width = attrs.getValue(ATTR_WIDTH);
     int chars = (width.getWidth() + 3) / 4;
     int w = 7 + 7*chars;
     if (facing == Direction.EAST)
@@ -186,7 +206,7 @@ public class Constant extends InstanceFactory {
 
   @Override
   protected void instanceAttributeChanged(Instance instance, Attribute<?> attr) {
-    if (attr == StdAttr.WIDTH) {
+    if (attr == ATTR_WIDTH) {
       instance.recomputeBounds();
       updatePorts(instance);
     } else if (attr == StdAttr.FACING) {
@@ -215,7 +235,7 @@ public class Constant extends InstanceFactory {
   //
   @Override
   public void paintIcon(InstancePainter painter) {
-    int w = painter.getAttributeValue(StdAttr.WIDTH).getWidth();
+    int w = painter.getAttributeValue(ATTR_WIDTH).getWidth();
     int pinx = 16;
     int piny = 9;
     Direction dir = painter.getAttributeValue(StdAttr.FACING);
@@ -247,7 +267,7 @@ public class Constant extends InstanceFactory {
   @Override
   public void paintInstance(InstancePainter painter) {
     Bounds bds = painter.getOffsetBounds();
-    BitWidth width = painter.getAttributeValue(StdAttr.WIDTH);
+    BitWidth width = painter.getAttributeValue(ATTR_WIDTH);
     int intValue = painter.getAttributeValue(ATTR_VALUE).intValue();
     Value v = Value.createKnown(width, intValue);
     Location loc = painter.getLocation();
@@ -279,13 +299,13 @@ public class Constant extends InstanceFactory {
 
   @Override
   public void propagate(InstanceState state) {
-    BitWidth width = state.getAttributeValue(StdAttr.WIDTH);
+    BitWidth width = state.getAttributeValue(ATTR_WIDTH);
     int value = state.getAttributeValue(ATTR_VALUE).intValue();
     state.setPort(0, Value.createKnown(width, value), 1);
   }
 
   private void updatePorts(Instance instance) {
-    Port[] ps = { new Port(0, 0, Port.OUTPUT, StdAttr.WIDTH) };
+    Port[] ps = { new Port(0, 0, Port.OUTPUT, ATTR_WIDTH) };
     instance.setPorts(ps);
   }
 
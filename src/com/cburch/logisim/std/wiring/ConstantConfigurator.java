@@ -32,7 +32,6 @@ package com.cburch.logisim.std.wiring;
 
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
-import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.tools.key.IntegerConfigurator;
 
 class ConstantConfigurator extends IntegerConfigurator {
@@ -42,7 +41,7 @@ class ConstantConfigurator extends IntegerConfigurator {
 
   @Override
   public int getMaximumValue(AttributeSet attrs) {
-    BitWidth width = attrs.getValue(StdAttr.WIDTH);
+    BitWidth width = attrs.getValue(Constant.ATTR_WIDTH);
     int ret = width.getMask();
     if (ret >= 0) {
       return ret;
@@ -53,7 +52,7 @@ class ConstantConfigurator extends IntegerConfigurator {
 
   @Override
   public int getMinimumValue(AttributeSet attrs) {
-    BitWidth width = attrs.getValue(StdAttr.WIDTH);
+    BitWidth width = attrs.getValue(Constant.ATTR_WIDTH);
     if (width.getWidth() < 32) {
       return 0;
     } else {
@@ -172,7 +172,7 @@ public class Pin extends InstanceFactory {
         hi = (1L << bitWidth-1) - 1;
       } else {
         lo = 0;
-        hi = (1L << bitWidth) - 1;
+        hi = bitWidth >= 64 ? Long.MAX_VALUE : (1L << bitWidth) - 1;
       }
       add(new JLabel(S.fmt(tristate ? "pinEditRangeTristate" : "pinEditRange", lo, hi)), gbc);
       gbc.gridy++;
@@ -189,7 +189,7 @@ public class Pin extends InstanceFactory {
           newVal = Value.createUnknown(BitWidth.create(bitWidth));
         } else {
           try {
-            int n = (int) Long.parseLong(s);
+            long n = Long.parseLong(s);
             newVal = Value.createKnown(BitWidth.create(bitWidth), n);
           } catch (NumberFormatException exception) {
             return;
@@ -212,9 +212,9 @@ public class Pin extends InstanceFactory {
       try {
         long n = Long.parseLong(s);
         if (radix == RadixOption.RADIX_10_SIGNED)
-          return (n >= -(1L << (bitWidth-1)) && n < (1L << bitWidth-1));
+          return (n >= -(1L << (bitWidth-1)) && n <= (1L << (bitWidth-1)) - 1);
         else
-          return (n >= 0 && n < (1L << bitWidth));
+          return (n >= 0 && (bitWidth >= 64 || n < (1L << bitWidth)));
       } catch (NumberFormatException e) {
         return false;
       }
@@ -71,6 +71,10 @@ public class Debug {
       Runtime.getRuntime().addShutdownHook(new Thread(() -> log.flush()));
   }
 
+  public static boolean isEnabled() {
+    return debugThread != null;
+  }
+
   static void doCmd(String cmd) {
     System.out.printf("got %s\n", cmd);
   }
@@ -37,6 +37,7 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.List;
 
 /**
  * Socket client to talk to the binder.
@@ -103,6 +104,24 @@ public class SocketClient {
     }
   }
 
+  /**
+   * Send several messages, one per line, with a single write and flush
+   * instead of one per message.
+   */
+  public void send(List<String> messages) {
+
+    StringBuilder buf = new StringBuilder();
+    for (String message : messages)
+      buf.append(message).append('\n');
+    try {
+      socket_writer.print(buf);
+      socket_writer.flush();
+    } catch (Exception e) {
+      System.err.printf("Cannot write %d messages to socket %s\n",
+          messages.size(), e.getMessage());
+    }
+  }
+
   public void start() {
 
     try {
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.tools.AddTool;
+
+/**
+ * A new project with an empty main circuit, made without any window, for
+ * tests that need to build and simulate circuits.
+ */
+public class HeadlessProject {
+
+	public final Loader loader;
+	public final LogisimFile file;
+	public final Project proj;
+	public final Circuit circ;
+	private int nextX = 100;
+
+	public HeadlessProject() {
+		Main.headless = true;
+		loader = new Loader(null);
+		file = LogisimFile.createNew(loader);
+		proj = new Project(new LogisimFile.FileWithSimulations(file));
+		circ = file.getMainCircuit();
+	}
+
+	/**
+	 * Returns the factory of a built-in tool, such as "Register" in the
+	 * "Memory" library.
+	 */
+	public ComponentFactory factory(String lib, String name) {
+		return ((AddTool) loader.getBuiltin().getLibrary(lib).getTool(name)).getFactory();
+	}
+
+	/**
+	 * Returns a location to the right of all those returned before, far
+	 * enough apart that components placed there do not touch.
+	 */
+	public Location nextLocation() {
+		Location ret = Location.create(nextX, 200);
+		nextX += 200;
+		return ret;
+	}
+
+	public CircuitState createRootState() {
+		return CircuitState.createRootState(proj, circ);
+	}
+}
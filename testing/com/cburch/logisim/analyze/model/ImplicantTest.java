@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.analyze.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ImplicantTest {
+
+	private static AnalyzerModel model(int inputs, int outputs) {
+		ArrayList<Var> in = new ArrayList<>(), out = new ArrayList<>();
+		for (int i = 0; i < inputs; i++)
+			in.add(new Var("i" + i, 1));
+		for (int i = 0; i < outputs; i++)
+			out.add(new Var("o" + i, 1));
+		AnalyzerModel model = new AnalyzerModel();
+		model.setVariables(in, out);
+		return model;
+	}
+
+	// Sets the output to the given entries, one character per row: 0, 1 or x.
+	private static AnalyzerModel model(int inputs, String... columns) {
+		AnalyzerModel model = model(inputs, columns.length);
+		for (int col = 0; col < columns.length; col++) {
+			Entry[] entries = new Entry[columns[col].length()];
+			for (int i = 0; i < entries.length; i++) {
+				char c = columns[col].charAt(i);
+				entries[i] = c == '1' ? Entry.ONE : c == '0' ? Entry.ZERO : Entry.DONT_CARE;
+			}
+			model.getTruthTable().setOutputColumn(col, entries);
+		}
+		return model;
+	}
+
+	private static String random(Random rand, int rows) {
+		StringBuilder s = new StringBuilder(rows);
+		for (int i = 0; i < rows; i++) {
+			int r = rand.nextInt(8);
+			s.append(r < 3 ? '0' : r < 6 ? '1' : 'x');
+		}
+		return s.toString();
+	}
+
+	private static boolean covers(Implicant imp, int row) {
+		return (row & ~imp.unknowns) == imp.values;
+	}
+
+	// Every desired row must be covered by some term, and no undesired row by
+	// any term. Don't-care rows may go either way.
+	private static void assertCover(AnalyzerModel model, int col, int format, List<Implicant> terms) {
+		TruthTable table = model.getTruthTable();
+		Entry desired = format == AnalyzerModel.FORMAT_SUM_OF_PRODUCTS ? Entry.ONE : Entry.ZERO;
+		for (int row = 0; row < table.getRowCount(); row++) {
+			Entry entry = table.getOutputEntry(row, col);
+			if (entry == Entry.DONT_CARE)
+				continue;
+			boolean covered = false;
+			for (Implicant imp : terms)
+				covered |= covers(imp, row);
+			assertEquals("row " + row, entry == desired, covered);
+		}
+	}
+
+	/**
+	 * Functions with a known minimal form are reduced to it.
+	 */
+	@Test
+	public void testKnownFunctions() {
+		int sop = AnalyzerModel.FORMAT_SUM_OF_PRODUCTS;
+		// i0 alone, whatever i1 and i2 are
+		AnalyzerModel m = model(3, "00001111");
+		List<Implicant> terms = Implicant.computeMinimal(sop, m, "o0");
+		assertEquals(1, terms.size());
+		assertEquals(3, terms.get(0).unknowns);
+		assertEquals(4, terms.get(0).values);
+
+		// majority needs three terms of two literals
+		m = model(3, "00010111");
+		terms = Implicant.computeMinimal(sop, m, "o0");
+		assertEquals(3, terms.size());
+		for (Implicant imp : terms)
+			assertEquals(1, Integer.bitCount(imp.unknowns));
+
+		// parity cannot be merged at all
+		m = model(3, "01101001");
+		assertEquals(4, Implicant.computeMinimal(sop, m, "o0").size());
+
+		// don't cares are used to make larger terms
+		m = model(3, "0000x111");
+		terms = Implicant.computeMinimal(sop, m, "o0");
+		assertEquals(1, terms.size());
+		assertCover(m, 0, sop, terms);
+	}
+
+	/**
+	 * Constant outputs give a single term covering everything, or none.
+	 */
+	@Test
+	public void testConstants() {
+		int sop = AnalyzerModel.FORMAT_SUM_OF_PRODUCTS;
+		List<Implicant> terms = Implicant.computeMinimal(sop, model(2, "1111"), "o0");
+		assertEquals(1, terms.size());
+		assertEquals(3, terms.get(0).unknowns);
+		assertTrue(Implicant.computeMinimal(sop, model(2, "0000"), "o0").isEmpty());
+		assertNull(Implicant.computeMinimal(sop, model(2, "xxxx"), "o0"));
+		assertTrue(Implicant.computeMinimal(sop, model(2, "0000"), "nosuch").isEmpty());
+	}
+
+	/**
+	 * Both the exact and the heuristic methods give valid covers for random
+	 * tables with don't cares, in either format.
+	 */
+	@Test
+	public void testRandomCovers() {
+		Random rand = new Random(1);
+		for (int inputs = 1; inputs <= 9; inputs++) {
+			for (int trial = 0; trial < 5; trial++) {
+				AnalyzerModel m = model(inputs, random(rand, 1 << inputs));
+				for (int format : new int[] { AnalyzerModel.FORMAT_SUM_OF_PRODUCTS,
+						AnalyzerModel.FORMAT_PRODUCT_OF_SUMS }) {
+					List<Implicant> exact = Implicant.computeMinimal(format, m, "o0");
+					List<Implicant> heuristic = Implicant.computeMinimal(format, m, "o0", 0);
+					assertCover(m, 0, format, exact);
+					assertCover(m, 0, format, heuristic);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Running out of room for prime implicants falls back to the heuristic
+	 * method rather than failing.
+	 */
+	@Test
+	public void testCubeLimitFallsBack() {
+		Random rand = new Random(2);
+		AnalyzerModel m = model(10, random(rand, 1 << 10));
+		int sop = AnalyzerModel.FORMAT_SUM_OF_PRODUCTS;
+		List<Implicant> limited = Implicant.computeMinimal(sop, m, "o0", 16);
+		assertEquals(Implicant.computeMinimal(sop, m, "o0", 0), limited);
+		assertCover(m, 0, sop, limited);
+	}
+
+	/**
+	 * Minimizing all outputs at once gives the same terms as minimizing each
+	 * output by itself.
+	 */
+	@Test
+	public void testAllOutputsMatchSingle() {
+		Random rand = new Random(3);
+		String[] columns = new String[6];
+		for (int i = 0; i < columns.length; i++)
+			columns[i] = random(rand, 1 << 7);
+		AnalyzerModel m = model(7, columns);
+		OutputExpressions exprs = m.getOutputExpressions();
+		exprs.computeMinimalForAllOutputs();
+		for (int i = 0; i < columns.length; i++) {
+			String out = "o" + i;
+			List<Implicant> expected = Implicant.computeMinimal(exprs.getMinimizedFormat(out), m, out);
+			assertEquals(out, expected, exprs.getMinimalImplicants(out));
+			assertFalse(expected.isEmpty());
+		}
+	}
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.HeadlessProject;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentState;
+import com.cburch.logisim.std.wiring.Constant;
+
+public class CircuitStateDataTest {
+
+	private static class Counter implements ComponentState {
+		int count;
+
+		Counter(int count) {
+			this.count = count;
+		}
+
+		@Override
+		public Counter clone() {
+			return new Counter(count);
+		}
+	}
+
+	private HeadlessProject project;
+	private Circuit circ;
+	private CircuitState state;
+
+	@Before
+	public void setUp() {
+		project = new HeadlessProject();
+		circ = project.circ;
+		state = project.createRootState();
+	}
+
+	private Component create() {
+		return Constant.FACTORY.createComponent(project.nextLocation(),
+				Constant.FACTORY.createAttributeSet());
+	}
+
+	private Component add() {
+		return add(create());
+	}
+
+	private Component add(Component comp) {
+		CircuitMutation m = new CircuitMutation(circ);
+		m.add(comp);
+		m.execute();
+		return comp;
+	}
+
+	private void remove(Component comp) {
+		CircuitMutation m = new CircuitMutation(circ);
+		m.remove(comp);
+		m.execute();
+	}
+
+	/**
+	 * Components get small, distinct indices, and data stored for each is
+	 * found again, including for components added after the state was made.
+	 */
+	@Test
+	public void testDenseIndices() {
+		Component[] comps = new Component[40];
+		HashSet<Integer> indices = new HashSet<>();
+		for (int i = 0; i < comps.length; i++) {
+			comps[i] = add();
+			indices.add(comps[i].getDataIndex());
+			state.setData(comps[i], "data" + i);
+		}
+		assertEquals(comps.length, indices.size());
+		for (int i = 0; i < comps.length; i++) {
+			assertTrue(indices.contains(i));
+			assertEquals("data" + i, state.getData(comps[i]));
+		}
+	}
+
+	/**
+	 * A removed component's index goes to the next component added, which
+	 * must not see the removed component's data.
+	 */
+	@Test
+	public void testReusedIndexStartsEmpty() {
+		Component a = add(), b = add();
+		state.setData(a, "a");
+		state.setData(b, "b");
+		remove(a);
+		assertNull(state.getData(a));
+
+		state.setData(a, "stale"); // a keeps its index after removal
+		Component c = add();
+		assertEquals(a.getDataIndex(), c.getDataIndex());
+		assertNull(state.getData(c));
+		state.setData(c, "c");
+		assertEquals("c", state.getData(c));
+		assertEquals("b", state.getData(b));
+	}
+
+	/**
+	 * A component re-added while its old index is free, as by undo, gets
+	 * that index back.
+	 */
+	@Test
+	public void testReaddedComponentKeepsIndex() {
+		add();
+		Component a = add();
+		add();
+		int index = a.getDataIndex();
+		remove(a);
+		add(a);
+		assertEquals(index, a.getDataIndex());
+		state.setData(a, "again");
+		assertEquals("again", state.getData(a));
+	}
+
+	/**
+	 * Components that were never added to a circuit have no index, but can
+	 * still hold data.
+	 */
+	@Test
+	public void testComponentOutsideCircuit() {
+		Component loose = create();
+		assertEquals(-1, loose.getDataIndex());
+		assertNull(state.getData(loose));
+		state.setData(loose, "loose");
+		assertEquals("loose", state.getData(loose));
+		state.setData(loose, null);
+		assertNull(state.getData(loose));
+	}
+
+	/**
+	 * Cloning a state clones each component's data, so the two states no
+	 * longer share it.
+	 */
+	@Test
+	public void testCloneCopiesData() {
+		Component a = add(), b = add(), loose = create();
+		Counter counter = new Counter(5);
+		state.setData(a, counter);
+		state.setData(b, "shared");
+		state.setData(loose, new Counter(7));
+
+		CircuitState copy = state.cloneAsNewRootState();
+		Counter copied = (Counter) copy.getData(a);
+		assertNotSame(counter, copied);
+		assertEquals(5, copied.count);
+		assertSame("shared", copy.getData(b));
+		assertEquals(7, ((Counter) copy.getData(loose)).count);
+
+		copied.count = 6;
+		copy.setData(b, null);
+		assertEquals(5, counter.count);
+		assertEquals("shared", state.getData(b));
+		assertNull(copy.getData(b));
+	}
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.HeadlessProject;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.std.wiring.Constant;
+import com.cburch.logisim.std.wiring.Pin;
+
+public class CompiledCircuitTest {
+
+	private HeadlessProject project;
+	private CircuitMutation mutation;
+
+	@Before
+	public void setUp() {
+		project = new HeadlessProject();
+		mutation = new CircuitMutation(project.circ);
+	}
+
+	private ComponentFactory factory(String lib, String name) {
+		return project.factory(lib, name);
+	}
+
+	// Adds a component well away from all the others, so that its ends only
+	// meet the tunnels connected to them.
+	private Component add(ComponentFactory factory, AttributeSet attrs) {
+		Component comp = factory.createComponent(project.nextLocation(), attrs);
+		mutation.add(comp);
+		return comp;
+	}
+
+	private Component add(ComponentFactory factory, int width) {
+		AttributeSet attrs = factory.createAttributeSet();
+		attrs.setAttr(StdAttr.WIDTH, BitWidth.create(width));
+		return add(factory, attrs);
+	}
+
+	private Component constant(int width, int value) {
+		AttributeSet attrs = Constant.FACTORY.createAttributeSet();
+		attrs.setAttr(Constant.ATTR_WIDTH, BitWidth.create(width));
+		attrs.setAttr(Constant.ATTR_VALUE, Integer.valueOf(value));
+		return add(Constant.FACTORY, attrs);
+	}
+
+	private Component outputPin(int width) {
+		AttributeSet attrs = Pin.FACTORY.createAttributeSet();
+		attrs.setAttr(StdAttr.WIDTH, BitWidth.create(width));
+		attrs.setAttr(Pin.ATTR_TYPE, Pin.OUTPUT);
+		return add(Pin.FACTORY, attrs);
+	}
+
+	// Connects a port to every other port tied to the same name.
+	private void connect(Component comp, int port, String name) {
+		ComponentFactory tunnel = factory("Wiring", "Tunnel");
+		AttributeSet attrs = tunnel.createAttributeSet();
+		attrs.setAttr(StdAttr.WIDTH, comp.getEnd(port).getWidth());
+		attrs.setAttr(StdAttr.LABEL, name);
+		mutation.add(tunnel.createComponent(comp.getEnd(port).getLocation(), attrs));
+	}
+
+	private CircuitState build() {
+		mutation.execute();
+		CircuitState state = project.createRootState();
+		state.getPropagator().propagate();
+		return state;
+	}
+
+	// Returns the reason the circuit was refused.
+	private String assertRefused() {
+		try {
+			CompiledCircuit.compile(build());
+		} catch (CompiledCircuit.CompileException e) {
+			return e.getMessage();
+		}
+		fail("circuit should not compile");
+		return null;
+	}
+
+	/**
+	 * An 8-bit counter, with its value also XORed with a constant, gives the
+	 * same pin values as the propagator on every tick, and leaves the circuit
+	 * state where the propagator would have after sync().
+	 */
+	@Test
+	public void testMatchesPropagator() throws Exception {
+		Component clock = add(factory("Wiring", "Clock"), 1);
+		connect(clock, 0, "clk");
+		Component reg = add(factory("Memory", "Register"), 8);
+		connect(reg, 0, "q"); // Register.OUT
+		connect(reg, 1, "next"); // Register.IN
+		connect(reg, 2, "clk"); // Register.CK
+		Component adder = add(factory("Arithmetic", "Adder"), 8);
+		connect(adder, 0, "q");
+		connect(adder, 1, "one");
+		connect(adder, 2, "next");
+		connect(constant(8, 1), 0, "one");
+		Component xor = add(factory("Gates", "XOR Gate"), 8);
+		connect(xor, 0, "x");
+		connect(xor, 1, "q");
+		connect(xor, 2, "mask");
+		connect(constant(8, 0x5a), 0, "mask");
+		Component count = outputPin(8);
+		connect(count, 0, "q");
+		Component masked = outputPin(8);
+		connect(masked, 0, "x");
+
+		CircuitState expected = build();
+		CircuitState actual = project.createRootState();
+		actual.getPropagator().propagate();
+		CompiledCircuit compiled = CompiledCircuit.compile(actual);
+
+		Location countLoc = count.getLocation(), maskedLoc = masked.getLocation();
+		for (int tick = 0; tick < 600; tick++) {
+			assertEquals("tick " + tick, expected.getValue(countLoc), compiled.getPortValue(count, 0));
+			assertEquals("tick " + tick, expected.getValue(maskedLoc), compiled.getPortValue(masked, 0));
+			expected.getPropagator().toggleClocks();
+			expected.getPropagator().propagate();
+			compiled.tick();
+		}
+		assertEquals(600, compiled.getTickCount());
+		assertEquals(Value.createKnown(BitWidth.create(8), 300 & 0xff), expected.getValue(countLoc));
+
+		compiled.sync();
+		assertEquals(expected.getValue(countLoc), actual.getValue(countLoc));
+		assertEquals(expected.getValue(maskedLoc), actual.getValue(maskedLoc));
+	}
+
+	/**
+	 * Combinational loops could oscillate, so they are refused.
+	 */
+	@Test
+	public void testRefusesLoop() {
+		Component not = add(factory("Gates", "NOT Gate"), 1);
+		connect(not, 0, "loop");
+		connect(not, 1, "loop");
+		assertRefused();
+	}
+
+	/**
+	 * Components that cannot be expressed as compiled operations in their
+	 * current configuration are refused by name.
+	 */
+	@Test
+	public void testRefusesLevelTriggeredRegister() {
+		ComponentFactory register = factory("Memory", "Register");
+		AttributeSet attrs = register.createAttributeSet();
+		attrs.setAttr(StdAttr.TRIGGER, StdAttr.TRIG_HIGH);
+		Component reg = add(register, attrs);
+		connect(reg, 1, "d");
+		connect(constant(8, 3), 0, "d");
+		String reason = assertRefused();
+		assertTrue(reason, reason.contains(reg.getFactory().getDisplayName()));
+	}
+
+	/**
+	 * Several drivers on one net could conflict, so they are refused.
+	 */
+	@Test
+	public void testRefusesConflict() {
+		connect(constant(1, 0), 0, "a");
+		connect(constant(1, 1), 0, "a");
+		connect(outputPin(1), 0, "a");
+		assertRefused();
+	}
+}
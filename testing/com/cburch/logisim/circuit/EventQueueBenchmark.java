@@ -0,0 +1,160 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Random;
+
+import com.cburch.logisim.Main;
+import com.cburch.logisim.data.AttributeOption;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.file.Options;
+import com.cburch.logisim.proj.Project;
+
+// EventQueueBenchmark compares the EventQueue implementations, reporting
+// events/sec for each. Usage:
+//   java com.cburch.logisim.circuit.EventQueueBenchmark
+//     Runs synthetic workloads that mimic the delay patterns of typical
+//     circuits: all gates with equal delays, a mix of small delays, the
+//     randomized delays used when Options.ATTR_SIM_RAND is enabled, and a few
+//     long delays mixed in with short ones.
+//   java com.cburch.logisim.circuit.EventQueueBenchmark file.circ [circuit] [ticks]
+//     Simulates the given circuit for some number of clock ticks using each
+//     queue implementation in turn.
+public class EventQueueBenchmark {
+
+  private static final AttributeOption[] TYPES = {
+    Options.SIM_QUEUE_LINKED, Options.SIM_QUEUE_SPLAY,
+    Options.SIM_QUEUE_HEAP, Options.SIM_QUEUE_WHEEL };
+
+  private static final long MAX_NANOS = 2000000000L;
+
+  private static class Event extends SplayQueue.Node {
+    final int time;
+    Event(int time, int serial) {
+      super(((long)time << 32) | (serial & 0xFFFFFFFFL));
+      this.time = time;
+    }
+  }
+
+  private interface DelayModel {
+    int nextDelay(Random rand);
+  }
+
+  private static final String[] WORKLOADS = {
+    "equal delays", "mixed delays 1-8", "randomized (simrand)", "mostly short, some long" };
+
+  private static final DelayModel[] DELAYS = {
+    rand -> 1,
+    rand -> 1 + rand.nextInt(8),
+    rand -> (1 << 5) + (rand.nextInt(32) == 0 ? 1 : 0),
+    rand -> rand.nextInt(100) == 0 ? 2000 + rand.nextInt(2000) : 1 + rand.nextInt(4),
+  };
+
+  // Keeps a steady population of pending events: each event removed schedules
+  // a replacement, as a component does when its input changes.
+  private static double runSynthetic(EventQueue<Event> q, DelayModel delays,
+      int population, int count) {
+    Random rand = new Random(1234);
+    int serial = 0;
+    for (int i = 0; i < population; i++)
+      q.add(new Event(delays.nextDelay(rand), serial++));
+    long start = System.nanoTime();
+    long limit = start + MAX_NANOS;
+    int i;
+    for (i = 0; i < count; i++) {
+      Event ev = q.peek();
+      q.remove();
+      q.add(new Event(ev.time + delays.nextDelay(rand), serial++));
+      if ((i & 0xfff) == 0 && System.nanoTime() > limit)
+        break; // some queues are very slow for some workloads
+    }
+    long elapsed = System.nanoTime() - start;
+    q.clear();
+    return i / (elapsed / 1e9);
+  }
+
+  private static void benchSynthetic() {
+    int count = 2000000;
+    for (int w = 0; w < WORKLOADS.length; w++) {
+      for (int population : new int[] { 100, 10000 }) {
+        System.out.printf("%s, %d pending events:\n", WORKLOADS[w], population);
+        for (AttributeOption type : TYPES) {
+          runSynthetic(Propagator.createQueue(type), DELAYS[w], population, count / 10); // warm up
+          EventQueue<Event> q = Propagator.createQueue(type);
+          double rate = runSynthetic(q, DELAYS[w], population, count);
+          System.out.printf("  %-8s %12.0f events/sec\n", type.getValue(), rate);
+        }
+      }
+    }
+  }
+
+  private static void benchCircuit(File file, String name, int ticks) throws Exception {
+    Main.headless = true;
+    Loader loader = new Loader(null);
+    LogisimFile.FileWithSimulations f = loader.openLogisimFile(file, new HashMap<>());
+    Project proj = new Project(f);
+    Circuit circuit = name == null ? f.file.getMainCircuit() : f.file.getCircuit(name);
+    if (circuit == null)
+      throw new IllegalArgumentException("no such circuit: " + name);
+    System.out.printf("%s, %d ticks:\n", circuit.getName(), ticks);
+    for (AttributeOption type : TYPES) {
+      proj.getOptions().getAttributeSet().setAttr(Options.ATTR_SIM_QUEUE, type);
+      CircuitState state = CircuitState.createRootState(proj, circuit);
+      Propagator prop = state.getPropagator();
+      prop.propagate();
+      long events = prop.eventCount;
+      long start = System.nanoTime();
+      for (int i = 0; i < ticks && !prop.isOscillating(); i++) {
+        prop.toggleClocks();
+        prop.propagate();
+      }
+      double secs = (System.nanoTime() - start) / 1e9;
+      events = prop.eventCount - events;
+      System.out.printf("  %-8s %12.0f events/sec %10.0f ticks/sec (%d events allocated, %d reused)\n",
+          type.getValue(), events / secs, ticks / secs,
+          prop.getEventsAllocated(), prop.getEventsRecycled());
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      benchSynthetic();
+    } else {
+      String name = args.length > 1 ? args[1] : null;
+      int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+      benchCircuit(new File(args[0]), name, ticks);
+    }
+    System.exit(0);
+  }
+}
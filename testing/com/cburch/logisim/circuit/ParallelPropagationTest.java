@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import com.cburch.logisim.HeadlessProject;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.AttributeOption;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.Options;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.std.wiring.Constant;
+import com.cburch.logisim.std.wiring.Pin;
+
+public class ParallelPropagationTest {
+
+	private static final int CELLS = 4;
+	private static final int HALF_CYCLES = 400;
+
+	// One copy of the test circuit, in a project of its own.
+	private static class Bench {
+		final HeadlessProject project = new HeadlessProject();
+		final ArrayList<Location> cellProbes = new ArrayList<>();
+		final ArrayList<Location> mainProbes = new ArrayList<>();
+		final ArrayList<Component> cells = new ArrayList<>();
+		ArrayList<Location> probes;
+		CircuitMutation mutation;
+
+		Component add(ComponentFactory factory, AttributeSet attrs) {
+			Component comp = factory.createComponent(project.nextLocation(), attrs);
+			mutation.add(comp);
+			return comp;
+		}
+
+		Component add(ComponentFactory factory) {
+			return add(factory, factory.createAttributeSet());
+		}
+
+		Component add(ComponentFactory factory, int width) {
+			AttributeSet attrs = factory.createAttributeSet();
+			attrs.setAttr(StdAttr.WIDTH, BitWidth.create(width));
+			return add(factory, attrs);
+		}
+
+		Component pin(AttributeOption type) {
+			AttributeSet attrs = Pin.FACTORY.createAttributeSet();
+			attrs.setAttr(StdAttr.WIDTH, BitWidth.create(8));
+			attrs.setAttr(Pin.ATTR_TYPE, type);
+			return add(Pin.FACTORY, attrs);
+		}
+
+		// Connects an end to every other end tied to the same name, and
+		// watches its value.
+		void connect(Component comp, EndData end, String name) {
+			ComponentFactory tunnel = project.factory("Wiring", "Tunnel");
+			AttributeSet attrs = tunnel.createAttributeSet();
+			attrs.setAttr(StdAttr.WIDTH, end.getWidth());
+			attrs.setAttr(StdAttr.LABEL, name);
+			mutation.add(tunnel.createComponent(end.getLocation(), attrs));
+			probes.add(end.getLocation());
+		}
+
+		void connect(Component comp, int port, String name) {
+			connect(comp, comp.getEnd(port), name);
+		}
+	}
+
+	/**
+	 * Builds a main circuit with a counter addressing a RAM, whose output
+	 * feeds a chain of subcircuits, each adding its own counter, with the
+	 * end of the chain written back to the RAM on every clock.
+	 */
+	private static Bench build(boolean parallel) {
+		Bench b = new Bench();
+		HeadlessProject p = b.project;
+		p.file.getOptions().getAttributeSet().setAttr(Options.ATTR_SIM_PARALLEL, parallel);
+
+		Circuit cell = new Circuit("cell", p.file);
+		p.file.addCircuit(cell);
+		b.mutation = new CircuitMutation(cell);
+		b.probes = b.cellProbes;
+		b.connect(b.add(p.factory("Wiring", "Clock")), 0, "clk");
+		Component count = b.add(p.factory("Memory", "Counter")); // 8 bits
+		b.connect(count, 0, "count"); // Counter.OUT
+		b.connect(count, 2, "clk"); // Counter.CK
+		Component adder = b.add(p.factory("Arithmetic", "Adder"), 8);
+		b.connect(adder, 0, "in");
+		b.connect(adder, 1, "count");
+		b.connect(adder, 2, "out");
+		b.connect(b.pin(Pin.INPUT), 0, "in");
+		b.connect(b.pin(Pin.OUTPUT), 0, "out");
+		b.mutation.execute();
+
+		b.mutation = new CircuitMutation(p.circ);
+		b.probes = b.mainProbes;
+		b.connect(b.add(p.factory("Wiring", "Clock")), 0, "clk");
+		Component addr = b.add(p.factory("Memory", "Counter"));
+		b.connect(addr, 0, "addr"); // Counter.OUT
+		b.connect(addr, 2, "clk"); // Counter.CK
+		Component ram = b.add(p.factory("Memory", "RAM")); // 8 x 8 bits
+		b.connect(ram, 0, "mem"); // separate bus: data out
+		b.connect(ram, 1, "addr");
+		b.connect(ram, 2, "c" + CELLS); // data in
+		b.connect(ram, 3, "clk");
+		b.connect(ram, 4, "we");
+		b.connect(b.add(Constant.FACTORY), 0, "we"); // 1
+		for (int i = 0; i < CELLS; i++) {
+			Component sub = b.add(cell.getSubcircuitFactory());
+			b.cells.add(sub);
+			for (EndData end : sub.getEnds())
+				b.connect(sub, end, end.isInput() ? (i == 0 ? "mem" : "c" + i) : "c" + (i + 1));
+		}
+		b.mutation.execute();
+		return b;
+	}
+
+	private static void assertSameValues(String msg, CircuitState expected,
+			CircuitState actual, ArrayList<Location> expectedProbes,
+			ArrayList<Location> actualProbes) {
+		for (int i = 0; i < expectedProbes.size(); i++)
+			assertEquals(msg, expected.getValue(expectedProbes.get(i)),
+					actual.getValue(actualProbes.get(i)));
+	}
+
+	/**
+	 * Parallel propagation gives the same values, in the main circuit and in
+	 * every subcircuit, after the same number of events as serial
+	 * propagation, on every half cycle.
+	 */
+	@Test
+	public void testMatchesSerial() {
+		Bench serial = build(false), parallel = build(true);
+		CircuitState expected = serial.project.createRootState();
+		CircuitState actual = parallel.project.createRootState();
+		Propagator serialProp = expected.getPropagator();
+		Propagator parallelProp = actual.getPropagator();
+		serialProp.propagate();
+		parallelProp.propagate();
+		assertEquals(CELLS, actual.getSubstates().size());
+
+		Location end = serial.mainProbes.get(serial.mainProbes.size() - 1);
+		Value first = expected.getValue(end);
+		boolean changed = false;
+		for (int i = 0; i < HALF_CYCLES; i++) {
+			String msg = "half cycle " + i;
+			assertSameValues(msg, expected, actual, serial.mainProbes, parallel.mainProbes);
+			for (int j = 0; j < CELLS; j++) {
+				assertSameValues(msg + ", cell " + j,
+						(CircuitState) expected.getData(serial.cells.get(j)),
+						(CircuitState) actual.getData(parallel.cells.get(j)),
+						serial.cellProbes, parallel.cellProbes);
+			}
+			assertEquals(msg, serialProp.eventCount, parallelProp.eventCount);
+			changed |= !expected.getValue(end).equals(first);
+			serialProp.toggleClocks();
+			serialProp.propagate();
+			parallelProp.toggleClocks();
+			parallelProp.propagate();
+		}
+		assertNotEquals(0, serialProp.eventCount);
+		assertTrue(changed);
+	}
+}
@@ -0,0 +1,240 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.HeadlessProject;
+import com.cburch.logisim.circuit.CircuitMutation;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.memory.MemContents;
+import com.cburch.logisim.std.memory.Rom;
+
+public class ProjectArchiveTest {
+
+	private static final File ARCHIVE = new File("test" + LogisimFile.LOGISIM_EXTENSION_ARCHIVE);
+
+	private Loader loader;
+	private LogisimFile file;
+	private Project proj;
+	private MemContents contents;
+
+	/**
+	 * Builds a project holding two ROMs with the same (partly filled)
+	 * contents and one ROM that is left empty.
+	 */
+	@Before
+	public void setUp() {
+		HeadlessProject project = new HeadlessProject();
+		loader = project.loader;
+		file = project.file;
+		proj = project.proj;
+		file.addLibrary(loader.getBuiltin().getLibrary("Memory"));
+		ComponentFactory rom = project.factory("Memory", "ROM");
+
+		contents = MemContents.create(8, 8);
+		for (int i = 0; i < 100; i++)
+			contents.set(i, (i * 7 + 1) & 0xff);
+		CircuitMutation m = new CircuitMutation(project.circ);
+		for (int i = 0; i < 3; i++) {
+			AttributeSet attrs = rom.createAttributeSet();
+			if (i < 2)
+				attrs.setAttr(Rom.CONTENTS_ATTR, contents);
+			m.add(rom.createComponent(Location.create(100, 100 + 200 * i), attrs));
+		}
+		m.execute();
+	}
+
+	private static byte[] save(LogisimFile file, Project proj, File dest) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		file.write(out, dest, proj);
+		return out.toByteArray();
+	}
+
+	private LogisimFile open(byte[] data) throws Exception {
+		return LogisimFile.load(null, new ByteArrayInputStream(data), loader).file;
+	}
+
+	private static TreeMap<String, byte[]> entries(byte[] archive) throws IOException {
+		TreeMap<String, byte[]> ret = new TreeMap<>();
+		ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive));
+		for (ZipEntry e = zip.getNextEntry(); e != null; e = zip.getNextEntry()) {
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			for (int n = zip.read(buf); n >= 0; n = zip.read(buf))
+				data.write(buf, 0, n);
+			ret.put(e.getName(), data.toByteArray());
+		}
+		return ret;
+	}
+
+	private static boolean isArchive(byte[] data) throws IOException {
+		return ProjectArchive.isArchive(new BufferedInputStream(new ByteArrayInputStream(data)));
+	}
+
+	/**
+	 * Files with the archive extension are written as a zip with the xml
+	 * project and one image per distinct memory contents, with trailing
+	 * zero words left off.
+	 */
+	@Test
+	public void testArchiveLayout() throws Exception {
+		byte[] archive = save(file, proj, ARCHIVE);
+		assertTrue(isArchive(archive));
+		assertFalse(isArchive(save(file, proj, null)));
+
+		TreeMap<String, byte[]> entries = entries(archive);
+		assertTrue(entries.containsKey(ProjectArchive.PROJECT_ENTRY));
+		byte[] image = null;
+		for (String name : entries.keySet()) {
+			if (name.startsWith(ProjectArchive.IMAGE_DIR) && entries.get(name).length > 0) {
+				assertEquals("only one non-empty image", null, image);
+				image = entries.get(name);
+			}
+		}
+		byte[] expected = new byte[100];
+		for (int i = 0; i < expected.length; i++)
+			expected[i] = (byte) (i * 7 + 1);
+		assertArrayEquals(expected, image);
+
+		String xml = new String(entries.get(ProjectArchive.PROJECT_ENTRY), StandardCharsets.UTF_8);
+		assertFalse(xml.contains("addr/data:"));
+		assertTrue(xml.contains(ProjectArchive.IMAGE_ATTR + "=\"" + ProjectArchive.IMAGE_DIR));
+	}
+
+	/**
+	 * Opening an archive gives the same project as opening the xml file, so
+	 * re-saving it as xml gives identical output.
+	 */
+	@Test
+	public void testRoundTripMatchesXml() throws Exception {
+		byte[] xml = save(file, proj, null);
+		LogisimFile fromArchive = open(save(file, proj, ARCHIVE));
+		Project archiveProj = new Project(new LogisimFile.FileWithSimulations(fromArchive));
+		assertEquals(new String(xml, StandardCharsets.UTF_8),
+				new String(save(fromArchive, archiveProj, null), StandardCharsets.UTF_8));
+
+		int roms = 0;
+		for (Component comp : fromArchive.getMainCircuit().getNonWires()) {
+			boolean empty = comp.getLocation().getY() > 300;
+			MemContents val = comp.getAttributeSet().getValue(Rom.CONTENTS_ATTR);
+			for (int i = 0; i <= contents.getLastOffset(); i++)
+				assertEquals(empty ? 0 : contents.get(i), val.get(i));
+			roms++;
+		}
+		assertEquals(3, roms);
+	}
+
+	/**
+	 * A xml file is still opened as xml, whatever its name.
+	 */
+	@Test
+	public void testXmlStillOpens() throws Exception {
+		LogisimFile fromXml = open(save(file, proj, null));
+		assertEquals(3, fromXml.getMainCircuit().getNonWires().size());
+	}
+
+	private static byte[] zip(String name, byte[] data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ZipOutputStream zip = new ZipOutputStream(out);
+		zip.putNextEntry(new ZipEntry(name));
+		zip.write(data);
+		zip.closeEntry();
+		zip.finish();
+		return out.toByteArray();
+	}
+
+	/**
+	 * An archive without the xml project is rejected.
+	 */
+	@Test(expected = IOException.class)
+	public void testMissingProjectEntry() throws Exception {
+		ProjectArchive.read(new ByteArrayInputStream(zip(ProjectArchive.IMAGE_DIR + "0.bin",
+				new byte[4])), new ProjectArchive.Images());
+	}
+
+	/**
+	 * Images with dimensions that no memory can have are rejected rather
+	 * than allocated.
+	 */
+	@Test
+	public void testBadImageDimensions() throws Exception {
+		String name = ProjectArchive.IMAGE_DIR + "0.bin";
+		ByteArrayOutputStream archive = new ByteArrayOutputStream();
+		ZipOutputStream zip = new ZipOutputStream(archive);
+		zip.putNextEntry(new ZipEntry(name));
+		zip.write(new byte[] { 1, 2, 3, 4 });
+		zip.closeEntry();
+		zip.putNextEntry(new ZipEntry(ProjectArchive.PROJECT_ENTRY));
+		zip.closeEntry();
+		zip.finish();
+		ProjectArchive.Images images = new ProjectArchive.Images();
+		ProjectArchive.read(new ByteArrayInputStream(archive.toByteArray()), images);
+
+		assertEquals(0x04030201, images.get(name, 4, 32).get(0));
+		assertEquals(0x0403, images.get(name, 4, 16).get(1));
+		for (int[] dims : new int[][] { { 0, 8 }, { 33, 8 }, { 8, 0 }, { 8, 33 } }) {
+			try {
+				images.get(name, dims[0], dims[1]);
+			} catch (IOException e) {
+				continue;
+			}
+			throw new AssertionError("accepted addr/data " + dims[0] + " " + dims[1]);
+		}
+		try {
+			images.get(ProjectArchive.IMAGE_DIR + "1.bin", 4, 8);
+		} catch (IOException e) {
+			return;
+		}
+		throw new AssertionError("accepted a missing image");
+	}
+}
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import com.cburch.logisim.std.memory.MemContents;
+import com.cburch.logisim.std.memory.Rom;
+
+public class XmlStreamLoaderTest {
+
+	private static final String CIRCUIT = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+			+ "<project source=\"2.15.0\" version=\"1.0\">\n"
+			+ "  <!-- a comment -->\n"
+			+ "  <lib desc=\"#Wiring\" name=\"0\">\n"
+			+ "    <tool name=\"Pin\"><a name=\"facing\" val=\"west\"/></tool>\n"
+			+ "  </lib>\n"
+			+ "  <circuit name=\"main\">\n"
+			+ "    <a name=\"circuit\" val=\"main\"/>\n"
+			+ "    <a name=\"label\">multi\nline  </a>\n"
+			+ "    <wire from=\"(100,100)\" to=\"(200,100)\"/>\n"
+			+ "    <comp lib=\"0\" loc=\"(100,100)\" name=\"Pin\"/>\n"
+			+ "  </circuit>\n"
+			+ "</project>\n";
+
+	private static InputStream stream(String xml) {
+		return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String withContents(String text) {
+		return "<project><circuit name=\"main\"><comp name=\"ROM\">"
+				+ "<a name=\"contents\">" + text + "</a>"
+				+ "</comp></circuit></project>";
+	}
+
+	private static Element contentsOf(Document doc) {
+		return (Element) doc.getElementsByTagName("a").item(0);
+	}
+
+	// Compares element names, attributes and text, ignoring whitespace-only
+	// text between elements, which the stream loader drops.
+	private static void assertSameTree(Node expected, Node actual) {
+		assertEquals(expected.getNodeName(), actual.getNodeName());
+		if (expected.getNodeType() == Node.TEXT_NODE) {
+			assertEquals(expected.getNodeValue(), actual.getNodeValue());
+			return;
+		}
+		NamedNodeMap ea = expected.getAttributes(), aa = actual.getAttributes();
+		assertEquals(ea.getLength(), aa.getLength());
+		for (int i = 0; i < ea.getLength(); i++) {
+			Node a = ea.item(i);
+			assertEquals(a.getNodeValue(), ((Element) actual).getAttribute(a.getNodeName()));
+		}
+		ArrayList<Node> ec = children(expected), ac = children(actual);
+		assertEquals(expected.getNodeName(), ec.size(), ac.size());
+		for (int i = 0; i < ec.size(); i++)
+			assertSameTree(ec.get(i), ac.get(i));
+	}
+
+	private static ArrayList<Node> children(Node n) {
+		ArrayList<Node> ret = new ArrayList<>();
+		for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+			if (c.getNodeType() == Node.ELEMENT_NODE)
+				ret.add(c);
+			else if (c.getNodeType() == Node.TEXT_NODE && !c.getNodeValue().trim().isEmpty())
+				ret.add(c);
+		}
+		return ret;
+	}
+
+	/**
+	 * The streamed document has the same elements, attributes and text as
+	 * one parsed into a DOM in the usual way, with whitespace between
+	 * elements and comments dropped.
+	 */
+	@Test
+	public void testMatchesDomParser() throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		Document expected = factory.newDocumentBuilder().parse(stream(CIRCUIT));
+		Document actual = XmlStreamLoader.load(stream(CIRCUIT), null);
+
+		assertSameTree(expected.getDocumentElement(), actual.getDocumentElement());
+		for (Node c = actual.getDocumentElement().getFirstChild(); c != null; c = c.getNextSibling())
+			assertEquals(Node.ELEMENT_NODE, c.getNodeType());
+		// Text inside an element is kept as is, whitespace included.
+		Element label = (Element) actual.getElementsByTagName("a").item(2);
+		assertEquals("multi\nline  ", label.getTextContent());
+	}
+
+	/**
+	 * Memory contents are decoded from the stream and attached as user data,
+	 * leaving the element itself empty.
+	 */
+	@Test
+	public void testContentsDecodedFromStream() throws Exception {
+		MemContents contents = MemContents.create(6, 8);
+		for (int i = 0; i < 64; i += 3)
+			contents.set(i, (i * 37) & 0xff);
+		String text = Rom.CONTENTS_ATTR.toStandardString(contents);
+
+		Element elt = contentsOf(XmlStreamLoader.load(stream(withContents(text)), null));
+		assertNull(elt.getFirstChild());
+		XmlStreamLoader.ParsedValue parsed =
+				(XmlStreamLoader.ParsedValue) elt.getUserData(XmlStreamLoader.PARSED_VALUE);
+		assertNotNull(parsed);
+		assertEquals(Rom.CONTENTS_ATTR, parsed.attr);
+		MemContents value = (MemContents) parsed.value;
+		assertEquals(6, value.getLogLength());
+		assertEquals(8, value.getWidth());
+		for (int i = 0; i < 64; i++)
+			assertEquals(contents.get(i), value.get(i));
+		assertEquals(text, parsed.toStandardString());
+	}
+
+	/**
+	 * Contents without the addr/data header are left as text for the usual
+	 * attribute parsing to deal with.
+	 */
+	@Test
+	public void testContentsWithoutHeaderKeptAsText() throws Exception {
+		Element elt = contentsOf(XmlStreamLoader.load(stream(withContents("0 1 2 3")), null));
+		assertNull(elt.getUserData(XmlStreamLoader.PARSED_VALUE));
+		assertEquals("0 1 2 3", elt.getTextContent());
+	}
+
+	/**
+	 * Repairs see each element once, after its children and once it has been
+	 * added to its parent.
+	 */
+	@Test
+	public void testRepairsCalledAsElementsEnd() throws Exception {
+		ArrayList<String> ended = new ArrayList<>();
+		XmlStreamLoader.load(stream(CIRCUIT), elt -> {
+			assertNotNull(elt.getParentNode());
+			ended.add(elt.getTagName());
+		});
+		assertEquals("[a, tool, lib, a, a, wire, comp, circuit, project]", ended.toString());
+	}
+
+	/**
+	 * Malformed documents are reported as parse errors.
+	 */
+	@Test(expected = org.xml.sax.SAXException.class)
+	public void testMalformedDocument() throws Exception {
+		XmlStreamLoader.load(stream("<project><circuit></project>"), null);
+	}
+
+	/**
+	 * An empty document has no root element to load.
+	 */
+	@Test
+	public void testEmptyDocument() {
+		try {
+			XmlStreamLoader.load(stream(""), null);
+		} catch (Exception e) {
+			assertTrue(e instanceof org.xml.sax.SAXException);
+			return;
+		}
+		throw new AssertionError("expected a SAXException");
+	}
+}
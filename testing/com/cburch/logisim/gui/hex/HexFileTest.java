@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.gui.hex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.Main;
+import com.cburch.logisim.std.memory.MemContents;
+
+public class HexFileTest {
+
+	private File image;
+
+	/**
+	 * Writes a 256 word, 16-bit raw image, word i holding 0x100 + i
+	 * big-endian, with no header.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		Main.headless = true;
+		byte[] bytes = new byte[512];
+		for (int i = 0; i < 256; i++) {
+			bytes[2 * i] = (byte) ((0x100 + i) >> 8);
+			bytes[2 * i + 1] = (byte) (0x100 + i);
+		}
+		image = File.createTempFile("logisim-image", ".bin");
+		Files.write(image.toPath(), bytes);
+	}
+
+	@After
+	public void tearDown() {
+		image.delete();
+	}
+
+	/**
+	 * A headerless image the size of a file-backed memory is mapped without
+	 * asking, and writing to the memory leaves the file alone.
+	 */
+	@Test
+	public void testMapsRawImageHeadless() throws IOException {
+		byte[] before = Files.readAllBytes(image.toPath());
+		MemContents dst = MemContents.create(8, 16);
+		dst.setFileBacked(true);
+		assertTrue(HexFile.open(dst, image));
+		for (int i = 0; i < 256; i++)
+			assertEquals(0x100 + i, dst.get(i));
+		dst.set(3, 0xbeef);
+		assertEquals(0xbeef, dst.get(3));
+		assertEquals(0x104, dst.get(4));
+		assertArrayEquals(before, Files.readAllBytes(image.toPath()));
+	}
+
+	/**
+	 * Without a header, an image of any other size still needs the format
+	 * dialog, so it is refused when headless.
+	 */
+	@Test
+	public void testRefusesMismatchedImageHeadless() throws IOException {
+		MemContents dst = MemContents.create(9, 16);
+		dst.setFileBacked(true);
+		assertFalse(HexFile.open(dst, image));
+	}
+}
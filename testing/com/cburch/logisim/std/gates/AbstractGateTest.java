@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.std.gates;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cburch.logisim.HeadlessProject;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitMutation;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Wire;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.std.wiring.Constant;
+
+public class AbstractGateTest {
+
+	private Circuit circ;
+	private CircuitState state;
+	private Component gate;
+	private Wire wire;
+
+	private Component constant(Location loc, int value) {
+		AttributeSet attrs = Constant.FACTORY.createAttributeSet();
+		attrs.setAttr(Constant.ATTR_VALUE, Integer.valueOf(value));
+		return Constant.FACTORY.createComponent(loc, attrs);
+	}
+
+	private void execute(CircuitMutation m) {
+		m.execute();
+		state.getPropagator().propagate();
+	}
+
+	private Value output() {
+		return state.getValue(gate.getEnd(0).getLocation());
+	}
+
+	/**
+	 * Builds an AND gate with a constant 1 wired to its first input, and a
+	 * constant 0 placed near, but not yet wired to, its second input.
+	 */
+	@Before
+	public void setUp() {
+		HeadlessProject project = new HeadlessProject();
+		circ = project.circ;
+		state = project.createRootState();
+
+		gate = AndGate.FACTORY.createComponent(Location.create(200, 200),
+				AndGate.FACTORY.createAttributeSet());
+		Location in1 = gate.getEnd(1).getLocation();
+		Location in2 = gate.getEnd(2).getLocation();
+		Location c1 = Location.create(in1.getX() - 40, in1.getY());
+		Location c2 = Location.create(in2.getX() - 40, in2.getY());
+		wire = Wire.create(c2, in2);
+
+		CircuitMutation m = new CircuitMutation(circ);
+		m.add(gate);
+		m.add(constant(c1, 1));
+		m.add(Wire.create(c1, in1));
+		m.add(constant(c2, 0));
+		execute(m);
+	}
+
+	/**
+	 * Wiring and unwiring an input must be seen by the gate, even though a
+	 * wire-only edit keeps the circuit's location-to-slot index.
+	 */
+	@Test
+	public void testWireAndUnwireInput() {
+		// The unwired input is ignored.
+		assertEquals(Value.TRUE, output());
+
+		CircuitMutation m = new CircuitMutation(circ);
+		m.add(wire);
+		execute(m);
+		assertEquals(Value.FALSE, output());
+
+		m = new CircuitMutation(circ);
+		m.remove(wire);
+		execute(m);
+		assertEquals(Value.TRUE, output());
+
+		m = new CircuitMutation(circ);
+		m.add(wire);
+		execute(m);
+		assertEquals(Value.FALSE, output());
+	}
+}
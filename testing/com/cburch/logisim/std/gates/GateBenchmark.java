@@ -0,0 +1,118 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+
+package com.cburch.logisim.std.gates;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.cburch.logisim.Main;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.InstanceFactory;
+import com.cburch.logisim.proj.Project;
+
+// GateBenchmark measures how quickly gates evaluate, reporting gate
+// evaluations/sec. Usage:
+//   java com.cburch.logisim.std.gates.GateBenchmark file.circ [circuit] [rounds]
+// After the circuit settles, every gate (and buffer) in it is propagated over
+// and over. Each round the events the gates scheduled are drained by the
+// propagator, outside the timed part, so only the evaluations themselves are
+// measured.
+public class GateBenchmark {
+
+  private static final int EVALS_PER_ROUND = 200000;
+
+  private static boolean isGate(Component comp) {
+    Object factory = comp.getFactory();
+    return factory instanceof AbstractGate || factory instanceof Buffer
+        || factory instanceof NotGate || factory instanceof ControlledBuffer;
+  }
+
+  private static double run(CircuitState state, ArrayList<Component> gates,
+      int rounds) {
+    Propagator prop = state.getPropagator();
+    int n = gates.size();
+    int reps = Math.max(1, EVALS_PER_ROUND / n);
+    long evals = 0;
+    long nanos = 0;
+    for (int r = 0; r < rounds; r++) {
+      long start = System.nanoTime();
+      for (int k = 0; k < reps; k++) {
+        for (int i = 0; i < n; i++) {
+          Component comp = gates.get(i);
+          InstanceFactory factory = (InstanceFactory) comp.getFactory();
+          factory.propagate(state.getInstanceState(comp));
+        }
+      }
+      nanos += System.nanoTime() - start;
+      evals += (long) reps * n;
+      prop.propagate();
+    }
+    return evals / (nanos / 1e9);
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.err.println("usage: GateBenchmark file.circ [circuit] [rounds]");
+      System.exit(1);
+    }
+    String name = args.length > 1 ? args[1] : null;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+    Main.headless = true;
+    Loader loader = new Loader(null);
+    LogisimFile.FileWithSimulations f = loader.openLogisimFile(new File(args[0]), new HashMap<>());
+    Project proj = new Project(f);
+    Circuit circuit = name == null ? f.file.getMainCircuit() : f.file.getCircuit(name);
+    if (circuit == null)
+      throw new IllegalArgumentException("no such circuit: " + name);
+    ArrayList<Component> gates = new ArrayList<>();
+    for (Component comp : circuit.getNonWires())
+      if (isGate(comp))
+        gates.add(comp);
+    if (gates.isEmpty())
+      throw new IllegalArgumentException("no gates in circuit: " + circuit.getName());
+
+    CircuitState state = CircuitState.createRootState(proj, circuit);
+    state.getPropagator().propagate();
+    run(state, gates, Math.max(1, rounds / 5)); // warm up
+    double rate = run(state, gates, rounds);
+    System.out.printf("%s, %d gates: %12.0f gate evals/sec\n",
+        circuit.getName(), gates.size(), rate);
+    System.exit(0);
+  }
+}
@@ -0,0 +1,162 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.std.hdl;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cburch.logisim.util.SocketClient;
+
+// VhdlSimulatorBenchmark measures the socket protocol used for VHDL
+// co-simulation without Questasim, against a stand-in binder that speaks the
+// same line protocol as questasim_binder.tcl: it collects port messages until
+// "sync", answers each out or inout port with its signal name, a value and
+// the port index, then sends "sync" back. Usage:
+//   java com.cburch.logisim.std.hdl.VhdlSimulatorBenchmark [entities] [steps] [delay_us]
+// It reports steps/sec with one round trip per entity (as VhdlEntity did
+// before batching) and with one round trip for all the entities, and checks
+// that every entity got its outputs back. The optional delay is spent by the
+// stand-in on each sync, as the simulator's "run" would.
+public class VhdlSimulatorBenchmark {
+
+  private static class StandInBinder extends Thread {
+    private final int port;
+    private final long delayNanos;
+    volatile Exception failure; // why the binder stopped early, if it did
+
+    StandInBinder(int port, long delayNanos) {
+      super("VhdlSimulatorBenchmark-binder");
+      setDaemon(true);
+      this.port = port;
+      this.delayNanos = delayNanos;
+    }
+
+    @Override
+    public void run() {
+      try (Socket socket = new Socket("localhost", port)) {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), false);
+        ArrayList<String[]> msgs = new ArrayList<>();
+        String msg;
+        while ((msg = in.readLine()) != null && !msg.equals("end")) {
+          if (!msg.equals("sync")) {
+            msgs.add(msg.split(":"));
+            continue;
+          }
+          if (delayNanos > 0) {
+            long end = System.nanoTime() + delayNanos;
+            while (System.nanoTime() < end)
+              Thread.yield();
+          }
+          for (String[] signal : msgs) {
+            if (signal[0].equals("2") || signal[0].equals("3"))
+              out.println(signal[1] + ":" + signal[2] + ":" + signal[3]);
+          }
+          out.println("sync");
+          out.flush();
+          msgs.clear();
+        }
+      } catch (Exception e) {
+        failure = e;
+      }
+    }
+
+    void check() {
+      if (failure != null)
+        throw new IllegalStateException("stand-in binder failed", failure);
+    }
+  }
+
+  // Two inputs and two outputs per entity, named as VhdlEntity names them.
+  private static List<String> entityMessages(int entity, int step) {
+    ArrayList<String> messages = new ArrayList<>(4);
+    String name = "vhdl_entity" + entity;
+    String bits = Integer.toBinaryString(0x100 | ((step + entity) & 0xff)).substring(1);
+    messages.add("1:" + name + "_a:" + bits + ":0");
+    messages.add("1:" + name + "_b:" + bits + ":1");
+    messages.add("2:" + name + "_x:" + bits + ":2");
+    messages.add("2:" + name + "_y:" + bits + ":3");
+    return messages;
+  }
+
+  private static double run(SocketClient client, StandInBinder binder,
+      int entities, int steps, boolean batched) {
+    long start = System.nanoTime();
+    for (int step = 0; step < steps; step++) {
+      int received = 0;
+      if (batched) {
+        ArrayList<String> batch = new ArrayList<>();
+        for (int e = 0; e < entities; e++)
+          batch.addAll(entityMessages(e, step));
+        received = VhdlSimulator.exchange(client, batch).size();
+      } else {
+        for (int e = 0; e < entities; e++)
+          received += VhdlSimulator.exchange(client, entityMessages(e, step)).size();
+      }
+      if (received != 2 * entities) {
+        binder.check();
+        throw new IllegalStateException("expected " + 2 * entities + " outputs, got " + received);
+      }
+    }
+    return steps / ((System.nanoTime() - start) / 1e9);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int entities = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+    int steps = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    long delay = args.length > 2 ? Long.parseLong(args[2]) * 1000 : 0;
+
+    SocketClient client = new SocketClient();
+    StandInBinder binder = new StandInBinder(client.getServerPort(), delay);
+    binder.start();
+    client.start();
+    if (!client.isConnected()) {
+      binder.check();
+      throw new IllegalStateException("stand-in binder did not connect");
+    }
+
+    run(client, binder, entities, steps / 10, false); // warm up
+    run(client, binder, entities, steps / 10, true);
+    System.out.printf("%d entities, %d steps:\n", entities, steps);
+    System.out.printf("  %-12s %10.0f steps/sec\n", "per entity",
+        run(client, binder, entities, steps, false));
+    System.out.printf("  %-12s %10.0f steps/sec\n", "batched",
+        run(client, binder, entities, steps, true));
+
+    client.send("end");
+    client.stop();
+    System.exit(0);
+  }
+}